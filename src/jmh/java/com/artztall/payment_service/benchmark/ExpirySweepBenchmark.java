@@ -0,0 +1,55 @@
+package com.artztall.payment_service.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@code handleExpiredPayments} run over {@code expiring} due payments, including the
+ * product release, order update and notification for each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpirySweepBenchmark {
+
+    @Param({"1000"})
+    private int expiring;
+
+    private PaymentServiceFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new PaymentServiceFixture(0, expiring);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetPayments() {
+        fixture.resetExpiring();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void handleExpiredPayments() {
+        fixture.paymentService.handleExpiredPayments();
+    }
+}
@@ -0,0 +1,34 @@
+package com.artztall.payment_service.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with {@code mvn -Pjmh test-compile exec:exec}. Any JMH options
+ * passed in {@code -Djmh.args} apply; without them every benchmark in this package runs
+ * with the GC profiler and results are written to {@code target/jmh-result.json}.
+ */
+public final class PaymentBenchmarks {
+
+    private PaymentBenchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(PaymentBenchmarks.class.getPackageName() + "\\..*Benchmark");
+        }
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON).result("target/jmh-result.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
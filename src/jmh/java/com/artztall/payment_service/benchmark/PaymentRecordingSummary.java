@@ -0,0 +1,146 @@
+package com.artztall.payment_service.benchmark;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Summarizes the payment events of a JFR recording into per-stage and per-operation
+ * latency tables, and lists the slowest operations with their payment. The "in GC"
+ * column counts events that overlapped a GC pause of the same recording.
+ * <p>
+ * Record with e.g. {@code -XX:StartFlightRecording=filename=payments.jfr}, then run
+ * {@code mvn -Pjmh test-compile} and {@code java -cp target/test-classes
+ * com.artztall.payment_service.benchmark.PaymentRecordingSummary payments.jfr}; it needs
+ * nothing beyond the JDK.
+ */
+public final class PaymentRecordingSummary {
+
+    // Names of PaymentStageEvent and PaymentOperationEvent, the recording is all this reads
+    static final String STAGE = "com.artztall.payment.Stage";
+    static final String OPERATION = "com.artztall.payment.Operation";
+    private static final String GC_PAUSE = "jdk.GCPhasePause";
+    private static final int SLOWEST = 10;
+
+    private record Sample(String operation, String stage, String outcome, String paymentId, String orderId,
+                          Instant start, Instant end) {
+        long nanos() {
+            return Duration.between(start, end).toNanos();
+        }
+    }
+
+    private record Pause(Instant start, Instant end) {
+    }
+
+    private PaymentRecordingSummary() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: PaymentRecordingSummary <recording.jfr>");
+            System.exit(2);
+        }
+        System.out.print(summarize(Path.of(args[0])));
+    }
+
+    static String summarize(Path recording) throws IOException {
+        List<Sample> stages = new ArrayList<>();
+        List<Sample> operations = new ArrayList<>();
+        List<Pause> pauses = new ArrayList<>();
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                switch (event.getEventType().getName()) {
+                    case STAGE -> stages.add(sample(event, event.getString("stage")));
+                    case OPERATION -> operations.add(sample(event, null));
+                    case GC_PAUSE -> pauses.add(new Pause(event.getStartTime(), event.getEndTime()));
+                    default -> {
+                    }
+                }
+            }
+        }
+        pauses.sort(Comparator.comparing(Pause::start));
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-14s %-22s %8s %7s %9s %9s %9s %11s %6s%n",
+                "operation", "stage", "count", "errors", "p50 ms", "p99 ms", "max ms", "total ms", "in GC"));
+        table(report, stages, sample -> sample.operation() + "\u0000" + sample.stage(), pauses);
+        report.append(String.format("%n%-14s %-22s %8s %7s %9s %9s %9s %11s %6s%n",
+                "operation", "outcome", "count", "errors", "p50 ms", "p99 ms", "max ms", "total ms", "in GC"));
+        table(report, operations, sample -> sample.operation() + "\u0000" + sample.outcome(), pauses);
+
+        report.append(String.format("%nSlowest operations%n"));
+        operations.stream()
+                .sorted(Comparator.comparingLong(Sample::nanos).reversed())
+                .limit(SLOWEST)
+                .forEach(sample -> report.append(String.format("%-14s %9.2f ms  %-8s payment=%s order=%s at %s%s%n",
+                        sample.operation(), millis(sample.nanos()), sample.outcome(), sample.paymentId(),
+                        sample.orderId(), sample.start(), inPause(sample, pauses) ? " (overlaps GC pause)" : "")));
+        return report.toString();
+    }
+
+    private static Sample sample(RecordedEvent event, String stage) {
+        return new Sample(event.getString("operation"), stage, event.getString("outcome"),
+                event.getString("paymentId"), event.getString("orderId"), event.getStartTime(), event.getEndTime());
+    }
+
+    private static void table(StringBuilder report, List<Sample> samples,
+                              Function<Sample, String> key, List<Pause> pauses) {
+        Map<String, List<Sample>> groups = new TreeMap<>();
+        for (Sample sample : samples) {
+            groups.computeIfAbsent(key.apply(sample), group -> new ArrayList<>()).add(sample);
+        }
+        groups.forEach((group, members) -> {
+            String[] names = group.split("\u0000", 2);
+            long[] nanos = members.stream().mapToLong(Sample::nanos).sorted().toArray();
+            long errors = members.stream().filter(sample -> "error".equals(sample.outcome())).count();
+            long inGc = members.stream().filter(sample -> inPause(sample, pauses)).count();
+            long total = 0;
+            for (long value : nanos) {
+                total += value;
+            }
+            report.append(String.format("%-14s %-22s %8d %7d %9.2f %9.2f %9.2f %11.1f %6d%n",
+                    names[0], names[1], nanos.length, errors, millis(percentile(nanos, 50)),
+                    millis(percentile(nanos, 99)), millis(nanos[nanos.length - 1]), millis(total), inGc));
+        });
+    }
+
+    /**
+     * Pauses never overlap each other, so the last one starting before the sample ends is
+     * the only one that can overlap it.
+     */
+    private static boolean inPause(Sample sample, List<Pause> pauses) {
+        int low = 0;
+        int high = pauses.size() - 1;
+        int last = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (pauses.get(middle).start().isAfter(sample.end())) {
+                high = middle - 1;
+            } else {
+                last = middle;
+                low = middle + 1;
+            }
+        }
+        return last >= 0 && !pauses.get(last).end().isBefore(sample.start());
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
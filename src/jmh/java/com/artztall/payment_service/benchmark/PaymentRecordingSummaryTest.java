@@ -0,0 +1,52 @@
+package com.artztall.payment_service.benchmark;
+
+import com.artztall.payment_service.service.PaymentStageTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaymentRecordingSummaryTest {
+
+    @Test
+    void summarize_ReportsStagesAndOperationsOfRecording(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("payments.jfr");
+        PaymentStageTimer stageTimer = new PaymentStageTimer(new SimpleMeterRegistry(), Duration.ofMinutes(1));
+        try (Recording recording = new Recording()) {
+            recording.enable(PaymentRecordingSummary.STAGE);
+            recording.enable(PaymentRecordingSummary.OPERATION);
+            recording.start();
+
+            PaymentStageTimer.Trace trace = stageTimer.start("refund", "payment-1");
+            trace.identify("payment-1", "order-1");
+            trace.run("stripe_refund", () -> Thread.sleep(5));
+            assertThrows(IllegalStateException.class, () -> trace.run("save", () -> {
+                throw new IllegalStateException("Mongo unavailable");
+            }));
+            trace.finish("error");
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        String[] lines = PaymentRecordingSummary.summarize(file).split("\n");
+
+        assertTrue(row(lines, "refund", "stripe_refund").matches(".*\\s1\\s+0\\s.*"));
+        assertTrue(row(lines, "refund", "save").matches(".*\\s1\\s+1\\s.*"));
+        assertTrue(row(lines, "refund", "error").matches(".*\\s1\\s+1\\s.*"));
+        assertTrue(Arrays.stream(lines).anyMatch(line -> line.contains("payment=payment-1 order=order-1")));
+    }
+
+    private static String row(String[] lines, String operation, String name) {
+        return Arrays.stream(lines)
+                .filter(line -> line.matches(operation + "\\s+" + name + "\\s.*"))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("no row for " + operation + " " + name));
+    }
+}
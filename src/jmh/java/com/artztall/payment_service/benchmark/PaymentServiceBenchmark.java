@@ -0,0 +1,83 @@
+package com.artztall.payment_service.benchmark;
+
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.artztall.payment_service.dto.UserPaymentResponseDTO;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request paths of {@code PaymentServiceImpl} against in-memory stand-ins. Throughput and
+ * sampled latency percentiles are reported for each; run with {@code -prof gc} (the
+ * default in {@link PaymentBenchmarks}) for allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentServiceBenchmark {
+
+    private static final int SEEDED_PAYMENTS = 10_000;
+
+    private PaymentServiceFixture fixture;
+    private List<Payment> payments;
+    private final AtomicLong orders = new AtomicLong();
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new PaymentServiceFixture(SEEDED_PAYMENTS, 0);
+        payments = fixture.seeded;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public PaymentResponseDTO createPayment() {
+        // A new order each time, so the idempotency store runs the call instead of replaying it
+        return fixture.paymentService.createPayment(
+                PaymentServiceFixture.paymentRequest("bench-order-" + orders.incrementAndGet()), null);
+    }
+
+    @Benchmark
+    public PaymentResponseDTO confirmPayment() {
+        Payment payment = nextPayment();
+        payment.setPaymentStatus(PaymentStatus.PENDING);
+        return fixture.paymentService.confirmPayment(payment.getStripPaymentIntendId());
+    }
+
+    @Benchmark
+    public PaymentResponseDTO getPaymentStatus() {
+        return fixture.paymentService.getPaymentStatus(nextPayment().getId());
+    }
+
+    @Benchmark
+    public List<UserPaymentResponseDTO> findByUserId() {
+        return fixture.paymentService.findByUserId(nextPayment().getUserId());
+    }
+
+    private Payment nextPayment() {
+        return payments.get(Math.floorMod(next.getAndIncrement(), payments.size()));
+    }
+}
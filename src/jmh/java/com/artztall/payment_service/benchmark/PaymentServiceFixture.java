@@ -0,0 +1,381 @@
+package com.artztall.payment_service.benchmark;
+
+import com.artztall.payment_service.dto.NotificationSendDTO;
+import com.artztall.payment_service.dto.OrderItemResponseDTO;
+import com.artztall.payment_service.dto.OrderResponseDTO;
+import com.artztall.payment_service.dto.PaymentRequestDTO;
+import com.artztall.payment_service.model.OrderStatus;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.repository.PaymentRepository;
+import com.artztall.payment_service.service.ArtisanEarningsService;
+import com.artztall.payment_service.service.ExpiryPartitionCoordinator;
+import com.artztall.payment_service.service.NotificationClientService;
+import com.artztall.payment_service.service.NotificationDispatcher;
+import com.artztall.payment_service.service.OrderClientService;
+import com.artztall.payment_service.service.PaymentExpirySweeper;
+import com.artztall.payment_service.service.PaymentExpiryWheel;
+import com.artztall.payment_service.service.PaymentGateway;
+import com.artztall.payment_service.service.PaymentIdempotencyStore;
+import com.artztall.payment_service.service.PaymentIntentLookups;
+import com.artztall.payment_service.service.PaymentServiceImpl;
+import com.artztall.payment_service.service.PaymentStageTimer;
+import com.artztall.payment_service.service.PaymentStatusCache;
+import com.artztall.payment_service.service.PaymentStatusChangedEvent;
+import com.artztall.payment_service.service.ProductClientService;
+import com.artztall.payment_service.service.ProductReleaseService;
+import com.artztall.payment_service.util.DownstreamGuard;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.Refund;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCreateParams;
+import com.stripe.param.RefundCreateParams;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A real {@link PaymentServiceImpl} wired to in-memory stand-ins for Mongo, Stripe and the
+ * order, product and notification services, so the benchmarks measure this service's
+ * own code. Every stand-in answers immediately. Payments created during a run are kept in
+ * a bounded cache so long runs do not grow the heap.
+ */
+final class PaymentServiceFixture implements AutoCloseable {
+
+    static final int PAYMENTS_PER_USER = 50;
+
+    final PaymentServiceImpl paymentService;
+    final List<Payment> seeded;
+
+    private final Map<String, Payment> seededById = new ConcurrentHashMap<>();
+    private final Map<String, Payment> byIntent = new ConcurrentHashMap<>();
+    private final Map<String, List<Payment>> byUser = new ConcurrentHashMap<>();
+    private final Cache<String, Payment> created = Caffeine.newBuilder().maximumSize(100_000).build();
+    // Payments the expiry sweep finds; reset to PENDING before each sweep
+    private final List<Payment> expiring = new CopyOnWriteArrayList<>();
+
+    private final NotificationDispatcher notificationDispatcher;
+    private final PaymentExpirySweeper paymentExpirySweeper;
+
+    PaymentServiceFixture(int seededPayments, int expiringPayments) {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MongoTemplate mongoTemplate = new InMemoryMongoTemplate();
+        OrderClientService orderClientService = new InMemoryOrderClient(meterRegistry);
+        ProductReleaseService productReleaseService = new ProductReleaseService(orderClientService,
+                new InMemoryProductClient(), mongoTemplate, ProductReleaseService.Fallback.LOG);
+        notificationDispatcher = new NotificationDispatcher(new InMemoryNotificationClient(), meterRegistry,
+                10_000, 2, 50, Duration.ofSeconds(5), NotificationDispatcher.OverflowPolicy.DROP_NEWEST);
+        notificationDispatcher.start();
+        PaymentStageTimer paymentStageTimer = new PaymentStageTimer(meterRegistry, Duration.ofSeconds(2));
+        paymentExpirySweeper = new PaymentExpirySweeper(mongoTemplate, orderClientService, productReleaseService,
+                notificationDispatcher, event -> { }, paymentStageTimer, meterRegistry, 500, 8, false,
+                Duration.ofSeconds(60));
+        PaymentStatusCache paymentStatusCache = new PaymentStatusCache(meterRegistry, 50_000, Duration.ofSeconds(5));
+
+        ExpiryPartitionCoordinator expiryPartitionCoordinator = new AllPartitionsCoordinator(mongoTemplate, meterRegistry);
+        PaymentGateway paymentGateway = new InMemoryPaymentGateway();
+        paymentService = new PaymentServiceImpl(
+                repository(),
+                orderClientService,
+                productReleaseService,
+                notificationDispatcher,
+                paymentExpirySweeper,
+                expiryPartitionCoordinator,
+                new PaymentExpiryWheel(mongoTemplate, paymentExpirySweeper, expiryPartitionCoordinator, meterRegistry,
+                        false, 1000, 64, 500),
+                paymentGateway,
+                new PaymentIntentLookups(paymentGateway, repository(), null, meterRegistry),
+                // The blocking service never goes through the reactive template
+                new PaymentIdempotencyStore(mongoTemplate, null, meterRegistry, 10_000, Duration.ofMinutes(10),
+                        Duration.ofMinutes(1)),
+                paymentStatusCache,
+                paymentStageTimer,
+                new ArtisanEarningsService(mongoTemplate, meterRegistry, 30, 366, 500, false, Duration.ofHours(1)),
+                event -> paymentStatusCache.onStatusChanged((PaymentStatusChangedEvent) event));
+
+        LocalDateTime now = LocalDateTime.now();
+        seeded = IntStream.range(0, seededPayments)
+                .mapToObj(i -> payment(i, "user-" + (i / PAYMENTS_PER_USER), PaymentStatus.COMPLETED, now))
+                .toList();
+        seeded.forEach(this::store);
+        IntStream.range(0, expiringPayments)
+                .mapToObj(i -> payment(seededPayments + i, "user-expiring", PaymentStatus.PENDING, now.minusMinutes(1)))
+                .forEach(expiring::add);
+    }
+
+    static PaymentRequestDTO paymentRequest(String orderId) {
+        return PaymentRequestDTO.builder()
+                .orderId(orderId)
+                .userId("user-0")
+                .currency("usd")
+                .paymentMethodId("pm_card_visa")
+                .build();
+    }
+
+    void resetExpiring() {
+        expiring.forEach(payment -> payment.setPaymentStatus(PaymentStatus.PENDING));
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        notificationDispatcher.stop();
+        paymentExpirySweeper.shutdown();
+    }
+
+    private static Payment payment(int i, String userId, PaymentStatus status, LocalDateTime expiresAt) {
+        return Payment.builder()
+                .id(new ObjectId().toHexString())
+                .orderId("order-" + i)
+                .userId(userId)
+                .artistId("artist-" + (i % 10))
+                .amount(10_000L)
+                .currency("usd")
+                .stripPaymentIntendId("pi_seed_" + i)
+                .paymentStatus(status)
+                .expiresAt(expiresAt)
+                .sweepPartition(ExpiryPartitionCoordinator.partitionOf("order-" + i))
+                .createdAt(expiresAt.minusMinutes(15))
+                .updatedAt(expiresAt.minusMinutes(15))
+                .build();
+    }
+
+    private void store(Payment payment) {
+        seededById.put(payment.getId(), payment);
+        byIntent.put(payment.getStripPaymentIntendId(), payment);
+        byUser.computeIfAbsent(payment.getUserId(), user -> new CopyOnWriteArrayList<>()).add(payment);
+    }
+
+    private Payment save(Payment payment) {
+        if (payment.getId() == null) {
+            payment.setId(new ObjectId().toHexString());
+        }
+        if (!seededById.containsKey(payment.getId())) {
+            created.put(payment.getId(), payment);
+        }
+        return payment;
+    }
+
+    private Optional<Payment> findById(String id) {
+        Payment payment = seededById.get(id);
+        return Optional.ofNullable(payment != null ? payment : created.getIfPresent(id));
+    }
+
+    private Payment transition(String paymentIntentId, PaymentStatus from, PaymentStatus to, LocalDateTime at) {
+        return transition(byIntent.get(paymentIntentId), from, to, at);
+    }
+
+    private Payment transition(Payment payment, PaymentStatus from, PaymentStatus to, LocalDateTime at) {
+        if (payment == null || payment.getPaymentStatus() != from) {
+            return null;
+        }
+        payment.setPaymentStatus(to);
+        payment.setUpdatedAt(at);
+        return payment;
+    }
+
+    private PaymentRepository repository() {
+        return (PaymentRepository) Proxy.newProxyInstance(PaymentRepository.class.getClassLoader(),
+                new Class<?>[]{PaymentRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> save((Payment) args[0]);
+                    case "findById" -> findById((String) args[0]);
+                    case "findByStripPaymentIntendId" -> byIntent.get((String) args[0]);
+                    case "transitionByIntent" -> transition((String) args[0], (PaymentStatus) args[1],
+                            (PaymentStatus) args[2], (LocalDateTime) args[3]);
+                    case "transition" -> transition(findById((String) args[0]).orElse(null), (PaymentStatus) args[1],
+                            (PaymentStatus) args[2], (LocalDateTime) args[3]);
+                    case "findByUserId" -> byUser.getOrDefault((String) args[0], List.of());
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryPaymentRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Serves the writes of the idempotency store and the reads and updates of the expiry
+     * sweeper from memory. Nothing reaches the database factory.
+     */
+    private final class InMemoryMongoTemplate extends MongoTemplate {
+
+        InMemoryMongoTemplate() {
+            super(unusedDatabaseFactory());
+        }
+
+        @Override
+        public <T> T insert(T objectToSave) {
+            return objectToSave;
+        }
+
+        @Override
+        public UpdateResult updateFirst(Query query, UpdateDefinition update, Class<?> entityClass) {
+            return UpdateResult.acknowledged(1, 1L, null);
+        }
+
+        @Override
+        public DeleteResult remove(Query query, Class<?> entityClass) {
+            return DeleteResult.acknowledged(1);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> find(Query query, Class<T> entityClass) {
+            if (entityClass != Payment.class) {
+                return List.of();
+            }
+            // The sweeper pages through due PENDING payments; the previous page is already EXPIRED
+            int limit = query.getLimit() > 0 ? query.getLimit() : Integer.MAX_VALUE;
+            return (List<T>) expiring.stream()
+                    .filter(payment -> payment.getPaymentStatus() == PaymentStatus.PENDING)
+                    .limit(limit)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+
+        @Override
+        public UpdateResult updateMulti(Query query, UpdateDefinition update, Class<?> entityClass) {
+            Collection<?> ids = query.getQueryObject().get("_id", Document.class).get("$in", Collection.class);
+            long modified = 0;
+            for (Payment payment : expiring) {
+                if (ids.contains(payment.getId()) && payment.getPaymentStatus() == PaymentStatus.PENDING) {
+                    payment.setPaymentStatus(PaymentStatus.EXPIRED);
+                    modified++;
+                }
+            }
+            return UpdateResult.acknowledged(ids.size(), modified, null);
+        }
+    }
+
+    private static MongoDatabaseFactory unusedDatabaseFactory() {
+        MongoExceptionTranslator exceptionTranslator = new MongoExceptionTranslator();
+        return (MongoDatabaseFactory) Proxy.newProxyInstance(MongoDatabaseFactory.class.getClassLoader(),
+                new Class<?>[]{MongoDatabaseFactory.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getExceptionTranslator" -> exceptionTranslator;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "UnusedMongoDatabaseFactory";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static final class InMemoryOrderClient extends OrderClientService {
+
+        private final OrderResponseDTO order = OrderResponseDTO.builder()
+                .id("order")
+                .userId("user-0")
+                .totalAmount(BigDecimal.valueOf(100))
+                .item(OrderItemResponseDTO.builder().productId("product-1").artistId("artist-1").build())
+                .build();
+
+        InMemoryOrderClient(MeterRegistry meterRegistry) {
+            super(WebClient.create(), DownstreamGuard.ofDefaults("order"), meterRegistry, 10_000, Duration.ofSeconds(30));
+        }
+
+        @Override
+        public OrderResponseDTO getOrder(String orderId) {
+            return order;
+        }
+
+        @Override
+        public void updateOrderStatus(String orderId, OrderStatus status) {
+        }
+    }
+
+    private static final class InMemoryProductClient extends ProductClientService {
+
+        InMemoryProductClient() {
+            super(WebClient.create(), DownstreamGuard.ofDefaults("product"));
+        }
+
+        @Override
+        public void releaseProduct(String productId) {
+        }
+    }
+
+    private static final class InMemoryNotificationClient extends NotificationClientService {
+
+        InMemoryNotificationClient() {
+            super(WebClient.create(), DownstreamGuard.ofDefaults("notification"));
+        }
+
+        @Override
+        public Mono<Void> send(NotificationSendDTO notificationSendDTO) {
+            return Mono.empty();
+        }
+    }
+
+    private static final class AllPartitionsCoordinator extends ExpiryPartitionCoordinator {
+
+        private static final Set<Integer> ALL = IntStream.range(0, PARTITION_COUNT).boxed().collect(Collectors.toSet());
+
+        AllPartitionsCoordinator(MongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+            super(mongoTemplate, meterRegistry, "benchmark", Duration.ofSeconds(30), 10_000);
+        }
+
+        @Override
+        public Set<Integer> ownedPartitions() {
+            return ALL;
+        }
+    }
+
+    /**
+     * Stripe stand-in that completes every call immediately and keeps no state, unlike
+     * {@code FakePaymentGateway}, whose delayed executor and intent map would dominate a
+     * microbenchmark.
+     */
+    private static final class InMemoryPaymentGateway implements PaymentGateway {
+
+        @Override
+        public CompletableFuture<PaymentIntent> createPaymentIntent(PaymentIntentCreateParams params,
+                                                                    RequestOptions options) {
+            PaymentIntent paymentIntent = new PaymentIntent();
+            paymentIntent.setId("pi_" + options.getIdempotencyKey());
+            paymentIntent.setClientSecret(paymentIntent.getId() + "_secret");
+            paymentIntent.setAmount(params.getAmount());
+            paymentIntent.setCurrency(params.getCurrency());
+            paymentIntent.setStatus("requires_confirmation");
+            return CompletableFuture.completedFuture(paymentIntent);
+        }
+
+        @Override
+        public CompletableFuture<PaymentIntent> retrievePaymentIntent(String paymentIntentId) {
+            PaymentIntent paymentIntent = new PaymentIntent();
+            paymentIntent.setId(paymentIntentId);
+            paymentIntent.setStatus("succeeded");
+            return CompletableFuture.completedFuture(paymentIntent);
+        }
+
+        @Override
+        public CompletableFuture<Refund> createRefund(RefundCreateParams params, RequestOptions options) {
+            Refund refund = new Refund();
+            refund.setStatus("succeeded");
+            return CompletableFuture.completedFuture(refund);
+        }
+    }
+}
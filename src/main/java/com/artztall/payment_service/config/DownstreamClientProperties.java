@@ -0,0 +1,45 @@
+package com.artztall.payment_service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * HTTP client profile for each downstream service, bound from {@code services.<name>.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "services")
+public class DownstreamClientProperties {
+    private Profile order = new Profile("http://localhost:8084");
+    private Profile product = new Profile("http://localhost:8082");
+    private Profile notification = new Profile("http://localhost:8085");
+
+    @Data
+    public static class Profile {
+        private String baseUrl;
+        /** Maximum open connections to the service. */
+        private int maxConnections = 50;
+        /** Requests allowed to wait for a connection once the pool is exhausted. */
+        private int pendingAcquireMaxCount = 200;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+        /** Idle connections are closed after this long. */
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        /** How often idle and expired connections are evicted in the background. */
+        private Duration evictionInterval = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        /** Maximum time to wait for the response after the request is sent. */
+        private Duration responseTimeout = Duration.ofSeconds(5);
+        private boolean keepAlive = true;
+        private boolean http2 = false;
+        private boolean compression = true;
+
+        public Profile() {
+        }
+
+        Profile(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.artztall.payment_service.config;
+
+import com.artztall.payment_service.migration.DuplicatePaymentIntentMigration;
+import com.artztall.payment_service.model.ArtisanEarnings;
+import com.artztall.payment_service.model.EarningsTransition;
+import com.artztall.payment_service.model.IdempotencyRecord;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PendingProductRelease;
+import com.artztall.payment_service.model.RefundJob;
+import com.artztall.payment_service.model.RefundJobItem;
+import com.artztall.payment_service.model.StripeEventRecord;
+import com.artztall.payment_service.model.SweeperInstance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Creates the indexes declared on the managed document classes and verifies that they
+ * exist. Starts once all singletons are created, before the web server and the
+ * scheduled jobs start. With verification set to FAIL it runs there and then, and a
+ * missing index aborts startup; otherwise it runs in the background and only logs.
+ * <p>
+ * Each index is created on its own, so one that cannot be built, e.g. a unique index
+ * over existing duplicates, is reported as missing without holding back the others.
+ * Payments sharing a Stripe payment intent are resolved first, so the unique
+ * {@code stripe_payment_intent} index can be built.
+ */
+@Slf4j
+@Component
+public class MongoIndexInitializer implements SmartInitializingSingleton {
+
+    public enum Verification {
+        NONE,
+        LOG,
+        FAIL
+    }
+
+    static final List<Class<?>> MANAGED_DOCUMENTS = List.of(Payment.class, PendingProductRelease.class,
+            StripeEventRecord.class, IdempotencyRecord.class, RefundJob.class, RefundJobItem.class,
+            ArtisanEarnings.class, EarningsTransition.class, SweeperInstance.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final DuplicatePaymentIntentMigration duplicatePaymentIntentMigration;
+    private final MongoPersistentEntityIndexResolver indexResolver;
+    private final boolean createIndexes;
+    private final Verification verification;
+
+    public MongoIndexInitializer(MongoTemplate mongoTemplate,
+                                 DuplicatePaymentIntentMigration duplicatePaymentIntentMigration,
+                                 MongoMappingContext mappingContext,
+                                 @Value("${payments.indexes.create:true}") boolean createIndexes,
+                                 @Value("${payments.indexes.verification:LOG}") Verification verification) {
+        this.mongoTemplate = mongoTemplate;
+        this.duplicatePaymentIntentMigration = duplicatePaymentIntentMigration;
+        this.indexResolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        this.createIndexes = createIndexes;
+        this.verification = verification;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (verification == Verification.FAIL) {
+            initialize();
+            return;
+        }
+        Thread initializer = new Thread(() -> {
+            try {
+                initialize();
+            } catch (Exception e) {
+                log.error("Failed to initialize Mongo indexes", e);
+            }
+        }, "mongo-index-initializer");
+        initializer.setDaemon(true);
+        initializer.start();
+    }
+
+    public void initialize() {
+        if (createIndexes) {
+            try {
+                duplicatePaymentIntentMigration.run();
+            } catch (Exception e) {
+                log.error("Failed to resolve payments sharing a Stripe payment intent", e);
+            }
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (Class<?> documentClass : MANAGED_DOCUMENTS) {
+            IndexOperations indexOps = mongoTemplate.indexOps(documentClass);
+            String collection = mongoTemplate.getCollectionName(documentClass);
+            List<IndexDefinition> declared = new ArrayList<>();
+            indexResolver.resolveIndexFor(documentClass).forEach(declared::add);
+
+            if (createIndexes) {
+                for (IndexDefinition index : declared) {
+                    try {
+                        indexOps.ensureIndex(index);
+                    } catch (Exception e) {
+                        log.error("Failed to create Mongo index {}.{}", collection, indexName(index), e);
+                    }
+                }
+            }
+            if (verification == Verification.NONE) {
+                continue;
+            }
+
+            Set<String> existing = indexOps.getIndexInfo().stream()
+                    .map(IndexInfo::getName)
+                    .collect(Collectors.toSet());
+            declared.stream()
+                    .map(MongoIndexInitializer::indexName)
+                    .filter(name -> !existing.contains(name))
+                    .forEach(name -> missing.add(collection + "." + name));
+        }
+
+        if (missing.isEmpty()) {
+            log.info("Verified Mongo indexes for {}", MANAGED_DOCUMENTS.stream()
+                    .map(Class::getSimpleName)
+                    .collect(Collectors.joining(", ")));
+            return;
+        }
+        if (verification == Verification.FAIL) {
+            throw new IllegalStateException("Missing Mongo indexes: " + missing);
+        }
+        log.warn("Missing Mongo indexes: {}", missing);
+    }
+
+    private static String indexName(IndexDefinition index) {
+        return index.getIndexOptions().getString("name");
+    }
+}
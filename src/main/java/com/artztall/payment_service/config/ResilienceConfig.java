@@ -0,0 +1,36 @@
+package com.artztall.payment_service.config;
+
+import com.artztall.payment_service.util.DownstreamGuard;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * One {@link DownstreamGuard} per downstream service. Breakers and bulkheads are
+ * configured under {@code resilience4j.circuitbreaker.instances.<name>} and
+ * {@code resilience4j.bulkhead.instances.<name>}; their state is published as
+ * {@code resilience4j.circuitbreaker.*} and {@code resilience4j.bulkhead.*} metrics.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    @Bean
+    public DownstreamGuard orderGuard(CircuitBreakerRegistry circuitBreakers, BulkheadRegistry bulkheads) {
+        return guard("order", circuitBreakers, bulkheads);
+    }
+
+    @Bean
+    public DownstreamGuard productGuard(CircuitBreakerRegistry circuitBreakers, BulkheadRegistry bulkheads) {
+        return guard("product", circuitBreakers, bulkheads);
+    }
+
+    @Bean
+    public DownstreamGuard notificationGuard(CircuitBreakerRegistry circuitBreakers, BulkheadRegistry bulkheads) {
+        return guard("notification", circuitBreakers, bulkheads);
+    }
+
+    private DownstreamGuard guard(String name, CircuitBreakerRegistry circuitBreakers, BulkheadRegistry bulkheads) {
+        return new DownstreamGuard(circuitBreakers.circuitBreaker(name), bulkheads.bulkhead(name));
+    }
+}
@@ -4,6 +4,7 @@ import com.stripe.Stripe;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
 
 
 
@@ -12,8 +13,15 @@ public class StripeConfig {
     @Value("${stripe.api.key}")
     private String stripeApiKey;
 
+    // Points the SDK at a stand-in Stripe API, e.g. the load-test stub; unset in production
+    @Value("${stripe.api.base:}")
+    private String stripeApiBase;
+
     @PostConstruct
     public void setup() {
         Stripe.apiKey = stripeApiKey;
+        if (StringUtils.hasText(stripeApiBase)) {
+            Stripe.overrideApiBase(stripeApiBase);
+        }
     }
 }
@@ -1,11 +1,29 @@
 package com.artztall.payment_service.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Builds one WebClient per downstream service, each with its own connection pool and
+ * timeouts from {@link DownstreamClientProperties}. Pools publish
+ * {@code reactor.netty.connection.provider.*} metrics tagged with the service name.
+ */
 @Configuration
-public class WebClientConfig {
+@EnableConfigurationProperties(DownstreamClientProperties.class)
+public class WebClientConfig implements DisposableBean {
+
+    private final List<ConnectionProvider> connectionProviders = new CopyOnWriteArrayList<>();
 
     @Bean
     public WebClient.Builder webClientBuilder() {
@@ -13,23 +31,53 @@ public class WebClientConfig {
     }
 
     @Bean
-    public WebClient orderServiceWebClient(WebClient.Builder webClientBuilder) {
-        return webClientBuilder
-                .baseUrl("http://localhost:8084")
-                .build();
+    public WebClient orderServiceWebClient(WebClient.Builder webClientBuilder, DownstreamClientProperties properties) {
+        return build(webClientBuilder, "order", properties.getOrder());
     }
 
     @Bean
-    public WebClient notificationServiceWebClient(WebClient.Builder webClientBuilder) {
-        return webClientBuilder
-                .baseUrl("http://localhost:8085")
-                .build();
+    public WebClient notificationServiceWebClient(WebClient.Builder webClientBuilder,
+                                                  DownstreamClientProperties properties) {
+        return build(webClientBuilder, "notification", properties.getNotification());
     }
 
     @Bean
-    public WebClient productServiceWebClient(WebClient.Builder webClientBuilder) {
-        return webClientBuilder
-                .baseUrl("http://localhost:8082")
+    public WebClient productServiceWebClient(WebClient.Builder webClientBuilder, DownstreamClientProperties properties) {
+        return build(webClientBuilder, "product", properties.getProduct());
+    }
+
+    WebClient build(WebClient.Builder webClientBuilder, String name, DownstreamClientProperties.Profile profile) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(name)
+                .maxConnections(profile.getMaxConnections())
+                .pendingAcquireMaxCount(profile.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(profile.getPendingAcquireTimeout())
+                .maxIdleTime(profile.getMaxIdleTime())
+                .maxLifeTime(profile.getMaxLifeTime())
+                .evictInBackground(profile.getEvictionInterval())
+                .metrics(true)
                 .build();
+        connectionProviders.add(connectionProvider);
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) profile.getConnectTimeout().toMillis())
+                .responseTimeout(profile.getResponseTimeout())
+                .keepAlive(profile.isKeepAlive())
+                .compress(profile.isCompression());
+        if (profile.isHttp2()) {
+            httpClient = httpClient.protocol(profile.getBaseUrl().startsWith("https")
+                    ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}
+                    : new HttpProtocol[]{HttpProtocol.H2C, HttpProtocol.HTTP11});
+        }
+
+        // Clone so that clients do not share mutable builder state
+        return webClientBuilder.clone()
+                .baseUrl(profile.getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    @Override
+    public void destroy() {
+        connectionProviders.forEach(ConnectionProvider::dispose);
     }
-}
\ No newline at end of file
+}
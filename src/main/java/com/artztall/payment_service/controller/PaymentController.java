@@ -1,9 +1,16 @@
 package com.artztall.payment_service.controller;
 
+import com.artztall.payment_service.dto.ArtisanEarningsSummaryDTO;
+import com.artztall.payment_service.dto.CursorPageDTO;
 import com.artztall.payment_service.dto.PaymentRequestDTO;
 import com.artztall.payment_service.dto.PaymentResponseDTO;
 import com.artztall.payment_service.dto.UserPaymentResponseDTO;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.service.ArtisanEarningsService;
+import com.artztall.payment_service.service.PaymentExportExecutor;
+import com.artztall.payment_service.service.PaymentExportService;
 import com.artztall.payment_service.service.PaymentService;
+import com.artztall.payment_service.service.PaymentStatusSubscriptions;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -11,31 +18,64 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import lombok.RequiredArgsConstructor;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/payments")
-@RequiredArgsConstructor
 @Tag(name = "Payment Operations", description = "Endpoints for payment processing")
 public class PaymentController {
     private final PaymentService paymentService;
+    private final PaymentExportService paymentExportService;
+    private final PaymentStatusSubscriptions paymentStatusSubscriptions;
+    private final ArtisanEarningsService artisanEarningsService;
+    private final PaymentExportExecutor paymentExportExecutor;
+    private final Duration exportTimeout;
+
+    public PaymentController(PaymentService paymentService,
+                             PaymentExportService paymentExportService,
+                             PaymentStatusSubscriptions paymentStatusSubscriptions,
+                             ArtisanEarningsService artisanEarningsService,
+                             PaymentExportExecutor paymentExportExecutor,
+                             @Value("${payments.export.request-timeout:10m}") Duration exportTimeout) {
+        this.paymentService = paymentService;
+        this.paymentExportService = paymentExportService;
+        this.paymentStatusSubscriptions = paymentStatusSubscriptions;
+        this.artisanEarningsService = artisanEarningsService;
+        this.paymentExportExecutor = paymentExportExecutor;
+        this.exportTimeout = exportTimeout;
+    }
 
     @Operation(summary = "Create a new payment",
-            description = "Initiates a new payment transaction with the provided payment details")
+            description = "Initiates a new payment transaction with the provided payment details. "
+                    + "Retries for the same order, user and Idempotency-Key return the original response")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Payment created successfully",
                     content = @Content(schema = @Schema(implementation = PaymentResponseDTO.class))),
             @ApiResponse(responseCode = "400", description = "Invalid request parameters"),
+            @ApiResponse(responseCode = "409", description = "The same request is still being processed"),
+            @ApiResponse(responseCode = "422", description = "The key was already used for a different request"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @PostMapping
     public ResponseEntity<PaymentResponseDTO> createPayment(
-            @RequestBody PaymentRequestDTO paymentRequestDTO) {
-        return ResponseEntity.ok(paymentService.createPayment(paymentRequestDTO));
+            @RequestBody PaymentRequestDTO paymentRequestDTO,
+            @Parameter(description = "Distinguishes separate payment attempts for the same order")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return ResponseEntity.ok(paymentService.createPayment(paymentRequestDTO, idempotencyKey));
     }
 
     @Operation(summary = "Confirm a payment",
@@ -83,15 +123,120 @@ public class PaymentController {
         return ResponseEntity.ok(paymentService.getPaymentStatus(paymentIntentId));
     }
 
+    @Operation(summary = "Stream payment status changes",
+            description = "Server-Sent Events stream that sends the current status, then every change, "
+                    + "and closes after FAILED, EXPIRED or REFUNDED or when it times out")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream opened"),
+            @ApiResponse(responseCode = "404", description = "Payment not found"),
+            @ApiResponse(responseCode = "503", description = "Too many clients waiting, poll the status instead")
+    })
+    @GetMapping(value = "status/{paymentId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPaymentStatus(@PathVariable String paymentId) {
+        return paymentStatusSubscriptions.stream(paymentId);
+    }
+
+    @Operation(summary = "Wait for a payment status change",
+            description = "Long-poll fallback for clients without SSE. Returns as soon as the status differs "
+                    + "from the known one, or returns the unchanged status when the poll times out")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Current payment status",
+                    content = @Content(schema = @Schema(implementation = PaymentResponseDTO.class))),
+            @ApiResponse(responseCode = "404", description = "Payment not found"),
+            @ApiResponse(responseCode = "503", description = "Too many clients waiting, poll the status instead")
+    })
+    @GetMapping("status/{paymentId}/poll")
+    public DeferredResult<PaymentResponseDTO> pollPaymentStatus(
+            @PathVariable String paymentId,
+            @Parameter(description = "Status the client already has")
+            @RequestParam(defaultValue = "PENDING") PaymentStatus known) {
+        return paymentStatusSubscriptions.awaitChange(paymentId, known);
+    }
+
     @GetMapping("/artisan/{artisanId}")
     public ResponseEntity<List<UserPaymentResponseDTO>> getCompletedPaymentsForArtisan(@PathVariable String artisanId) {
         List<UserPaymentResponseDTO> completedPayments = paymentService.getCompletedPaymentsForArtisan(artisanId);
         return ResponseEntity.ok(completedPayments);
     }
 
+    @Operation(summary = "Get an artisan's earnings",
+            description = "Returns all-time totals per currency, read from rollups kept as payments complete and "
+                    + "refund, and the totals of each day from from to to, both inclusive. Without a range, "
+                    + "the last 30 days")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Earnings retrieved successfully",
+                    content = @Content(schema = @Schema(implementation = ArtisanEarningsSummaryDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid or too long date range")
+    })
+    @GetMapping("/artisan/{artisanId}/earnings")
+    public ResponseEntity<ArtisanEarningsSummaryDTO> getArtisanEarnings(
+            @PathVariable String artisanId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(artisanEarningsService.summary(artisanId, from, to));
+    }
+
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<UserPaymentResponseDTO>> getPaymentsByUser(@PathVariable String userId) {
         List<UserPaymentResponseDTO> userPayments = paymentService.findByUserId(userId);
         return ResponseEntity.ok(userPayments);
     }
-}
\ No newline at end of file
+
+    @Operation(summary = "Get a page of a user's payments",
+            description = "Returns the user's payments newest first. Pass the returned nextCursor to fetch the next page")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Payments retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor")
+    })
+    @GetMapping("/user/{userId}/page")
+    public ResponseEntity<CursorPageDTO<UserPaymentResponseDTO>> getPaymentPageByUser(
+            @PathVariable String userId,
+            @Parameter(description = "Cursor from the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, at most 100")
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(paymentService.findByUserId(userId, cursor, size));
+    }
+
+    @Operation(summary = "Export an artisan's completed payments",
+            description = "Streams the artisan's completed payments as newline-delimited JSON, newest first. "
+                    + "from is inclusive and to is exclusive")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Payments streamed"),
+            @ApiResponse(responseCode = "503", description = "Too many exports in progress, retry later")
+    })
+    @GetMapping(value = "/artisan/{artisanId}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public WebAsyncTask<Void> exportArtisanPayments(
+            @PathVariable String artisanId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            HttpServletResponse response) {
+        return export(response, out -> paymentExportService.exportArtisanPayments(artisanId, from, to, out));
+    }
+
+    @Operation(summary = "Export a user's payments",
+            description = "Streams the user's payments as newline-delimited JSON, newest first. "
+                    + "from is inclusive and to is exclusive")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Payments streamed"),
+            @ApiResponse(responseCode = "503", description = "Too many exports in progress, retry later")
+    })
+    @GetMapping(value = "/user/{userId}/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public WebAsyncTask<Void> exportUserPayments(
+            @PathVariable String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            HttpServletResponse response) {
+        return export(response, out -> paymentExportService.exportUserPayments(userId, from, to, out));
+    }
+
+    // Streams on an async task of its own so only exports get the long timeout and the export threads
+    private WebAsyncTask<Void> export(HttpServletResponse response, StreamingResponseBody body) {
+        return new WebAsyncTask<>(exportTimeout.toMillis(), paymentExportExecutor, () -> {
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            body.writeTo(response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package com.artztall.payment_service.controller;
+
+import com.artztall.payment_service.dto.PaymentRequestDTO;
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.artztall.payment_service.dto.UserPaymentResponseDTO;
+import com.artztall.payment_service.service.ReactivePaymentService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Same operations as {@link PaymentController}, served by {@link ReactivePaymentService}.
+ * The request thread is released as soon as the handler returns and the response is
+ * written when the publisher completes.
+ */
+@RestController
+@RequestMapping("/api/reactive/payments")
+@RequiredArgsConstructor
+@Tag(name = "Reactive Payment Operations", description = "Non-blocking endpoints for payment processing")
+public class ReactivePaymentController {
+    private final ReactivePaymentService reactivePaymentService;
+
+    @Operation(summary = "Create a new payment",
+            description = "Retries for the same order, user and Idempotency-Key return the original response")
+    @PostMapping
+    public Mono<PaymentResponseDTO> createPayment(
+            @RequestBody PaymentRequestDTO paymentRequestDTO,
+            @Parameter(description = "Distinguishes separate payment attempts for the same order")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        return reactivePaymentService.createPayment(paymentRequestDTO, idempotencyKey);
+    }
+
+    @Operation(summary = "Confirm a payment")
+    @PostMapping("confirm/{paymentIntentId}")
+    public Mono<PaymentResponseDTO> confirmPayment(
+            @Parameter(description = "Payment intent identifier")
+            @PathVariable String paymentIntentId) {
+        return reactivePaymentService.confirmPayment(paymentIntentId);
+    }
+
+    @Operation(summary = "Refund a payment")
+    @PostMapping("payment/{paymentIntentId}")
+    public Mono<PaymentResponseDTO> refundPayment(
+            @Parameter(description = "Payment intent identifier")
+            @PathVariable String paymentIntentId) {
+        return reactivePaymentService.refundPayment(paymentIntentId);
+    }
+
+    @Operation(summary = "Get payment status")
+    @PostMapping("status/{paymentIntentId}")
+    public Mono<PaymentResponseDTO> getPaymentStatus(
+            @Parameter(description = "Payment intent identifier")
+            @PathVariable String paymentIntentId) {
+        return reactivePaymentService.getPaymentStatus(paymentIntentId);
+    }
+
+    @GetMapping("/artisan/{artisanId}")
+    public Flux<UserPaymentResponseDTO> getCompletedPaymentsForArtisan(@PathVariable String artisanId) {
+        return reactivePaymentService.getCompletedPaymentsForArtisan(artisanId);
+    }
+
+    @GetMapping("/user/{userId}")
+    public Flux<UserPaymentResponseDTO> getPaymentsByUser(@PathVariable String userId) {
+        return reactivePaymentService.findByUserId(userId);
+    }
+}
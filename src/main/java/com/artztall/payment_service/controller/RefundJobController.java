@@ -0,0 +1,49 @@
+package com.artztall.payment_service.controller;
+
+import com.artztall.payment_service.dto.RefundJobDTO;
+import com.artztall.payment_service.dto.RefundJobRequestDTO;
+import com.artztall.payment_service.service.RefundJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/payments/refund-jobs")
+@RequiredArgsConstructor
+@Tag(name = "Bulk Refunds", description = "Endpoints for refunding many payments in the background")
+public class RefundJobController {
+    private final RefundJobService refundJobService;
+
+    @Operation(summary = "Start a bulk refund",
+            description = "Refunds the listed payments, or the artisan's completed payments in the given period, "
+                    + "in the background. Returns the job to follow with the job status endpoint")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Refund job started"),
+            @ApiResponse(responseCode = "400", description = "No payments selected or too many payments")
+    })
+    @PostMapping
+    public ResponseEntity<RefundJobDTO> submit(@RequestBody RefundJobRequestDTO request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(refundJobService.submit(request));
+    }
+
+    @Operation(summary = "Get a bulk refund's progress",
+            description = "Returns the job's counters and the result of every payment processed so far")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Job found"),
+            @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    @GetMapping("{jobId}")
+    public ResponseEntity<RefundJobDTO> getJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(refundJobService.getJob(jobId));
+    }
+}
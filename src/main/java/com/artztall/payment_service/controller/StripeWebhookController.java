@@ -0,0 +1,36 @@
+package com.artztall.payment_service.controller;
+
+import com.artztall.payment_service.service.StripeWebhookService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/payments/webhook")
+@RequiredArgsConstructor
+@Tag(name = "Stripe Webhooks", description = "Endpoint for Stripe event delivery")
+public class StripeWebhookController {
+    private final StripeWebhookService stripeWebhookService;
+
+    @Operation(summary = "Receive a Stripe event",
+            description = "Verifies the Stripe signature and queues the event; the payment is updated asynchronously")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event accepted, already received or not handled"),
+            @ApiResponse(responseCode = "400", description = "Missing or invalid Stripe signature")
+    })
+    @PostMapping("stripe")
+    public ResponseEntity<Void> receive(
+            @RequestBody String payload,
+            @RequestHeader(value = "Stripe-Signature", required = false) String signature) {
+        stripeWebhookService.receive(payload, signature);
+        return ResponseEntity.ok().build();
+    }
+}
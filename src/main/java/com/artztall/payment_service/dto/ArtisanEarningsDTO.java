@@ -0,0 +1,22 @@
+package com.artztall.payment_service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+public class ArtisanEarningsDTO {
+    @Schema(description = "Day of the completions and refunds, absent on totals")
+    private LocalDate day;
+    private String currency;
+    private long completedCount;
+    private long completedAmount;
+    private long refundedCount;
+    private long refundedAmount;
+
+    @Schema(description = "Completed amount less refunded amount")
+    private long netAmount;
+}
@@ -0,0 +1,23 @@
+package com.artztall.payment_service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@Schema(description = "An artisan's earnings per currency, all-time and per day")
+public class ArtisanEarningsSummaryDTO {
+    private String artistId;
+    private LocalDate from;
+    private LocalDate to;
+
+    @Schema(description = "All-time totals, one per currency")
+    private List<ArtisanEarningsDTO> totals;
+
+    @Schema(description = "Days from from to to with completions or refunds, one per day and currency")
+    private List<ArtisanEarningsDTO> days;
+}
@@ -0,0 +1,18 @@
+package com.artztall.payment_service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@Schema(description = "One page of results with an opaque cursor for the next page")
+public class CursorPageDTO<T> {
+
+    private List<T> items;
+
+    @Schema(description = "Cursor to pass to fetch the next page, absent on the last page")
+    private String nextCursor;
+}
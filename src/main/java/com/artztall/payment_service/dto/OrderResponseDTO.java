@@ -14,7 +14,7 @@ import java.util.List;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class OrderResponseDTO {
     private String id;
     private String userId;
@@ -26,4 +26,11 @@ public class OrderResponseDTO {
     private String specialInstructions;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
-}
\ No newline at end of file
+
+    /** A copy that shares no mutable state with this order. */
+    public OrderResponseDTO copy() {
+        return toBuilder()
+                .item(item != null ? item.toBuilder().build() : null)
+                .build();
+    }
+}
@@ -2,13 +2,17 @@ package com.artztall.payment_service.dto;
 
 import com.artztall.payment_service.model.PaymentStatus;
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor
 @Schema(description = "Payment response information")
 public class PaymentResponseDTO {
 
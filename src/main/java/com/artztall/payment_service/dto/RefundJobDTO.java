@@ -0,0 +1,26 @@
+package com.artztall.payment_service.dto;
+
+import com.artztall.payment_service.model.RefundJob;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@Schema(description = "Progress of a bulk refund job")
+public class RefundJobDTO {
+    private String jobId;
+    private RefundJob.Status status;
+    private int total;
+    private int refunded;
+    private int skipped;
+    private int failed;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+
+    @Schema(description = "Per-payment results, absent when the job is first submitted")
+    private List<RefundJobItemDTO> items;
+}
@@ -0,0 +1,13 @@
+package com.artztall.payment_service.dto;
+
+import com.artztall.payment_service.model.RefundJobItem;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RefundJobItemDTO {
+    private String paymentId;
+    private RefundJobItem.Status status;
+    private String message;
+}
@@ -0,0 +1,30 @@
+package com.artztall.payment_service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Schema(description = "Payments to refund, either listed by ID or selected by artisan and creation time")
+public class RefundJobRequestDTO {
+
+    @Schema(description = "IDs of the payments to refund")
+    private List<String> paymentIds;
+
+    @Schema(description = "Refund the artisan's completed payments instead of a list")
+    private String artistId;
+
+    @Schema(description = "With artistId: only payments created at or after this time")
+    private LocalDateTime from;
+
+    @Schema(description = "With artistId: only payments created before this time")
+    private LocalDateTime to;
+}
@@ -0,0 +1,11 @@
+package com.artztall.payment_service.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class IdempotentRequestInProgressException extends RuntimeException {
+    public IdempotentRequestInProgressException(String message) {
+        super(message);
+    }
+}
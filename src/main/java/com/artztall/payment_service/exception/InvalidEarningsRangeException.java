@@ -0,0 +1,11 @@
+package com.artztall.payment_service.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidEarningsRangeException extends RuntimeException {
+    public InvalidEarningsRangeException(String message) {
+        super(message);
+    }
+}
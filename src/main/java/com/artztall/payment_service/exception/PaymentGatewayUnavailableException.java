@@ -0,0 +1,11 @@
+package com.artztall.payment_service.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PaymentGatewayUnavailableException extends RuntimeException {
+    public PaymentGatewayUnavailableException(String message) {
+        super(message);
+    }
+}
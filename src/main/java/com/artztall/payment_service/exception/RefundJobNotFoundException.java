@@ -0,0 +1,11 @@
+package com.artztall.payment_service.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class RefundJobNotFoundException extends RuntimeException {
+    public RefundJobNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,200 @@
+package com.artztall.payment_service.migration;
+
+import com.artztall.payment_service.dto.OrderResponseDTO;
+import com.artztall.payment_service.model.MigrationRecord;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.service.OrderClientService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Copies the artist ID from the order service onto payments created before
+ * {@link Payment#getArtistId()} existed. Runs once in the background after startup.
+ * Instances claim it by inserting its record into the {@code migrations} collection, so
+ * only one runs it at a time; a claim whose lease ran out, because its instance died, is
+ * taken over. Payments whose order has no artist or no longer exists are marked
+ * unresolvable and skipped from then on. The migration is recorded as complete unless
+ * orders could not be fetched, in which case the record is released and those payments
+ * are retried on the next start.
+ */
+@Slf4j
+@Component
+public class ArtistIdBackfillMigration {
+    static final String MIGRATION_ID = "payment-artist-id-backfill";
+
+    private final MongoTemplate mongoTemplate;
+    private final OrderClientService orderClientService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration lease;
+
+    public ArtistIdBackfillMigration(MongoTemplate mongoTemplate,
+                                     OrderClientService orderClientService,
+                                     @Value("${payments.migration.artist-id-backfill.enabled:true}") boolean enabled,
+                                     @Value("${payments.migration.artist-id-backfill.batch-size:200}") int batchSize,
+                                     @Value("${payments.migration.artist-id-backfill.lease:5m}") Duration lease) {
+        this.mongoTemplate = mongoTemplate;
+        this.orderClientService = orderClientService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.lease = lease;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void runOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread migration = new Thread(this::run, "artist-id-backfill");
+        migration.setDaemon(true);
+        migration.start();
+    }
+
+    void run() {
+        try {
+            if (!claim()) {
+                return;
+            }
+        } catch (Exception e) {
+            log.error("Failed to claim the artist ID backfill, it will be retried on next startup", e);
+            return;
+        }
+        try {
+            Query query = new Query(where("artistId").exists(false).and("artistIdUnresolvable").ne(true));
+            query.fields().include("orderId");
+
+            Progress progress = new Progress();
+            List<Payment> batch = new ArrayList<>(batchSize);
+            try (Stream<Payment> payments = mongoTemplate.stream(query, Payment.class)) {
+                for (Payment payment : (Iterable<Payment>) payments::iterator) {
+                    batch.add(payment);
+                    if (batch.size() == batchSize) {
+                        backfill(batch, progress);
+                        batch.clear();
+                        renew();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                backfill(batch, progress);
+            }
+
+            if (progress.failed == 0) {
+                complete(progress);
+            } else {
+                release();
+            }
+            log.info("Artist ID backfill updated {} payments, {} have no artist, {} failed and are retried "
+                    + "on next startup", progress.updated, progress.unresolvable, progress.failed);
+        } catch (Exception e) {
+            log.error("Artist ID backfill failed, it will be retried on next startup", e);
+            release();
+        }
+    }
+
+    /**
+     * Returns true once this instance holds the migration, false if it is complete or
+     * another instance is running it.
+     */
+    private boolean claim() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            mongoTemplate.insert(MigrationRecord.builder()
+                    .id(MIGRATION_ID)
+                    .lockedUntil(now.plus(lease))
+                    .build());
+            return true;
+        } catch (DuplicateKeyException e) {
+            // Already complete, running elsewhere, or left behind by an instance that died
+        }
+        MigrationRecord taken = mongoTemplate.findAndModify(
+                new Query(where("_id").is(MIGRATION_ID)
+                        .and("completedAt").exists(false)
+                        .and("lockedUntil").lt(now)),
+                new Update().set("lockedUntil", now.plus(lease)),
+                FindAndModifyOptions.options().returnNew(true),
+                MigrationRecord.class);
+        if (taken != null) {
+            log.warn("Taking over the artist ID backfill after its lease expired");
+        }
+        return taken != null;
+    }
+
+    private void renew() {
+        mongoTemplate.updateFirst(new Query(where("_id").is(MIGRATION_ID)),
+                new Update().set("lockedUntil", LocalDateTime.now().plus(lease)), MigrationRecord.class);
+    }
+
+    private void complete(Progress progress) {
+        mongoTemplate.updateFirst(new Query(where("_id").is(MIGRATION_ID)), new Update()
+                        .set("documentsUpdated", progress.updated)
+                        .set("documentsUnresolvable", progress.unresolvable)
+                        .set("completedAt", LocalDateTime.now())
+                        .unset("lockedUntil"),
+                MigrationRecord.class);
+    }
+
+    private void release() {
+        try {
+            mongoTemplate.remove(new Query(where("_id").is(MIGRATION_ID).and("completedAt").exists(false)),
+                    MigrationRecord.class);
+        } catch (Exception e) {
+            log.warn("Failed to release the artist ID backfill, it frees up when its lease expires", e);
+        }
+    }
+
+    private void backfill(List<Payment> batch, Progress progress) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Payment.class);
+        boolean pending = false;
+        for (Payment payment : batch) {
+            Query byId = new Query(where("_id").is(payment.getId()));
+            try {
+                OrderResponseDTO order = orderClientService.getOrder(payment.getOrderId());
+                if (order == null || order.getItem() == null || order.getItem().getArtistId() == null) {
+                    log.warn("No artist found for order {} of payment {}", payment.getOrderId(), payment.getId());
+                    bulk.updateOne(byId, new Update().set("artistIdUnresolvable", true));
+                    progress.unresolvable++;
+                } else {
+                    bulk.updateOne(byId, new Update().set("artistId", order.getItem().getArtistId()));
+                    progress.updated++;
+                }
+                pending = true;
+            } catch (WebClientResponseException.NotFound e) {
+                log.warn("Order {} of payment {} no longer exists", payment.getOrderId(), payment.getId());
+                bulk.updateOne(byId, new Update().set("artistIdUnresolvable", true));
+                progress.unresolvable++;
+                pending = true;
+            } catch (Exception e) {
+                log.warn("Failed to fetch order {} for payment {}", payment.getOrderId(), payment.getId(), e);
+                progress.failed++;
+            }
+        }
+        if (pending) {
+            bulk.execute();
+        }
+    }
+
+    private static final class Progress {
+        private long updated;
+        private long unresolvable;
+        private long failed;
+    }
+}
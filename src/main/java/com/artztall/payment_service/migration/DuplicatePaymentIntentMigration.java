@@ -0,0 +1,122 @@
+package com.artztall.payment_service.migration;
+
+import com.artztall.payment_service.model.MigrationRecord;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Resolves payments that share a Stripe payment intent, which create retries could
+ * produce before payment creation was idempotent, so the unique
+ * {@code stripe_payment_intent} index can be built. Of each group the payment furthest
+ * along with Stripe keeps the intent; the others lose it, point to the kept payment with
+ * {@link Payment#getDuplicateOf()}, and are failed if still pending so the expiry does
+ * not release the order's products. Run by {@link
+ * com.artztall.payment_service.config.MongoIndexInitializer} before it creates the
+ * indexes. Every instance picks the same payment to keep, so concurrent runs agree and
+ * no claim is needed; once a run finds nothing left it is recorded as complete.
+ */
+@Slf4j
+@Component
+public class DuplicatePaymentIntentMigration {
+    static final String MIGRATION_ID = "payment-duplicate-intents";
+
+    // Settled payments first, then the one Stripe may still charge
+    private static final List<PaymentStatus> KEEP_ORDER = List.of(PaymentStatus.REFUNDED, PaymentStatus.COMPLETED,
+            PaymentStatus.PENDING, PaymentStatus.FAILED, PaymentStatus.EXPIRED);
+
+    private final MongoTemplate mongoTemplate;
+
+    public DuplicatePaymentIntentMigration(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Returns the number of payments that gave up their intent.
+     */
+    public long run() {
+        MigrationRecord record = mongoTemplate.findById(MIGRATION_ID, MigrationRecord.class);
+        if (record != null && record.getCompletedAt() != null) {
+            return 0;
+        }
+
+        long resolved = 0;
+        try (Stream<Document> groups = mongoTemplate.aggregateStream(duplicateGroups(),
+                mongoTemplate.getCollectionName(Payment.class), Document.class)) {
+            for (Document group : (Iterable<Document>) groups::iterator) {
+                resolved += resolve(group.getString("_id"), group.getList("paymentIds", Object.class));
+            }
+        }
+
+        mongoTemplate.save(MigrationRecord.builder()
+                .id(MIGRATION_ID)
+                .documentsUpdated(resolved)
+                .completedAt(LocalDateTime.now())
+                .build());
+        if (resolved > 0) {
+            log.warn("Detached {} duplicate payments from their Stripe payment intents", resolved);
+        }
+        return resolved;
+    }
+
+    static Aggregation duplicateGroups() {
+        return Aggregation.newAggregation(
+                match(where("stripPaymentIntendId").type(2)),
+                group("stripPaymentIntendId").count().as("count").push("_id").as("paymentIds"),
+                match(where("count").gt(1))
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+    }
+
+    private long resolve(String paymentIntentId, List<Object> paymentIds) {
+        List<Payment> payments = mongoTemplate.find(new Query(where("_id").in(paymentIds)), Payment.class);
+        if (payments.size() < 2) {
+            return 0;
+        }
+        Payment kept = payments.stream().min(keepOrder()).orElseThrow();
+
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Payment.class);
+        payments.stream()
+                .filter(payment -> payment != kept)
+                .forEach(duplicate -> {
+                    Update update = new Update()
+                            .unset("stripPaymentIntendId")
+                            .set("duplicateOf", kept.getId())
+                            .set("updatedAt", now);
+                    if (duplicate.getPaymentStatus() == PaymentStatus.PENDING) {
+                        update.set("paymentStatus", PaymentStatus.FAILED);
+                    }
+                    bulk.updateOne(new Query(where("_id").is(duplicate.getId())
+                            .and("stripPaymentIntendId").is(paymentIntentId)), update);
+                });
+        bulk.execute();
+        log.info("Payment {} keeps Stripe payment intent {}, {} duplicates detached",
+                kept.getId(), paymentIntentId, payments.size() - 1);
+        return payments.size() - 1;
+    }
+
+    static Comparator<Payment> keepOrder() {
+        return Comparator.<Payment>comparingInt(payment -> payment.getPaymentStatus() == null
+                        ? KEEP_ORDER.size()
+                        : KEEP_ORDER.indexOf(payment.getPaymentStatus()))
+                .thenComparing(Payment::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Payment::getId);
+    }
+}
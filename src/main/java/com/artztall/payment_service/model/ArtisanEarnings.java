@@ -0,0 +1,52 @@
+package com.artztall.payment_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * An artisan's completed and refunded payments in one currency, either for one day or,
+ * with no day, settled for every day up to {@link #settledThrough}. Days are incremented
+ * as payments complete and refund; settled totals are only written by the rebuild.
+ */
+@Data
+@Document(collection = "artisan_earnings")
+@CompoundIndex(name = "artist_day", def = "{'artistId': 1, 'day': 1}")
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ArtisanEarnings {
+    // The marker holding settledThrough of the last rebuild for every artisan
+    public static final String SETTLED_ID = "settled";
+
+    // artistId:currency:day, or artistId:currency:total for the settled totals
+    @Id
+    private String id;
+    private String artistId;
+    private String currency;
+    private LocalDate day;
+    private long completedCount;
+    private long completedAmount;
+    private long refundedCount;
+    private long refundedAmount;
+    private LocalDate settledThrough;
+    // Held by the instance rebuilding, on the marker only
+    private LocalDateTime lockedUntil;
+    private LocalDateTime rebuiltAt;
+    private LocalDateTime updatedAt;
+
+    public static String dayId(String artistId, String currency, LocalDate day) {
+        return artistId + ":" + currency + ":" + day;
+    }
+
+    public static String totalId(String artistId, String currency) {
+        return artistId + ":" + currency + ":total";
+    }
+}
@@ -0,0 +1,29 @@
+package com.artztall.payment_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Document(collection = "artisan_earnings_transitions")
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class EarningsTransition {
+    // paymentId:status, so a transition is added to the earnings at most once
+    @Id
+    private String id;
+    // The nightly rebuild corrects anything older, keep a few days for late duplicates
+    @Indexed(name = "created_ttl", expireAfter = "7d")
+    private LocalDateTime createdAt;
+
+    public static String id(String paymentId, PaymentStatus status) {
+        return paymentId + ":" + status;
+    }
+}
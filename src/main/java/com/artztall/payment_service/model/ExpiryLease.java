@@ -0,0 +1,22 @@
+package com.artztall.payment_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Document(collection = "payment_expiry_leases")
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ExpiryLease {
+    @Id
+    private Integer partition;
+    private String owner;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,36 @@
+package com.artztall.payment_service.model;
+
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Document(collection = "idempotency_keys")
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class IdempotencyRecord {
+    public enum Status {
+        IN_PROGRESS,
+        COMPLETED
+    }
+
+    @Id
+    private String key;
+    // Hash of the request that claimed the key, see PaymentServiceImpl.requestFingerprint
+    private String fingerprint;
+    private Status status;
+    // Stored without the client secret
+    private PaymentResponseDTO response;
+    private LocalDateTime lockedUntil;
+    // Matches Stripe's own idempotency key lifetime
+    @Indexed(name = "created_ttl", expireAfter = "24h")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,26 @@
+package com.artztall.payment_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Document(collection = "migrations")
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MigrationRecord {
+    @Id
+    private String id;
+    // Until then the instance running the migration holds it; set while it is not complete
+    private LocalDateTime lockedUntil;
+    private long documentsUpdated;
+    private long documentsUnresolvable;
+    // Set once the migration is complete
+    private LocalDateTime completedAt;
+}
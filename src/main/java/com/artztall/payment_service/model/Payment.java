@@ -4,6 +4,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.math.BigDecimal;
@@ -11,19 +14,34 @@ import java.time.LocalDateTime;
 
 @Data
 @Document(collection = "payments")
+@CompoundIndexes({
+        @CompoundIndex(name = "status_expires_id", def = "{'paymentStatus': 1, 'expiresAt': 1, '_id': 1}"),
+        @CompoundIndex(name = "user_created", def = "{'userId': 1, 'createdAt': -1, '_id': -1}"),
+        @CompoundIndex(name = "artist_status_created", def = "{'artistId': 1, 'paymentStatus': 1, 'createdAt': -1}")
+})
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 public class Payment {
     @Id
     private String id;
+    @Indexed(name = "order")
     private String orderId;
     private String userId;
+    private String artistId;
+    // Set by the artist ID backfill when the order has no artist, so it is not looked up again
+    private Boolean artistIdUnresolvable;
     private Long amount;
     private String currency;
+    @Indexed(name = "stripe_payment_intent", unique = true, sparse = true)
     private String stripPaymentIntendId;
+    // Set when this payment repeated another payment's intent; that payment keeps the intent
+    private String duplicateOf;
     private PaymentStatus paymentStatus;
     private LocalDateTime expiresAt;
+    private Integer sweepPartition;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private LocalDateTime completedAt;
+    private LocalDateTime refundedAt;
 }
@@ -0,0 +1,27 @@
+package com.artztall.payment_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Document(collection = "pending_product_releases")
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PendingProductRelease {
+    @Id
+    private String orderId;
+    private String productId;
+    private int attempts;
+    @Indexed(name = "next_attempt")
+    private LocalDateTime nextAttemptAt;
+    private String lastError;
+    private LocalDateTime createdAt;
+}
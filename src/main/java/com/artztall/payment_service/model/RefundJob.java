@@ -0,0 +1,38 @@
+package com.artztall.payment_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Document(collection = "refund_jobs")
+@CompoundIndex(name = "status_locked", def = "{'status': 1, 'lockedUntil': 1}")
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RefundJob {
+    public enum Status {
+        RUNNING,
+        COMPLETED
+    }
+
+    @Id
+    private String id;
+    private Status status;
+    private int total;
+    private int refunded;
+    private int skipped;
+    private int failed;
+    // Renewed as items finish; a job whose lease runs out is resumed by another instance
+    private LocalDateTime lockedUntil;
+    @Indexed(name = "created_ttl", expireAfter = "90d")
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,42 @@
+package com.artztall.payment_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Document(collection = "refund_job_items")
+@CompoundIndex(name = "job_status", def = "{'jobId': 1, 'status': 1}")
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RefundJobItem {
+    public enum Status {
+        PENDING,
+        REFUNDED,
+        SKIPPED,
+        FAILED
+    }
+
+    // jobId:paymentId, so a payment appears at most once per job
+    @Id
+    private String id;
+    private String jobId;
+    private String paymentId;
+    private Status status;
+    private String message;
+    @Indexed(name = "created_ttl", expireAfter = "90d")
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public static String id(String jobId, String paymentId) {
+        return jobId + ":" + paymentId;
+    }
+}
@@ -0,0 +1,31 @@
+package com.artztall.payment_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Document(collection = "stripe_events")
+@CompoundIndex(name = "unprocessed", def = "{'processedAt': 1, 'receivedAt': 1}")
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StripeEventRecord {
+    // Stripe event ID, so a redelivered event fails the insert
+    @Id
+    private String id;
+    private String type;
+    private String paymentIntentId;
+    private int attempts;
+    // Stripe stops redelivering after three days; keep IDs well past that
+    @Indexed(name = "received_ttl", expireAfter = "30d")
+    private LocalDateTime receivedAt;
+    private LocalDateTime processedAt;
+}
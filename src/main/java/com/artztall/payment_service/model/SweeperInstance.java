@@ -0,0 +1,24 @@
+package com.artztall.payment_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@Document(collection = "payment_expiry_instances")
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SweeperInstance {
+    @Id
+    private String instanceId;
+    // Instances that crashed never remove themselves; they are long out of the live count by then
+    @Indexed(name = "heartbeat_ttl", expireAfter = "1d")
+    private LocalDateTime heartbeatAt;
+}
@@ -2,15 +2,30 @@ package com.artztall.payment_service.repository;
 
 import com.artztall.payment_service.model.Payment;
 import com.artztall.payment_service.model.PaymentStatus;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
-public interface PaymentRepository extends MongoRepository<Payment, String> {
+public interface PaymentRepository extends MongoRepository<Payment, String>, PaymentTransitions {
+    /** Fields needed to build a {@code UserPaymentResponseDTO}. */
+    String USER_PAYMENT_FIELDS = "{ 'orderId': 1, 'userId': 1, 'amount': 1, 'currency': 1, 'stripPaymentIntendId': 1, "
+            + "'paymentStatus': 1, 'expiresAt': 1, 'createdAt': 1 }";
+
     Payment findByStripPaymentIntendId(String stripPaymentIntendId);
 
     List<Payment> findByPaymentStatusAndExpiresAtBefore(PaymentStatus paymentStatus, LocalDateTime now);
     Payment findByOrderId(String orderId);
     List<Payment> findByUserId(String userId);
+    List<Payment> findByArtistIdAndPaymentStatusOrderByCreatedAtDesc(String artistId, PaymentStatus paymentStatus);
+
+    @Query(value = "{ 'userId': ?0 }", fields = USER_PAYMENT_FIELDS, sort = "{ 'createdAt': -1, '_id': -1 }")
+    List<Payment> findUserPaymentPage(String userId, Limit limit);
+
+    @Query(value = "{ 'userId': ?0, '$or': [ { 'createdAt': { '$lt': ?1 } }, { 'createdAt': ?1, '_id': { '$lt': ?2 } } ] }",
+            fields = USER_PAYMENT_FIELDS, sort = "{ 'createdAt': -1, '_id': -1 }")
+    List<Payment> findUserPaymentPageAfter(String userId, LocalDateTime createdAt, ObjectId id, Limit limit);
 }
@@ -0,0 +1,26 @@
+package com.artztall.payment_service.repository;
+
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+
+import java.time.LocalDateTime;
+
+public interface PaymentTransitions {
+    /**
+     * Moves the payment of a Stripe intent from one status to another in a single update,
+     * stamping {@code at} as its update time and, for completions and refunds, as their
+     * time too.
+     *
+     * @return the updated payment, or {@code null} if there is no payment for the intent
+     *         or it was no longer in the {@code from} status
+     */
+    Payment transitionByIntent(String stripPaymentIntendId, PaymentStatus from, PaymentStatus to, LocalDateTime at);
+
+    /**
+     * {@link #transitionByIntent} for a payment looked up by its ID.
+     *
+     * @return the updated payment, or {@code null} if there is no such payment or it was
+     *         no longer in the {@code from} status
+     */
+    Payment transition(String paymentId, PaymentStatus from, PaymentStatus to, LocalDateTime at);
+}
@@ -0,0 +1,55 @@
+package com.artztall.payment_service.repository;
+
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@RequiredArgsConstructor
+class PaymentTransitionsImpl implements PaymentTransitions {
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Payment transitionByIntent(String stripPaymentIntendId, PaymentStatus from, PaymentStatus to,
+                                      LocalDateTime at) {
+        return mongoTemplate.findAndModify(
+                byIntent(stripPaymentIntendId, from),
+                transition(to, at),
+                FindAndModifyOptions.options().returnNew(true),
+                Payment.class);
+    }
+
+    @Override
+    public Payment transition(String paymentId, PaymentStatus from, PaymentStatus to, LocalDateTime at) {
+        return mongoTemplate.findAndModify(
+                byId(paymentId, from),
+                transition(to, at),
+                FindAndModifyOptions.options().returnNew(true),
+                Payment.class);
+    }
+
+    static Query byIntent(String stripPaymentIntendId, PaymentStatus from) {
+        return new Query(where("stripPaymentIntendId").is(stripPaymentIntendId).and("paymentStatus").is(from));
+    }
+
+    static Query byId(String paymentId, PaymentStatus from) {
+        return new Query(where("_id").is(paymentId).and("paymentStatus").is(from));
+    }
+
+    static Update transition(PaymentStatus to, LocalDateTime at) {
+        Update update = new Update().set("paymentStatus", to).set("updatedAt", at);
+        if (to == PaymentStatus.COMPLETED) {
+            update.set("completedAt", at);
+        } else if (to == PaymentStatus.REFUNDED) {
+            update.set("refundedAt", at);
+        }
+        return update;
+    }
+}
@@ -0,0 +1,13 @@
+package com.artztall.payment_service.repository;
+
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactivePaymentRepository extends ReactiveMongoRepository<Payment, String>, ReactivePaymentTransitions {
+    Mono<Payment> findByStripPaymentIntendId(String stripPaymentIntendId);
+    Flux<Payment> findByUserId(String userId);
+    Flux<Payment> findByArtistIdAndPaymentStatusOrderByCreatedAtDesc(String artistId, PaymentStatus paymentStatus);
+}
@@ -0,0 +1,22 @@
+package com.artztall.payment_service.repository;
+
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+public interface ReactivePaymentTransitions {
+    /**
+     * Reactive {@link PaymentTransitions#transitionByIntent}: empty if there is no payment
+     * for the intent or it was no longer in the {@code from} status.
+     */
+    Mono<Payment> transitionByIntent(String stripPaymentIntendId, PaymentStatus from, PaymentStatus to,
+                                     LocalDateTime at);
+
+    /**
+     * Reactive {@link PaymentTransitions#transition}: empty if there is no such payment or
+     * it was no longer in the {@code from} status.
+     */
+    Mono<Payment> transition(String paymentId, PaymentStatus from, PaymentStatus to, LocalDateTime at);
+}
@@ -0,0 +1,34 @@
+package com.artztall.payment_service.repository;
+
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@RequiredArgsConstructor
+class ReactivePaymentTransitionsImpl implements ReactivePaymentTransitions {
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<Payment> transitionByIntent(String stripPaymentIntendId, PaymentStatus from, PaymentStatus to,
+                                            LocalDateTime at) {
+        return reactiveMongoTemplate.findAndModify(
+                PaymentTransitionsImpl.byIntent(stripPaymentIntendId, from),
+                PaymentTransitionsImpl.transition(to, at),
+                FindAndModifyOptions.options().returnNew(true),
+                Payment.class);
+    }
+
+    @Override
+    public Mono<Payment> transition(String paymentId, PaymentStatus from, PaymentStatus to, LocalDateTime at) {
+        return reactiveMongoTemplate.findAndModify(
+                PaymentTransitionsImpl.byId(paymentId, from),
+                PaymentTransitionsImpl.transition(to, at),
+                FindAndModifyOptions.options().returnNew(true),
+                Payment.class);
+    }
+}
@@ -0,0 +1,391 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.ArtisanEarningsDTO;
+import com.artztall.payment_service.dto.ArtisanEarningsSummaryDTO;
+import com.artztall.payment_service.exception.InvalidEarningsRangeException;
+import com.artztall.payment_service.model.ArtisanEarnings;
+import com.artztall.payment_service.model.EarningsTransition;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Keeps per-day rollups of every artisan's completed and refunded payments, so dashboards
+ * need not add up the payments themselves. Each transition to COMPLETED or REFUNDED is
+ * added to its day with an atomic {@code $inc}, at most once per payment and status
+ * because the confirm endpoint and the Stripe webhook may both complete a payment.
+ * <p>
+ * The rebuild recomputes every day before today from the payments, correcting increments
+ * lost to a crash between the payment's save and its rollup, and folds those days into
+ * one settled total per currency. The summary therefore reads the settled totals plus
+ * the few days since the last rebuild, however many payments the artisan has. Today is
+ * left to the increments, so the rebuild never races them.
+ */
+@Slf4j
+@Service
+public class ArtisanEarningsService {
+    private static final String PAYMENTS = "payments";
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int defaultDays;
+    private final int maxDays;
+    private final int batchSize;
+    private final boolean rebuildOnStartup;
+    private final Duration rebuildLease;
+
+    public ArtisanEarningsService(MongoTemplate mongoTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${payments.earnings.default-days:30}") int defaultDays,
+                                  @Value("${payments.earnings.max-days:366}") int maxDays,
+                                  @Value("${payments.earnings.rebuild.batch-size:500}") int batchSize,
+                                  @Value("${payments.earnings.rebuild.on-startup:true}") boolean rebuildOnStartup,
+                                  @Value("${payments.earnings.rebuild.lease:1h}") Duration rebuildLease) {
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+        this.defaultDays = defaultDays;
+        this.maxDays = maxDays;
+        this.batchSize = batchSize;
+        this.rebuildOnStartup = rebuildOnStartup;
+        this.rebuildLease = rebuildLease;
+    }
+
+    /**
+     * Adds a payment that was just saved as COMPLETED or REFUNDED to its artisan's day.
+     * Failures are logged rather than thrown; the next rebuild corrects the day.
+     */
+    public void record(Payment payment) {
+        PaymentStatus status = payment.getPaymentStatus();
+        if (payment.getArtistId() == null
+                || (status != PaymentStatus.COMPLETED && status != PaymentStatus.REFUNDED)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            mongoTemplate.insert(EarningsTransition.builder()
+                    .id(EarningsTransition.id(payment.getId(), status))
+                    .createdAt(now)
+                    .build());
+        } catch (DuplicateKeyException e) {
+            count("duplicate");
+            log.debug("Earnings already include {} payment {}", status, payment.getId());
+            return;
+        }
+
+        try {
+            boolean completed = status == PaymentStatus.COMPLETED;
+            LocalDate day = transitionTime(payment).toLocalDate();
+            long amount = payment.getAmount() != null ? payment.getAmount() : 0;
+            mongoTemplate.upsert(
+                    new Query(where("_id").is(ArtisanEarnings.dayId(payment.getArtistId(), payment.getCurrency(), day))),
+                    new Update()
+                            .setOnInsert("artistId", payment.getArtistId())
+                            .setOnInsert("currency", payment.getCurrency())
+                            .setOnInsert("day", day)
+                            .inc(completed ? "completedCount" : "refundedCount", 1)
+                            .inc(completed ? "completedAmount" : "refundedAmount", amount)
+                            .set("updatedAt", now),
+                    ArtisanEarnings.class);
+            count("applied");
+        } catch (RuntimeException e) {
+            count("failed");
+            log.warn("Failed to add {} payment {} to the earnings of artisan {}, the next rebuild corrects it",
+                    status, payment.getId(), payment.getArtistId(), e);
+        }
+    }
+
+    /**
+     * All-time totals per currency, and the days from {@code from} to {@code to}, both
+     * inclusive. Without a range, the last {@code default-days} days up to today.
+     */
+    public ArtisanEarningsSummaryDTO summary(String artistId, LocalDate from, LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(defaultDays - 1);
+        if (start.isAfter(end)) {
+            throw new InvalidEarningsRangeException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(start, end) >= maxDays) {
+            throw new InvalidEarningsRangeException("At most " + maxDays + " days can be requested");
+        }
+
+        ArtisanEarnings marker = mongoTemplate.findById(ArtisanEarnings.SETTLED_ID, ArtisanEarnings.class);
+        LocalDate settledThrough = marker != null ? marker.getSettledThrough() : null;
+        Criteria unsettled = settledThrough != null ? where("day").gt(settledThrough) : where("day").ne(null);
+        List<ArtisanEarnings> rollups = mongoTemplate.find(new Query(where("artistId").is(artistId)
+                .orOperator(where("day").is(null), unsettled, where("day").gte(start).lte(end))), ArtisanEarnings.class);
+
+        Map<String, ArtisanEarnings> totals = new TreeMap<>();
+        List<ArtisanEarningsDTO> days = new ArrayList<>();
+        for (ArtisanEarnings rollup : rollups) {
+            LocalDate day = rollup.getDay();
+            if (day == null || settledThrough == null || day.isAfter(settledThrough)) {
+                add(totals.computeIfAbsent(rollup.getCurrency(),
+                        currency -> ArtisanEarnings.builder().currency(currency).build()), rollup);
+            }
+            if (day != null && !day.isBefore(start) && !day.isAfter(end)) {
+                days.add(toDto(rollup));
+            }
+        }
+        days.sort(Comparator.comparing(ArtisanEarningsDTO::getDay).thenComparing(ArtisanEarningsDTO::getCurrency));
+
+        return ArtisanEarningsSummaryDTO.builder()
+                .artistId(artistId)
+                .from(start)
+                .to(end)
+                .totals(totals.values().stream().map(ArtisanEarningsService::toDto).toList())
+                .days(days)
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!rebuildOnStartup) {
+            return;
+        }
+        // Only the first deployment needs it; afterwards the nightly rebuild keeps the totals settled
+        Thread rebuild = new Thread(() -> {
+            try {
+                ArtisanEarnings marker = mongoTemplate.findById(ArtisanEarnings.SETTLED_ID, ArtisanEarnings.class);
+                if (marker == null || marker.getSettledThrough() == null) {
+                    rebuild(LocalDate.now());
+                }
+            } catch (Exception e) {
+                log.error("Initial artisan earnings rebuild failed, it will be retried on next startup", e);
+            }
+        }, "artisan-earnings-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+
+    @Scheduled(cron = "${payments.earnings.rebuild.cron:0 30 3 * * *}")
+    public void scheduledRebuild() {
+        try {
+            rebuild(LocalDate.now());
+        } catch (Exception e) {
+            log.error("Artisan earnings rebuild failed", e);
+        }
+    }
+
+    /**
+     * Recomputes every day before {@code today} from the payments and settles them into
+     * the totals. Returns the number of days written, or -1 when another instance holds
+     * the rebuild lease.
+     */
+    public long rebuild(LocalDate today) {
+        LocalDateTime started = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        if (!acquireLease(started)) {
+            log.info("Artisan earnings rebuild is already running on another instance");
+            return -1;
+        }
+        try {
+            Map<String, ArtisanEarnings> totals = new HashMap<>();
+            long days = 0;
+            List<ArtisanEarnings> batch = new ArrayList<>(batchSize);
+            try (Stream<Document> rows = mongoTemplate.aggregateStream(dayAggregation(today), PAYMENTS, Document.class)) {
+                for (Document row : (Iterable<Document>) rows::iterator) {
+                    ArtisanEarnings day = toRollup(row);
+                    add(totals.computeIfAbsent(ArtisanEarnings.totalId(day.getArtistId(), day.getCurrency()),
+                            id -> ArtisanEarnings.builder()
+                                    .id(id)
+                                    .artistId(day.getArtistId())
+                                    .currency(day.getCurrency())
+                                    .build()), day);
+                    batch.add(day);
+                    if (batch.size() == batchSize) {
+                        write(batch, started);
+                        days += batch.size();
+                        batch.clear();
+                    }
+                }
+            }
+            batch.addAll(totals.values());
+            write(batch, started);
+            days += batch.size() - totals.size();
+
+            // Days and totals no payment backs any more, e.g. after a currency was corrected
+            long removed = mongoTemplate.remove(new Query(new Criteria().andOperator(
+                    where("_id").ne(ArtisanEarnings.SETTLED_ID),
+                    where("rebuiltAt").ne(started),
+                    new Criteria().orOperator(where("day").lt(today), where("day").is(null)))),
+                    ArtisanEarnings.class).getDeletedCount();
+
+            mongoTemplate.updateFirst(new Query(where("_id").is(ArtisanEarnings.SETTLED_ID)),
+                    new Update()
+                            .set("settledThrough", today.minusDays(1))
+                            .set("rebuiltAt", started)
+                            .unset("lockedUntil"),
+                    ArtisanEarnings.class);
+            log.info("Rebuilt artisan earnings through {}: {} days, {} totals, {} stale removed in {} ms",
+                    today.minusDays(1), days, totals.size(), removed,
+                    Duration.between(started, LocalDateTime.now()).toMillis());
+            return days;
+        } catch (RuntimeException e) {
+            mongoTemplate.updateFirst(new Query(where("_id").is(ArtisanEarnings.SETTLED_ID)),
+                    new Update().unset("lockedUntil"), ArtisanEarnings.class);
+            throw e;
+        }
+    }
+
+    private boolean acquireLease(LocalDateTime now) {
+        try {
+            ArtisanEarnings marker = mongoTemplate.findAndModify(
+                    new Query(where("_id").is(ArtisanEarnings.SETTLED_ID)
+                            .orOperator(where("lockedUntil").is(null), where("lockedUntil").lte(now))),
+                    new Update().set("lockedUntil", now.plus(rebuildLease)),
+                    FindAndModifyOptions.options().upsert(true).returnNew(true),
+                    ArtisanEarnings.class);
+            return marker != null;
+        } catch (DuplicateKeyException e) {
+            // The marker exists and is locked, so the upsert tried to insert a second one
+            return false;
+        }
+    }
+
+    private void write(List<ArtisanEarnings> rollups, LocalDateTime rebuiltAt) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ArtisanEarnings.class);
+        for (ArtisanEarnings rollup : rollups) {
+            bulk.upsert(new Query(where("_id").is(rollup.getId())), new Update()
+                    .set("artistId", rollup.getArtistId())
+                    .set("currency", rollup.getCurrency())
+                    .set("day", rollup.getDay())
+                    .set("completedCount", rollup.getCompletedCount())
+                    .set("completedAmount", rollup.getCompletedAmount())
+                    .set("refundedCount", rollup.getRefundedCount())
+                    .set("refundedAmount", rollup.getRefundedAmount())
+                    .set("rebuiltAt", rebuiltAt)
+                    .set("updatedAt", rebuiltAt));
+        }
+        bulk.execute();
+    }
+
+    /**
+     * Completions on the day each payment completed and refunds on the day it was refunded,
+     * grouped per artisan, currency and day before {@code today}. Payments from before
+     * completedAt and refundedAt existed fall back to their last update.
+     */
+    static Aggregation dayAggregation(LocalDate today) {
+        String timezone = ZoneId.systemDefault().getId();
+        return Aggregation.newAggregation(
+                        Aggregation.stage(new Document("$match", new Document("artistId", new Document("$ne", null))
+                                .append("paymentStatus", new Document("$in",
+                                        List.of(PaymentStatus.COMPLETED.name(), PaymentStatus.REFUNDED.name()))))),
+                        Aggregation.stage(transitions("completedAt", timezone, true)),
+                        Aggregation.stage(new Document("$unionWith", new Document("coll", PAYMENTS)
+                                .append("pipeline", List.of(
+                                        new Document("$match", new Document("artistId", new Document("$ne", null))
+                                                .append("paymentStatus", PaymentStatus.REFUNDED.name())),
+                                        transitions("refundedAt", timezone, false))))),
+                        Aggregation.stage(new Document("$match",
+                                new Document("day", new Document("$lt", today.toString())))),
+                        Aggregation.stage(new Document("$group", new Document("_id", new Document("artistId", "$artistId")
+                                .append("currency", "$currency")
+                                .append("day", "$day"))
+                                .append("completedCount", new Document("$sum", "$completedCount"))
+                                .append("completedAmount", new Document("$sum", "$completedAmount"))
+                                .append("refundedCount", new Document("$sum", "$refundedCount"))
+                                .append("refundedAmount", new Document("$sum", "$refundedAmount")))))
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+    }
+
+    private static Document transitions(String timeField, String timezone, boolean completed) {
+        return new Document("$project", new Document("_id", 0)
+                .append("artistId", 1)
+                .append("currency", 1)
+                .append("day", new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                        .append("date", new Document("$ifNull", List.of("$" + timeField, "$updatedAt")))
+                        .append("timezone", timezone)))
+                .append("completedCount", new Document("$literal", completed ? 1 : 0))
+                .append("completedAmount", completed ? "$amount" : new Document("$literal", 0))
+                .append("refundedCount", new Document("$literal", completed ? 0 : 1))
+                .append("refundedAmount", completed ? new Document("$literal", 0) : "$amount"));
+    }
+
+    private static ArtisanEarnings toRollup(Document row) {
+        Document key = row.get("_id", Document.class);
+        String artistId = key.getString("artistId");
+        String currency = key.getString("currency");
+        LocalDate day = LocalDate.parse(key.getString("day"));
+        return ArtisanEarnings.builder()
+                .id(ArtisanEarnings.dayId(artistId, currency, day))
+                .artistId(artistId)
+                .currency(currency)
+                .day(day)
+                .completedCount(number(row, "completedCount"))
+                .completedAmount(number(row, "completedAmount"))
+                .refundedCount(number(row, "refundedCount"))
+                .refundedAmount(number(row, "refundedAmount"))
+                .build();
+    }
+
+    private static long number(Document row, String field) {
+        Number value = row.get(field, Number.class);
+        return value != null ? value.longValue() : 0;
+    }
+
+    private static void add(ArtisanEarnings total, ArtisanEarnings rollup) {
+        total.setCompletedCount(total.getCompletedCount() + rollup.getCompletedCount());
+        total.setCompletedAmount(total.getCompletedAmount() + rollup.getCompletedAmount());
+        total.setRefundedCount(total.getRefundedCount() + rollup.getRefundedCount());
+        total.setRefundedAmount(total.getRefundedAmount() + rollup.getRefundedAmount());
+    }
+
+    private static LocalDateTime transitionTime(Payment payment) {
+        LocalDateTime at = payment.getPaymentStatus() == PaymentStatus.COMPLETED
+                ? payment.getCompletedAt()
+                : payment.getRefundedAt();
+        if (at != null) {
+            return at;
+        }
+        return payment.getUpdatedAt() != null ? payment.getUpdatedAt() : LocalDateTime.now();
+    }
+
+    private static ArtisanEarningsDTO toDto(ArtisanEarnings rollup) {
+        return ArtisanEarningsDTO.builder()
+                .day(rollup.getDay())
+                .currency(rollup.getCurrency())
+                .completedCount(rollup.getCompletedCount())
+                .completedAmount(rollup.getCompletedAmount())
+                .refundedCount(rollup.getRefundedCount())
+                .refundedAmount(rollup.getRefundedAmount())
+                .netAmount(rollup.getCompletedAmount() - rollup.getRefundedAmount())
+                .build();
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("payments.earnings.transitions", "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,257 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.model.ExpiryLease;
+import com.artztall.payment_service.model.SweeperInstance;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Splits the expiry workload across live instances. Every payment belongs to one of
+ * {@link #PARTITION_COUNT} partitions, and each partition is owned through a lease in
+ * Mongo that its owner renews on every heartbeat. Instances register a heartbeat of
+ * their own, and each one claims a fair share of the partitions based on how many
+ * instances are alive, releasing surplus leases when new instances join.
+ * <p>
+ * Leases rely on wall-clock time, so the lease duration must be comfortably larger
+ * than the clock skew between nodes. The expiry update itself is conditional on the
+ * payment still being PENDING, so a brief overlap during hand-over is harmless.
+ * <p>
+ * Heartbeats run on a thread of their own rather than on the shared {@code @Scheduled}
+ * pool, so a sweep or rebuild running longer than the lease cannot stop the renewals and
+ * hand the partitions being swept to another instance.
+ */
+@Slf4j
+@Service
+public class ExpiryPartitionCoordinator {
+
+    /** Fixed so that partitions stored on existing payments stay valid across deployments. */
+    public static final int PARTITION_COUNT = 32;
+
+    /**
+     * Told which partitions this instance gained and lost, on the heartbeat thread, so it
+     * must hand any slow work off.
+     */
+    public interface PartitionListener {
+        void partitionsChanged(Set<Integer> acquired, Set<Integer> released);
+    }
+
+    private static final LocalDateTime NEVER = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final MongoTemplate mongoTemplate;
+    private final String instanceId;
+    private final Duration leaseDuration;
+    private final Duration heartbeatInterval;
+    private final List<PartitionListener> listeners = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService heartbeats;
+    private volatile Set<Integer> ownedPartitions = Collections.emptySet();
+    private volatile LocalDateTime leasesValidUntil = NEVER;
+    private volatile boolean leasesInitialized;
+    private volatile boolean registered;
+
+    public ExpiryPartitionCoordinator(MongoTemplate mongoTemplate,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${spring.application.name}") String applicationName,
+                                      @Value("${payments.expiry.lease.duration:30s}") Duration leaseDuration,
+                                      @Value("${payments.expiry.lease.heartbeat-interval-ms:10000}") long heartbeatIntervalMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.instanceId = applicationName + ":" + UUID.randomUUID();
+        this.leaseDuration = leaseDuration;
+        this.heartbeatInterval = Duration.ofMillis(heartbeatIntervalMs);
+
+        Gauge.builder("payment.expiry.partitions.owned", this, coordinator -> coordinator.ownedPartitions().size())
+                .description("Expiry partitions leased by this instance")
+                .register(meterRegistry);
+    }
+
+    public static int partitionOf(String orderId) {
+        return Math.floorMod(orderId.hashCode(), PARTITION_COUNT);
+    }
+
+    /**
+     * Matches payments in the given partitions. Payments created before partitioning have
+     * no partition and belong to partition 0.
+     */
+    public static Criteria inPartitions(Set<Integer> partitions) {
+        if (partitions.contains(0)) {
+            return new Criteria().orOperator(
+                    where("sweepPartition").in(partitions),
+                    where("sweepPartition").exists(false));
+        }
+        return where("sweepPartition").in(partitions);
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Registers a listener and tells it straight away about the partitions already owned.
+     */
+    public synchronized void addListener(PartitionListener listener) {
+        listeners.add(listener);
+        if (!ownedPartitions.isEmpty()) {
+            listener.partitionsChanged(ownedPartitions, Collections.emptySet());
+        }
+    }
+
+    /**
+     * Partitions this instance may sweep right now. Empty when the leases could not be
+     * renewed before they ran out.
+     */
+    public Set<Integer> ownedPartitions() {
+        if (LocalDateTime.now().isAfter(leasesValidUntil)) {
+            return Collections.emptySet();
+        }
+        return ownedPartitions;
+    }
+
+    @PostConstruct
+    public void start() {
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiry-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void heartbeat() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime leaseExpiry = now.plus(leaseDuration);
+            ensureLeasesExist();
+
+            mongoTemplate.upsert(new Query(where("_id").is(instanceId)),
+                    new Update().set("heartbeatAt", now), SweeperInstance.class);
+            registered = true;
+            long liveInstances = Math.max(1, mongoTemplate.count(
+                    new Query(where("heartbeatAt").gt(now.minus(leaseDuration))), SweeperInstance.class));
+            int fairShare = (int) Math.ceil((double) PARTITION_COUNT / liveInstances);
+
+            mongoTemplate.updateMulti(new Query(where("owner").is(instanceId).and("expiresAt").gt(now)),
+                    new Update().set("expiresAt", leaseExpiry), ExpiryLease.class);
+            Set<Integer> owned = new TreeSet<>();
+            mongoTemplate.find(new Query(where("owner").is(instanceId).and("expiresAt").gt(now)), ExpiryLease.class)
+                    .forEach(lease -> owned.add(lease.getPartition()));
+
+            if (owned.size() > fairShare) {
+                List<Integer> surplus = new ArrayList<>(owned).subList(fairShare, owned.size());
+                releaseLeases(surplus, now);
+                surplus.forEach(owned::remove);
+            } else if (owned.size() < fairShare) {
+                acquireLeases(owned, fairShare, now, leaseExpiry);
+            }
+
+            updateOwned(Collections.unmodifiableSet(owned));
+            leasesValidUntil = leaseExpiry;
+        } catch (Exception e) {
+            log.error("Failed to renew expiry partition leases for instance {}", instanceId, e);
+        }
+    }
+
+    @PreDestroy
+    public void releaseAll() throws InterruptedException {
+        if (heartbeats != null) {
+            // Stop first, so a heartbeat in flight cannot take leases back after they are released
+            heartbeats.shutdown();
+            if (!heartbeats.awaitTermination(heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS)) {
+                heartbeats.shutdownNow();
+            }
+        }
+        if (!registered) {
+            return;
+        }
+        try {
+            mongoTemplate.remove(new Query(where("_id").is(instanceId)), SweeperInstance.class);
+            releaseLeases(new ArrayList<>(ownedPartitions), LocalDateTime.now());
+        } catch (Exception e) {
+            log.warn("Failed to release expiry partition leases for instance {}", instanceId, e);
+        }
+        ownedPartitions = Collections.emptySet();
+    }
+
+    private synchronized void updateOwned(Set<Integer> owned) {
+        Set<Integer> acquired = new TreeSet<>(owned);
+        acquired.removeAll(ownedPartitions);
+        Set<Integer> released = new TreeSet<>(ownedPartitions);
+        released.removeAll(owned);
+        ownedPartitions = owned;
+        if (acquired.isEmpty() && released.isEmpty()) {
+            return;
+        }
+        for (PartitionListener listener : listeners) {
+            try {
+                listener.partitionsChanged(acquired, released);
+            } catch (RuntimeException e) {
+                log.warn("Expiry partition listener failed for acquired {} and released {}", acquired, released, e);
+            }
+        }
+    }
+
+    private void ensureLeasesExist() {
+        if (leasesInitialized) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ExpiryLease.class);
+        for (int partition = 0; partition < PARTITION_COUNT; partition++) {
+            bulk.upsert(new Query(where("_id").is(partition)), new Update().setOnInsert("expiresAt", NEVER));
+        }
+        bulk.execute();
+        leasesInitialized = true;
+    }
+
+    private void acquireLeases(Set<Integer> owned, int fairShare, LocalDateTime now, LocalDateTime leaseExpiry) {
+        List<ExpiryLease> free = new ArrayList<>(
+                mongoTemplate.find(new Query(where("expiresAt").lte(now)), ExpiryLease.class));
+        Collections.shuffle(free);
+        for (ExpiryLease lease : free) {
+            if (owned.size() >= fairShare) {
+                break;
+            }
+            ExpiryLease acquired = mongoTemplate.findAndModify(
+                    new Query(where("_id").is(lease.getPartition()).and("expiresAt").lte(now)),
+                    new Update().set("owner", instanceId).set("expiresAt", leaseExpiry),
+                    FindAndModifyOptions.options().returnNew(true),
+                    ExpiryLease.class);
+            if (acquired != null) {
+                owned.add(acquired.getPartition());
+            }
+        }
+    }
+
+    private void releaseLeases(List<Integer> partitions, LocalDateTime now) {
+        if (partitions.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(new Query(where("_id").in(partitions).and("owner").is(instanceId)),
+                new Update().unset("owner").set("expiresAt", now), ExpiryLease.class);
+        log.info("Released expiry partitions {} from instance {}", partitions, instanceId);
+    }
+}
@@ -0,0 +1,90 @@
+package com.artztall.payment_service.service;
+
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.Refund;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCreateParams;
+import com.stripe.param.RefundCreateParams;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * In-memory stand-in for Stripe, enabled with {@code payments.gateway=fake} for
+ * benchmarks and offline runs. Every call completes after {@code payments.gateway.fake.latency}
+ * without holding a thread. Intents are created already succeeded, and creates honour
+ * idempotency keys like Stripe does.
+ */
+@Service
+@ConditionalOnProperty(name = "payments.gateway", havingValue = "fake")
+public class FakePaymentGateway implements PaymentGateway {
+
+    private final Executor delayed;
+    private final Map<String, PaymentIntent> intents = new ConcurrentHashMap<>();
+    private final Map<String, Object> idempotentResults = new ConcurrentHashMap<>();
+
+    public FakePaymentGateway(@Value("${payments.gateway.fake.latency:50ms}") Duration latency) {
+        this.delayed = CompletableFuture.delayedExecutor(latency.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public CompletableFuture<PaymentIntent> createPaymentIntent(PaymentIntentCreateParams params, RequestOptions options) {
+        return after(() -> idempotent(options, () -> {
+            PaymentIntent paymentIntent = new PaymentIntent();
+            paymentIntent.setId("pi_fake_" + UUID.randomUUID().toString().replace("-", ""));
+            paymentIntent.setClientSecret(paymentIntent.getId() + "_secret_fake");
+            paymentIntent.setAmount(params.getAmount());
+            paymentIntent.setCurrency(params.getCurrency());
+            paymentIntent.setStatus("succeeded");
+            intents.put(paymentIntent.getId(), paymentIntent);
+            return paymentIntent;
+        }));
+    }
+
+    @Override
+    public CompletableFuture<PaymentIntent> retrievePaymentIntent(String paymentIntentId) {
+        return after(() -> {
+            PaymentIntent paymentIntent = intents.get(paymentIntentId);
+            if (paymentIntent == null) {
+                throw new CompletionException(new InvalidRequestException(
+                        "No such payment_intent: '" + paymentIntentId + "'", "id", null, "resource_missing", 404, null));
+            }
+            return paymentIntent;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Refund> createRefund(RefundCreateParams params, RequestOptions options) {
+        return after(() -> idempotent(options, () -> {
+            Refund refund = new Refund();
+            refund.setId("re_fake_" + UUID.randomUUID().toString().replace("-", ""));
+            refund.setPaymentIntent(params.getPaymentIntent());
+            refund.setStatus("succeeded");
+            return refund;
+        }));
+    }
+
+    private <T> CompletableFuture<T> after(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(call, delayed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T idempotent(RequestOptions options, Supplier<T> create) {
+        String key = options != null ? options.getIdempotencyKey() : null;
+        if (key == null) {
+            return create.get();
+        }
+        return (T) idempotentResults.computeIfAbsent(key, ignored -> create.get());
+    }
+}
@@ -2,22 +2,29 @@ package com.artztall.payment_service.service;
 
 
 import com.artztall.payment_service.dto.NotificationSendDTO;
+import com.artztall.payment_service.util.DownstreamGuard;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 @Service
 @RequiredArgsConstructor
 public class NotificationClientService {
    private final WebClient notificationServiceWebClient;
+   private final DownstreamGuard notificationGuard;
 
    public void sendNotification(NotificationSendDTO notificationSendDTO) {
-       notificationServiceWebClient.post()
-               .uri("/api/notifications/send")
-               .bodyValue(notificationSendDTO)
-               .retrieve()
-               .bodyToMono(NotificationSendDTO.class)
-               .block();
+       send(notificationSendDTO).block();
+   }
+
+   public Mono<Void> send(NotificationSendDTO notificationSendDTO) {
+       return notificationGuard.protect(notificationServiceWebClient.post()
+                       .uri("/api/notifications/send")
+                       .bodyValue(notificationSendDTO)
+                       .retrieve()
+                       .bodyToMono(NotificationSendDTO.class))
+               .then();
    }
 
 }
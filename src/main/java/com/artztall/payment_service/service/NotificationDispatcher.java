@@ -0,0 +1,191 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.NotificationSendDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends notifications off the payment request path. Notifications are buffered in a
+ * bounded in-memory queue and drained in batches by a small pool of worker threads.
+ */
+@Slf4j
+@Service
+public class NotificationDispatcher {
+
+    public enum OverflowPolicy {
+        /** Discard the notification being dispatched. */
+        DROP_NEWEST,
+        /** Discard the oldest queued notification to make room. */
+        DROP_OLDEST,
+        /** Send the notification synchronously on the calling thread. */
+        CALLER_RUNS
+    }
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(500);
+
+    private final NotificationClientService notificationClientService;
+    private final BlockingQueue<NotificationSendDTO> queue;
+    private final int workers;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final OverflowPolicy overflowPolicy;
+
+    private final Timer sendLatency;
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter dropped;
+
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    public NotificationDispatcher(NotificationClientService notificationClientService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${notification.dispatcher.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${notification.dispatcher.workers:2}") int workers,
+                                  @Value("${notification.dispatcher.batch-size:50}") int batchSize,
+                                  @Value("${notification.dispatcher.send-timeout:5s}") Duration sendTimeout,
+                                  @Value("${notification.dispatcher.overflow-policy:DROP_NEWEST}") OverflowPolicy overflowPolicy) {
+        this.notificationClientService = notificationClientService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.overflowPolicy = overflowPolicy;
+
+        Gauge.builder("notification.dispatcher.queue.depth", queue, BlockingQueue::size)
+                .description("Notifications waiting to be sent")
+                .register(meterRegistry);
+        this.sendLatency = Timer.builder("notification.dispatcher.send.latency")
+                .description("Time taken to deliver a notification to the notification service")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.sent = meterRegistry.counter("notification.dispatcher.sent");
+        this.failed = meterRegistry.counter("notification.dispatcher.failed");
+        this.dropped = Counter.builder("notification.dispatcher.dropped")
+                .tag("policy", overflowPolicy.name())
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        running = true;
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "notification-dispatcher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::drainLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        executor.shutdown();
+        if (!executor.awaitTermination(sendTimeout.toMillis() * 2, TimeUnit.MILLISECONDS)) {
+            log.warn("Notification dispatcher stopped with {} notifications still queued", queue.size());
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Queues a notification for delivery and returns immediately, unless the queue is
+     * full and the overflow policy is {@link OverflowPolicy#CALLER_RUNS}.
+     */
+    public void dispatch(NotificationSendDTO notification) {
+        if (queue.offer(notification)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_NEWEST -> drop(notification);
+            case DROP_OLDEST -> {
+                NotificationSendDTO oldest = queue.poll();
+                if (oldest != null) {
+                    drop(oldest);
+                }
+                if (!queue.offer(notification)) {
+                    drop(notification);
+                }
+            }
+            case CALLER_RUNS -> sendBatch(List.of(notification));
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private void drop(NotificationSendDTO notification) {
+        dropped.increment();
+        log.warn("Notification queue full, dropping notification for user: {}", notification.getUserId());
+    }
+
+    private void drainLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                NotificationSendDTO first = queue.poll(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<NotificationSendDTO> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                sendBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Notification dispatcher worker failed", e);
+            }
+        }
+    }
+
+    private void sendBatch(List<NotificationSendDTO> batch) {
+        try {
+            Flux.fromIterable(batch)
+                    .flatMap(this::timedSend)
+                    .then()
+                    .block(sendTimeout);
+        } catch (Exception e) {
+            // Sends still running at the timeout were cancelled and counted as failed
+            log.error("Failed to send batch of {} notifications", batch.size(), e);
+        }
+    }
+
+    private Mono<Void> timedSend(NotificationSendDTO notification) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return notificationClientService.send(notification)
+                    .doOnSuccess(ignored -> sent.increment())
+                    .doFinally(signal -> sendLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        }).onErrorResume(e -> {
+            failed.increment();
+            log.error("Failed to send notification to user: {}", notification.getUserId(), e);
+            return Mono.empty();
+        }).doOnCancel(() -> {
+            failed.increment();
+            log.error("Timed out after {} sending notification to user: {}", sendTimeout, notification.getUserId());
+        });
+    }
+}
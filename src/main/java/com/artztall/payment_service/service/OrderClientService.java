@@ -3,42 +3,133 @@ package com.artztall.payment_service.service;
 
 import com.artztall.payment_service.dto.OrderResponseDTO;
 import com.artztall.payment_service.model.OrderStatus;
-import lombok.RequiredArgsConstructor;
+import com.artztall.payment_service.util.DownstreamGuard;
+import com.artztall.payment_service.util.SingleFlight;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Client for the order service. Orders are cached for a short TTL because one checkout
+ * reads the same order several times (payment creation, product release, expiry); the
+ * cached entry is dropped whenever this service changes the order's status, and a read
+ * that was already in flight then is not cached. Callers get their own copy of the
+ * order, so one caller's changes never leak into the cache or to another caller.
+ */
 @Service
-@RequiredArgsConstructor
 public class OrderClientService {
     private final WebClient orderServiceWebClient;
+    private final DownstreamGuard orderGuard;
+    private final Cache<String, OrderResponseDTO> orders;
+    // Sequence of each order's last invalidation, kept as long as a read could still be in flight
+    private final Cache<String, Long> invalidations;
+    private final AtomicLong invalidationSequence = new AtomicLong();
+    private final SingleFlight<String, OrderResponseDTO> orderLookups;
+
+    @Autowired
+    public OrderClientService(WebClient orderServiceWebClient,
+                              DownstreamGuard orderGuard,
+                              MeterRegistry meterRegistry,
+                              @Value("${order.client.cache.max-size:10000}") long maxSize,
+                              @Value("${order.client.cache.ttl:30s}") Duration ttl) {
+        this(orderServiceWebClient, orderGuard, meterRegistry, maxSize, ttl, Ticker.systemTicker());
+    }
+
+    OrderClientService(WebClient orderServiceWebClient, DownstreamGuard orderGuard, MeterRegistry meterRegistry,
+                       long maxSize, Duration ttl, Ticker ticker) {
+        this.orderServiceWebClient = orderServiceWebClient;
+        this.orderGuard = orderGuard;
+        this.orders = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        this.invalidations = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .build();
+        // Publishes cache.gets{result=hit|miss}, cache.evictions and cache.size
+        CaffeineCacheMetrics.monitor(meterRegistry, orders, "orders");
+        // Concurrent misses for the same order, e.g. a double-clicked checkout, share one request
+        this.orderLookups = new SingleFlight<>("orders", meterRegistry);
+    }
+
     public OrderResponseDTO getOrder(String orderId) {
-        return orderServiceWebClient.get()
-                .uri("/api/orders/" + orderId)
-                .retrieve()
-                .bodyToMono(OrderResponseDTO.class)
-                .block();
+        return fetchOrder(orderId).block();
+    }
+
+    public Mono<OrderResponseDTO> fetchOrder(String orderId) {
+        return Mono.defer(() -> {
+            OrderResponseDTO cached = orders.getIfPresent(orderId);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return orderLookups.executeMono(orderId, () -> {
+                long readFrom = invalidationSequence.get();
+                return orderGuard.protect(orderServiceWebClient.get()
+                                .uri("/api/orders/" + orderId)
+                                .retrieve()
+                                .bodyToMono(OrderResponseDTO.class))
+                        .doOnNext(order -> populate(orderId, order, readFrom));
+            });
+        }).map(OrderResponseDTO::copy);
+    }
+
+    /**
+     * Caches an order read unless the order was invalidated after the read started, in
+     * which case the read may predate the change. Runs inside the cache's compute, so an
+     * invalidation either happens first and is seen here, or removes the entry after it.
+     */
+    private void populate(String orderId, OrderResponseDTO order, long readFrom) {
+        orders.asMap().compute(orderId, (id, current) -> {
+            Long invalidated = invalidations.getIfPresent(id);
+            return invalidated != null && invalidated > readFrom ? current : order;
+        });
+    }
+
+    private void invalidate(String orderId) {
+        invalidations.put(orderId, invalidationSequence.incrementAndGet());
+        orders.invalidate(orderId);
     }
 
 
     public void updateOrderStatus(String orderId, OrderStatus status) {
-        orderServiceWebClient.put()
-                .uri(uriBuilder -> uriBuilder
-                        .path("/api/orders/{orderId}/status")
-                        .queryParam("status", status)
-                        .build(orderId))
-                .retrieve()
-                .bodyToMono(OrderResponseDTO.class)
-                .block();
+        changeOrderStatus(orderId, status).block();
+    }
+
+    public Mono<Void> changeOrderStatus(String orderId, OrderStatus status) {
+        return orderGuard.protect(orderServiceWebClient.put()
+                        .uri(uriBuilder -> uriBuilder
+                                .path("/api/orders/{orderId}/status")
+                                .queryParam("status", status)
+                                .build(orderId))
+                        .retrieve()
+                        .bodyToMono(OrderResponseDTO.class))
+                // Invalidate on both sides so no read racing the update repopulates a stale order
+                .doOnSubscribe(subscription -> invalidate(orderId))
+                .doFinally(signal -> invalidate(orderId))
+                .then();
     }
 
     public List<OrderResponseDTO> getArtisansOrders(String artisanId) {
-        return orderServiceWebClient.get()
-                .uri("/api/orders/artisan/" + artisanId)
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<OrderResponseDTO>>() {})
+        return orderGuard.protect(orderServiceWebClient.get()
+                        .uri("/api/orders/artisan/" + artisanId)
+                        .retrieve()
+                        .bodyToMono(new ParameterizedTypeReference<List<OrderResponseDTO>>() {}))
                 .block();
     }
 
@@ -0,0 +1,286 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.model.OrderStatus;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Expires PENDING payments whose {@code expiresAt} has passed. Expired payments are read
+ * page by page, flipped to EXPIRED with one {@code updateMulti} per page, and the
+ * downstream calls (product release, order update, notification) are fanned out with
+ * bounded parallelism. Pages are only fetched when the fan-out has capacity for them.
+ * Only payments in the given expiry partitions are swept, see {@link ExpiryPartitionCoordinator}.
+ */
+@Slf4j
+@Service
+public class PaymentExpirySweeper {
+
+    public record SweepResult(long expired, Duration duration, Duration lag) {
+        public double throughputPerSecond() {
+            long millis = Math.max(duration.toMillis(), 1);
+            return expired * 1000.0 / millis;
+        }
+    }
+
+    private record PageKey(LocalDateTime expiresAt, String id) {
+        static final PageKey START = new PageKey(null, null);
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final OrderClientService orderClientService;
+    private final ProductReleaseService productReleaseService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PaymentStageTimer paymentStageTimer;
+    private final int pageSize;
+    private final int parallelism;
+    private final Scheduler scheduler;
+    private final Duration slowSweepThreshold;
+
+    private final Timer sweepDuration;
+    private final Counter expiredCounter;
+    private final Counter failedCounter;
+    private final AtomicLong lastLagSeconds = new AtomicLong();
+    private final AtomicLong lastThroughput = new AtomicLong();
+
+    public PaymentExpirySweeper(MongoTemplate mongoTemplate,
+                                OrderClientService orderClientService,
+                                ProductReleaseService productReleaseService,
+                                NotificationDispatcher notificationDispatcher,
+                                ApplicationEventPublisher eventPublisher,
+                                PaymentStageTimer paymentStageTimer,
+                                MeterRegistry meterRegistry,
+                                @Value("${payments.expiry.page-size:500}") int pageSize,
+                                @Value("${payments.expiry.parallelism:8}") int parallelism,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                                @Value("${payments.expiry.slow-sweep-threshold:60s}") Duration slowSweepThreshold) {
+        this.mongoTemplate = mongoTemplate;
+        this.orderClientService = orderClientService;
+        this.productReleaseService = productReleaseService;
+        this.notificationDispatcher = notificationDispatcher;
+        this.eventPublisher = eventPublisher;
+        this.paymentStageTimer = paymentStageTimer;
+        this.pageSize = pageSize;
+        this.slowSweepThreshold = slowSweepThreshold;
+        this.parallelism = parallelism;
+        // Fan-out is already capped at parallelism, so virtual threads need no pool bound
+        this.scheduler = virtualThreads
+                ? Schedulers.fromExecutorService(Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name("payment-expiry-", 0).factory()), "payment-expiry")
+                : Schedulers.newBoundedElastic(parallelism, pageSize, "payment-expiry");
+
+        this.sweepDuration = Timer.builder("payment.expiry.sweep.duration")
+                .description("Duration of a full expiry sweep")
+                .register(meterRegistry);
+        this.expiredCounter = meterRegistry.counter("payment.expiry.sweep.expired");
+        this.failedCounter = meterRegistry.counter("payment.expiry.sweep.downstream.failed");
+        Gauge.builder("payment.expiry.sweep.lag", lastLagSeconds, AtomicLong::get)
+                .description("Seconds between the oldest expiresAt handled in the last sweep and the sweep time")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("payment.expiry.sweep.throughput", lastThroughput, AtomicLong::get)
+                .description("Payments expired per second in the last sweep")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+
+    public SweepResult sweep(LocalDateTime now, Set<Integer> partitions) {
+        LocalDateTime cutoff = now.truncatedTo(ChronoUnit.MILLIS);
+        long start = System.nanoTime();
+        AtomicReference<LocalDateTime> oldest = new AtomicReference<>();
+        PaymentStageTimer.Trace trace = paymentStageTimer.start("expiry_sweep", null, slowSweepThreshold);
+
+        Long expired;
+        try {
+            expired = Flux.<List<Payment>, PageKey>generate(() -> PageKey.START, (key, sink) -> {
+                        List<Payment> page = trace.stage("fetch_page", () -> fetchPage(cutoff, partitions, key));
+                        if (page.isEmpty()) {
+                            sink.complete();
+                            return key;
+                        }
+                        sink.next(page);
+                        Payment last = page.get(page.size() - 1);
+                        return new PageKey(last.getExpiresAt(), last.getId());
+                    })
+                    .subscribeOn(scheduler)
+                    .doOnNext(page -> oldest.compareAndSet(null, page.get(0).getExpiresAt()))
+                    .concatMapIterable(page -> trace.stage("expire_page", () -> expirePage(page, cutoff)), 1)
+                    .flatMap(payment -> Mono.fromRunnable(() -> applyExpiry(payment, trace))
+                            .subscribeOn(scheduler)
+                            .thenReturn(payment), parallelism)
+                    .count()
+                    .block();
+        } catch (RuntimeException e) {
+            trace.finish("error");
+            throw e;
+        }
+
+        Duration duration = Duration.ofNanos(System.nanoTime() - start);
+        Duration lag = oldest.get() == null ? Duration.ZERO : Duration.between(oldest.get(), cutoff);
+        SweepResult result = new SweepResult(expired == null ? 0 : expired, duration, lag);
+        recordMetrics(result);
+        trace.finish(result.expired() > 0 ? "expired" : "idle");
+        return result;
+    }
+
+    /**
+     * Expires the given payments individually, skipping any that are no longer PENDING
+     * or not yet due. Emits the number of payments actually expired.
+     */
+    public Mono<Long> expireAll(Collection<String> paymentIds, LocalDateTime now) {
+        LocalDateTime cutoff = now.truncatedTo(ChronoUnit.MILLIS);
+        return Mono.defer(() -> {
+            PaymentStageTimer.Trace trace = paymentStageTimer.start("expire_due", null, slowSweepThreshold);
+            return Flux.fromIterable(paymentIds)
+                    .flatMap(paymentId -> Mono.fromCallable(() -> expireOne(paymentId, cutoff, trace))
+                            .subscribeOn(scheduler), parallelism)
+                    .filter(Boolean::booleanValue)
+                    .count()
+                    .doOnNext(expiredCounter::increment)
+                    .doOnSuccess(count -> trace.finish(count != null && count > 0 ? "expired" : "idle"))
+                    .doOnError(e -> trace.finish("error"));
+        });
+    }
+
+    private boolean expireOne(String paymentId, LocalDateTime cutoff, PaymentStageTimer.Trace trace) {
+        Payment payment = trace.forPayment(paymentId, null).stage("expire_payment",
+                () -> mongoTemplate.findAndModify(
+                    new Query(where("_id").is(paymentId)
+                            .and("paymentStatus").is(PaymentStatus.PENDING)
+                            .and("expiresAt").lte(cutoff)),
+                    new Update().set("paymentStatus", PaymentStatus.EXPIRED).set("updatedAt", cutoff),
+                    FindAndModifyOptions.options().returnNew(true),
+                    Payment.class));
+        if (payment == null) {
+            return false;
+        }
+        applyExpiry(payment, trace);
+        return true;
+    }
+
+    private List<Payment> fetchPage(LocalDateTime cutoff, Set<Integer> partitions, PageKey key) {
+        return mongoTemplate.find(pageQuery(cutoff, partitions, key.expiresAt(), key.id(), pageSize), Payment.class);
+    }
+
+    /**
+     * The page of due payments after the given position, in the order of the
+     * {@code status_expires_id} index so the sort is read from it.
+     */
+    public static Query pageQuery(LocalDateTime cutoff, Set<Integer> partitions,
+                                  LocalDateTime afterExpiresAt, String afterId, int pageSize) {
+        List<Criteria> filters = new ArrayList<>();
+        // Same bound as expireOne, so a payment due exactly at the cutoff is not left for the next sweep
+        filters.add(where("paymentStatus").is(PaymentStatus.PENDING).and("expiresAt").lte(cutoff));
+        filters.add(ExpiryPartitionCoordinator.inPartitions(partitions));
+        if (afterExpiresAt != null) {
+            filters.add(new Criteria().orOperator(
+                    where("expiresAt").gt(afterExpiresAt),
+                    where("expiresAt").is(afterExpiresAt).and("_id").gt(afterId)));
+        }
+        Query query = new Query(new Criteria().andOperator(filters))
+                .with(Sort.by(Sort.Order.asc("expiresAt"), Sort.Order.asc("_id")))
+                .limit(pageSize);
+        query.fields().include("orderId", "userId", "expiresAt");
+        return query;
+    }
+
+    /**
+     * Flips a page to EXPIRED and returns the payments this sweep actually expired.
+     * Payments confirmed between the read and the update keep their status and are skipped.
+     */
+    private List<Payment> expirePage(List<Payment> page, LocalDateTime cutoff) {
+        List<String> ids = page.stream().map(Payment::getId).toList();
+        UpdateResult result = mongoTemplate.updateMulti(
+                new Query(where("_id").in(ids).and("paymentStatus").is(PaymentStatus.PENDING)),
+                new Update().set("paymentStatus", PaymentStatus.EXPIRED).set("updatedAt", cutoff),
+                Payment.class);
+
+        List<Payment> flipped = page;
+        if (result.getModifiedCount() < ids.size()) {
+            Query flippedQuery = new Query(where("_id").in(ids)
+                    .and("paymentStatus").is(PaymentStatus.EXPIRED)
+                    .and("updatedAt").is(cutoff));
+            flippedQuery.fields().include("_id");
+            Set<String> flippedIds = mongoTemplate.find(flippedQuery, Payment.class).stream()
+                    .map(Payment::getId)
+                    .collect(Collectors.toSet());
+            flipped = page.stream().filter(payment -> flippedIds.contains(payment.getId())).toList();
+        }
+        flipped.forEach(payment -> {
+            payment.setPaymentStatus(PaymentStatus.EXPIRED);
+            payment.setUpdatedAt(cutoff);
+        });
+        return flipped;
+    }
+
+    private void applyExpiry(Payment payment, PaymentStageTimer.Trace sweepTrace) {
+        eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment));
+        PaymentStageTimer.Trace trace = sweepTrace.forPayment(payment.getId(), payment.getOrderId());
+        try {
+            // Release products back to inventory
+            trace.run("product_release", () -> productReleaseService.releaseProductsForOrder(payment.getOrderId()));
+
+            // Update order status
+            trace.run("order_update",
+                    () -> orderClientService.updateOrderStatus(payment.getOrderId(), OrderStatus.EXPIRED));
+
+            // Send expiration notification
+            trace.run("notification", () -> notificationDispatcher.dispatch(PaymentNotifications.expired(payment)));
+
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.error("Error handling expired payment: {}", payment.getId(), e);
+        }
+    }
+
+    private void recordMetrics(SweepResult result) {
+        sweepDuration.record(result.duration().toNanos(), TimeUnit.NANOSECONDS);
+        expiredCounter.increment(result.expired());
+        lastLagSeconds.set(result.lag().toSeconds());
+        lastThroughput.set(Math.round(result.throughputPerSecond()));
+        if (result.expired() > 0) {
+            log.info("Expired {} payments in {} ms ({} payments/s, lag {} s)",
+                    result.expired(), result.duration().toMillis(),
+                    Math.round(result.throughputPerSecond()), result.lag().toSeconds());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.util.TimingWheel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Expires pending payments within about one tick of their {@code expiresAt}. Payments are
+ * registered on creation and cancelled on confirmation. When this instance acquires expiry
+ * partitions, the PENDING payments of those partitions are loaded into the wheel, and when
+ * it releases them their timers are dropped, so each payment is timed by its partition's
+ * owner and at most also by the instance that created it. The scheduled Mongo sweep stays
+ * in place as a safety net for payments no wheel saw.
+ * <p>
+ * Payments already overdue when they are loaded, typically after downtime, are collected
+ * and expired in batches of the sweep's page size, one batch at a time, so a large
+ * backlog neither floods the sweeper's scheduler nor records a trace per payment.
+ */
+@Slf4j
+@Service
+public class PaymentExpiryWheel {
+    private static final int LEVELS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final PaymentExpirySweeper paymentExpirySweeper;
+    private final ExpiryPartitionCoordinator expiryPartitionCoordinator;
+    private final boolean enabled;
+    private final long tickMillis;
+    private final int pageSize;
+    private final TimingWheel<String> wheel;
+    private final Counter fired;
+    // Partition of every payment in the wheel, to drop the timers of released partitions
+    private final Map<String, Integer> partitions = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService ticker;
+    private ExecutorService loader;
+
+    public PaymentExpiryWheel(MongoTemplate mongoTemplate,
+                              PaymentExpirySweeper paymentExpirySweeper,
+                              ExpiryPartitionCoordinator expiryPartitionCoordinator,
+                              MeterRegistry meterRegistry,
+                              @Value("${payments.expiry.wheel.enabled:true}") boolean enabled,
+                              @Value("${payments.expiry.wheel.tick-ms:1000}") long tickMillis,
+                              @Value("${payments.expiry.wheel.size:64}") int wheelSize,
+                              @Value("${payments.expiry.page-size:500}") int pageSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.paymentExpirySweeper = paymentExpirySweeper;
+        this.expiryPartitionCoordinator = expiryPartitionCoordinator;
+        this.enabled = enabled;
+        this.tickMillis = tickMillis;
+        this.pageSize = pageSize;
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize, LEVELS, System.currentTimeMillis());
+
+        Gauge.builder("payment.expiry.wheel.pending", wheel, TimingWheel::size)
+                .description("Pending payments tracked by the expiry timing wheel")
+                .register(meterRegistry);
+        this.fired = meterRegistry.counter("payment.expiry.wheel.fired");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-expiry-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        // Loads run here rather than on the coordinator's heartbeat thread
+        loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "payment-expiry-wheel-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expiryPartitionCoordinator.addListener((acquired, released) -> loader.execute(() -> {
+            drop(released);
+            load(acquired);
+        }));
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        if (loader != null) {
+            loader.shutdownNow();
+        }
+    }
+
+    public void register(Payment payment) {
+        if (!schedule(payment)) {
+            expire(List.of(payment.getId()));
+        }
+    }
+
+    /**
+     * Returns false if the payment is already due and was not scheduled.
+     */
+    private boolean schedule(Payment payment) {
+        if (!enabled || payment.getExpiresAt() == null) {
+            return true;
+        }
+        long deadline = payment.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (!wheel.schedule(payment.getId(), deadline)) {
+            return false;
+        }
+        partitions.put(payment.getId(), payment.getSweepPartition() != null ? payment.getSweepPartition() : 0);
+        return true;
+    }
+
+    public void cancel(String paymentId) {
+        if (enabled) {
+            wheel.cancel(paymentId);
+            partitions.remove(paymentId);
+        }
+    }
+
+    void load(Set<Integer> acquired) {
+        if (acquired.isEmpty()) {
+            return;
+        }
+        try {
+            Query query = new Query(where("paymentStatus").is(PaymentStatus.PENDING)
+                    .andOperator(ExpiryPartitionCoordinator.inPartitions(acquired)));
+            query.fields().include("expiresAt", "sweepPartition");
+            AtomicLong registered = new AtomicLong();
+            List<String> overdue = new ArrayList<>();
+            try (Stream<Payment> pending = mongoTemplate.stream(query, Payment.class)) {
+                pending.forEach(payment -> {
+                    if (schedule(payment)) {
+                        registered.incrementAndGet();
+                    } else {
+                        overdue.add(payment.getId());
+                    }
+                });
+            }
+            log.info("Loaded {} pending payments of expiry partitions {} into the wheel, {} already overdue",
+                    registered.get(), acquired, overdue.size());
+            if (!overdue.isEmpty()) {
+                expire(overdue);
+            }
+        } catch (Exception e) {
+            log.error("Failed to load expiry partitions {} into the wheel, relying on the scheduled sweep",
+                    acquired, e);
+        }
+    }
+
+    void drop(Set<Integer> released) {
+        if (released.isEmpty()) {
+            return;
+        }
+        partitions.forEach((paymentId, partition) -> {
+            if (released.contains(partition) && partitions.remove(paymentId, partition)) {
+                wheel.cancel(paymentId);
+            }
+        });
+    }
+
+    private void tick() {
+        try {
+            List<String> due = wheel.advanceTo(System.currentTimeMillis());
+            if (!due.isEmpty()) {
+                due.forEach(partitions::remove);
+                expire(due);
+            }
+        } catch (Exception e) {
+            log.error("Payment expiry wheel tick failed", e);
+        }
+    }
+
+    private void expire(List<String> paymentIds) {
+        fired.increment(paymentIds.size());
+        Flux.fromIterable(paymentIds)
+                .buffer(pageSize)
+                .concatMap(batch -> Mono.defer(() -> paymentExpirySweeper.expireAll(batch, LocalDateTime.now()))
+                        .doOnNext(expired -> log.debug("Expired {} of {} due payments", expired, batch.size()))
+                        .onErrorResume(e -> {
+                            log.error("Failed to expire payments {}", batch, e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+}
@@ -0,0 +1,64 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.exception.ExportLimitException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs payment exports on threads of their own, so a burst of long exports cannot take
+ * over {@code applicationTaskExecutor} from the other async requests. At most
+ * {@code max-concurrent} exports stream at once and none wait: once all are busy, new
+ * exports fail with {@link ExportLimitException} (503) and the client retries later.
+ */
+@Slf4j
+@Component
+public class PaymentExportExecutor implements AsyncTaskExecutor {
+
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public PaymentExportExecutor(MeterRegistry meterRegistry,
+                                 @Value("${payments.export.max-concurrent:4}") int maxConcurrent) {
+        this(maxConcurrent);
+        new ExecutorServiceMetrics(executor, "payment-export", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    PaymentExportExecutor(int maxConcurrent) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "payment-export-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Rejecting payment export, {} already running", executor.getActiveCount());
+            throw new ExportLimitException("Too many payment exports in progress, try again shortly");
+        }
+    }
+}
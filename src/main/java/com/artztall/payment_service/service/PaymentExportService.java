@@ -0,0 +1,101 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.UserPaymentResponseDTO;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Writes payments as newline-delimited JSON straight from a Mongo cursor, so memory use
+ * stays flat however many payments an account has. Each line is a
+ * {@link UserPaymentResponseDTO}, newest payment first.
+ */
+@Slf4j
+@Service
+public class PaymentExportService {
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectWriter writer;
+    private final int batchSize;
+    private final int flushEvery;
+
+    public PaymentExportService(MongoTemplate mongoTemplate,
+                                ObjectMapper objectMapper,
+                                @Value("${payments.export.batch-size:500}") int batchSize,
+                                @Value("${payments.export.flush-every:500}") int flushEvery) {
+        this.mongoTemplate = mongoTemplate;
+        // Each row is written to the same response stream, which is flushed in batches below
+        this.writer = objectMapper.writerFor(UserPaymentResponseDTO.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.batchSize = batchSize;
+        this.flushEvery = flushEvery;
+    }
+
+    public long exportArtisanPayments(String artistId, LocalDateTime from, LocalDateTime to, OutputStream out) {
+        Criteria criteria = where("artistId").is(artistId).and("paymentStatus").is(PaymentStatus.COMPLETED);
+        return export(withCreatedAtRange(criteria, from, to), out);
+    }
+
+    public long exportUserPayments(String userId, LocalDateTime from, LocalDateTime to, OutputStream out) {
+        return export(withCreatedAtRange(where("userId").is(userId), from, to), out);
+    }
+
+    private Criteria withCreatedAtRange(Criteria criteria, LocalDateTime from, LocalDateTime to) {
+        if (from == null && to == null) {
+            return criteria;
+        }
+        Criteria createdAt = criteria.and("createdAt");
+        if (from != null) {
+            createdAt.gte(from);
+        }
+        if (to != null) {
+            createdAt.lt(to);
+        }
+        return criteria;
+    }
+
+    private long export(Criteria criteria, OutputStream out) {
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+                .cursorBatchSize(batchSize);
+        query.fields().include("orderId", "userId", "amount", "currency", "stripPaymentIntendId",
+                "paymentStatus", "expiresAt", "createdAt");
+
+        long written = 0;
+        try (Stream<Payment> payments = mongoTemplate.stream(query, Payment.class)) {
+            for (Payment payment : (Iterable<Payment>) payments::iterator) {
+                writer.writeValue(out, PaymentServiceImpl.toUserPaymentResponse(payment));
+                out.write(NEWLINE);
+                if (++written % flushEvery == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Usually the client went away; closing the stream above releases the cursor
+            throw new UncheckedIOException("Payment export aborted after " + written + " payments", e);
+        }
+        log.debug("Exported {} payments for {}", written, criteria.getCriteriaObject());
+        return written;
+    }
+}
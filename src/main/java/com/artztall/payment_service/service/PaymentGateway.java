@@ -0,0 +1,61 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.exception.PaymentGatewayUnavailableException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.Refund;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCreateParams;
+import com.stripe.param.RefundCreateParams;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Payment provider used by the payment services, selected with {@code payments.gateway}:
+ * {@code stripe} (default) or {@code fake}. Calls return immediately; the future fails
+ * with the provider's {@link StripeException}, or with
+ * {@link PaymentGatewayUnavailableException} when the call was not attempted because the
+ * gateway is saturated or the provider did not answer in time.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Longest {@link #await} waits. Gateways time their calls out sooner; this only guards
+     * against a future that never completes.
+     */
+    Duration AWAIT_TIMEOUT = Duration.ofSeconds(60);
+
+    CompletableFuture<PaymentIntent> createPaymentIntent(PaymentIntentCreateParams params, RequestOptions options);
+
+    CompletableFuture<PaymentIntent> retrievePaymentIntent(String paymentIntentId);
+
+    CompletableFuture<Refund> createRefund(RefundCreateParams params, RequestOptions options);
+
+    /**
+     * Waits up to {@link #AWAIT_TIMEOUT} for a gateway call, rethrowing the exception it
+     * failed with.
+     */
+    static <T> T await(CompletableFuture<T> call) throws StripeException {
+        try {
+            return call.get(AWAIT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new PaymentGatewayUnavailableException("Payment provider did not respond in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayUnavailableException("Interrupted while waiting for the payment provider");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StripeException stripeException) {
+                throw stripeException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.artztall.payment_service.exception.IdempotencyKeyReusedException;
+import com.artztall.payment_service.exception.IdempotentRequestInProgressException;
+import com.artztall.payment_service.model.IdempotencyRecord;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.util.SingleFlight;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Runs a payment creation at most once per idempotency key and replays its response to
+ * retries. Completed responses are kept in {@code idempotency_keys} for 24 hours and in a
+ * local cache in front of it. A key is claimed with an IN_PROGRESS record before the
+ * call runs: concurrent duplicates on this instance wait for the call and share its
+ * response, duplicates on other instances get a conflict until it completes. Only
+ * created (PENDING) payments are stored; after a failure the key is released so the
+ * client can retry.
+ * <p>
+ * Each key is stored with a fingerprint of the request that claimed it, and a request
+ * reusing the key with a different fingerprint is rejected instead of being answered
+ * with someone else's payment. The client secret is never written to
+ * {@code idempotency_keys}, so responses replayed from there come back without it.
+ * <p>
+ * {@link #executeMono} is the non-blocking variant for the reactive pipeline. It writes
+ * through the reactive template and shares the cache and in-flight calls with
+ * {@link #execute}, so a retry on either pipeline replays the original response.
+ */
+@Slf4j
+@Service
+public class PaymentIdempotencyStore {
+
+    private record Replay(String fingerprint, PaymentResponseDTO response) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final Cache<String, Replay> responses;
+    private final SingleFlight<String, PaymentResponseDTO> requests;
+    private final Duration lease;
+    private final MeterRegistry meterRegistry;
+
+    public PaymentIdempotencyStore(MongoTemplate mongoTemplate,
+                                   ReactiveMongoTemplate reactiveMongoTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${payments.idempotency.cache.max-size:10000}") long maxSize,
+                                   @Value("${payments.idempotency.cache.ttl:10m}") Duration ttl,
+                                   @Value("${payments.idempotency.lease:1m}") Duration lease) {
+        this.mongoTemplate = mongoTemplate;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "payment-idempotency");
+        this.requests = new SingleFlight<>("payment-idempotency", meterRegistry);
+        this.lease = lease;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public PaymentResponseDTO execute(String key, String fingerprint, Supplier<PaymentResponseDTO> call) {
+        Replay cached = responses.getIfPresent(key);
+        if (cached != null) {
+            return replay(cached, fingerprint);
+        }
+        // Only identical requests share a flight, a mismatch is rejected by the claim
+        return requests.execute(flight(key, fingerprint), () -> {
+            // The previous flight for this key may have completed since the check above
+            Replay completed = responses.getIfPresent(key);
+            if (completed != null) {
+                return replay(completed, fingerprint);
+            }
+            PaymentResponseDTO stored = claim(key, fingerprint);
+            if (stored != null) {
+                count("store");
+                responses.put(key, new Replay(fingerprint, stored));
+                return stored;
+            }
+            count("executed");
+            return run(key, fingerprint, call);
+        });
+    }
+
+    /**
+     * Returns the stored response for a completed key, or null once this caller holds it.
+     */
+    private PaymentResponseDTO claim(String key, String fingerprint) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            mongoTemplate.insert(inProgress(key, fingerprint, now));
+            return null;
+        } catch (DuplicateKeyException e) {
+            // Already claimed: replay it, or take it over if its holder's lease ran out
+        }
+
+        IdempotencyRecord existing = mongoTemplate.findById(key, IdempotencyRecord.class);
+        if (existing != null) {
+            checkFingerprint(existing, fingerprint);
+            if (existing.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                return existing.getResponse();
+            }
+        }
+        IdempotencyRecord expired = mongoTemplate.findAndModify(expiredClaim(key, now),
+                new Update().set("lockedUntil", now.plus(lease)),
+                FindAndModifyOptions.options().returnNew(true),
+                IdempotencyRecord.class);
+        if (expired == null) {
+            throw conflict();
+        }
+        log.warn("Taking over idempotency key {} after its lease expired", key);
+        return null;
+    }
+
+    private PaymentResponseDTO run(String key, String fingerprint, Supplier<PaymentResponseDTO> call) {
+        PaymentResponseDTO response;
+        try {
+            response = call.get();
+        } catch (RuntimeException e) {
+            release(key);
+            throw e;
+        }
+        if (response.getPaymentStatus() != PaymentStatus.PENDING) {
+            release(key);
+            return response;
+        }
+        mongoTemplate.updateFirst(new Query(where("_id").is(key)), completion(response), IdempotencyRecord.class);
+        responses.put(key, new Replay(fingerprint, response));
+        return response;
+    }
+
+    private void release(String key) {
+        try {
+            mongoTemplate.remove(inProgressClaim(key), IdempotencyRecord.class);
+        } catch (Exception e) {
+            log.warn("Failed to release idempotency key {}, it frees up when its lease expires", key, e);
+        }
+    }
+
+    public Mono<PaymentResponseDTO> executeMono(String key, String fingerprint,
+                                                Supplier<Mono<PaymentResponseDTO>> call) {
+        return Mono.defer(() -> {
+            Replay cached = responses.getIfPresent(key);
+            if (cached != null) {
+                return Mono.fromCallable(() -> replay(cached, fingerprint));
+            }
+            return requests.executeMono(flight(key, fingerprint), () -> Mono.defer(() -> {
+                // The previous flight for this key may have completed since the check above
+                Replay completed = responses.getIfPresent(key);
+                if (completed != null) {
+                    return Mono.fromCallable(() -> replay(completed, fingerprint));
+                }
+                return claimMono(key, fingerprint)
+                        .doOnNext(stored -> {
+                            count("store");
+                            responses.put(key, new Replay(fingerprint, stored));
+                        })
+                        .switchIfEmpty(Mono.defer(() -> {
+                            count("executed");
+                            return runMono(key, fingerprint, call);
+                        }));
+            }));
+        });
+    }
+
+    /**
+     * Emits the stored response for a completed key, or completes empty once this caller
+     * holds it.
+     */
+    private Mono<PaymentResponseDTO> claimMono(String key, String fingerprint) {
+        LocalDateTime now = LocalDateTime.now();
+        return reactiveMongoTemplate.insert(inProgress(key, fingerprint, now))
+                .then(Mono.<PaymentResponseDTO>empty())
+                .onErrorResume(DuplicateKeyException.class, duplicate -> reactiveMongoTemplate
+                        .findById(key, IdempotencyRecord.class)
+                        .flatMap(existing -> {
+                            checkFingerprint(existing, fingerprint);
+                            return existing.getStatus() == IdempotencyRecord.Status.COMPLETED
+                                    ? Mono.just(existing.getResponse())
+                                    : Mono.<PaymentResponseDTO>empty();
+                        })
+                        .switchIfEmpty(Mono.defer(() -> reactiveMongoTemplate
+                                .findAndModify(expiredClaim(key, now),
+                                        new Update().set("lockedUntil", now.plus(lease)),
+                                        FindAndModifyOptions.options().returnNew(true),
+                                        IdempotencyRecord.class)
+                                .switchIfEmpty(Mono.error(this::conflict))
+                                .doOnNext(expired ->
+                                        log.warn("Taking over idempotency key {} after its lease expired", key))
+                                .then(Mono.empty()))));
+    }
+
+    private Mono<PaymentResponseDTO> runMono(String key, String fingerprint,
+                                             Supplier<Mono<PaymentResponseDTO>> call) {
+        return Mono.defer(call)
+                .onErrorResume(e -> releaseMono(key).then(Mono.error(e)))
+                .flatMap(response -> {
+                    if (response.getPaymentStatus() != PaymentStatus.PENDING) {
+                        return releaseMono(key).thenReturn(response);
+                    }
+                    return reactiveMongoTemplate
+                            .updateFirst(new Query(where("_id").is(key)), completion(response),
+                                    IdempotencyRecord.class)
+                            .doOnNext(result -> responses.put(key, new Replay(fingerprint, response)))
+                            .thenReturn(response);
+                });
+    }
+
+    private Mono<Void> releaseMono(String key) {
+        return reactiveMongoTemplate.remove(inProgressClaim(key), IdempotencyRecord.class)
+                .onErrorResume(e -> {
+                    log.warn("Failed to release idempotency key {}, it frees up when its lease expires", key, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private PaymentResponseDTO replay(Replay replay, String fingerprint) {
+        if (!replay.fingerprint().equals(fingerprint)) {
+            throw reused();
+        }
+        count("cache");
+        return replay.response();
+    }
+
+    // Records claimed before fingerprints were stored have none and match no request
+    private void checkFingerprint(IdempotencyRecord record, String fingerprint) {
+        if (!Objects.equals(record.getFingerprint(), fingerprint)) {
+            throw reused();
+        }
+    }
+
+    private IdempotencyRecord inProgress(String key, String fingerprint, LocalDateTime now) {
+        return IdempotencyRecord.builder()
+                .key(key)
+                .fingerprint(fingerprint)
+                .status(IdempotencyRecord.Status.IN_PROGRESS)
+                .lockedUntil(now.plus(lease))
+                .createdAt(now)
+                .build();
+    }
+
+    private static String flight(String key, String fingerprint) {
+        return key + "\u0000" + fingerprint;
+    }
+
+    private static Query inProgressClaim(String key) {
+        return new Query(where("_id").is(key).and("status").is(IdempotencyRecord.Status.IN_PROGRESS));
+    }
+
+    private static Query expiredClaim(String key, LocalDateTime now) {
+        return new Query(where("_id").is(key)
+                .and("status").is(IdempotencyRecord.Status.IN_PROGRESS)
+                .and("lockedUntil").lt(now));
+    }
+
+    private static Update completion(PaymentResponseDTO response) {
+        return new Update()
+                .set("status", IdempotencyRecord.Status.COMPLETED)
+                .set("response", response.toBuilder().clientSecret(null).build())
+                .unset("lockedUntil");
+    }
+
+    private IdempotentRequestInProgressException conflict() {
+        count("conflict");
+        return new IdempotentRequestInProgressException("A payment request with this key is already in progress");
+    }
+
+    private IdempotencyKeyReusedException reused() {
+        count("mismatch");
+        return new IdempotencyKeyReusedException(
+                "Idempotency key was already used for a different payment request");
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("payment.idempotency", "outcome", outcome).increment();
+    }
+}
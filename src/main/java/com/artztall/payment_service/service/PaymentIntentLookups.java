@@ -0,0 +1,64 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.repository.PaymentRepository;
+import com.artztall.payment_service.repository.ReactivePaymentRepository;
+import com.artztall.payment_service.util.SingleFlight;
+import com.stripe.model.PaymentIntent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Coalesces the lookups a confirm makes by payment intent ID, so a client retrying a
+ * confirm while the webhook for the same intent arrives makes one Stripe retrieve and
+ * one Mongo lookup between them. Shared by the blocking and reactive payment services.
+ * The flights are named {@code stripe-intents} and {@code payment-intents}.
+ * <p>
+ * Results are shared between callers and must not be modified. Transitions never use
+ * them, they go through the conditional updates of the repositories.
+ */
+@Component
+public class PaymentIntentLookups {
+
+    private final PaymentGateway paymentGateway;
+    private final PaymentRepository paymentRepository;
+    private final ReactivePaymentRepository reactivePaymentRepository;
+    private final SingleFlight<String, PaymentIntent> intents;
+    private final SingleFlight<String, Payment> payments;
+
+    public PaymentIntentLookups(PaymentGateway paymentGateway,
+                                PaymentRepository paymentRepository,
+                                ReactivePaymentRepository reactivePaymentRepository,
+                                MeterRegistry meterRegistry) {
+        this.paymentGateway = paymentGateway;
+        this.paymentRepository = paymentRepository;
+        this.reactivePaymentRepository = reactivePaymentRepository;
+        this.intents = new SingleFlight<>("stripe-intents", meterRegistry);
+        this.payments = new SingleFlight<>("payment-intents", meterRegistry);
+    }
+
+    /**
+     * Retrieves the intent from Stripe, or joins a retrieve already in flight; fails like
+     * {@link PaymentGateway#retrievePaymentIntent}.
+     */
+    public CompletableFuture<PaymentIntent> retrieveIntent(String paymentIntentId) {
+        return intents.executeMono(paymentIntentId,
+                        () -> Mono.fromFuture(() -> paymentGateway.retrievePaymentIntent(paymentIntentId)))
+                .toFuture();
+    }
+
+    /**
+     * The payment of the intent, or null if there is none.
+     */
+    public Payment findPayment(String paymentIntentId) {
+        return payments.execute(paymentIntentId, () -> paymentRepository.findByStripPaymentIntendId(paymentIntentId));
+    }
+
+    public Mono<Payment> findPaymentMono(String paymentIntentId) {
+        return payments.executeMono(paymentIntentId,
+                () -> reactivePaymentRepository.findByStripPaymentIntendId(paymentIntentId));
+    }
+}
@@ -0,0 +1,52 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.NotificationSendDTO;
+import com.artztall.payment_service.model.Payment;
+
+/**
+ * Notifications sent to the paying user as a payment moves through its lifecycle.
+ */
+final class PaymentNotifications {
+
+    private PaymentNotifications() {
+    }
+
+    static NotificationSendDTO initiated(Payment payment, long timeoutMinutes) {
+        return notification(payment, "INFO",
+                "Payment initiated for your order. Please complete the payment within " + timeoutMinutes + " minutes.",
+                "http://localhost:5173/payment/" + payment.getId());
+    }
+
+    static NotificationSendDTO succeeded(Payment payment) {
+        return notification(payment, "SUCCESS",
+                "Payment successful for order #" + payment.getOrderId(),
+                "http://localhost:5173/orders/" + payment.getOrderId());
+    }
+
+    static NotificationSendDTO failed(Payment payment) {
+        return notification(payment, "ERROR",
+                "Payment failed for order #" + payment.getOrderId(),
+                "http://localhost:5173/payment/retry/" + payment.getId());
+    }
+
+    static NotificationSendDTO refunded(Payment payment) {
+        return notification(payment, "INFO",
+                "Refund processed for order #" + payment.getOrderId(),
+                "http://localhost:5173/orders/" + payment.getOrderId());
+    }
+
+    static NotificationSendDTO expired(Payment payment) {
+        return notification(payment, "WARNING",
+                "Payment expired for order #" + payment.getOrderId(),
+                "http://localhost:5173/payment/retry/" + payment.getId());
+    }
+
+    private static NotificationSendDTO notification(Payment payment, String type, String message, String actionUrl) {
+        NotificationSendDTO notification = new NotificationSendDTO();
+        notification.setUserId(payment.getUserId());
+        notification.setType(type);
+        notification.setMessage(message);
+        notification.setActionUrl(actionUrl);
+        return notification;
+    }
+}
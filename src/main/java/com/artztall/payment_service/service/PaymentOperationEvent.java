@@ -0,0 +1,33 @@
+package com.artztall.payment_service.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a whole payment operation, e.g. createPayment or an expiry sweep. Its
+ * duration spans all of the operation's {@link PaymentStageEvent}s.
+ */
+@Name(PaymentOperationEvent.NAME)
+@Label("Payment Operation")
+@Category({"ArtzTall", "Payments"})
+@Description("A payment operation such as create, confirm, refund or an expiry sweep")
+@StackTrace(false)
+class PaymentOperationEvent extends jdk.jfr.Event {
+
+    static final String NAME = "com.artztall.payment.Operation";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Payment ID")
+    String paymentId;
+
+    @Label("Order ID")
+    String orderId;
+
+    @Label("Outcome")
+    String outcome;
+}
@@ -1,5 +1,6 @@
 package com.artztall.payment_service.service;
 
+import com.artztall.payment_service.dto.CursorPageDTO;
 import com.artztall.payment_service.dto.PaymentRequestDTO;
 import com.artztall.payment_service.dto.PaymentResponseDTO;
 import com.artztall.payment_service.dto.UserPaymentResponseDTO;
@@ -7,10 +8,13 @@ import com.artztall.payment_service.dto.UserPaymentResponseDTO;
 import java.util.List;
 
 public interface PaymentService {
-    PaymentResponseDTO createPayment(PaymentRequestDTO paymentRequest);
+    PaymentResponseDTO createPayment(PaymentRequestDTO paymentRequest, String idempotencyKey);
     PaymentResponseDTO confirmPayment(String paymentIntentId);
+    PaymentResponseDTO completePayment(String paymentIntentId);
+    PaymentResponseDTO failPayment(String paymentIntentId);
     PaymentResponseDTO refundPayment(String paymentId);
     PaymentResponseDTO getPaymentStatus(String paymentId);
     List<UserPaymentResponseDTO> getCompletedPaymentsForArtisan(String artisansId);
     List<UserPaymentResponseDTO> findByUserId(String userId);
+    CursorPageDTO<UserPaymentResponseDTO> findByUserId(String userId, String cursor, int size);
 }
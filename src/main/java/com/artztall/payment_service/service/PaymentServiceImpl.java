@@ -1,28 +1,37 @@
 package com.artztall.payment_service.service;
 
 import com.artztall.payment_service.dto.*;
+import com.artztall.payment_service.exception.PaymentGatewayUnavailableException;
 import com.artztall.payment_service.exception.PaymentNotFoundException;
 import com.artztall.payment_service.exception.PaymentProcessingException;
 import com.artztall.payment_service.model.Payment;
 import com.artztall.payment_service.model.PaymentStatus;
 import com.artztall.payment_service.model.OrderStatus;
 import com.artztall.payment_service.repository.PaymentRepository;
+import com.artztall.payment_service.util.PaymentCursor;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
-import com.stripe.model.Refund;
 import com.stripe.param.PaymentIntentCreateParams;
 import com.stripe.param.RefundCreateParams;
 import com.stripe.net.RequestOptions;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -31,59 +40,84 @@ import java.util.stream.Collectors;
 public class PaymentServiceImpl implements PaymentService {
     private final PaymentRepository paymentRepository;
     private final OrderClientService orderClientService;
-    private final ProductClientService productClientService;
-    private final NotificationClientService notificationClientService;
-
-    private static final long PAYMENT_TIMEOUT_MINUTES = 15;
+    private final ProductReleaseService productReleaseService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final PaymentExpirySweeper paymentExpirySweeper;
+    private final ExpiryPartitionCoordinator expiryPartitionCoordinator;
+    private final PaymentExpiryWheel paymentExpiryWheel;
+    private final PaymentGateway paymentGateway;
+    private final PaymentIntentLookups paymentIntentLookups;
+    private final PaymentIdempotencyStore paymentIdempotencyStore;
+    private final PaymentStatusCache paymentStatusCache;
+    private final PaymentStageTimer paymentStageTimer;
+    private final ArtisanEarningsService artisanEarningsService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    static final long PAYMENT_TIMEOUT_MINUTES = 15;
+    private static final int MAX_PAGE_SIZE = 100;
+    // Stripe rejects longer idempotency keys
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
 
     @Override
     @Transactional
-    public PaymentResponseDTO createPayment(PaymentRequestDTO paymentRequest) {
-        try {
-            log.info("Processing payment for order: {}", paymentRequest.getOrderId());
-            OrderResponseDTO orderResponseDTO = orderClientService.getOrder(paymentRequest.getOrderId());
-
-            validatePaymentRequest(paymentRequest);
+    public PaymentResponseDTO createPayment(PaymentRequestDTO paymentRequest, String idempotencyKey) {
+        validatePaymentRequest(paymentRequest);
+        String key = idempotencyKey(paymentRequest, idempotencyKey);
+        return traced("create", paymentRequest.getOrderId(), trace -> {
+            AtomicBoolean created = new AtomicBoolean();
+            PaymentResponseDTO response = paymentIdempotencyStore.execute(key, requestFingerprint(paymentRequest),
+                    () -> {
+                        created.set(true);
+                        return createPendingPayment(paymentRequest, key, trace);
+                    });
+            return created.get() ? response : withClientSecret(response, trace);
+        });
+    }
 
-            // Create parameters for Stripe
-            PaymentIntentCreateParams createParams = PaymentIntentCreateParams.builder()
-                    .setAmount(orderResponseDTO.getTotalAmount().longValue()*100)
-                    .setCurrency(paymentRequest.getCurrency())
-                    .setPaymentMethod(paymentRequest.getPaymentMethodId())
-                    .setConfirmationMethod(PaymentIntentCreateParams.ConfirmationMethod.AUTOMATIC)
-                    .setSetupFutureUsage(PaymentIntentCreateParams.SetupFutureUsage.OFF_SESSION)
-                    .build();
+    /**
+     * Responses replayed from {@code idempotency_keys} are stored without the client
+     * secret, so it is read back from the payment's intent.
+     */
+    private PaymentResponseDTO withClientSecret(PaymentResponseDTO response, PaymentStageTimer.Trace trace) {
+        if (!needsClientSecret(response)) {
+            return response;
+        }
+        Payment payment = trace.stage("payment_lookup", () -> paymentRepository.findById(response.getPaymentId()))
+                .orElseThrow(() -> new PaymentNotFoundException("Payment not found: " + response.getPaymentId()));
+        try {
+            PaymentIntent paymentIntent = trace.stage("stripe_retrieve_intent", () -> PaymentGateway.await(
+                    paymentIntentLookups.retrieveIntent(payment.getStripPaymentIntendId())));
+            return response.toBuilder().clientSecret(paymentIntent.getClientSecret()).build();
+        } catch (StripeException e) {
+            log.error("Failed to read back the client secret of payment: {}", payment.getId(), e);
+            throw new PaymentGatewayUnavailableException("Payment provider is unavailable, try again shortly");
+        }
+    }
 
-            // Create RequestOptions with idempotency key
-            RequestOptions requestOptions = RequestOptions.builder()
-                    .setIdempotencyKey(paymentRequest.getOrderId())
-                    .build();
+    private PaymentResponseDTO createPendingPayment(PaymentRequestDTO paymentRequest, String idempotencyKey,
+                                                    PaymentStageTimer.Trace trace) {
+        try {
+            log.info("Processing payment for order: {}", paymentRequest.getOrderId());
+            trace.identify(null, paymentRequest.getOrderId());
+            OrderResponseDTO orderResponseDTO = trace.stage("order_lookup",
+                    () -> orderClientService.getOrder(paymentRequest.getOrderId()));
 
-            // Create PaymentIntent with proper RequestOptions
-            PaymentIntent paymentIntent = PaymentIntent.create(createParams, requestOptions);
+            // Create PaymentIntent with the same idempotency key, so Stripe also returns the original intent
+            PaymentIntent paymentIntent = trace.stage("stripe_create_intent",
+                    () -> PaymentGateway.await(paymentGateway.createPaymentIntent(
+                            paymentIntentParams(paymentRequest, orderResponseDTO),
+                            paymentIntentOptions(idempotencyKey))));
 
-            Payment payment = Payment.builder()
-                    .orderId(paymentRequest.getOrderId())
-                    .userId(paymentRequest.getUserId())
-                    .amount(orderResponseDTO.getTotalAmount().longValue())
-                    .currency(paymentRequest.getCurrency())
-                    .stripPaymentIntendId(paymentIntent.getId())
-                    .paymentStatus(PaymentStatus.PENDING)
-                    .createdAt(LocalDateTime.now())
-                    .updatedAt(LocalDateTime.now())
-                    .expiresAt(LocalDateTime.now().plusMinutes(PAYMENT_TIMEOUT_MINUTES))
-                    .build();
+            Payment pending = newPendingPayment(paymentRequest, orderResponseDTO, paymentIntent);
 
-            payment = paymentRepository.save(payment);
+            Payment payment = trace.stage("save", () -> paymentRepository.save(pending));
+            trace.identify(payment.getId(), payment.getOrderId());
+            paymentExpiryWheel.register(payment);
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment));
 
             // Send notification for payment creation
-            NotificationSendDTO notification = new NotificationSendDTO();
-            notification.setUserId(payment.getUserId());
-            notification.setMessage("Payment initiated for your order. Please complete the payment within "
-                    + PAYMENT_TIMEOUT_MINUTES + " minutes.");
-            notification.setType("INFO");
-            notification.setActionUrl("http://localhost:5173/payment/" + payment.getId());
-            notificationClientService.sendNotification(notification);
+            trace.run("notification", () -> notificationDispatcher.dispatch(
+                    PaymentNotifications.initiated(payment, PAYMENT_TIMEOUT_MINUTES)));
 
             log.info("Payment created successfully for order: {}", payment.getOrderId());
 
@@ -98,7 +132,8 @@ public class PaymentServiceImpl implements PaymentService {
 
         } catch (StripeException e) {
             log.error("Stripe payment processing failed for order: {}", paymentRequest.getOrderId(), e);
-            releaseProductsForOrder(paymentRequest.getOrderId());
+            trace.run("product_release",
+                    () -> productReleaseService.releaseProductsForOrder(paymentRequest.getOrderId()));
             return PaymentResponseDTO.builder()
                     .paymentStatus(PaymentStatus.FAILED)
                     .message(e.getMessage())
@@ -106,101 +141,146 @@ public class PaymentServiceImpl implements PaymentService {
         }
     }
 
+    /**
+     * Checks the intent with Stripe before changing the payment, so a client calling this
+     * endpoint cannot complete a payment Stripe has not charged. The Stripe webhook drives
+     * the same transitions without the client; whichever arrives second is a no-op.
+     */
     @Override
-    @Transactional
     public PaymentResponseDTO confirmPayment(String paymentIntentId) {
+        return traced("confirm", paymentIntentId, trace -> confirm(paymentIntentId, trace));
+    }
+
+    private PaymentResponseDTO confirm(String paymentIntentId, PaymentStageTimer.Trace trace) {
         try {
             log.info("Confirming payment for paymentIntentId: {}", paymentIntentId);
+            PaymentIntent paymentIntent = trace.stage("stripe_retrieve_intent",
+                    () -> PaymentGateway.await(paymentIntentLookups.retrieveIntent(paymentIntentId)));
+
+            switch (paymentIntent.getStatus()) {
+                case "succeeded":
+                    return complete(paymentIntentId, trace);
+                case "canceled":
+                case "requires_payment_method":
+                    return fail(paymentIntentId, trace);
+                default:
+                    return PaymentResponseDTO.builder()
+                            .paymentStatus(PaymentStatus.PENDING)
+                            .message("Payment is still being processed: " + paymentIntent.getStatus())
+                            .build();
+            }
+        } catch (PaymentNotFoundException | PaymentGatewayUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Payment confirmation failed for paymentIntentId: {}", paymentIntentId, e);
+            return PaymentResponseDTO.builder()
+                    .paymentStatus(PaymentStatus.FAILED)
+                    .message("Payment confirmation failed: " + e.getMessage())
+                    .build();
+        }
+    }
 
+    @Override
+    @Transactional
+    public PaymentResponseDTO completePayment(String paymentIntentId) {
+        return traced("complete", paymentIntentId, trace -> complete(paymentIntentId, trace));
+    }
 
-            Payment payment = paymentRepository.findByStripPaymentIntendId(paymentIntentId);
-            if (payment == null) {
-                throw new PaymentNotFoundException("Payment not found for intent: " + paymentIntentId);
+    private PaymentResponseDTO complete(String paymentIntentId, PaymentStageTimer.Trace trace) {
+        Payment payment = trace.stage("save", () -> paymentRepository.transitionByIntent(
+                paymentIntentId, PaymentStatus.PENDING, PaymentStatus.COMPLETED, LocalDateTime.now()));
+        if (payment == null) {
+            Payment current = currentPayment(paymentIntentId, trace);
+            if (current.getPaymentStatus() != PaymentStatus.COMPLETED) {
+                log.warn("Stripe reported success for {} payment {}", current.getPaymentStatus(), current.getId());
             }
+            return statusResponse(current);
+        }
+        trace.identify(payment.getId(), payment.getOrderId());
+        paymentExpiryWheel.cancel(payment.getId());
+        eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment));
+        trace.run("earnings_rollup", () -> artisanEarningsService.record(payment));
 
-            // Update payment status
-            payment.setPaymentStatus(PaymentStatus.COMPLETED);
-            payment.setUpdatedAt(LocalDateTime.now());
-            payment = paymentRepository.save(payment);
+        // Update order status to confirmed
+        trace.run("order_update",
+                () -> orderClientService.updateOrderStatus(payment.getOrderId(), OrderStatus.CONFIRMED));
 
-            // Update order status to confirmed
-            orderClientService.updateOrderStatus(payment.getOrderId(), OrderStatus.CONFIRMED);
+        // Send success notification
+        trace.run("notification", () -> notificationDispatcher.dispatch(PaymentNotifications.succeeded(payment)));
 
-            // Send success notification
-            NotificationSendDTO notification = new NotificationSendDTO();
-            notification.setUserId(payment.getUserId());
-            notification.setType("SUCCESS");
-            notification.setMessage("Payment successful for order #" + payment.getOrderId());
-            notification.setActionUrl("http://localhost:5173/orders/" + payment.getOrderId());
-            notificationClientService.sendNotification(notification);
+        return PaymentResponseDTO.builder()
+                .paymentId(payment.getId())
+                .paymentStatus(PaymentStatus.COMPLETED)
+                .message("Payment confirmed successfully")
+                .build();
+    }
 
-            return PaymentResponseDTO.builder()
-                    .paymentId(payment.getId())
-                    .paymentStatus(PaymentStatus.COMPLETED)
-                    .message("Payment confirmed successfully")
-                    .build();
+    @Override
+    @Transactional
+    public PaymentResponseDTO failPayment(String paymentIntentId) {
+        return traced("fail", paymentIntentId, trace -> fail(paymentIntentId, trace));
+    }
 
-        } catch (Exception e) {
-            log.error("Payment confirmation failed for paymentIntentId: {}", paymentIntentId, e);
+    private PaymentResponseDTO fail(String paymentIntentId, PaymentStageTimer.Trace trace) {
+        Payment payment = trace.stage("save", () -> paymentRepository.transitionByIntent(
+                paymentIntentId, PaymentStatus.PENDING, PaymentStatus.FAILED, LocalDateTime.now()));
+        if (payment == null) {
+            return statusResponse(currentPayment(paymentIntentId, trace));
+        }
+        trace.identify(payment.getId(), payment.getOrderId());
+        paymentExpiryWheel.cancel(payment.getId());
+        eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment));
 
-            Payment payment = paymentRepository.findByStripPaymentIntendId(paymentIntentId);
-            if (payment != null) {
-                releaseProductsForOrder(payment.getOrderId());
-
-                // Send failure notification
-                NotificationSendDTO notification = new NotificationSendDTO();
-                notification.setUserId(payment.getUserId());
-                notification.setType("ERROR");
-                notification.setMessage("Payment failed for order #" + payment.getOrderId());
-                notification.setActionUrl("http://localhost:5173/payment/retry/" + payment.getId());
-                notificationClientService.sendNotification(notification);
-            }
+        trace.run("product_release", () -> productReleaseService.releaseProductsForOrder(payment.getOrderId()));
 
-            return PaymentResponseDTO.builder()
-                    .paymentStatus(PaymentStatus.FAILED)
-                    .message("Payment confirmation failed: " + e.getMessage())
-                    .build();
-        }
+        // Send failure notification
+        trace.run("notification", () -> notificationDispatcher.dispatch(PaymentNotifications.failed(payment)));
+
+        return PaymentResponseDTO.builder()
+                .paymentId(payment.getId())
+                .paymentStatus(PaymentStatus.FAILED)
+                .message("Payment failed")
+                .build();
     }
 
     @Override
     @Transactional
     public PaymentResponseDTO refundPayment(String paymentId) {
+        return traced("refund", paymentId, trace -> refund(paymentId, trace));
+    }
+
+    private PaymentResponseDTO refund(String paymentId, PaymentStageTimer.Trace trace) {
         try {
             log.info("Processing refund for payment: {}", paymentId);
+            trace.identify(paymentId, null);
 
-            Payment payment = paymentRepository.findById(paymentId)
+            Payment completed = trace.stage("payment_lookup", () -> paymentRepository.findById(paymentId))
                     .orElseThrow(() -> new PaymentNotFoundException("Payment not found: " + paymentId));
+            trace.identify(paymentId, completed.getOrderId());
 
-            if (payment.getPaymentStatus() != PaymentStatus.COMPLETED) {
+            if (completed.getPaymentStatus() != PaymentStatus.COMPLETED) {
                 throw new PaymentProcessingException("Only completed payments can be refunded");
             }
 
-            RefundCreateParams refundParams = RefundCreateParams.builder()
-                    .setPaymentIntent(payment.getStripPaymentIntendId())
-                    .build();
-
-            RequestOptions requestOptions = RequestOptions.builder()
-                    .setIdempotencyKey("refund_" + payment.getId())
-                    .build();
-
-            Refund.create(refundParams, requestOptions);
+            trace.stage("stripe_refund", () -> PaymentGateway.await(
+                    paymentGateway.createRefund(refundParams(completed), refundOptions(completed))));
 
-            // Update payment status
-            payment.setPaymentStatus(PaymentStatus.REFUNDED);
-            payment.setUpdatedAt(LocalDateTime.now());
-            payment = paymentRepository.save(payment);
+            // Stripe refunds once per payment, only the caller that moves it to REFUNDED releases
+            Payment payment = trace.stage("save", () -> paymentRepository.transition(
+                    paymentId, PaymentStatus.COMPLETED, PaymentStatus.REFUNDED, LocalDateTime.now()));
+            if (payment == null) {
+                Payment current = trace.stage("payment_lookup", () -> paymentRepository.findById(paymentId))
+                        .orElseThrow(() -> new PaymentNotFoundException("Payment not found: " + paymentId));
+                return statusResponse(current);
+            }
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment));
+            trace.run("earnings_rollup", () -> artisanEarningsService.record(payment));
 
             // Release products back to inventory
-            releaseProductsForOrder(payment.getOrderId());
+            trace.run("product_release", () -> productReleaseService.releaseProductsForOrder(payment.getOrderId()));
 
             // Send refund notification
-            NotificationSendDTO notification = new NotificationSendDTO();
-            notification.setUserId(payment.getUserId());
-            notification.setType("INFO");
-            notification.setMessage("Refund processed for order #" + payment.getOrderId());
-            notification.setActionUrl("http://localhost:5173/orders/" + payment.getOrderId());
-            notificationClientService.sendNotification(notification);
+            trace.run("notification", () -> notificationDispatcher.dispatch(PaymentNotifications.refunded(payment)));
 
             return PaymentResponseDTO.builder()
                     .paymentId(payment.getId())
@@ -217,123 +297,198 @@ public class PaymentServiceImpl implements PaymentService {
         }
     }
 
+    /**
+     * Runs an operation under a stage trace whose outcome is the resulting payment status,
+     * or {@code error} if the operation threw.
+     */
+    private PaymentResponseDTO traced(String operation, String subject,
+                                      Function<PaymentStageTimer.Trace, PaymentResponseDTO> body) {
+        PaymentStageTimer.Trace trace = paymentStageTimer.start(operation, subject);
+        String outcome = "error";
+        try {
+            PaymentResponseDTO response = body.apply(trace);
+            outcome = response.getPaymentStatus() == null
+                    ? "unknown"
+                    : response.getPaymentStatus().name().toLowerCase();
+            return response;
+        } finally {
+            trace.finish(outcome);
+        }
+    }
+
     @Override
     public PaymentResponseDTO getPaymentStatus(String paymentId) {
-        Payment payment = paymentRepository.findById(paymentId)
-                .orElseThrow(() -> new PaymentNotFoundException("Payment not found: " + paymentId));
-
-        return PaymentResponseDTO.builder()
-                .paymentId(payment.getId())
-                .paymentStatus(payment.getPaymentStatus())
-                .expiresAt(payment.getExpiresAt())
-                .message("Payment status: " + payment.getPaymentStatus())
-                .build();
+        // Served from the near-cache while clients poll; Mongo is only read on a miss
+        return paymentStatusCache.get(paymentId, id -> PaymentStatusCache.toStatusResponse(PaymentStatusChangedEvent.of(
+                paymentRepository.findById(id)
+                        .orElseThrow(() -> new PaymentNotFoundException("Payment not found: " + id)))));
     }
 
-    @Scheduled(fixedRate = 60000)
-    @Transactional
+    @Scheduled(fixedDelayString = "${payments.expiry.sweep-interval-ms:300000}")
     public void handleExpiredPayments() {
-        LocalDateTime now = LocalDateTime.now();
-        List<Payment> expiredPayments = paymentRepository.findByPaymentStatusAndExpiresAtBefore(
-                PaymentStatus.PENDING,
-                now
-        );
-
-        for (Payment payment : expiredPayments) {
-            try {
-                // Release products back to inventory
-                releaseProductsForOrder(payment.getOrderId());
-
-                // Update payment status
-                payment.setPaymentStatus(PaymentStatus.EXPIRED);
-                payment.setUpdatedAt(now);
-                paymentRepository.save(payment);
-
-                // Update order status
-                orderClientService.updateOrderStatus(payment.getOrderId(), OrderStatus.EXPIRED);
-
-                // Send expiration notification
-                NotificationSendDTO notification = new NotificationSendDTO();
-                notification.setUserId(payment.getUserId());
-                notification.setType("WARNING");
-                notification.setMessage("Payment expired for order #" + payment.getOrderId());
-                notification.setActionUrl("http://localhost:5173/payment/retry/" + payment.getId());
-                notificationClientService.sendNotification(notification);
-
-            } catch (Exception e) {
-                log.error("Error handling expired payment: {}", payment.getId(), e);
-            }
+        Set<Integer> partitions = expiryPartitionCoordinator.ownedPartitions();
+        if (partitions.isEmpty()) {
+            log.debug("No expiry partitions leased by this instance, skipping sweep");
+            return;
         }
+        paymentExpirySweeper.sweep(LocalDateTime.now(), partitions);
     }
 
 
     public List<UserPaymentResponseDTO> getCompletedPaymentsForArtisan(String artisanId) {
-        // Get orders for the artisan
-        List<OrderResponseDTO> artisanOrders = orderClientService.getArtisansOrders(artisanId);
-
-        // Filter and collect completed payments
-        return artisanOrders.stream()
-                .map(order -> {
-                    try {
-                        // Find payment by order ID and check if it's completed
-                        Payment payment = paymentRepository.findByOrderId(order.getId());
-                        if (payment != null && payment.getPaymentStatus() == PaymentStatus.COMPLETED) {
-                            return UserPaymentResponseDTO.builder()
-                                    .id(payment.getId())
-                                    .paymentStatus(payment.getPaymentStatus())
-                                    .amount(payment.getAmount())
-                                    .stripPaymentIntendId(payment.getStripPaymentIntendId())
-                                    .orderId(payment.getOrderId())
-                                    .userId(payment.getUserId())
-                                    .createdAt(LocalDateTime.now())
-                                    .currency(payment.getCurrency())
-                                    .expiresAt(payment.getExpiresAt())
-                                    .build();
-                        }
-                        return null;
-                    } catch (Exception e) {
-                        log.error("Error finding payment for order: {}", order.getId(), e);
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
+        return paymentRepository.findByArtistIdAndPaymentStatusOrderByCreatedAtDesc(artisanId, PaymentStatus.COMPLETED)
+                .stream()
+                .map(PaymentServiceImpl::toUserPaymentResponse)
                 .collect(Collectors.toList());
     }
 
     public List<UserPaymentResponseDTO> findByUserId(String userId) {
         List<Payment> payments = paymentRepository.findByUserId(userId);
         return payments.stream()
-                .map(payment -> UserPaymentResponseDTO.builder()
-                        .id(payment.getId())
-                        .paymentStatus(payment.getPaymentStatus())
-                        .amount(payment.getAmount())
-                        .stripPaymentIntendId(payment.getStripPaymentIntendId())
-                        .orderId(payment.getOrderId())
-                        .userId(payment.getUserId())
-                        .createdAt(payment.getCreatedAt())
-                        .currency(payment.getCurrency())
-                        .expiresAt(payment.getExpiresAt())
-                        .build())
+                .map(PaymentServiceImpl::toUserPaymentResponse)
                 .collect(Collectors.toList());
     }
 
-    private void releaseProductsForOrder(String orderId) {
-        try {
-            OrderResponseDTO order = orderClientService.getOrder(orderId);
-            OrderItemResponseDTO item = order.getItem();
-                try {
-                    productClientService.releaseProduct(item.getProductId());
-                } catch (Exception e) {
-                    log.error("Failed to release product {} for order {}",
-                            item.getProductId(), orderId, e);
-                }
+    public CursorPageDTO<UserPaymentResponseDTO> findByUserId(String userId, String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        // Fetch one extra payment to know whether there is a next page
+        Limit limit = Limit.of(pageSize + 1);
+        List<Payment> payments;
+        if (StringUtils.hasText(cursor)) {
+            PaymentCursor position = PaymentCursor.decode(cursor);
+            payments = paymentRepository.findUserPaymentPageAfter(userId, position.createdAt(), position.id(), limit);
+        } else {
+            payments = paymentRepository.findUserPaymentPage(userId, limit);
+        }
 
-        } catch (Exception e) {
-            log.error("Failed to release products for order {}", orderId, e);
+        boolean hasMore = payments.size() > pageSize;
+        List<Payment> page = hasMore ? payments.subList(0, pageSize) : payments;
+        return CursorPageDTO.<UserPaymentResponseDTO>builder()
+                .items(page.stream().map(PaymentServiceImpl::toUserPaymentResponse).collect(Collectors.toList()))
+                .nextCursor(hasMore ? PaymentCursor.after(page.get(page.size() - 1)).encode() : null)
+                .build();
+    }
+
+    static PaymentResponseDTO statusResponse(Payment payment) {
+        return PaymentResponseDTO.builder()
+                .paymentId(payment.getId())
+                .paymentStatus(payment.getPaymentStatus())
+                .message("Payment status: " + payment.getPaymentStatus())
+                .build();
+    }
+
+    /**
+     * The payment of an intent that was no longer PENDING, read after the conditional
+     * update so it reflects whichever transition won.
+     */
+    private Payment currentPayment(String paymentIntentId, PaymentStageTimer.Trace trace) {
+        Payment payment = trace.stage("payment_lookup",
+                () -> paymentIntentLookups.findPayment(paymentIntentId));
+        if (payment == null) {
+            throw new PaymentNotFoundException("Payment not found for intent: " + paymentIntentId);
         }
+        trace.identify(payment.getId(), payment.getOrderId());
+        return payment;
+    }
+
+    static UserPaymentResponseDTO toUserPaymentResponse(Payment payment) {
+        return UserPaymentResponseDTO.builder()
+                .id(payment.getId())
+                .paymentStatus(payment.getPaymentStatus())
+                .amount(payment.getAmount())
+                .stripPaymentIntendId(payment.getStripPaymentIntendId())
+                .orderId(payment.getOrderId())
+                .userId(payment.getUserId())
+                .createdAt(payment.getCreatedAt())
+                .currency(payment.getCurrency())
+                .expiresAt(payment.getExpiresAt())
+                .build();
+    }
+
+    static PaymentIntentCreateParams paymentIntentParams(PaymentRequestDTO request, OrderResponseDTO order) {
+        return PaymentIntentCreateParams.builder()
+                .setAmount(order.getTotalAmount().longValue()*100)
+                .setCurrency(request.getCurrency())
+                .setPaymentMethod(request.getPaymentMethodId())
+                .setConfirmationMethod(PaymentIntentCreateParams.ConfirmationMethod.AUTOMATIC)
+                .setSetupFutureUsage(PaymentIntentCreateParams.SetupFutureUsage.OFF_SESSION)
+                .build();
+    }
+
+    static RequestOptions paymentIntentOptions(String idempotencyKey) {
+        return RequestOptions.builder()
+                .setIdempotencyKey(idempotencyKey)
+                .build();
+    }
+
+    /**
+     * The order and user IDs, qualified by the client's key when it sends one so that a
+     * new attempt for the same order, e.g. with another card, is not answered with the
+     * first one.
+     */
+    static String idempotencyKey(PaymentRequestDTO request, String clientKey) {
+        String key = request.getOrderId() + ":" + request.getUserId();
+        if (!StringUtils.hasText(clientKey)) {
+            return key;
+        }
+        key = key + ":" + clientKey;
+        if (key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key is too long");
+        }
+        return key;
+    }
+
+    /**
+     * Hash of the request fields a replay must match, so a reused key is not answered
+     * with a payment that was created for a different request.
+     */
+    static String requestFingerprint(PaymentRequestDTO request) {
+        String fields = String.join("\u0000", request.getOrderId(), request.getUserId(), request.getCurrency(),
+                request.getPaymentMethodId());
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(fields.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Only for responses this call did not create itself
+    static boolean needsClientSecret(PaymentResponseDTO response) {
+        return response.getPaymentStatus() == PaymentStatus.PENDING && response.getClientSecret() == null
+                && response.getPaymentId() != null;
+    }
+
+    static Payment newPendingPayment(PaymentRequestDTO request, OrderResponseDTO order, PaymentIntent paymentIntent) {
+        LocalDateTime now = LocalDateTime.now();
+        return Payment.builder()
+                .orderId(request.getOrderId())
+                .userId(request.getUserId())
+                .artistId(order.getItem() != null ? order.getItem().getArtistId() : null)
+                .amount(order.getTotalAmount().longValue())
+                .currency(request.getCurrency())
+                .stripPaymentIntendId(paymentIntent.getId())
+                .paymentStatus(PaymentStatus.PENDING)
+                .createdAt(now)
+                .updatedAt(now)
+                .expiresAt(now.plusMinutes(PAYMENT_TIMEOUT_MINUTES))
+                .sweepPartition(ExpiryPartitionCoordinator.partitionOf(request.getOrderId()))
+                .build();
+    }
+
+    static RefundCreateParams refundParams(Payment payment) {
+        return RefundCreateParams.builder()
+                .setPaymentIntent(payment.getStripPaymentIntendId())
+                .build();
+    }
+
+    static RequestOptions refundOptions(Payment payment) {
+        return RequestOptions.builder()
+                .setIdempotencyKey("refund_" + payment.getId())
+                .build();
     }
 
-    private void validatePaymentRequest(PaymentRequestDTO request) {
+    static void validatePaymentRequest(PaymentRequestDTO request) {
         if (!StringUtils.hasText(request.getCurrency())) {
             throw new IllegalArgumentException("Currency is required");
         }
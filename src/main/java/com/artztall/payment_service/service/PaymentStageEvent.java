@@ -0,0 +1,36 @@
+package com.artztall.payment_service.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one stage of a payment operation, e.g. the Stripe call of createPayment
+ * or the product release of an expired payment. Its duration is the stage's.
+ */
+@Name(PaymentStageEvent.NAME)
+@Label("Payment Stage")
+@Category({"ArtzTall", "Payments"})
+@Description("One stage of a payment operation, such as a downstream or Stripe call")
+@StackTrace(false)
+class PaymentStageEvent extends jdk.jfr.Event {
+
+    static final String NAME = "com.artztall.payment.Stage";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Payment ID")
+    String paymentId;
+
+    @Label("Order ID")
+    String orderId;
+
+    @Label("Outcome")
+    String outcome;
+}
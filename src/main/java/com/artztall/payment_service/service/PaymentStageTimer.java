@@ -0,0 +1,188 @@
+package com.artztall.payment_service.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the stages of a payment operation, e.g. the order lookup, Stripe call and save of
+ * createPayment. Each stage is recorded as {@code payment.stage.duration} tagged with
+ * operation, stage and outcome, and each operation as {@code payment.operation.duration};
+ * both publish percentile histograms. An operation slower than its threshold is logged
+ * with its per-stage breakdown. Stages and operations are also emitted as JFR events,
+ * see {@link PaymentStageEvent} and {@link PaymentOperationEvent}.
+ */
+@Slf4j
+@Component
+public class PaymentStageTimer {
+
+    @FunctionalInterface
+    public interface StageCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @FunctionalInterface
+    public interface StageRun<E extends Exception> {
+        void run() throws E;
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Duration slowThreshold;
+
+    public PaymentStageTimer(MeterRegistry meterRegistry,
+                             @Value("${payments.slow-request.threshold:2s}") Duration slowThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.slowThreshold = slowThreshold;
+    }
+
+    public Trace start(String operation, String subject) {
+        return start(operation, subject, slowThreshold);
+    }
+
+    public Trace start(String operation, String subject, Duration slowThreshold) {
+        return new Trace(operation, subject, slowThreshold);
+    }
+
+    /**
+     * One run of an operation. Stages may be timed from several threads, as the expiry
+     * sweep does; a stage run more than once adds up in the breakdown.
+     */
+    public final class Trace {
+
+        private final String operation;
+        private final String subject;
+        private final Duration threshold;
+        private final long start;
+        private final Map<String, long[]> stages;
+        private final PaymentOperationEvent event;
+        private volatile String paymentId;
+        private volatile String orderId;
+
+        private Trace(String operation, String subject, Duration threshold) {
+            this.operation = operation;
+            this.subject = subject;
+            this.threshold = threshold;
+            this.start = System.nanoTime();
+            this.stages = new LinkedHashMap<>();
+            this.event = new PaymentOperationEvent();
+            event.begin();
+        }
+
+        private Trace(Trace operation, String paymentId, String orderId) {
+            this.operation = operation.operation;
+            this.subject = operation.subject;
+            this.threshold = operation.threshold;
+            this.start = operation.start;
+            this.stages = operation.stages;
+            this.event = operation.event;
+            this.paymentId = paymentId;
+            this.orderId = orderId;
+        }
+
+        /**
+         * Sets the payment the following stages and the JFR events of this trace refer to.
+         */
+        public void identify(String paymentId, String orderId) {
+            this.paymentId = paymentId;
+            this.orderId = orderId;
+        }
+
+        /**
+         * A view of this trace for one of the payments an operation handles, such as a
+         * sweep's; its stages count towards this trace and are tagged with the payment.
+         */
+        public Trace forPayment(String paymentId, String orderId) {
+            return new Trace(this, paymentId, orderId);
+        }
+
+        public <T, E extends Exception> T stage(String stage, StageCall<T, E> call) throws E {
+            PaymentStageEvent stageEvent = new PaymentStageEvent();
+            stageEvent.begin();
+            long stageStart = System.nanoTime();
+            String outcome = "error";
+            try {
+                T result = call.call();
+                outcome = "success";
+                return result;
+            } finally {
+                record(stage, outcome, System.nanoTime() - stageStart);
+                stageEvent.end();
+                if (stageEvent.shouldCommit()) {
+                    stageEvent.operation = operation;
+                    stageEvent.stage = stage;
+                    stageEvent.paymentId = paymentId;
+                    stageEvent.orderId = orderId;
+                    stageEvent.outcome = outcome;
+                    stageEvent.commit();
+                }
+            }
+        }
+
+        public <E extends Exception> void run(String stage, StageRun<E> run) throws E {
+            stage(stage, () -> {
+                run.run();
+                return null;
+            });
+        }
+
+        /**
+         * Records the whole operation and logs the breakdown if it was slow.
+         */
+        public void finish(String outcome) {
+            long elapsed = System.nanoTime() - start;
+            timer("payment.operation.duration", "Duration of a payment operation")
+                    .tags("operation", operation, "outcome", outcome)
+                    .register(meterRegistry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.paymentId = paymentId;
+                event.orderId = orderId;
+                event.outcome = outcome;
+                event.commit();
+            }
+            if (elapsed >= threshold.toNanos()) {
+                log.warn("Slow {} took {} ms ({}): {}", subject == null ? operation : operation + " " + subject,
+                        TimeUnit.NANOSECONDS.toMillis(elapsed), outcome, breakdown());
+            }
+        }
+
+        private void record(String stage, String outcome, long nanos) {
+            timer("payment.stage.duration", "Duration of one stage of a payment operation")
+                    .tags("operation", operation, "stage", stage, "outcome", outcome)
+                    .register(meterRegistry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+            synchronized (stages) {
+                long[] total = stages.computeIfAbsent(stage, name -> new long[2]);
+                total[0] += nanos;
+                total[1]++;
+            }
+        }
+
+        private String breakdown() {
+            StringJoiner breakdown = new StringJoiner(", ");
+            synchronized (stages) {
+                stages.forEach((stage, total) -> breakdown.add(stage + "=" + TimeUnit.NANOSECONDS.toMillis(total[0])
+                        + "ms" + (total[1] > 1 ? " x" + total[1] : "")));
+            }
+            return breakdown.length() == 0 ? "no stages" : breakdown.toString();
+        }
+    }
+
+    private static Timer.Builder timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30));
+    }
+}
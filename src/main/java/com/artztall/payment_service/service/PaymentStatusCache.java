@@ -0,0 +1,55 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Near-cache of payment status responses for clients polling while a payment completes.
+ * Transitions made by this instance overwrite the entry through their
+ * {@link PaymentStatusChangedEvent}; transitions made on other instances show up once
+ * the entry expires after {@code payments.status-cache.ttl}. Concurrent misses for the same payment
+ * share one load.
+ */
+@Service
+public class PaymentStatusCache {
+
+    private final Cache<String, PaymentResponseDTO> statuses;
+
+    public PaymentStatusCache(MeterRegistry meterRegistry,
+                              @Value("${payments.status-cache.max-size:50000}") long maxSize,
+                              @Value("${payments.status-cache.ttl:5s}") Duration ttl) {
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, statuses, "payment-status");
+    }
+
+    public PaymentResponseDTO get(String paymentId, Function<String, PaymentResponseDTO> loader) {
+        return statuses.get(paymentId, loader);
+    }
+
+    @EventListener
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        statuses.put(event.paymentId(), toStatusResponse(event));
+    }
+
+    static PaymentResponseDTO toStatusResponse(PaymentStatusChangedEvent event) {
+        return PaymentResponseDTO.builder()
+                .paymentId(event.paymentId())
+                .paymentStatus(event.status())
+                .expiresAt(event.expiresAt())
+                .message("Payment status: " + event.status())
+                .build();
+    }
+}
@@ -0,0 +1,17 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published in-process after a payment's status is saved, including the PENDING status
+ * of a newly created payment.
+ */
+public record PaymentStatusChangedEvent(String paymentId, PaymentStatus status, LocalDateTime expiresAt) {
+
+    public static PaymentStatusChangedEvent of(Payment payment) {
+        return new PaymentStatusChangedEvent(payment.getId(), payment.getPaymentStatus(), payment.getExpiresAt());
+    }
+}
@@ -0,0 +1,314 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.artztall.payment_service.exception.SubscriptionLimitException;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Pushes status changes of a payment to clients waiting on it over SSE or long-poll.
+ * Waiting clients hold no request thread: each one is an entry under its payment ID that
+ * {@link PaymentStatusChangedEvent}s are delivered to. Events are published on the thread
+ * that changed the payment, so delivery is handed to a small pool of delivery threads and
+ * a slow SSE client never holds up a payment transition; each payment's changes are
+ * still delivered one at a time and in order. Changes made on other instances are picked
+ * up by re-reading all watched payments in one query per recheck interval.
+ */
+@Slf4j
+@Service
+public class PaymentStatusSubscriptions {
+
+    // Payments never leave these statuses, so there is nothing left to wait for
+    private static final Set<PaymentStatus> FINAL_STATUSES =
+            EnumSet.of(PaymentStatus.FAILED, PaymentStatus.EXPIRED, PaymentStatus.REFUNDED);
+    private static final int RECHECK_BATCH_SIZE = 1000;
+
+    private final PaymentService paymentService;
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxSubscribers;
+    private final Duration streamTimeout;
+    private final Duration pollTimeout;
+    private final Executor delivery;
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    @Autowired
+    public PaymentStatusSubscriptions(PaymentService paymentService,
+                                      MongoTemplate mongoTemplate,
+                                      ApplicationEventPublisher eventPublisher,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${payments.status-stream.max-subscribers:10000}") int maxSubscribers,
+                                      @Value("${payments.status-stream.stream-timeout:5m}") Duration streamTimeout,
+                                      @Value("${payments.status-stream.poll-timeout:30s}") Duration pollTimeout,
+                                      @Value("${payments.status-stream.delivery-threads:4}") int deliveryThreads) {
+        this(paymentService, mongoTemplate, eventPublisher, meterRegistry, maxSubscribers, streamTimeout,
+                pollTimeout, deliveryExecutor(deliveryThreads));
+        new ExecutorServiceMetrics((ExecutorService) delivery, "payment-status-delivery", Tags.empty())
+                .bindTo(meterRegistry);
+    }
+
+    PaymentStatusSubscriptions(PaymentService paymentService,
+                               MongoTemplate mongoTemplate,
+                               ApplicationEventPublisher eventPublisher,
+                               MeterRegistry meterRegistry,
+                               int maxSubscribers,
+                               Duration streamTimeout,
+                               Duration pollTimeout,
+                               Executor delivery) {
+        this.paymentService = paymentService;
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.maxSubscribers = maxSubscribers;
+        this.streamTimeout = streamTimeout;
+        this.pollTimeout = pollTimeout;
+        this.delivery = delivery;
+        Gauge.builder("payment.status.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Clients waiting for a payment status change")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends the current status, then every change, and completes after a final status
+     * or when the stream times out.
+     */
+    public SseEmitter stream(String paymentId) {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        Subscriber subscriber = new Subscriber() {
+            @Override
+            boolean deliver(PaymentResponseDTO status) {
+                try {
+                    emitter.send(SseEmitter.event().name("status").data(status));
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away; the completion callback removes the subscription
+                    return true;
+                }
+                if (FINAL_STATUSES.contains(status.getPaymentStatus())) {
+                    emitter.complete();
+                    return true;
+                }
+                return false;
+            }
+        };
+        emitter.onCompletion(() -> unsubscribe(paymentId, subscriber));
+        emitter.onError(e -> unsubscribe(paymentId, subscriber));
+        start(paymentId, subscriber);
+        return emitter;
+    }
+
+    /**
+     * Completes with the payment's status as soon as it differs from {@code known}, or with
+     * the unchanged status once the poll times out.
+     */
+    public DeferredResult<PaymentResponseDTO> awaitChange(String paymentId, PaymentStatus known) {
+        DeferredResult<PaymentResponseDTO> result = new DeferredResult<>(pollTimeout.toMillis());
+        Subscriber subscriber = new Subscriber() {
+            @Override
+            boolean deliver(PaymentResponseDTO status) {
+                if (status.getPaymentStatus() == known) {
+                    return false;
+                }
+                result.setResult(status);
+                return true;
+            }
+        };
+        result.onTimeout(() -> result.setResult(paymentService.getPaymentStatus(paymentId)));
+        result.onCompletion(() -> unsubscribe(paymentId, subscriber));
+        start(paymentId, subscriber);
+        return result;
+    }
+
+    private static ExecutorService deliveryExecutor(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "payment-status-delivery-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (delivery instanceof ExecutorService executor) {
+            executor.shutdownNow();
+        }
+    }
+
+    @EventListener
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        Topic topic = topics.get(event.paymentId());
+        if (topic == null) {
+            return;
+        }
+        topic.status = event.status();
+        topic.pending.add(PaymentStatusCache.toStatusResponse(event));
+        scheduleDelivery(event.paymentId(), topic);
+    }
+
+    /**
+     * Publishes changes to watched payments that were made on other instances and so
+     * never reached this instance's event listeners.
+     */
+    @Scheduled(fixedDelayString = "${payments.status-stream.recheck-interval-ms:5000}")
+    public void recheckWatchedPayments() {
+        List<String> paymentIds = new ArrayList<>(topics.keySet());
+        for (int from = 0; from < paymentIds.size(); from += RECHECK_BATCH_SIZE) {
+            List<String> batch = paymentIds.subList(from, Math.min(from + RECHECK_BATCH_SIZE, paymentIds.size()));
+            Query query = new Query(where("_id").in(batch));
+            query.fields().include("paymentStatus", "expiresAt");
+            try {
+                for (Payment payment : mongoTemplate.find(query, Payment.class)) {
+                    Topic topic = topics.get(payment.getId());
+                    if (topic != null && topic.status != payment.getPaymentStatus()) {
+                        eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment));
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Failed to recheck {} watched payments", batch.size(), e);
+            }
+        }
+    }
+
+    /**
+     * Runs at most one delivery per payment at a time, so its changes reach the
+     * subscribers in the order they were published.
+     */
+    private void scheduleDelivery(String paymentId, Topic topic) {
+        if (!topic.delivering.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            delivery.execute(() -> deliverPending(paymentId, topic));
+        } catch (RejectedExecutionException e) {
+            topic.delivering.set(false);
+            log.warn("Dropped status change of payment {}, delivery is shut down", paymentId);
+        }
+    }
+
+    private void deliverPending(String paymentId, Topic topic) {
+        PaymentResponseDTO status;
+        while ((status = topic.pending.poll()) != null) {
+            for (Subscriber subscriber : topic.subscribers) {
+                try {
+                    if (subscriber.offer(status, false)) {
+                        unsubscribe(paymentId, subscriber);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Failed to deliver status of payment {}", paymentId, e);
+                    unsubscribe(paymentId, subscriber);
+                }
+            }
+        }
+        topic.delivering.set(false);
+        // A change may have been queued after the loop ended but before the flag was cleared
+        if (!topic.pending.isEmpty()) {
+            scheduleDelivery(paymentId, topic);
+        }
+    }
+
+    int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * Subscribes before reading the current status, so a change saved in between is
+     * delivered by the event instead of being missed.
+     */
+    private void start(String paymentId, Subscriber subscriber) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new SubscriptionLimitException("Too many clients waiting for payment updates, poll instead");
+        }
+        topics.compute(paymentId, (id, topic) -> {
+            Topic subscribed = topic != null ? topic : new Topic();
+            subscribed.subscribers.add(subscriber);
+            return subscribed;
+        });
+
+        PaymentResponseDTO current;
+        try {
+            current = paymentService.getPaymentStatus(paymentId);
+        } catch (RuntimeException e) {
+            unsubscribe(paymentId, subscriber);
+            throw e;
+        }
+        Topic topic = topics.get(paymentId);
+        if (topic != null && topic.status == null) {
+            topic.status = current.getPaymentStatus();
+        }
+        if (subscriber.offer(current, true)) {
+            unsubscribe(paymentId, subscriber);
+        }
+    }
+
+    private void unsubscribe(String paymentId, Subscriber subscriber) {
+        topics.computeIfPresent(paymentId, (id, topic) -> {
+            if (topic.subscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return topic.subscribers.isEmpty() ? null : topic;
+        });
+    }
+
+    private static final class Topic {
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private final Queue<PaymentResponseDTO> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean delivering = new AtomicBoolean();
+        // Last status seen for the payment, compared against Mongo on recheck
+        private volatile PaymentStatus status;
+    }
+
+    private abstract static class Subscriber {
+        private PaymentStatus delivered;
+
+        /**
+         * Delivers a status unless it repeats the last one, or is the initial read and an
+         * event got here first. Returns true once the subscriber needs no more updates.
+         */
+        synchronized boolean offer(PaymentResponseDTO status, boolean initial) {
+            if (delivered != null && (initial || delivered == status.getPaymentStatus())) {
+                return false;
+            }
+            delivered = status.getPaymentStatus();
+            return deliver(status);
+        }
+
+        abstract boolean deliver(PaymentResponseDTO status);
+    }
+}
@@ -3,22 +3,29 @@ package com.artztall.payment_service.service;
 
 import com.artztall.payment_service.dto.ProductAvailabilityRequest;
 import com.artztall.payment_service.dto.ProductResponseDTO;
+import com.artztall.payment_service.util.DownstreamGuard;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 
 @Service
 @RequiredArgsConstructor
 public class ProductClientService {
     private final WebClient productServiceWebClient;
+    private final DownstreamGuard productGuard;
 
     public void releaseProduct(String productId) {
-        productServiceWebClient.put()
-                .uri("/api/products/" + productId + "/release")
-                .bodyValue(new ProductAvailabilityRequest(true))
-                .retrieve()
-                .bodyToMono(ProductResponseDTO.class)
-                .block();
+        release(productId).block();
     }
-}
\ No newline at end of file
+
+    public Mono<Void> release(String productId) {
+        return productGuard.protect(productServiceWebClient.put()
+                        .uri("/api/products/" + productId + "/release")
+                        .bodyValue(new ProductAvailabilityRequest(true))
+                        .retrieve()
+                        .bodyToMono(ProductResponseDTO.class))
+                .then();
+    }
+}
@@ -0,0 +1,116 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.model.PendingProductRelease;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Retries product releases queued by {@link ProductReleaseService}. Each due entry is
+ * claimed by pushing its {@code nextAttemptAt} forward, so concurrent instances do not
+ * retry the same release, then retried with exponential backoff until it succeeds or
+ * runs out of attempts.
+ */
+@Slf4j
+@Service
+public class ProductReleaseRetryJob {
+
+    private final MongoTemplate mongoTemplate;
+    private final OrderClientService orderClientService;
+    private final ProductClientService productClientService;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final Counter released;
+    private final Counter abandoned;
+
+    public ProductReleaseRetryJob(MongoTemplate mongoTemplate,
+                                  OrderClientService orderClientService,
+                                  ProductClientService productClientService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${payments.product-release.retry-batch-size:100}") int batchSize,
+                                  @Value("${payments.product-release.max-attempts:10}") int maxAttempts,
+                                  @Value("${payments.product-release.initial-backoff:30s}") Duration initialBackoff,
+                                  @Value("${payments.product-release.max-backoff:1h}") Duration maxBackoff) {
+        this.mongoTemplate = mongoTemplate;
+        this.orderClientService = orderClientService;
+        this.productClientService = productClientService;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.released = meterRegistry.counter("product.release.retry", "outcome", "released");
+        this.abandoned = meterRegistry.counter("product.release.retry", "outcome", "abandoned");
+    }
+
+    @Scheduled(fixedDelayString = "${payments.product-release.retry-interval-ms:60000}")
+    public void retryPendingReleases() {
+        try {
+            for (int i = 0; i < batchSize; i++) {
+                PendingProductRelease release = claimNext(LocalDateTime.now());
+                if (release == null) {
+                    return;
+                }
+                retry(release);
+            }
+        } catch (Exception e) {
+            log.error("Product release retry run failed", e);
+        }
+    }
+
+    private PendingProductRelease claimNext(LocalDateTime now) {
+        // Hold the entry for one max backoff; a crash mid-retry just delays it
+        Query due = new Query(where("nextAttemptAt").lte(now));
+        return mongoTemplate.findAndModify(due,
+                new Update().set("nextAttemptAt", now.plus(maxBackoff)),
+                FindAndModifyOptions.options().returnNew(false),
+                PendingProductRelease.class);
+    }
+
+    void retry(PendingProductRelease release) {
+        String orderId = release.getOrderId();
+        try {
+            String productId = release.getProductId();
+            if (productId == null) {
+                productId = orderClientService.getOrder(orderId).getItem().getProductId();
+            }
+            productClientService.releaseProduct(productId);
+            mongoTemplate.remove(new Query(where("_id").is(orderId)), PendingProductRelease.class);
+            released.increment();
+        } catch (Exception e) {
+            int attempts = release.getAttempts() + 1;
+            if (attempts >= maxAttempts) {
+                log.error("Giving up releasing product {} for order {} after {} attempts",
+                        release.getProductId(), orderId, attempts, e);
+                mongoTemplate.remove(new Query(where("_id").is(orderId)), PendingProductRelease.class);
+                abandoned.increment();
+                return;
+            }
+            log.warn("Retry {} of product release for order {} failed: {}", attempts, orderId, e.getMessage());
+            mongoTemplate.updateFirst(new Query(where("_id").is(orderId)), new Update()
+                            .set("attempts", attempts)
+                            .set("lastError", String.valueOf(e.getMessage()))
+                            .set("nextAttemptAt", LocalDateTime.now().plus(backoff(attempts))),
+                    PendingProductRelease.class);
+        }
+    }
+
+    Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+}
@@ -0,0 +1,104 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.OrderItemResponseDTO;
+import com.artztall.payment_service.dto.OrderResponseDTO;
+import com.artztall.payment_service.model.PendingProductRelease;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Releases the product of an order back to the product service. Calls go through the
+ * order and product circuit breakers, so a slow or failing downstream fails fast; with
+ * the QUEUE fallback the release is then recorded in {@code pending_product_releases}
+ * and retried by {@link ProductReleaseRetryJob}, with LOG it is only logged.
+ */
+@Slf4j
+@Service
+public class ProductReleaseService {
+
+    public enum Fallback {
+        QUEUE,
+        LOG
+    }
+
+    private final OrderClientService orderClientService;
+    private final ProductClientService productClientService;
+    private final MongoTemplate mongoTemplate;
+    private final Fallback fallback;
+
+    public ProductReleaseService(OrderClientService orderClientService,
+                                 ProductClientService productClientService,
+                                 MongoTemplate mongoTemplate,
+                                 @Value("${payments.product-release.fallback:QUEUE}") Fallback fallback) {
+        this.orderClientService = orderClientService;
+        this.productClientService = productClientService;
+        this.mongoTemplate = mongoTemplate;
+        this.fallback = fallback;
+    }
+
+    public void releaseProductsForOrder(String orderId) {
+        String productId = null;
+        try {
+            OrderResponseDTO order = orderClientService.getOrder(orderId);
+            OrderItemResponseDTO item = order.getItem();
+            productId = item.getProductId();
+            productClientService.releaseProduct(productId);
+        } catch (Exception e) {
+            log.error("Failed to release product {} for order {}", productId, orderId, e);
+            queue(orderId, productId, e);
+        }
+    }
+
+    public Mono<Void> releaseProducts(String orderId) {
+        return orderClientService.fetchOrder(orderId)
+                .flatMap(order -> productClientService.release(order.getItem().getProductId())
+                        .onErrorResume(e -> {
+                            log.error("Failed to release product {} for order {}",
+                                    order.getItem().getProductId(), orderId, e);
+                            return queueAsync(orderId, order.getItem().getProductId(), e);
+                        }))
+                .onErrorResume(e -> {
+                    log.error("Failed to release products for order {}", orderId, e);
+                    return queueAsync(orderId, null, e);
+                });
+    }
+
+    private Mono<Void> queueAsync(String orderId, String productId, Throwable cause) {
+        if (fallback != Fallback.QUEUE) {
+            return Mono.empty();
+        }
+        return Mono.fromRunnable(() -> queue(orderId, productId, cause))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    void queue(String orderId, String productId, Throwable cause) {
+        if (fallback != Fallback.QUEUE) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Update update = new Update()
+                    .set("lastError", String.valueOf(cause.getMessage()))
+                    .setOnInsert("attempts", 0)
+                    .setOnInsert("nextAttemptAt", now)
+                    .setOnInsert("createdAt", now);
+            if (productId != null) {
+                update.set("productId", productId);
+            }
+            mongoTemplate.upsert(new Query(where("_id").is(orderId)), update, PendingProductRelease.class);
+        } catch (Exception e) {
+            log.error("Failed to queue product release for order {}", orderId, e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.PaymentRequestDTO;
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.artztall.payment_service.dto.UserPaymentResponseDTO;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactivePaymentService {
+    Mono<PaymentResponseDTO> createPayment(PaymentRequestDTO paymentRequest, String idempotencyKey);
+    Mono<PaymentResponseDTO> confirmPayment(String paymentIntentId);
+    Mono<PaymentResponseDTO> refundPayment(String paymentId);
+    Mono<PaymentResponseDTO> getPaymentStatus(String paymentId);
+    Flux<UserPaymentResponseDTO> getCompletedPaymentsForArtisan(String artisanId);
+    Flux<UserPaymentResponseDTO> findByUserId(String userId);
+}
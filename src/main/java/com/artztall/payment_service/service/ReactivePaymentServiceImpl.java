@@ -0,0 +1,273 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.PaymentRequestDTO;
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.artztall.payment_service.dto.UserPaymentResponseDTO;
+import com.artztall.payment_service.exception.PaymentGatewayUnavailableException;
+import com.artztall.payment_service.exception.PaymentNotFoundException;
+import com.artztall.payment_service.exception.PaymentProcessingException;
+import com.artztall.payment_service.model.OrderStatus;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.repository.ReactivePaymentRepository;
+import com.stripe.exception.StripeException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.artztall.payment_service.service.PaymentServiceImpl.*;
+
+/**
+ * Non-blocking counterpart of {@link PaymentServiceImpl}: Mongo and the order, product
+ * and notification services are called reactively, so no thread waits on their I/O.
+ * Stripe calls go through the {@link PaymentGateway}, which runs them off the caller's
+ * thread.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReactivePaymentServiceImpl implements ReactivePaymentService {
+    private final ReactivePaymentRepository paymentRepository;
+    private final OrderClientService orderClientService;
+    private final ProductReleaseService productReleaseService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final PaymentExpiryWheel paymentExpiryWheel;
+    private final PaymentGateway paymentGateway;
+    private final PaymentIntentLookups paymentIntentLookups;
+    private final ArtisanEarningsService artisanEarningsService;
+    private final PaymentIdempotencyStore paymentIdempotencyStore;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Runs through the same {@link PaymentIdempotencyStore} as the blocking service, so a
+     * retry on either pipeline replays the original response.
+     */
+    @Override
+    public Mono<PaymentResponseDTO> createPayment(PaymentRequestDTO paymentRequest, String idempotencyKey) {
+        return Mono.defer(() -> {
+            validatePaymentRequest(paymentRequest);
+            String key = idempotencyKey(paymentRequest, idempotencyKey);
+            AtomicBoolean created = new AtomicBoolean();
+            return paymentIdempotencyStore.executeMono(key, requestFingerprint(paymentRequest), () -> {
+                        created.set(true);
+                        return createPendingPayment(paymentRequest, key);
+                    })
+                    .flatMap(response -> created.get() ? Mono.just(response) : withClientSecret(response));
+        });
+    }
+
+    // Responses replayed from idempotency_keys are stored without the client secret
+    private Mono<PaymentResponseDTO> withClientSecret(PaymentResponseDTO response) {
+        if (!needsClientSecret(response)) {
+            return Mono.just(response);
+        }
+        return findPayment(response.getPaymentId())
+                .flatMap(payment -> Mono.fromFuture(() ->
+                        paymentIntentLookups.retrieveIntent(payment.getStripPaymentIntendId())))
+                .map(paymentIntent -> response.toBuilder().clientSecret(paymentIntent.getClientSecret()).build())
+                .onErrorMap(StripeException.class, e -> {
+                    log.error("Failed to read back the client secret of payment: {}", response.getPaymentId(), e);
+                    return new PaymentGatewayUnavailableException("Payment provider is unavailable, try again shortly");
+                });
+    }
+
+    private Mono<PaymentResponseDTO> createPendingPayment(PaymentRequestDTO paymentRequest, String idempotencyKey) {
+        log.info("Processing payment for order: {}", paymentRequest.getOrderId());
+        return orderClientService.fetchOrder(paymentRequest.getOrderId())
+                .flatMap(order -> Mono.fromFuture(() -> paymentGateway.createPaymentIntent(
+                                paymentIntentParams(paymentRequest, order), paymentIntentOptions(idempotencyKey)))
+                        .flatMap(paymentIntent -> paymentRepository
+                                .save(newPendingPayment(paymentRequest, order, paymentIntent))
+                                .doOnNext(this::publishStatusChange)
+                                .map(payment -> {
+                                    paymentExpiryWheel.register(payment);
+                                    notificationDispatcher.dispatch(
+                                            PaymentNotifications.initiated(payment, PAYMENT_TIMEOUT_MINUTES));
+                                    log.info("Payment created successfully for order: {}", payment.getOrderId());
+
+                                    return PaymentResponseDTO.builder()
+                                            .paymentId(payment.getId())
+                                            .clientSecret(paymentIntent.getClientSecret())
+                                            .paymentStatus(PaymentStatus.PENDING)
+                                            .expiresAt(payment.getExpiresAt())
+                                            .message("Payment created successfully")
+                                            .build();
+                                })))
+                .onErrorResume(StripeException.class, e -> {
+                    log.error("Stripe payment processing failed for order: {}", paymentRequest.getOrderId(), e);
+                    return productReleaseService.releaseProducts(paymentRequest.getOrderId())
+                            .thenReturn(PaymentResponseDTO.builder()
+                                    .paymentStatus(PaymentStatus.FAILED)
+                                    .message(e.getMessage())
+                                    .build());
+                });
+    }
+
+    /**
+     * Checks the intent with Stripe before changing the payment, like
+     * {@link PaymentServiceImpl#confirmPayment}, and moves it out of PENDING with a
+     * conditional update, so an unpaid payment is never completed and a refunded or
+     * expired one is never flipped back.
+     */
+    @Override
+    public Mono<PaymentResponseDTO> confirmPayment(String paymentIntentId) {
+        log.info("Confirming payment for paymentIntentId: {}", paymentIntentId);
+        return Mono.fromFuture(() -> paymentIntentLookups.retrieveIntent(paymentIntentId))
+                .flatMap(paymentIntent -> switch (paymentIntent.getStatus()) {
+                    case "succeeded" -> complete(paymentIntentId);
+                    case "canceled", "requires_payment_method" -> fail(paymentIntentId);
+                    default -> Mono.just(PaymentResponseDTO.builder()
+                            .paymentStatus(PaymentStatus.PENDING)
+                            .message("Payment is still being processed: " + paymentIntent.getStatus())
+                            .build());
+                })
+                .onErrorResume(e -> !(e instanceof PaymentNotFoundException
+                        || e instanceof PaymentGatewayUnavailableException), e -> {
+                    log.error("Payment confirmation failed for paymentIntentId: {}", paymentIntentId, e);
+                    return Mono.just(PaymentResponseDTO.builder()
+                            .paymentStatus(PaymentStatus.FAILED)
+                            .message("Payment confirmation failed: " + e.getMessage())
+                            .build());
+                });
+    }
+
+    private Mono<PaymentResponseDTO> complete(String paymentIntentId) {
+        return paymentRepository.transitionByIntent(
+                        paymentIntentId, PaymentStatus.PENDING, PaymentStatus.COMPLETED, LocalDateTime.now())
+                .doOnNext(this::publishStatusChange)
+                .flatMap(this::recordEarnings)
+                .flatMap(payment -> {
+                    paymentExpiryWheel.cancel(payment.getId());
+                    return orderClientService.changeOrderStatus(payment.getOrderId(), OrderStatus.CONFIRMED)
+                            .then(Mono.fromCallable(() -> {
+                                notificationDispatcher.dispatch(PaymentNotifications.succeeded(payment));
+                                return PaymentResponseDTO.builder()
+                                        .paymentId(payment.getId())
+                                        .paymentStatus(PaymentStatus.COMPLETED)
+                                        .message("Payment confirmed successfully")
+                                        .build();
+                            }));
+                })
+                .switchIfEmpty(Mono.defer(() -> currentPayment(paymentIntentId).map(current -> {
+                    if (current.getPaymentStatus() != PaymentStatus.COMPLETED) {
+                        log.warn("Stripe reported success for {} payment {}",
+                                current.getPaymentStatus(), current.getId());
+                    }
+                    return statusResponse(current);
+                })));
+    }
+
+    private Mono<PaymentResponseDTO> fail(String paymentIntentId) {
+        return paymentRepository.transitionByIntent(
+                        paymentIntentId, PaymentStatus.PENDING, PaymentStatus.FAILED, LocalDateTime.now())
+                .doOnNext(this::publishStatusChange)
+                .flatMap(payment -> {
+                    paymentExpiryWheel.cancel(payment.getId());
+                    return productReleaseService.releaseProducts(payment.getOrderId())
+                            .then(Mono.fromCallable(() -> {
+                                notificationDispatcher.dispatch(PaymentNotifications.failed(payment));
+                                return PaymentResponseDTO.builder()
+                                        .paymentId(payment.getId())
+                                        .paymentStatus(PaymentStatus.FAILED)
+                                        .message("Payment failed")
+                                        .build();
+                            }));
+                })
+                .switchIfEmpty(Mono.defer(() -> currentPayment(paymentIntentId)
+                        .map(PaymentServiceImpl::statusResponse)));
+    }
+
+    @Override
+    public Mono<PaymentResponseDTO> refundPayment(String paymentId) {
+        log.info("Processing refund for payment: {}", paymentId);
+        return findPayment(paymentId)
+                .flatMap(payment -> {
+                    if (payment.getPaymentStatus() != PaymentStatus.COMPLETED) {
+                        return Mono.error(new PaymentProcessingException("Only completed payments can be refunded"));
+                    }
+                    // Stripe refunds once per payment, only the caller that moves it to REFUNDED releases
+                    return Mono.fromFuture(() -> paymentGateway.createRefund(refundParams(payment),
+                                    refundOptions(payment)))
+                            .then(Mono.defer(() -> paymentRepository.transition(
+                                    paymentId, PaymentStatus.COMPLETED, PaymentStatus.REFUNDED, LocalDateTime.now())))
+                            .flatMap(this::refunded)
+                            .switchIfEmpty(Mono.defer(() -> findPayment(paymentId)
+                                    .map(PaymentServiceImpl::statusResponse)));
+                })
+                .onErrorResume(StripeException.class, e -> {
+                    log.error("Refund failed for payment: {}", paymentId, e);
+                    return Mono.just(PaymentResponseDTO.builder()
+                            .paymentStatus(PaymentStatus.FAILED)
+                            .message("Refund processing failed: " + e.getMessage())
+                            .build());
+                });
+    }
+
+    private Mono<PaymentResponseDTO> refunded(Payment payment) {
+        publishStatusChange(payment);
+        return recordEarnings(payment)
+                .flatMap(recorded -> productReleaseService.releaseProducts(recorded.getOrderId()))
+                .then(Mono.fromCallable(() -> {
+                    notificationDispatcher.dispatch(PaymentNotifications.refunded(payment));
+                    return PaymentResponseDTO.builder()
+                            .paymentId(payment.getId())
+                            .paymentStatus(PaymentStatus.REFUNDED)
+                            .message("Payment refunded successfully")
+                            .build();
+                }));
+    }
+
+    // Keeps the status cache and the SSE subscribers in step with the blocking service
+    private void publishStatusChange(Payment payment) {
+        eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment));
+    }
+
+    // The rollups are updated through the blocking MongoTemplate
+    private Mono<Payment> recordEarnings(Payment payment) {
+        return Mono.fromRunnable(() -> artisanEarningsService.record(payment))
+                .subscribeOn(Schedulers.boundedElastic())
+                .thenReturn(payment);
+    }
+
+    @Override
+    public Mono<PaymentResponseDTO> getPaymentStatus(String paymentId) {
+        return findPayment(paymentId)
+                .map(payment -> PaymentResponseDTO.builder()
+                        .paymentId(payment.getId())
+                        .paymentStatus(payment.getPaymentStatus())
+                        .expiresAt(payment.getExpiresAt())
+                        .message("Payment status: " + payment.getPaymentStatus())
+                        .build());
+    }
+
+    @Override
+    public Flux<UserPaymentResponseDTO> getCompletedPaymentsForArtisan(String artisanId) {
+        return paymentRepository.findByArtistIdAndPaymentStatusOrderByCreatedAtDesc(artisanId, PaymentStatus.COMPLETED)
+                .map(PaymentServiceImpl::toUserPaymentResponse);
+    }
+
+    @Override
+    public Flux<UserPaymentResponseDTO> findByUserId(String userId) {
+        return paymentRepository.findByUserId(userId)
+                .map(PaymentServiceImpl::toUserPaymentResponse);
+    }
+
+    // Read after a conditional update matched nothing, so it reflects whichever transition won
+    private Mono<Payment> currentPayment(String paymentIntentId) {
+        return paymentIntentLookups.findPaymentMono(paymentIntentId)
+                .switchIfEmpty(Mono.error(() ->
+                        new PaymentNotFoundException("Payment not found for intent: " + paymentIntentId)));
+    }
+
+    private Mono<Payment> findPayment(String paymentId) {
+        return paymentRepository.findById(paymentId)
+                .switchIfEmpty(Mono.error(() -> new PaymentNotFoundException("Payment not found: " + paymentId)));
+    }
+}
@@ -0,0 +1,254 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.artztall.payment_service.dto.RefundJobDTO;
+import com.artztall.payment_service.dto.RefundJobItemDTO;
+import com.artztall.payment_service.dto.RefundJobRequestDTO;
+import com.artztall.payment_service.exception.InvalidRefundJobException;
+import com.artztall.payment_service.exception.PaymentNotFoundException;
+import com.artztall.payment_service.exception.PaymentProcessingException;
+import com.artztall.payment_service.exception.RefundJobNotFoundException;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.model.RefundJob;
+import com.artztall.payment_service.model.RefundJobItem;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Refunds many payments in the background. Submitting a job stores one item per payment
+ * and returns straight away; this instance then runs {@link PaymentService#refundPayment}
+ * for each pending item, at most {@code parallelism} at a time across all jobs. An item's
+ * result is recorded only while it is still PENDING, so a resumed job neither repeats
+ * finished items nor counts them twice, and Stripe refunds carry per-payment idempotency
+ * keys. A job whose lease is not renewed, because its instance stopped, is resumed by
+ * the next instance that polls for stalled jobs.
+ */
+@Slf4j
+@Service
+public class RefundJobService {
+
+    private final MongoTemplate mongoTemplate;
+    private final PaymentService paymentService;
+    private final MeterRegistry meterRegistry;
+    private final int parallelism;
+    private final int maxItems;
+    private final Duration lease;
+    private final Scheduler scheduler;
+
+    public RefundJobService(MongoTemplate mongoTemplate,
+                            PaymentService paymentService,
+                            MeterRegistry meterRegistry,
+                            @Value("${payments.refund-jobs.parallelism:4}") int parallelism,
+                            @Value("${payments.refund-jobs.max-items:5000}") int maxItems,
+                            @Value("${payments.refund-jobs.lease:2m}") Duration lease) {
+        this.mongoTemplate = mongoTemplate;
+        this.paymentService = paymentService;
+        this.meterRegistry = meterRegistry;
+        this.parallelism = parallelism;
+        this.maxItems = maxItems;
+        this.lease = lease;
+        this.scheduler = Schedulers.newBoundedElastic(parallelism, Integer.MAX_VALUE, "refund-jobs");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+
+    public RefundJobDTO submit(RefundJobRequestDTO request) {
+        Set<String> paymentIds = resolvePayments(request);
+        LocalDateTime now = LocalDateTime.now();
+        RefundJob job = mongoTemplate.insert(RefundJob.builder()
+                .id(new ObjectId().toHexString())
+                .status(RefundJob.Status.RUNNING)
+                .total(paymentIds.size())
+                .lockedUntil(now.plus(lease))
+                .createdAt(now)
+                .build());
+        mongoTemplate.insert(paymentIds.stream()
+                .map(paymentId -> RefundJobItem.builder()
+                        .id(RefundJobItem.id(job.getId(), paymentId))
+                        .jobId(job.getId())
+                        .paymentId(paymentId)
+                        .status(RefundJobItem.Status.PENDING)
+                        .createdAt(now)
+                        .build())
+                .toList(), RefundJobItem.class);
+
+        log.info("Started refund job {} for {} payments", job.getId(), paymentIds.size());
+        execute(job).subscribe();
+        return toDto(job, null);
+    }
+
+    public RefundJobDTO getJob(String jobId) {
+        RefundJob job = mongoTemplate.findById(jobId, RefundJob.class);
+        if (job == null) {
+            throw new RefundJobNotFoundException("Refund job not found: " + jobId);
+        }
+        Query items = new Query(where("jobId").is(jobId)).with(Sort.by("paymentId"));
+        return toDto(job, mongoTemplate.find(items, RefundJobItem.class).stream()
+                .map(item -> RefundJobItemDTO.builder()
+                        .paymentId(item.getPaymentId())
+                        .status(item.getStatus())
+                        .message(item.getMessage())
+                        .build())
+                .toList());
+    }
+
+    @Scheduled(fixedDelayString = "${payments.refund-jobs.resume-interval-ms:60000}")
+    public void resumeStalledJobs() {
+        try {
+            RefundJob job;
+            while ((job = claimStalled(LocalDateTime.now())) != null) {
+                log.warn("Resuming stalled refund job {}", job.getId());
+                execute(job).subscribe();
+            }
+        } catch (Exception e) {
+            log.error("Failed to resume stalled refund jobs", e);
+        }
+    }
+
+    Mono<Void> execute(RefundJob job) {
+        return Mono.fromCallable(() -> mongoTemplate.find(new Query(where("jobId").is(job.getId())
+                        .and("status").is(RefundJobItem.Status.PENDING)), RefundJobItem.class))
+                .subscribeOn(scheduler)
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(item -> Mono.fromRunnable(() -> refund(item)).subscribeOn(scheduler), parallelism)
+                .then(Mono.fromRunnable(() -> finish(job.getId())))
+                .doOnError(e -> log.error("Refund job {} stopped, it resumes once its lease expires", job.getId(), e))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private void refund(RefundJobItem item) {
+        RefundJobItem.Status status;
+        String message;
+        try {
+            PaymentResponseDTO response = paymentService.refundPayment(item.getPaymentId());
+            status = response.getPaymentStatus() == PaymentStatus.REFUNDED
+                    ? RefundJobItem.Status.REFUNDED
+                    : RefundJobItem.Status.FAILED;
+            message = response.getMessage();
+        } catch (PaymentNotFoundException | PaymentProcessingException e) {
+            // Not refundable, e.g. already refunded by an earlier run or by hand
+            status = RefundJobItem.Status.SKIPPED;
+            message = e.getMessage();
+        } catch (Exception e) {
+            log.error("Refund of payment {} in job {} failed", item.getPaymentId(), item.getJobId(), e);
+            status = RefundJobItem.Status.FAILED;
+            message = e.getMessage();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        long recorded = mongoTemplate.updateFirst(
+                new Query(where("_id").is(item.getId()).and("status").is(RefundJobItem.Status.PENDING)),
+                new Update().set("status", status).set("message", message).set("updatedAt", now),
+                RefundJobItem.class).getModifiedCount();
+        if (recorded > 0) {
+            mongoTemplate.updateFirst(new Query(where("_id").is(item.getJobId())),
+                    new Update().inc(status.name().toLowerCase(), 1).set("lockedUntil", now.plus(lease)),
+                    RefundJob.class);
+            meterRegistry.counter("payment.refund.jobs.items", "outcome", status.name().toLowerCase()).increment();
+        }
+    }
+
+    private void finish(String jobId) {
+        boolean pending = mongoTemplate.exists(new Query(where("jobId").is(jobId)
+                .and("status").is(RefundJobItem.Status.PENDING)), RefundJobItem.class);
+        if (pending) {
+            // Items whose result could not be recorded; leave the job for a resumed run
+            return;
+        }
+        mongoTemplate.updateFirst(new Query(where("_id").is(jobId).and("status").is(RefundJob.Status.RUNNING)),
+                new Update().set("status", RefundJob.Status.COMPLETED)
+                        .set("finishedAt", LocalDateTime.now())
+                        .unset("lockedUntil"),
+                RefundJob.class);
+        log.info("Refund job {} completed", jobId);
+    }
+
+    private RefundJob claimStalled(LocalDateTime now) {
+        return mongoTemplate.findAndModify(
+                new Query(where("status").is(RefundJob.Status.RUNNING).and("lockedUntil").lt(now)),
+                new Update().set("lockedUntil", now.plus(lease)),
+                FindAndModifyOptions.options().returnNew(true),
+                RefundJob.class);
+    }
+
+    private Set<String> resolvePayments(RefundJobRequestDTO request) {
+        boolean listed = request.getPaymentIds() != null && !request.getPaymentIds().isEmpty();
+        boolean filtered = request.getArtistId() != null && !request.getArtistId().isBlank();
+        if (listed == filtered) {
+            throw new InvalidRefundJobException("Provide either paymentIds or artistId");
+        }
+
+        Set<String> paymentIds;
+        if (listed) {
+            paymentIds = new LinkedHashSet<>(request.getPaymentIds());
+        } else {
+            Criteria criteria = where("artistId").is(request.getArtistId())
+                    .and("paymentStatus").is(PaymentStatus.COMPLETED);
+            if (request.getFrom() != null || request.getTo() != null) {
+                Criteria createdAt = criteria.and("createdAt");
+                if (request.getFrom() != null) {
+                    createdAt.gte(request.getFrom());
+                }
+                if (request.getTo() != null) {
+                    createdAt.lt(request.getTo());
+                }
+            }
+            // One past the limit, to tell a full job from an oversized one
+            Query query = new Query(criteria).limit(maxItems + 1);
+            query.fields().include("_id");
+            paymentIds = new LinkedHashSet<>();
+            for (Payment payment : mongoTemplate.find(query, Payment.class)) {
+                paymentIds.add(payment.getId());
+            }
+            if (paymentIds.isEmpty()) {
+                throw new InvalidRefundJobException("No completed payments match the filter");
+            }
+        }
+        if (paymentIds.size() > maxItems) {
+            throw new InvalidRefundJobException("A refund job can cover at most " + maxItems + " payments");
+        }
+        return paymentIds;
+    }
+
+    private static RefundJobDTO toDto(RefundJob job, List<RefundJobItemDTO> items) {
+        return RefundJobDTO.builder()
+                .jobId(job.getId())
+                .status(job.getStatus())
+                .total(job.getTotal())
+                .refunded(job.getRefunded())
+                .skipped(job.getSkipped())
+                .failed(job.getFailed())
+                .createdAt(job.getCreatedAt())
+                .finishedAt(job.getFinishedAt())
+                .items(items)
+                .build();
+    }
+}
@@ -0,0 +1,138 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.exception.PaymentGatewayUnavailableException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.Refund;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCreateParams;
+import com.stripe.param.RefundCreateParams;
+import io.github.resilience4j.core.functions.CheckedSupplier;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calls the blocking Stripe SDK on a dedicated, fixed-size executor, so at most
+ * {@code max-concurrency} Stripe requests are in flight and at most {@code queue-capacity}
+ * wait; further calls fail immediately instead of tying up request threads. Each call
+ * passes the {@code stripe} rate limiter and is retried with backoff on connection,
+ * rate-limit and server errors. Creates carry idempotency keys, so retries are safe.
+ * A call that has not completed within {@code timeout}, queueing and retries included,
+ * fails with {@link PaymentGatewayUnavailableException}.
+ * <p>
+ * This executor replaces the blocking-call scheduler that used to carry Stripe calls from
+ * the reactive pipeline: both pipelines now call Stripe through here, and a per-call
+ * virtual thread would lift the cap that keeps us inside Stripe's rate limits. With
+ * {@code spring.threads.virtual.enabled=true} the executor keeps its bounds but runs its
+ * calls on virtual threads, so a call waiting on Stripe holds no platform thread.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "payments.gateway", havingValue = "stripe", matchIfMissing = true)
+public class StripePaymentGateway implements PaymentGateway {
+
+    private final ThreadPoolExecutor executor;
+    private final RateLimiter rateLimiter;
+    private final Retry retry;
+    private final Duration timeout;
+
+    @Autowired
+    public StripePaymentGateway(RateLimiterRegistry rateLimiters,
+                                RetryRegistry retries,
+                                MeterRegistry meterRegistry,
+                                @Value("${payments.gateway.stripe.max-concurrency:16}") int maxConcurrency,
+                                @Value("${payments.gateway.stripe.queue-capacity:200}") int queueCapacity,
+                                @Value("${payments.gateway.stripe.timeout:30s}") Duration timeout,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this(rateLimiters.rateLimiter("stripe"), retries.retry("stripe"), maxConcurrency, queueCapacity, timeout,
+                virtualThreads);
+        new ExecutorServiceMetrics(executor, "stripe-gateway", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    StripePaymentGateway(RateLimiter rateLimiter, Retry retry, int maxConcurrency, int queueCapacity,
+                         Duration timeout, boolean virtualThreads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("stripe-gateway-", 1).factory()
+                : runnable -> {
+                    Thread thread = new Thread(runnable, "stripe-gateway-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                };
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.rateLimiter = rateLimiter;
+        this.retry = retry;
+        this.timeout = timeout;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    @Override
+    public CompletableFuture<PaymentIntent> createPaymentIntent(PaymentIntentCreateParams params, RequestOptions options) {
+        return submit(() -> PaymentIntent.create(params, options));
+    }
+
+    @Override
+    public CompletableFuture<PaymentIntent> retrievePaymentIntent(String paymentIntentId) {
+        return submit(() -> PaymentIntent.retrieve(paymentIntentId));
+    }
+
+    @Override
+    public CompletableFuture<Refund> createRefund(RefundCreateParams params, RequestOptions options) {
+        return submit(() -> Refund.create(params, options));
+    }
+
+    <T> CompletableFuture<T> submit(CheckedSupplier<T> call) {
+        CheckedSupplier<T> guarded = Retry.decorateCheckedSupplier(retry,
+                RateLimiter.decorateCheckedSupplier(rateLimiter, call));
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return guarded.get();
+                } catch (RequestNotPermitted e) {
+                    throw new CompletionException(
+                            new PaymentGatewayUnavailableException("Stripe rate limit reached, try again shortly"));
+                } catch (Throwable e) {
+                    throw new CompletionException(e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Stripe gateway saturated with {} queued calls", executor.getQueue().size());
+            return CompletableFuture.failedFuture(
+                    new PaymentGatewayUnavailableException("Payment provider is busy, try again shortly"));
+        }
+        // The caller stops waiting; the call keeps its executor slot until Stripe answers
+        return future.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(e -> CompletableFuture.failedFuture(e instanceof TimeoutException
+                        ? new PaymentGatewayUnavailableException("Payment provider did not respond in time")
+                        : e));
+    }
+}
@@ -0,0 +1,258 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.exception.InvalidWebhookSignatureException;
+import com.artztall.payment_service.model.StripeEventRecord;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.model.Event;
+import com.stripe.net.Webhook;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Receives Stripe webhooks. An event is verified against its signature, recorded in
+ * {@code stripe_events} under its event ID and queued, so the request is acknowledged
+ * as soon as the record is written and a redelivered event is recognised by the
+ * duplicate key. Worker threads apply queued events to the payment; events that failed
+ * or did not fit in the queue are picked up again by a periodic scan of the records.
+ */
+@Slf4j
+@Service
+public class StripeWebhookService {
+
+    public enum Outcome {
+        QUEUED,
+        DUPLICATE,
+        IGNORED
+    }
+
+    static final String PAYMENT_SUCCEEDED = "payment_intent.succeeded";
+    static final String PAYMENT_FAILED = "payment_intent.payment_failed";
+    private static final Set<String> HANDLED_TYPES = Set.of(PAYMENT_SUCCEEDED, PAYMENT_FAILED);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(500);
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final MongoTemplate mongoTemplate;
+    private final PaymentService paymentService;
+    private final String webhookSecret;
+    private final Duration tolerance;
+    private final BlockingQueue<StripeEventRecord> queue;
+    private final int workers;
+    private final int maxAttempts;
+    private final Duration redeliverAfter;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter processed;
+    private final Counter failed;
+
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    public StripeWebhookService(MongoTemplate mongoTemplate,
+                                PaymentService paymentService,
+                                MeterRegistry meterRegistry,
+                                @Value("${stripe.webhook.secret:}") String webhookSecret,
+                                @Value("${stripe.webhook.tolerance:300s}") Duration tolerance,
+                                @Value("${payments.webhook.queue-capacity:10000}") int queueCapacity,
+                                @Value("${payments.webhook.workers:2}") int workers,
+                                @Value("${payments.webhook.max-attempts:5}") int maxAttempts,
+                                @Value("${payments.webhook.redeliver-after:1m}") Duration redeliverAfter) {
+        this.mongoTemplate = mongoTemplate;
+        this.paymentService = paymentService;
+        this.webhookSecret = webhookSecret;
+        this.tolerance = tolerance;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+        this.redeliverAfter = redeliverAfter;
+
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("stripe.webhook.queue.depth", queue, BlockingQueue::size)
+                .description("Stripe events waiting to be applied")
+                .register(meterRegistry);
+        this.processed = meterRegistry.counter("stripe.webhook.processed");
+        this.failed = meterRegistry.counter("stripe.webhook.failed");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!StringUtils.hasText(webhookSecret)) {
+            log.warn("stripe.webhook.secret is not set, Stripe webhooks will be rejected");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        running = true;
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "stripe-webhook-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::drainLoop);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        executor.shutdown();
+        if (!executor.awaitTermination(POLL_INTERVAL.toMillis() * 4, TimeUnit.MILLISECONDS)) {
+            // Queued events are already recorded and will be picked up by the next scan
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Verifies and records a webhook and returns without applying it.
+     *
+     * @throws InvalidWebhookSignatureException when the signature does not match
+     */
+    public Outcome receive(String payload, String signature) {
+        if (!StringUtils.hasText(webhookSecret)) {
+            count("rejected");
+            throw new InvalidWebhookSignatureException("Stripe webhook secret is not configured");
+        }
+        if (!StringUtils.hasText(signature)) {
+            count("rejected");
+            throw new InvalidWebhookSignatureException("Missing Stripe-Signature header");
+        }
+        Event event;
+        try {
+            event = Webhook.constructEvent(payload, signature, webhookSecret, tolerance.toSeconds());
+        } catch (SignatureVerificationException e) {
+            count("rejected");
+            throw new InvalidWebhookSignatureException(e.getMessage());
+        }
+
+        if (!HANDLED_TYPES.contains(event.getType())) {
+            count("ignored");
+            return Outcome.IGNORED;
+        }
+
+        StripeEventRecord record = StripeEventRecord.builder()
+                .id(event.getId())
+                .type(event.getType())
+                .paymentIntentId(paymentIntentId(event))
+                .receivedAt(LocalDateTime.now())
+                .build();
+        try {
+            mongoTemplate.insert(record);
+        } catch (DuplicateKeyException e) {
+            count("duplicate");
+            log.debug("Ignoring redelivered Stripe event {}", event.getId());
+            return Outcome.DUPLICATE;
+        }
+
+        count("queued");
+        if (!queue.offer(record)) {
+            log.warn("Stripe webhook queue full, event {} will be applied by the next scan", event.getId());
+        }
+        return Outcome.QUEUED;
+    }
+
+    @Scheduled(fixedDelayString = "${payments.webhook.redelivery-interval-ms:60000}")
+    public void requeueUnprocessed() {
+        try {
+            int capacity = queue.remainingCapacity();
+            if (capacity == 0) {
+                return;
+            }
+            Query query = new Query(where("processedAt").is(null)
+                    .and("receivedAt").lt(LocalDateTime.now().minus(redeliverAfter))
+                    .and("attempts").lt(maxAttempts))
+                    .limit(capacity);
+            List<StripeEventRecord> unprocessed = mongoTemplate.find(query, StripeEventRecord.class);
+            unprocessed.forEach(queue::offer);
+            if (!unprocessed.isEmpty()) {
+                log.info("Requeued {} unprocessed Stripe events", unprocessed.size());
+            }
+        } catch (Exception e) {
+            log.error("Failed to requeue unprocessed Stripe events", e);
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    void process(StripeEventRecord record) {
+        try {
+            switch (record.getType()) {
+                case PAYMENT_SUCCEEDED -> paymentService.completePayment(record.getPaymentIntentId());
+                case PAYMENT_FAILED -> paymentService.failPayment(record.getPaymentIntentId());
+                default -> log.warn("Unhandled Stripe event type {}", record.getType());
+            }
+            mongoTemplate.updateFirst(new Query(where("_id").is(record.getId())),
+                    new Update().set("processedAt", LocalDateTime.now()), StripeEventRecord.class);
+            processed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            int attempts = record.getAttempts() + 1;
+            if (attempts >= maxAttempts) {
+                log.error("Giving up on Stripe event {} for intent {} after {} attempts",
+                        record.getId(), record.getPaymentIntentId(), attempts, e);
+            } else {
+                log.warn("Failed to apply Stripe event {} for intent {}, will retry",
+                        record.getId(), record.getPaymentIntentId(), e);
+            }
+            mongoTemplate.updateFirst(new Query(where("_id").is(record.getId())),
+                    new Update().inc("attempts", 1), StripeEventRecord.class);
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                StripeEventRecord record = queue.poll(POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                if (record != null) {
+                    process(record);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Stripe webhook worker failed", e);
+            }
+        }
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("stripe.webhook.events", "outcome", outcome).increment();
+    }
+
+    private static String paymentIntentId(Event event) {
+        // Read the ID from the raw object so events rendered with any API version work
+        try {
+            JsonNode id = JSON.readTree(event.getDataObjectDeserializer().getRawJson()).get("id");
+            return id != null ? id.asText() : null;
+        } catch (Exception e) {
+            log.warn("Could not read the payment intent of Stripe event {}", event.getId(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.artztall.payment_service.util;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import reactor.core.publisher.Mono;
+
+/**
+ * Circuit breaker and bulkhead for calls to one downstream service. The bulkhead sits
+ * inside the breaker, so calls rejected for lack of capacity also count as failures
+ * and a saturated service trips the breaker the same way a failing one does.
+ */
+public class DownstreamGuard {
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+
+    public DownstreamGuard(CircuitBreaker circuitBreaker, Bulkhead bulkhead) {
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+    }
+
+    public static DownstreamGuard ofDefaults(String name) {
+        return new DownstreamGuard(CircuitBreaker.ofDefaults(name), Bulkhead.ofDefaults(name));
+    }
+
+    public <T> Mono<T> protect(Mono<T> call) {
+        return call.transformDeferred(BulkheadOperator.of(bulkhead))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+}
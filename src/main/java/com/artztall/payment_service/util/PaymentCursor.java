@@ -0,0 +1,42 @@
+package com.artztall.payment_service.util;
+
+import com.artztall.payment_service.exception.InvalidCursorException;
+import com.artztall.payment_service.model.Payment;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in a list of payments ordered by {@code createdAt} and then {@code _id},
+ * encoded as an opaque URL-safe token.
+ */
+public record PaymentCursor(LocalDateTime createdAt, ObjectId id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static PaymentCursor after(Payment payment) {
+        return new PaymentCursor(payment.getCreatedAt(), new ObjectId(payment.getId()));
+    }
+
+    public static PaymentCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new InvalidCursorException("Invalid cursor: " + token);
+            }
+            return new PaymentCursor(LocalDateTime.parse(decoded.substring(0, separator)),
+                    new ObjectId(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid cursor: " + token);
+        }
+    }
+
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id.toHexString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,114 @@
+package com.artztall.payment_service.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the call and every
+ * caller arriving while it is in flight shares its result or exception. A call that
+ * arrives after the previous one completed starts a new one, so nothing is cached.
+ * <p>
+ * Blocking and reactive callers may share an instance. Shared results are the same
+ * object for every caller, so callers must not rely on having a private copy.
+ * Publishes {@code singleflight.calls}, {@code singleflight.coalesced} and
+ * {@code singleflight.inflight}, tagged with the flight name.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter calls;
+    private final Counter coalesced;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.calls = Counter.builder("singleflight.calls")
+                .description("Calls that went to the underlying source")
+                .tag("name", name)
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("singleflight.coalesced")
+                .description("Calls that joined a call already in flight")
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("singleflight.inflight", inFlight, ConcurrentHashMap::size)
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        calls.increment();
+        try {
+            V value = call.get();
+            land(key, flight);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            land(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public Mono<V> executeMono(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+            if (existing != null) {
+                coalesced.increment();
+                // Cancelling a follower must not cancel the shared call
+                return Mono.fromFuture(existing, true);
+            }
+
+            calls.increment();
+            return call.get()
+                    .doOnSuccess(value -> {
+                        land(key, flight);
+                        flight.complete(value);
+                    })
+                    .doOnError(e -> {
+                        land(key, flight);
+                        flight.completeExceptionally(e);
+                    })
+                    .doOnCancel(() -> {
+                        land(key, flight);
+                        flight.completeExceptionally(new CancellationException("Call for " + key + " was cancelled"));
+                    });
+        });
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    // Removed before completing so a caller arriving after completion starts a new call
+    private void land(K key, CompletableFuture<V> flight) {
+        inFlight.remove(key, flight);
+    }
+
+    private V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
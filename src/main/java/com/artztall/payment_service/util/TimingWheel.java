@@ -0,0 +1,155 @@
+package com.artztall.payment_service.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel. Level 0 has {@code wheelSize} slots of one tick each, and
+ * every higher level has slots as wide as a full rotation of the level below it.
+ * Timers beyond the level-0 horizon are cascaded down as the wheel turns, so adding,
+ * cancelling and advancing by one tick are all constant time regardless of how many
+ * timers are pending.
+ * <p>
+ * Cancelled timers are only marked and are dropped when their slot comes around.
+ * This class is thread-safe; callers are expected to fire the keys returned by
+ * {@link #advanceTo(long)} outside of any lock.
+ */
+public class TimingWheel<K> {
+
+    private static final class Timer<K> {
+        private final K key;
+        private final long deadlineTick;
+        private boolean cancelled;
+
+        private Timer(K key, long deadlineTick) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long[] levelSpans;
+    private final List<Timer<K>>[][] slots;
+    private final Map<K, Timer<K>> timers = new HashMap<>();
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int wheelSize, int levels, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.levelSpans = new long[levels];
+        this.slots = new List[levels][wheelSize];
+        long span = 1;
+        for (int level = 0; level < levels; level++) {
+            levelSpans[level] = span;
+            span *= wheelSize;
+            for (int slot = 0; slot < wheelSize; slot++) {
+                slots[level][slot] = new ArrayList<>();
+            }
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Schedules {@code key} to fire at {@code deadlineMillis}, replacing any timer already
+     * registered for it. Returns {@code false} if the deadline has already passed, in
+     * which case nothing is scheduled and the caller should fire the key itself.
+     */
+    public synchronized boolean schedule(K key, long deadlineMillis) {
+        cancel(key);
+        long deadlineTick = Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+        if (deadlineTick <= currentTick) {
+            return false;
+        }
+        Timer<K> timer = new Timer<>(key, deadlineTick);
+        timers.put(key, timer);
+        place(timer);
+        return true;
+    }
+
+    public synchronized boolean cancel(K key) {
+        Timer<K> timer = timers.remove(key);
+        if (timer == null) {
+            return false;
+        }
+        timer.cancelled = true;
+        return true;
+    }
+
+    public synchronized int size() {
+        return timers.size();
+    }
+
+    /**
+     * Turns the wheel up to {@code nowMillis} and returns the keys whose deadline has
+     * been reached, in deadline order.
+     */
+    public synchronized List<K> advanceTo(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<K> due = new ArrayList<>();
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade(due);
+            List<Timer<K>> slot = slots[0][(int) Math.floorMod(currentTick, (long) wheelSize)];
+            for (Timer<K> timer : slot) {
+                fire(timer, due);
+            }
+            slot.clear();
+        }
+        return due;
+    }
+
+    private void cascade(List<K> due) {
+        for (int level = 1; level < levelSpans.length; level++) {
+            if (Math.floorMod(currentTick, levelSpans[level]) != 0) {
+                return;
+            }
+            List<Timer<K>> slot = slots[level][slotIndex(currentTick, level)];
+            List<Timer<K>> cascading = new ArrayList<>(slot);
+            slot.clear();
+            for (Timer<K> timer : cascading) {
+                if (timer.cancelled) {
+                    continue;
+                }
+                if (timer.deadlineTick <= currentTick) {
+                    fire(timer, due);
+                } else {
+                    place(timer);
+                }
+            }
+        }
+    }
+
+    private void place(Timer<K> timer) {
+        int top = levelSpans.length - 1;
+        for (int level = 0; level < top; level++) {
+            long distance = Math.floorDiv(timer.deadlineTick, levelSpans[level])
+                    - Math.floorDiv(currentTick, levelSpans[level]);
+            if (distance < wheelSize) {
+                slots[level][slotIndex(timer.deadlineTick, level)].add(timer);
+                return;
+            }
+        }
+        long position = Math.floorDiv(currentTick, levelSpans[top]);
+        if (Math.floorDiv(timer.deadlineTick, levelSpans[top]) - position < wheelSize) {
+            slots[top][slotIndex(timer.deadlineTick, top)].add(timer);
+        } else {
+            // Beyond the horizon: park in the slot cascaded last in this rotation and re-place from there
+            slots[top][(int) Math.floorMod(position - 1, (long) wheelSize)].add(timer);
+        }
+    }
+
+    private int slotIndex(long tick, int level) {
+        return (int) Math.floorMod(Math.floorDiv(tick, levelSpans[level]), (long) wheelSize);
+    }
+
+    private void fire(Timer<K> timer, List<K> due) {
+        if (!timer.cancelled) {
+            timers.remove(timer.key);
+            due.add(timer.key);
+        }
+    }
+}
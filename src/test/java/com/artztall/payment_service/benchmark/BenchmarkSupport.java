@@ -0,0 +1,141 @@
+package com.artztall.payment_service.benchmark;
+
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.repository.PaymentRepository;
+import com.artztall.payment_service.service.PaymentGateway;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCreateParams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared pieces of the HTTP benchmarks: a downstream stub that answers every request
+ * with {@code {}} after a fixed delay, payment seeding, and a client that confirms
+ * payments with bounded concurrency.
+ */
+final class BenchmarkSupport {
+
+    record Result(String label, int requests, int succeeded, Duration elapsed) {
+        double throughput() {
+            return requests / (elapsed.toNanos() / 1e9);
+        }
+
+        void print() {
+            System.out.printf("%-10s %5d requests in %6.2fs = %8.1f req/s (%d ok)%n",
+                    label, requests, elapsed.toNanos() / 1e9, throughput(), succeeded);
+        }
+    }
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private BenchmarkSupport() {
+    }
+
+    static HttpServer startSlowDownstream(long latencyMillis) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 1024);
+        server.createContext("/", exchange -> respondAfter(exchange, latencyMillis));
+        // The stub must never be the bottleneck
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        return server;
+    }
+
+    private static void respondAfter(HttpExchange exchange, long latencyMillis) throws IOException {
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Creates the intents through the gateway, so the confirm endpoints find them when
+     * they check the intent status.
+     */
+    static List<String> seedPendingPayments(PaymentRepository paymentRepository, PaymentGateway paymentGateway,
+                                            String label, int count) {
+        List<CompletableFuture<PaymentIntent>> intents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            intents.add(paymentGateway.createPaymentIntent(
+                    PaymentIntentCreateParams.builder().setAmount(10_000L).setCurrency("usd").build(),
+                    RequestOptions.builder().setIdempotencyKey(label + "-order-" + i).build()));
+        }
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            payments.add(Payment.builder()
+                    .orderId(label + "-order-" + i)
+                    .userId("user-" + i)
+                    .amount(100L)
+                    .currency("usd")
+                    .stripPaymentIntendId(intents.get(i).join().getId())
+                    .paymentStatus(PaymentStatus.PENDING)
+                    .expiresAt(LocalDateTime.now().plusHours(1))
+                    .createdAt(LocalDateTime.now())
+                    .build());
+        }
+        return paymentRepository.saveAll(payments).stream()
+                .map(Payment::getStripPaymentIntendId)
+                .toList();
+    }
+
+    /**
+     * Confirms the first {@code concurrency} intents to warm up, then times the rest.
+     */
+    static Result confirmAll(String label, String confirmUrl, List<String> intents, int concurrency)
+            throws InterruptedException {
+        confirm(confirmUrl, intents.subList(0, concurrency), concurrency);
+
+        List<String> measured = intents.subList(concurrency, intents.size());
+        long start = System.nanoTime();
+        int succeeded = confirm(confirmUrl, measured, concurrency);
+        return new Result(label, measured.size(), succeeded, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static int confirm(String confirmUrl, List<String> intents, int concurrency) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<CompletableFuture<?>> responses = new ArrayList<>();
+        for (String intent : intents) {
+            inFlight.acquire();
+            HttpRequest request = HttpRequest.newBuilder(URI.create(confirmUrl + intent))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+            responses.add(CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, e) -> {
+                        inFlight.release();
+                        if (e == null && response.statusCode() == 200 && response.body().contains("COMPLETED")) {
+                            succeeded.incrementAndGet();
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).join();
+        return succeeded.get();
+    }
+}
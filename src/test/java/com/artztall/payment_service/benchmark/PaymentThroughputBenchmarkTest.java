@@ -0,0 +1,90 @@
+package com.artztall.payment_service.benchmark;
+
+import com.artztall.payment_service.repository.PaymentRepository;
+import com.artztall.payment_service.service.PaymentGateway;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the MVC and reactive confirm endpoints under concurrent load. The order
+ * service is stubbed with a fixed latency and Tomcat gets a small thread pool, so the
+ * MVC path is bounded by threads while the reactive path should only be bounded by the
+ * stub's latency. Run with {@code mvn test -Pbenchmark}; needs Docker for MongoDB.
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=16",
+        "eureka.client.enabled=false",
+        "payments.migration.artist-id-backfill.enabled=false",
+        "payments.gateway=fake"
+})
+public class PaymentThroughputBenchmarkTest {
+
+    private static final int REQUESTS = 2_000;
+    private static final int CONCURRENCY = 256;
+    private static final long DOWNSTREAM_LATENCY_MS = 50;
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static HttpServer downstream;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @DynamicPropertySource
+    static void downstreamServices(DynamicPropertyRegistry registry) throws IOException {
+        if (downstream == null) {
+            downstream = BenchmarkSupport.startSlowDownstream(DOWNSTREAM_LATENCY_MS);
+        }
+        String baseUrl = "http://localhost:" + downstream.getAddress().getPort();
+        registry.add("services.order.base-url", () -> baseUrl);
+        registry.add("services.product.base-url", () -> baseUrl);
+        registry.add("services.notification.base-url", () -> baseUrl);
+    }
+
+    @AfterAll
+    static void stopDownstream() {
+        downstream.stop(0);
+    }
+
+    @Test
+    void confirmPayment_MvcVersusReactive() throws Exception {
+        BenchmarkSupport.Result mvc = run("mvc", "/api/payments/confirm/");
+        BenchmarkSupport.Result reactive = run("reactive", "/api/reactive/payments/confirm/");
+
+        mvc.print();
+        reactive.print();
+        assertEquals(mvc.requests(), mvc.succeeded(), "mvc requests failed");
+        assertEquals(reactive.requests(), reactive.succeeded(), "reactive requests failed");
+    }
+
+    private BenchmarkSupport.Result run(String label, String path) throws InterruptedException {
+        return BenchmarkSupport.confirmAll(label, "http://localhost:" + port + path,
+                BenchmarkSupport.seedPendingPayments(paymentRepository, paymentGateway, label, REQUESTS + CONCURRENCY),
+                CONCURRENCY);
+    }
+}
@@ -0,0 +1,77 @@
+package com.artztall.payment_service.benchmark;
+
+import com.artztall.payment_service.PaymentServiceApplication;
+import com.artztall.payment_service.repository.PaymentRepository;
+import com.artztall.payment_service.service.PaymentGateway;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the blocking MVC confirm endpoint once on platform threads and once with
+ * {@code spring.threads.virtual.enabled=true}, against the same slow order service stub
+ * and the same Tomcat thread limit. Each confirm parks its request thread in
+ * {@code Mono.block()} while the stub sleeps, so the platform run is capped at roughly
+ * threads / latency requests per second. Run with {@code mvn test -Pbenchmark}; needs
+ * Docker for MongoDB.
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+public class VirtualThreadCheckoutBenchmarkTest {
+
+    private static final int REQUESTS = 2_000;
+    private static final int CONCURRENCY = 512;
+    private static final long DOWNSTREAM_LATENCY_MS = 50;
+    private static final int TOMCAT_THREADS = 32;
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    @Test
+    void confirmPayment_PlatformVersusVirtualThreads() throws Exception {
+        HttpServer downstream = BenchmarkSupport.startSlowDownstream(DOWNSTREAM_LATENCY_MS);
+        try {
+            BenchmarkSupport.Result platform = run("platform", false, downstream);
+            BenchmarkSupport.Result virtual = run("virtual", true, downstream);
+
+            platform.print();
+            virtual.print();
+            assertEquals(platform.requests(), platform.succeeded(), "platform requests failed");
+            assertEquals(virtual.requests(), virtual.succeeded(), "virtual requests failed");
+        } finally {
+            downstream.stop(0);
+        }
+    }
+
+    private BenchmarkSupport.Result run(String label, boolean virtualThreads, HttpServer downstream) throws Exception {
+        String downstreamUrl = "http://localhost:" + downstream.getAddress().getPort();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(PaymentServiceApplication.class)
+                .properties(
+                        "server.port=0",
+                        "server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "spring.data.mongodb.uri=" + mongo.getReplicaSetUrl("payments"),
+                        "eureka.client.enabled=false",
+                        "payments.migration.artist-id-backfill.enabled=false",
+                        "payments.gateway=fake",
+                        "services.order.base-url=" + downstreamUrl,
+                        "services.product.base-url=" + downstreamUrl,
+                        "services.notification.base-url=" + downstreamUrl)
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            PaymentRepository paymentRepository = context.getBean(PaymentRepository.class);
+            PaymentGateway paymentGateway = context.getBean(PaymentGateway.class);
+            return BenchmarkSupport.confirmAll(label, "http://localhost:" + port + "/api/payments/confirm/",
+                    BenchmarkSupport.seedPendingPayments(paymentRepository, paymentGateway, label, REQUESTS + CONCURRENCY),
+                    CONCURRENCY);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.artztall.payment_service.config;
+
+import com.artztall.payment_service.migration.DuplicatePaymentIntentMigration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MongoIndexInitializerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private IndexOperations indexOperations;
+
+    @Mock
+    private DuplicatePaymentIntentMigration duplicatePaymentIntentMigration;
+
+    private MongoMappingContext mappingContext;
+
+    @BeforeEach
+    void setUp() {
+        mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+    }
+
+    @Test
+    void afterSingletonsInstantiated_MissingIndexAbortsStartupWhenVerificationFails() {
+        when(mongoTemplate.indexOps(any(Class.class))).thenReturn(indexOperations);
+        when(indexOperations.getIndexInfo()).thenReturn(Collections.emptyList());
+        MongoIndexInitializer initializer = new MongoIndexInitializer(mongoTemplate, duplicatePaymentIntentMigration,
+                mappingContext, false, MongoIndexInitializer.Verification.FAIL);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, initializer::afterSingletonsInstantiated);
+        assertTrue(e.getMessage().contains("stripe_payment_intent"));
+        verify(indexOperations, never()).ensureIndex(any(IndexDefinition.class));
+        verifyNoInteractions(duplicatePaymentIntentMigration);
+    }
+
+    @Test
+    void initialize_IndexThatCannotBeBuiltDoesNotHoldBackTheOthers() {
+        List<String> created = new ArrayList<>();
+        when(mongoTemplate.indexOps(any(Class.class))).thenReturn(indexOperations);
+        when(indexOperations.ensureIndex(any(IndexDefinition.class))).thenAnswer(invocation -> {
+            String name = invocation.<IndexDefinition>getArgument(0).getIndexOptions().getString("name");
+            if (name.equals("stripe_payment_intent")) {
+                throw new DuplicateKeyException("E11000 duplicate key error");
+            }
+            created.add(name);
+            return name;
+        });
+        when(indexOperations.getIndexInfo()).thenAnswer(invocation -> created.stream()
+                .map(name -> new IndexInfo(List.of(), name, false, false, ""))
+                .toList());
+        MongoIndexInitializer initializer = new MongoIndexInitializer(mongoTemplate, duplicatePaymentIntentMigration,
+                mappingContext, true, MongoIndexInitializer.Verification.FAIL);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, initializer::initialize);
+
+        // Resolved before the unique index is attempted
+        InOrder inOrder = inOrder(duplicatePaymentIntentMigration, indexOperations);
+        inOrder.verify(duplicatePaymentIntentMigration).run();
+        inOrder.verify(indexOperations, atLeastOnce()).ensureIndex(any(IndexDefinition.class));
+        assertTrue(e.getMessage().contains("stripe_payment_intent"), e.getMessage());
+        // The TTL and unique indexes of the later collections are still created
+        assertTrue(created.containsAll(List.of("created_ttl", "order")));
+    }
+}
@@ -0,0 +1,91 @@
+package com.artztall.payment_service.config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WebClientConfigTest {
+
+    private final WebClientConfig config = new WebClientConfig();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Metrics.addRegistry(meterRegistry);
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/fast", exchange -> respond(exchange, 0));
+        server.createContext("/hung", exchange -> respond(exchange, 5_000));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        config.destroy();
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    void build_FailsFastWhenTheServiceDoesNotRespond() {
+        DownstreamClientProperties.Profile profile = profile();
+        profile.setResponseTimeout(Duration.ofMillis(200));
+        WebClient client = config.build(WebClient.builder(), "hung-test", profile);
+
+        long start = System.nanoTime();
+        assertThrows(WebClientRequestException.class, () -> client.get().uri("/hung")
+                .retrieve()
+                .bodyToMono(String.class)
+                .block(Duration.ofSeconds(3)));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 2_000);
+    }
+
+    @Test
+    void build_PublishesConnectionPoolMetricsPerClient() {
+        WebClient client = config.build(WebClient.builder(), "metrics-test", profile());
+
+        assertEquals("ok", client.get().uri("/fast").retrieve().bodyToMono(String.class).block());
+
+        assertNotNull(meterRegistry.find("reactor.netty.connection.provider.total.connections")
+                .tag("name", "metrics-test")
+                .gauge());
+        assertEquals(50.0, meterRegistry.get("reactor.netty.connection.provider.max.connections")
+                .tag("name", "metrics-test")
+                .gauge().value());
+    }
+
+    private DownstreamClientProperties.Profile profile() {
+        DownstreamClientProperties.Profile profile = new DownstreamClientProperties.Profile();
+        profile.setBaseUrl("http://localhost:" + server.getAddress().getPort());
+        return profile;
+    }
+
+    private static void respond(HttpExchange exchange, long delayMillis) throws IOException {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] bytes = "ok".getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+}
@@ -1,23 +1,45 @@
 package com.artztall.payment_service.controller;
 
+import com.artztall.payment_service.dto.ArtisanEarningsSummaryDTO;
+import com.artztall.payment_service.dto.CursorPageDTO;
 import com.artztall.payment_service.dto.PaymentRequestDTO;
 import com.artztall.payment_service.dto.PaymentResponseDTO;
 import com.artztall.payment_service.dto.UserPaymentResponseDTO;
+import com.artztall.payment_service.exception.ExportLimitException;
 import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.service.ArtisanEarningsService;
+import com.artztall.payment_service.service.PaymentExportExecutor;
+import com.artztall.payment_service.service.PaymentExportService;
 import com.artztall.payment_service.service.PaymentService;
+import com.artztall.payment_service.service.PaymentStatusSubscriptions;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -29,7 +51,17 @@ public class PaymentControllerTest {
     @Mock
     private PaymentService paymentService;
 
-    @InjectMocks
+    @Mock
+    private PaymentExportService paymentExportService;
+
+    @Mock
+    private PaymentStatusSubscriptions paymentStatusSubscriptions;
+
+    @Mock
+    private ArtisanEarningsService artisanEarningsService;
+
+    private PaymentExportExecutor paymentExportExecutor;
+
     private PaymentController paymentController;
 
     private ObjectMapper objectMapper;
@@ -37,10 +69,18 @@ public class PaymentControllerTest {
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
+        paymentExportExecutor = new PaymentExportExecutor(new SimpleMeterRegistry(), 1);
+        paymentController = new PaymentController(paymentService, paymentExportService, paymentStatusSubscriptions,
+                artisanEarningsService, paymentExportExecutor, Duration.ofMinutes(10));
         mockMvc = MockMvcBuilders.standaloneSetup(paymentController).build();
         objectMapper = new ObjectMapper();
     }
 
+    @AfterEach
+    public void tearDown() {
+        paymentExportExecutor.stop();
+    }
+
     @Test
     public void testCreatePayment() throws Exception {
         PaymentRequestDTO paymentRequestDTO = PaymentRequestDTO.builder()
@@ -60,7 +100,7 @@ public class PaymentControllerTest {
                 .expiresAt(LocalDateTime.now().plusHours(1))
                 .build();
 
-        when(paymentService.createPayment(paymentRequestDTO)).thenReturn(paymentResponseDTO);
+        when(paymentService.createPayment(paymentRequestDTO, null)).thenReturn(paymentResponseDTO);
 
         mockMvc.perform(post("/api/payments")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -181,4 +221,113 @@ public class PaymentControllerTest {
                 .andExpect(jsonPath("$[0].userId").value(userId))
                 .andExpect(jsonPath("$[0].paymentStatus").value("COMPLETED"));
     }
+
+    @Test
+    public void testGetPaymentPageByUser() throws Exception {
+        String userId = "user123";
+        UserPaymentResponseDTO userPaymentResponseDTO = UserPaymentResponseDTO.builder()
+                .id("payment123")
+                .userId(userId)
+                .paymentStatus(PaymentStatus.COMPLETED)
+                .build();
+
+        when(paymentService.findByUserId(userId, "cursor123", 10))
+                .thenReturn(CursorPageDTO.<UserPaymentResponseDTO>builder()
+                        .items(Collections.singletonList(userPaymentResponseDTO))
+                        .nextCursor("cursor456")
+                        .build());
+
+        mockMvc.perform(get("/api/payments/user/{userId}/page", userId)
+                        .param("cursor", "cursor123")
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].userId").value(userId))
+                .andExpect(jsonPath("$.nextCursor").value("cursor456"));
+    }
+
+    @Test
+    public void testExportPaymentsByUser() throws Exception {
+        String userId = "user123";
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        when(paymentExportService.exportUserPayments(eq(userId), eq(from), isNull(), any()))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(3, OutputStream.class)
+                            .write("{\"id\":\"payment123\"}\n".getBytes(StandardCharsets.UTF_8));
+                    return 1L;
+                });
+
+        MvcResult result = mockMvc.perform(get("/api/payments/user/{userId}/export", userId)
+                        .param("from", "2024-01-01T00:00:00"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(Duration.ofMinutes(10).toMillis(), result.getRequest().getAsyncContext().getTimeout());
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"id\":\"payment123\"}\n"));
+    }
+
+    @Test
+    public void testExportRejectedWhileExportThreadsAreBusy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(paymentExportService.exportUserPayments(eq("user123"), isNull(), isNull(), any()))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return 0L;
+                });
+
+        MvcResult running = mockMvc.perform(get("/api/payments/user/{userId}/export", "user123"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult rejected = mockMvc.perform(get("/api/payments/artisan/{artisanId}/export", "artisan123"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Dispatched as the async result, which its @ResponseStatus answers with 503
+        Object result = WebAsyncUtils.getAsyncManager(rejected.getRequest()).getConcurrentResult();
+        assertInstanceOf(ExportLimitException.class, result);
+
+        release.countDown();
+        mockMvc.perform(asyncDispatch(running))
+                .andExpect(status().isOk());
+        verify(paymentExportService, never()).exportArtisanPayments(any(), any(), any(), any());
+    }
+
+    @Test
+    public void testGetArtisanEarnings() throws Exception {
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2024, 1, 31);
+        when(artisanEarningsService.summary("artisan123", from, to)).thenReturn(ArtisanEarningsSummaryDTO.builder()
+                .artistId("artisan123")
+                .totals(Collections.emptyList())
+                .days(Collections.emptyList())
+                .build());
+
+        mockMvc.perform(get("/api/payments/artisan/{artisanId}/earnings", "artisan123")
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-01-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.artistId").value("artisan123"));
+
+        verify(artisanEarningsService).summary("artisan123", from, to);
+    }
+
+    @Test
+    public void testPollPaymentStatus() throws Exception {
+        DeferredResult<PaymentResponseDTO> pending = new DeferredResult<>();
+        when(paymentStatusSubscriptions.awaitChange("payment123", PaymentStatus.PENDING)).thenReturn(pending);
+
+        MvcResult result = mockMvc.perform(get("/api/payments/status/{paymentId}/poll", "payment123"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        pending.setResult(PaymentResponseDTO.builder()
+                .paymentId("payment123")
+                .paymentStatus(PaymentStatus.COMPLETED)
+                .build());
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.paymentStatus").value("COMPLETED"));
+    }
 }
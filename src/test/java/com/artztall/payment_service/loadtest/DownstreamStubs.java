@@ -0,0 +1,47 @@
+package com.artztall.payment_service.loadtest;
+
+/**
+ * Handlers standing in for the order, product and notification services. Every order
+ * exists, costs 100 and holds one product, so any order ID the workload makes up can be
+ * paid for.
+ */
+final class DownstreamStubs {
+
+    static final StubServer.Response UNAVAILABLE = new StubServer.Response(503,
+            "{\"error\":\"Injected downstream failure\"}");
+
+    private static final String ORDERS = "/api/orders/";
+
+    private DownstreamStubs() {
+    }
+
+    static StubServer.Response orders(StubServer.Request request) {
+        if (!request.path().startsWith(ORDERS)) {
+            return new StubServer.Response(404, "{}");
+        }
+        String orderId = request.path().substring(ORDERS.length());
+        if ("PUT".equals(request.method())) {
+            // PUT /api/orders/{orderId}/status?status=...
+            return StubServer.Response.ok(order(orderId.substring(0, orderId.indexOf('/')), "CONFIRMED"));
+        }
+        if (orderId.startsWith("artisan/")) {
+            return StubServer.Response.ok("[]");
+        }
+        return StubServer.Response.ok(order(orderId, "PENDING"));
+    }
+
+    static StubServer.Response products(StubServer.Request request) {
+        return StubServer.Response.ok("{}");
+    }
+
+    static StubServer.Response notifications(StubServer.Request request) {
+        return StubServer.Response.ok("{}");
+    }
+
+    private static String order(String orderId, String status) {
+        return """
+                {"id":"%s","userId":"user-%s","totalAmount":100,"status":"%s",\
+                "item":{"productId":"product-%s","artistId":"artist-%d","quantity":1,"price":100,"subtotal":100}}"""
+                .formatted(orderId, orderId, status, orderId, Math.floorMod(orderId.hashCode(), 50));
+    }
+}
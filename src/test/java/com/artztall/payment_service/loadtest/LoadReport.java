@@ -0,0 +1,53 @@
+package com.artztall.payment_service.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prints throughput and latency percentiles per endpoint, then the expiry result and how
+ * much each stand-in was called.
+ */
+final class LoadReport {
+
+    record ExpiryResult(int seeded, long expired, Duration elapsed) {
+    }
+
+    private LoadReport() {
+    }
+
+    static void print(Workload.Settings settings, Map<Workload.Endpoint, Workload.EndpointResult> results,
+                      ExpiryResult expiry, List<StubServer> stubs) {
+        double seconds = settings.duration().toNanos() / 1e9;
+        System.out.printf("%nLoad test: %d users, %.0fs measured after %.0fs warmup%n",
+                settings.users(), seconds, settings.warmup().toNanos() / 1e9);
+        System.out.printf("%-36s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "TPS", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Workload.EndpointResult result : results.values()) {
+            Histogram latencies = result.latencies();
+            System.out.printf("%-36s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    result.endpoint().label,
+                    latencies.getTotalCount(),
+                    result.errors(),
+                    latencies.getTotalCount() / seconds,
+                    millis(latencies, 50.0),
+                    millis(latencies, 99.0),
+                    millis(latencies, 99.9),
+                    latencies.getMaxValue() / 1000.0);
+        }
+
+        System.out.printf("%nExpiry: %d of %d due payments expired in %.2fs (%.1f/s)%n",
+                expiry.expired(), expiry.seeded(), expiry.elapsed().toNanos() / 1e9,
+                expiry.expired() / Math.max(expiry.elapsed().toNanos() / 1e9, 0.001));
+        for (StubServer stub : stubs) {
+            System.out.printf("Stub %-13s %9d requests, %d injected errors%n",
+                    stub.name(), stub.requests(), stub.injectedErrors());
+        }
+    }
+
+    private static double millis(Histogram latencies, double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,162 @@
+package com.artztall.payment_service.loadtest;
+
+import com.artztall.payment_service.PaymentServiceApplication;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.service.ExpiryPartitionCoordinator;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * End-to-end load test of the whole service over HTTP. MongoDB is an in-memory server, unless
+ * {@code loadtest.mongodb-uri} points at a real one for representative numbers, and the
+ * order, product, notification and Stripe APIs are {@link StubServer}s with configurable
+ * latency and error rate, so nothing outside this machine is called. While the checkout
+ * workload runs, a batch of already-due payments is left to the expiry sweep. Prints
+ * TPS and latency percentiles per endpoint.
+ * <p>
+ * Run with {@code mvn test -Ploadtest}. Tune it with
+ * system properties, e.g. {@code -Dloadtest.users=128 -Dloadtest.duration=2m
+ * -Dloadtest.stripe-latency=300ms -Dloadtest.error-rate=0.02}.
+ */
+@Tag("loadtest")
+public class PaymentLoadTest {
+
+    private static final Workload.Settings SETTINGS = new Workload.Settings(
+            Integer.getInteger("loadtest.users", 32),
+            duration("loadtest.warmup", "10s"),
+            duration("loadtest.duration", "30s"),
+            Integer.getInteger("loadtest.polls", 3),
+            ratio("loadtest.abandon-ratio", "0.1"),
+            ratio("loadtest.decline-ratio", "0.05"),
+            ratio("loadtest.refund-ratio", "0.1"));
+
+    private static final Duration DOWNSTREAM_LATENCY = duration("loadtest.downstream-latency", "20ms");
+    private static final Duration STRIPE_LATENCY = duration("loadtest.stripe-latency", "100ms");
+    private static final double ERROR_RATE = ratio("loadtest.error-rate", "0.01");
+    private static final int EXPIRING = Integer.getInteger("loadtest.expiring", 2_000);
+    private static final String MONGODB_URI = System.getProperty("loadtest.mongodb-uri");
+    // Keeps runs against the same database apart
+    private static final String RUN = Long.toString(System.currentTimeMillis(), 36);
+    // Stripe's live-mode limit
+    private static final int STRIPE_RATE_LIMIT = Integer.getInteger("loadtest.stripe-rate-limit", 100);
+
+    @Test
+    void checkoutWorkload() throws Exception {
+        StripeStub stripe = new StripeStub();
+        MongoServer mongo = new MongoServer(new MemoryBackend());
+        String mongoUri = MONGODB_URI;
+        if (mongoUri == null) {
+            InetSocketAddress address = mongo.bind();
+            mongoUri = "mongodb://localhost:" + address.getPort() + "/payments";
+        }
+        try (StubServer orders = StubServer.start("order", DOWNSTREAM_LATENCY, ERROR_RATE,
+                     DownstreamStubs.UNAVAILABLE, DownstreamStubs::orders);
+             StubServer products = StubServer.start("product", DOWNSTREAM_LATENCY, ERROR_RATE,
+                     DownstreamStubs.UNAVAILABLE, DownstreamStubs::products);
+             StubServer notifications = StubServer.start("notification", DOWNSTREAM_LATENCY, ERROR_RATE,
+                     DownstreamStubs.UNAVAILABLE, DownstreamStubs::notifications);
+             StubServer stripeApi = StubServer.start("stripe", STRIPE_LATENCY, ERROR_RATE,
+                     StripeStub.API_ERROR, stripe);
+             ConfigurableApplicationContext context = new SpringApplicationBuilder(PaymentServiceApplication.class)
+                     // Arguments override application.properties, unlike builder properties
+                     .run(
+                             "--server.port=0",
+                             "--spring.data.mongodb.uri=" + mongoUri,
+                             "--eureka.client.enabled=false",
+                             "--payments.migration.artist-id-backfill.enabled=false",
+                             "--payments.earnings.rebuild.on-startup=false",
+                             "--payments.gateway=stripe",
+                             "--stripe.api.base=" + stripeApi.baseUrl(),
+                             "--resilience4j.ratelimiter.instances.stripe.limit-for-period=" + STRIPE_RATE_LIMIT,
+                             "--payments.expiry.sweep-interval-ms=1000",
+                             "--services.order.base-url=" + orders.baseUrl(),
+                             "--services.product.base-url=" + products.baseUrl(),
+                             "--services.notification.base-url=" + notifications.baseUrl())) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            MongoTemplate mongoTemplate = context.getBean(MongoTemplate.class);
+            Workload workload = new Workload("http://localhost:" + port, "loadtest-" + RUN, SETTINGS);
+
+            CompletableFuture<LoadReport.ExpiryResult> expiry = CompletableFuture.supplyAsync(
+                    () -> awaitExpiry(mongoTemplate, SETTINGS.duration()));
+            Map<Workload.Endpoint, Workload.EndpointResult> results = workload.run();
+
+            LoadReport.print(SETTINGS, results, expiry.join(), List.of(orders, products, notifications, stripeApi));
+            assertTrue(results.get(Workload.Endpoint.CHECKOUT).latencies().getTotalCount() > 0, "no checkouts ran");
+            assertTrue(expiry.join().expired() > 0, "no due payments were expired");
+        } finally {
+            mongo.shutdownNow();
+        }
+    }
+
+    /**
+     * Seeds payments that are already due once the warmup is over and waits for the sweep
+     * to expire them, at most until the workload ends.
+     */
+    private static LoadReport.ExpiryResult awaitExpiry(MongoTemplate mongoTemplate, Duration timeout) {
+        try {
+            Thread.sleep(SETTINGS.warmup());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Payment> due = new ArrayList<>();
+        for (int i = 0; i < EXPIRING; i++) {
+            String orderId = "loadtest-" + RUN + "-expiring-" + i;
+            due.add(Payment.builder()
+                    .orderId(orderId)
+                    .userId("user-" + orderId)
+                    .amount(100L)
+                    .currency("usd")
+                    .paymentStatus(PaymentStatus.PENDING)
+                    .expiresAt(now.minusSeconds(1))
+                    .sweepPartition(ExpiryPartitionCoordinator.partitionOf(orderId))
+                    .createdAt(now.minusMinutes(16))
+                    .build());
+        }
+        mongoTemplate.insert(due, Payment.class);
+
+        Query pending = new Query(where("orderId").regex("^loadtest-" + RUN + "-expiring-")
+                .and("paymentStatus").is(PaymentStatus.PENDING));
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        long remaining = EXPIRING;
+        while (remaining > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            remaining = mongoTemplate.count(pending, Payment.class);
+        }
+        return new LoadReport.ExpiryResult(EXPIRING, EXPIRING - remaining, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+
+    private static double ratio(String property, String defaultValue) {
+        return Double.parseDouble(System.getProperty(property, defaultValue));
+    }
+}
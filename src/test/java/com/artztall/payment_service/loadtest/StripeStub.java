@@ -0,0 +1,89 @@
+package com.artztall.payment_service.loadtest;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for the parts of the Stripe API the service calls: creating and retrieving
+ * payment intents and creating refunds. Answers in Stripe's JSON shape so the real SDK
+ * parses them, and replays the first response for a repeated idempotency key. Like Stripe
+ * test mode, the {@code pm_card_chargeDeclined} payment method yields an intent that
+ * requires a new payment method; any other method succeeds.
+ */
+final class StripeStub implements StubServer.Handler {
+
+    static final String DECLINED_PAYMENT_METHOD = "pm_card_chargeDeclined";
+    static final StubServer.Response API_ERROR = new StubServer.Response(500,
+            "{\"error\":{\"type\":\"api_error\",\"message\":\"Injected Stripe failure\"}}");
+
+    private static final String INTENTS = "/v1/payment_intents";
+
+    private final Map<String, String> intents = new ConcurrentHashMap<>();
+    private final Map<String, StubServer.Response> replays = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    @Override
+    public StubServer.Response handle(StubServer.Request request) {
+        if ("GET".equals(request.method()) && request.path().startsWith(INTENTS + "/")) {
+            String intent = intents.get(request.path().substring(INTENTS.length() + 1));
+            return intent != null ? StubServer.Response.ok(intent) : notFound("payment_intent");
+        }
+        if (!"POST".equals(request.method())) {
+            return notFound("resource");
+        }
+        if (request.idempotencyKey() == null) {
+            return create(request);
+        }
+        return replays.computeIfAbsent(request.path() + " " + request.idempotencyKey(), key -> create(request));
+    }
+
+    private StubServer.Response create(StubServer.Request request) {
+        Map<String, String> form = parseForm(request.body());
+        long id = ids.incrementAndGet();
+        if (INTENTS.equals(request.path())) {
+            String intentId = "pi_stub" + id;
+            String status = DECLINED_PAYMENT_METHOD.equals(form.get("payment_method"))
+                    ? "requires_payment_method"
+                    : "succeeded";
+            String intent = """
+                    {"id":"%s","object":"payment_intent","amount":%s,"currency":"%s","status":"%s",\
+                    "client_secret":"%s_secret_stub","livemode":false}"""
+                    .formatted(intentId, form.getOrDefault("amount", "0"), form.getOrDefault("currency", "usd"),
+                            status, intentId);
+            intents.put(intentId, intent);
+            return StubServer.Response.ok(intent);
+        }
+        if ("/v1/refunds".equals(request.path())) {
+            String intentId = form.get("payment_intent");
+            if (intentId == null || !intents.containsKey(intentId)) {
+                return notFound("payment_intent");
+            }
+            return StubServer.Response.ok("""
+                    {"id":"re_stub%d","object":"refund","payment_intent":"%s","status":"succeeded"}"""
+                    .formatted(id, intentId));
+        }
+        return notFound("resource");
+    }
+
+    private static StubServer.Response notFound(String resource) {
+        return new StubServer.Response(404, """
+                {"error":{"type":"invalid_request_error","code":"resource_missing","message":"No such %s"}}"""
+                .formatted(resource));
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+}
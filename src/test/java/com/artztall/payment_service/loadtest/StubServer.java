@@ -0,0 +1,118 @@
+package com.artztall.payment_service.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for a dependency of the service. Every request waits for the configured
+ * latency, then either fails with the configured probability or is answered by the
+ * handler. Requests run on virtual threads, so the stub never limits the load.
+ */
+final class StubServer implements AutoCloseable {
+
+    record Request(String method, String path, String idempotencyKey, String body) {
+    }
+
+    record Response(int status, String body) {
+        static Response ok(String body) {
+            return new Response(200, body);
+        }
+    }
+
+    @FunctionalInterface
+    interface Handler {
+        Response handle(Request request);
+    }
+
+    private final String name;
+    private final Duration latency;
+    private final double errorRate;
+    private final Response injectedError;
+    private final Handler handler;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    private StubServer(String name, Duration latency, double errorRate, Response injectedError, Handler handler)
+            throws IOException {
+        this.name = name;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.injectedError = injectedError;
+        this.handler = handler;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        server.createContext("/", this::serve);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    static StubServer start(String name, Duration latency, double errorRate, Response injectedError,
+                            Handler handler) throws IOException {
+        return new StubServer(name, latency, errorRate, injectedError, handler);
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    String name() {
+        return name;
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Thread.sleep(latency);
+
+            Response response;
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                response = injectedError;
+            } else {
+                response = handler.handle(new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                        exchange.getRequestHeaders().getFirst("Idempotency-Key"), body));
+            }
+            byte[] bytes = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Request-Id", "req_stub_" + requests.get());
+            exchange.sendResponseHeaders(response.status(), bytes.length == 0 ? -1 : bytes.length);
+            if (bytes.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.artztall.payment_service.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop checkout workload: each virtual user creates a payment, polls its status,
+ * then confirms it, abandons it or has its card declined, and refunds some completed
+ * payments. Latencies are only recorded after the warmup, per endpoint.
+ */
+final class Workload {
+
+    enum Endpoint {
+        CHECKOUT("POST /api/payments"),
+        POLL("POST /api/payments/status/{id}"),
+        CONFIRM("POST /api/payments/confirm/{intent}"),
+        REFUND("POST /api/payments/payment/{id}");
+
+        final String label;
+
+        Endpoint(String label) {
+            this.label = label;
+        }
+    }
+
+    record Settings(int users, Duration warmup, Duration duration, int pollsPerCheckout,
+                    double abandonRatio, double declineRatio, double refundRatio) {
+    }
+
+    record EndpointResult(Endpoint endpoint, long errors, Histogram latencies) {
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final String baseUrl;
+    private final String orderPrefix;
+    private final Settings settings;
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<Endpoint, Recorder> latencies = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, AtomicLong> errors = new EnumMap<>(Endpoint.class);
+    private final AtomicLong orders = new AtomicLong();
+    private volatile boolean measuring;
+
+    Workload(String baseUrl, String orderPrefix, Settings settings) {
+        this.baseUrl = baseUrl;
+        this.orderPrefix = orderPrefix;
+        this.settings = settings;
+        for (Endpoint endpoint : Endpoint.values()) {
+            latencies.put(endpoint, new Recorder(3));
+            errors.put(endpoint, new AtomicLong());
+        }
+    }
+
+    /**
+     * Runs the users for warmup plus duration and returns what was recorded after the warmup.
+     */
+    Map<Endpoint, EndpointResult> run() throws InterruptedException {
+        long end = System.nanoTime() + settings.warmup().plus(settings.duration()).toNanos();
+        Thread[] users = new Thread[settings.users()];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = Thread.ofVirtual().name("loadtest-user-" + i).start(() -> {
+                while (System.nanoTime() < end) {
+                    checkout();
+                }
+            });
+        }
+        Thread.sleep(settings.warmup());
+        latencies.values().forEach(Recorder::reset);
+        errors.values().forEach(count -> count.set(0));
+        measuring = true;
+        for (Thread user : users) {
+            user.join();
+        }
+        measuring = false;
+
+        Map<Endpoint, EndpointResult> results = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            results.put(endpoint, new EndpointResult(endpoint, errors.get(endpoint).get(),
+                    latencies.get(endpoint).getIntervalHistogram()));
+        }
+        return results;
+    }
+
+    private void checkout() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String orderId = orderPrefix + "-order-" + orders.incrementAndGet();
+        String paymentMethod = random.nextDouble() < settings.declineRatio()
+                ? StripeStub.DECLINED_PAYMENT_METHOD
+                : "pm_card_visa";
+        String body = """
+                {"orderId":"%s","userId":"user-%s","currency":"usd","paymentMethodId":"%s"}"""
+                .formatted(orderId, orderId, paymentMethod);
+        JsonNode created = call(Endpoint.CHECKOUT, "/api/payments", body, Set.of("PENDING"));
+        if (created == null) {
+            return;
+        }
+        String paymentId = created.path("paymentId").asText();
+        for (int i = 0; i < settings.pollsPerCheckout(); i++) {
+            call(Endpoint.POLL, "/api/payments/status/" + paymentId, null, Set.of("PENDING"));
+        }
+        if (random.nextDouble() < settings.abandonRatio()) {
+            // Left PENDING for the expiry sweep
+            return;
+        }
+
+        // Stripe.js confirms with the intent ID that prefixes the client secret
+        String clientSecret = created.path("clientSecret").asText();
+        String intentId = clientSecret.substring(0, clientSecret.indexOf("_secret_"));
+        JsonNode confirmed = call(Endpoint.CONFIRM, "/api/payments/confirm/" + intentId, null,
+                StripeStub.DECLINED_PAYMENT_METHOD.equals(paymentMethod) ? Set.of("FAILED") : Set.of("COMPLETED"));
+        if (confirmed != null && "COMPLETED".equals(confirmed.path("paymentStatus").asText())
+                && random.nextDouble() < settings.refundRatio()) {
+            call(Endpoint.REFUND, "/api/payments/payment/" + paymentId, null, Set.of("REFUNDED"));
+        }
+    }
+
+    /**
+     * Posts to the service and returns the response, or null when the call failed or the
+     * payment is not in one of the expected statuses.
+     */
+    private JsonNode call(Endpoint endpoint, String path, String body, Set<String> expectedStatuses) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(body != null ? HttpRequest.BodyPublishers.ofString(body) : HttpRequest.BodyPublishers.noBody())
+                .build();
+        long start = System.nanoTime();
+        JsonNode response = null;
+        try {
+            HttpResponse<String> httpResponse = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (httpResponse.statusCode() == 200) {
+                JsonNode payment = JSON.readTree(httpResponse.body());
+                if (expectedStatuses.contains(payment.path("paymentStatus").asText())) {
+                    response = payment;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Counted as an error below
+        }
+        if (measuring) {
+            latencies.get(endpoint).recordValue(Math.max(1, (System.nanoTime() - start) / 1_000));
+            if (response == null) {
+                errors.get(endpoint).incrementAndGet();
+            }
+        }
+        return response;
+    }
+}
@@ -0,0 +1,115 @@
+package com.artztall.payment_service.migration;
+
+import com.artztall.payment_service.dto.OrderItemResponseDTO;
+import com.artztall.payment_service.dto.OrderResponseDTO;
+import com.artztall.payment_service.model.MigrationRecord;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.service.OrderClientService;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ArtistIdBackfillMigrationTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private OrderClientService orderClientService;
+
+    @Mock(answer = Answers.RETURNS_SELF)
+    private BulkOperations bulkOperations;
+
+    private ArtistIdBackfillMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        migration = new ArtistIdBackfillMigration(mongoTemplate, orderClientService, true, 200,
+                Duration.ofMinutes(5));
+    }
+
+    @Test
+    void run_MarksPaymentsWithoutArtistAndRecordsCompletion() {
+        when(mongoTemplate.stream(any(Query.class), eq(Payment.class))).thenReturn(Stream.of(
+                payment("payment-1", "order-1"), payment("payment-2", "order-2"), payment("payment-3", "order-3")));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Payment.class)).thenReturn(bulkOperations);
+        when(orderClientService.getOrder("order-1")).thenReturn(order("artist-1"));
+        when(orderClientService.getOrder("order-2")).thenReturn(order(null));
+        when(orderClientService.getOrder("order-3")).thenThrow(
+                WebClientResponseException.create(HttpStatus.NOT_FOUND.value(), "Not Found", null, null, null));
+
+        migration.run();
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(3)).updateOne(any(Query.class), updates.capture());
+        assertEquals(List.of(new Document("artistId", "artist-1"), new Document("artistIdUnresolvable", true),
+                        new Document("artistIdUnresolvable", true)),
+                updates.getAllValues().stream().map(update -> update.getUpdateObject().get("$set")).toList());
+
+        ArgumentCaptor<Update> completion = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), completion.capture(), eq(MigrationRecord.class));
+        Document set = completion.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals(1L, set.get("documentsUpdated"));
+        assertEquals(2L, set.get("documentsUnresolvable"));
+        assertNotNull(set.get("completedAt"));
+    }
+
+    @Test
+    void run_ReleasesTheClaimWhenOrdersCouldNotBeFetched() {
+        when(mongoTemplate.stream(any(Query.class), eq(Payment.class)))
+                .thenReturn(Stream.of(payment("payment-1", "order-1")));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Payment.class)).thenReturn(bulkOperations);
+        when(orderClientService.getOrder("order-1")).thenThrow(new IllegalStateException("order service down"));
+
+        migration.run();
+
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(MigrationRecord.class));
+        verify(mongoTemplate).remove(any(Query.class), eq(MigrationRecord.class));
+        verify(bulkOperations, never()).execute();
+    }
+
+    @Test
+    void run_SkipsWhileAnotherInstanceHoldsTheMigration() {
+        when(mongoTemplate.insert(any(MigrationRecord.class))).thenThrow(new DuplicateKeyException("claimed"));
+
+        migration.run();
+
+        verify(mongoTemplate).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(MigrationRecord.class));
+        verify(mongoTemplate, never()).stream(any(Query.class), eq(Payment.class));
+        verifyNoInteractions(orderClientService);
+    }
+
+    private static Payment payment(String id, String orderId) {
+        return Payment.builder().id(id).orderId(orderId).build();
+    }
+
+    private static OrderResponseDTO order(String artistId) {
+        return OrderResponseDTO.builder()
+                .item(OrderItemResponseDTO.builder().artistId(artistId).build())
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.artztall.payment_service.migration;
+
+import com.artztall.payment_service.model.MigrationRecord;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DuplicatePaymentIntentMigrationTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock(answer = Answers.RETURNS_SELF)
+    private BulkOperations bulkOperations;
+
+    private DuplicatePaymentIntentMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        migration = new DuplicatePaymentIntentMigration(mongoTemplate);
+    }
+
+    @Test
+    void run_KeepsIntentOnSettledPaymentAndFailsPendingDuplicates() {
+        LocalDateTime now = LocalDateTime.now();
+        when(mongoTemplate.getCollectionName(Payment.class)).thenReturn("payments");
+        when(mongoTemplate.aggregateStream(any(Aggregation.class), eq("payments"), eq(Document.class)))
+                .thenReturn(Stream.of(new Document("_id", "pi_1")
+                        .append("paymentIds", List.of("payment-1", "payment-2", "payment-3"))));
+        when(mongoTemplate.find(any(Query.class), eq(Payment.class))).thenReturn(List.of(
+                payment("payment-1", PaymentStatus.PENDING, now.minusMinutes(2)),
+                payment("payment-2", PaymentStatus.COMPLETED, now.minusMinutes(1)),
+                payment("payment-3", PaymentStatus.FAILED, now.minusMinutes(3))));
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Payment.class)).thenReturn(bulkOperations);
+
+        assertEquals(2, migration.run());
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).updateOne(queries.capture(), updates.capture());
+        assertEquals(List.of("payment-1", "payment-3"),
+                queries.getAllValues().stream().map(query -> query.getQueryObject().get("_id")).toList());
+        Document pending = updates.getAllValues().get(0).getUpdateObject();
+        assertEquals("payment-2", pending.get("$set", Document.class).get("duplicateOf"));
+        assertEquals(PaymentStatus.FAILED, pending.get("$set", Document.class).get("paymentStatus"));
+        assertTrue(pending.get("$unset", Document.class).containsKey("stripPaymentIntendId"));
+        assertFalse(updates.getAllValues().get(1).getUpdateObject().get("$set", Document.class)
+                .containsKey("paymentStatus"));
+        verify(bulkOperations).execute();
+
+        ArgumentCaptor<MigrationRecord> record = ArgumentCaptor.forClass(MigrationRecord.class);
+        verify(mongoTemplate).save(record.capture());
+        assertEquals(2, record.getValue().getDocumentsUpdated());
+        assertNotNull(record.getValue().getCompletedAt());
+    }
+
+    @Test
+    void run_SkipsOnceComplete() {
+        when(mongoTemplate.findById(DuplicatePaymentIntentMigration.MIGRATION_ID, MigrationRecord.class))
+                .thenReturn(MigrationRecord.builder().completedAt(LocalDateTime.now()).build());
+
+        assertEquals(0, migration.run());
+        verify(mongoTemplate, never()).aggregateStream(any(Aggregation.class), anyString(), eq(Document.class));
+    }
+
+    private static Payment payment(String id, PaymentStatus status, LocalDateTime createdAt) {
+        return Payment.builder()
+                .id(id)
+                .stripPaymentIntendId("pi_1")
+                .paymentStatus(status)
+                .createdAt(createdAt)
+                .build();
+    }
+}
@@ -0,0 +1,205 @@
+package com.artztall.payment_service.repository;
+
+import com.artztall.payment_service.config.MongoIndexInitializer;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.service.PaymentExpirySweeper;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs every repository query, and the sweeper's page query, against a real MongoDB and
+ * asserts from its explain plan that it is served by an index rather than a collection
+ * scan.
+ */
+@DataMongoTest
+@Import({MongoIndexInitializer.class, PaymentRepositoryIndexTest.QueryCaptureConfig.class})
+@TestPropertySource(properties = "payments.indexes.verification=FAIL")
+@Testcontainers(disabledWithoutDocker = true)
+public class PaymentRepositoryIndexTest {
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    private static final Set<String> INDEXED_STAGES = Set.of("IXSCAN", "IDHACK", "EXPRESS_IXSCAN");
+
+    @TestConfiguration
+    static class QueryCaptureConfig {
+        static final List<BsonDocument> CAPTURED = new CopyOnWriteArrayList<>();
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer captureQueries() {
+            CommandListener listener = new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if (event.getCommandName().equals("find")
+                            && event.getCommand().getString("find").getValue().equals("payments")) {
+                        CAPTURED.add(event.getCommand().clone());
+                    }
+                }
+            };
+            return settings -> settings.addCommandListener(listener);
+        }
+    }
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoIndexInitializer mongoIndexInitializer;
+
+    private Payment saved;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository.deleteAll();
+        mongoIndexInitializer.initialize();
+
+        List<Payment> payments = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            payments.add(Payment.builder()
+                    .orderId("order-" + i)
+                    .userId("user-" + (i % 5))
+                    .artistId("artist-" + (i % 3))
+                    .amount(100L)
+                    .currency("usd")
+                    .stripPaymentIntendId("pi_" + i)
+                    .paymentStatus(i % 2 == 0 ? PaymentStatus.PENDING : PaymentStatus.COMPLETED)
+                    .expiresAt(LocalDateTime.now().minusMinutes(i))
+                    .sweepPartition(i % 4)
+                    .createdAt(LocalDateTime.now().minusMinutes(i))
+                    .updatedAt(LocalDateTime.now())
+                    .build());
+        }
+        saved = paymentRepository.saveAll(payments).get(0);
+        QueryCaptureConfig.CAPTURED.clear();
+    }
+
+    @Test
+    void findByStripPaymentIntendId_UsesIndex() {
+        assertUsesIndex(repository -> repository.findByStripPaymentIntendId("pi_1"));
+    }
+
+    @Test
+    void findByOrderId_UsesIndex() {
+        assertUsesIndex(repository -> repository.findByOrderId("order-1"));
+    }
+
+    @Test
+    void findByUserId_UsesIndex() {
+        assertUsesIndex(repository -> repository.findByUserId("user-1"));
+    }
+
+    @Test
+    void findUserPaymentPage_UsesIndex() {
+        assertUsesIndex(repository -> repository.findUserPaymentPage("user-1", Limit.of(10)));
+    }
+
+    @Test
+    void findUserPaymentPageAfter_UsesIndex() {
+        assertUsesIndex(repository -> repository.findUserPaymentPageAfter(
+                "user-1", saved.getCreatedAt(), new ObjectId(saved.getId()), Limit.of(10)));
+    }
+
+    @Test
+    void findByPaymentStatusAndExpiresAtBefore_UsesIndex() {
+        assertUsesIndex(repository -> repository.findByPaymentStatusAndExpiresAtBefore(
+                PaymentStatus.PENDING, LocalDateTime.now().minusMinutes(10)));
+    }
+
+    @Test
+    void findByArtistIdAndPaymentStatusOrderByCreatedAtDesc_UsesIndex() {
+        assertUsesIndex(repository -> repository.findByArtistIdAndPaymentStatusOrderByCreatedAtDesc(
+                "artist-1", PaymentStatus.COMPLETED));
+    }
+
+    @Test
+    void findById_UsesIndex() {
+        assertUsesIndex(repository -> repository.findById(saved.getId()));
+    }
+
+    @Test
+    void sweeperPageQuery_ReadsSortFromIndex() {
+        LocalDateTime cutoff = LocalDateTime.now();
+        List<String> first = assertUsesIndex(repository -> mongoTemplate.find(
+                PaymentExpirySweeper.pageQuery(cutoff, Set.of(0, 2), null, null, 10), Payment.class));
+        assertFalse(first.contains("SORT"), "in-memory sort for the first page: " + first);
+
+        QueryCaptureConfig.CAPTURED.clear();
+        List<String> next = assertUsesIndex(repository -> mongoTemplate.find(
+                PaymentExpirySweeper.pageQuery(cutoff, Set.of(0, 2), saved.getExpiresAt(), saved.getId(), 10),
+                Payment.class));
+        assertFalse(next.contains("SORT"), "in-memory sort for a following page: " + next);
+    }
+
+    /**
+     * Returns the stages of the winning plans.
+     */
+    private List<String> assertUsesIndex(Consumer<PaymentRepository> query) {
+        query.accept(paymentRepository);
+        assertFalse(QueryCaptureConfig.CAPTURED.isEmpty(), "query did not reach MongoDB");
+
+        List<String> allStages = new ArrayList<>();
+        for (BsonDocument command : QueryCaptureConfig.CAPTURED) {
+            BsonDocument find = new BsonDocument();
+            command.forEach((key, value) -> {
+                if (!key.startsWith("$") && !key.equals("lsid")) {
+                    find.put(key, value);
+                }
+            });
+            Document explain = mongoTemplate.getDb().runCommand(
+                    new Document("explain", find).append("verbosity", "queryPlanner"));
+            Object winningPlan = ((Document) explain.get("queryPlanner")).get("winningPlan");
+
+            List<String> stages = new ArrayList<>();
+            collectStages(winningPlan, stages);
+            assertFalse(stages.contains("COLLSCAN"), "collection scan for " + find.toJson() + ": " + stages);
+            assertTrue(stages.stream().anyMatch(INDEXED_STAGES::contains),
+                    "no index scan for " + find.toJson() + ": " + stages);
+            allStages.addAll(stages);
+        }
+        return allStages;
+    }
+
+    private void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+}
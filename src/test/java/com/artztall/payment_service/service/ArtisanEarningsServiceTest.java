@@ -0,0 +1,162 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.ArtisanEarningsDTO;
+import com.artztall.payment_service.dto.ArtisanEarningsSummaryDTO;
+import com.artztall.payment_service.exception.InvalidEarningsRangeException;
+import com.artztall.payment_service.model.ArtisanEarnings;
+import com.artztall.payment_service.model.EarningsTransition;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ArtisanEarningsServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ArtisanEarningsService artisanEarningsService;
+
+    @BeforeEach
+    void setUp() {
+        artisanEarningsService = new ArtisanEarningsService(mongoTemplate, meterRegistry, 30, 366, 500, false,
+                Duration.ofHours(1));
+    }
+
+    @Test
+    void record_IncrementsDayOfRefund() {
+        Payment payment = payment(PaymentStatus.REFUNDED);
+        payment.setRefundedAt(LocalDateTime.of(2026, 10, 16, 23, 59));
+
+        artisanEarningsService.record(payment);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).insert(any(EarningsTransition.class));
+        verify(mongoTemplate).upsert(query.capture(), update.capture(), eq(ArtisanEarnings.class));
+        assertEquals("artist-1:usd:2026-10-16", query.getValue().getQueryObject().get("_id"));
+        Document increments = update.getValue().getUpdateObject().get("$inc", Document.class);
+        assertEquals(1, increments.get("refundedCount"));
+        assertEquals(250L, increments.get("refundedAmount"));
+        assertFalse(increments.containsKey("completedCount"));
+    }
+
+    @Test
+    void record_AddsTransitionOnlyOnce() {
+        when(mongoTemplate.insert(any(EarningsTransition.class))).thenThrow(new DuplicateKeyException("duplicate"));
+
+        artisanEarningsService.record(payment(PaymentStatus.COMPLETED));
+
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(ArtisanEarnings.class));
+        assertEquals(1, meterRegistry.get("payments.earnings.transitions").tag("outcome", "duplicate").counter().count());
+    }
+
+    @Test
+    void record_IgnoresOtherStatusesAndPaymentsWithoutArtist() {
+        artisanEarningsService.record(payment(PaymentStatus.FAILED));
+        Payment legacy = payment(PaymentStatus.COMPLETED);
+        legacy.setArtistId(null);
+        artisanEarningsService.record(legacy);
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void summary_AddsDaysSinceSettlementToSettledTotals() {
+        when(mongoTemplate.findById(ArtisanEarnings.SETTLED_ID, ArtisanEarnings.class))
+                .thenReturn(ArtisanEarnings.builder().settledThrough(LocalDate.of(2026, 10, 15)).build());
+        when(mongoTemplate.find(any(Query.class), eq(ArtisanEarnings.class))).thenReturn(List.of(
+                rollup(null, 10, 1000, 1, 100),
+                rollup(LocalDate.of(2026, 10, 16), 2, 200, 0, 0),
+                rollup(LocalDate.of(2026, 10, 14), 1, 100, 0, 0)));
+
+        ArtisanEarningsSummaryDTO summary = artisanEarningsService.summary("artist-1",
+                LocalDate.of(2026, 10, 14), LocalDate.of(2026, 10, 16));
+
+        // The 14th is already part of the settled totals
+        ArtisanEarningsDTO total = summary.getTotals().get(0);
+        assertEquals(1, summary.getTotals().size());
+        assertEquals(12, total.getCompletedCount());
+        assertEquals(1200, total.getCompletedAmount());
+        assertEquals(1100, total.getNetAmount());
+        assertEquals(List.of(LocalDate.of(2026, 10, 14), LocalDate.of(2026, 10, 16)),
+                summary.getDays().stream().map(ArtisanEarningsDTO::getDay).toList());
+    }
+
+    @Test
+    void summary_RejectsInvertedAndOversizedRanges() {
+        assertThrows(InvalidEarningsRangeException.class, () -> artisanEarningsService.summary("artist-1",
+                LocalDate.of(2026, 10, 16), LocalDate.of(2026, 10, 15)));
+        assertThrows(InvalidEarningsRangeException.class, () -> artisanEarningsService.summary("artist-1",
+                LocalDate.of(2025, 1, 1), LocalDate.of(2026, 10, 15)));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void rebuild_SkipsWhileAnotherInstanceHoldsTheLease() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(ArtisanEarnings.class))).thenThrow(new DuplicateKeyException("locked"));
+
+        assertEquals(-1, artisanEarningsService.rebuild(LocalDate.of(2026, 10, 17)));
+        verify(mongoTemplate, never()).aggregateStream(any(Aggregation.class), anyString(), eq(Document.class));
+    }
+
+    @Test
+    void dayAggregation_LeavesTodayToIncrements() {
+        List<Document> pipeline = ArtisanEarningsService.dayAggregation(LocalDate.of(2026, 10, 17))
+                .toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+        assertTrue(pipeline.get(2).containsKey("$unionWith"));
+        assertEquals(new Document("day", new Document("$lt", "2026-10-17")), pipeline.get(3).get("$match"));
+    }
+
+    private static Payment payment(PaymentStatus status) {
+        return Payment.builder()
+                .id("payment-1")
+                .artistId("artist-1")
+                .amount(250L)
+                .currency("usd")
+                .paymentStatus(status)
+                .updatedAt(LocalDateTime.of(2026, 10, 17, 9, 0))
+                .build();
+    }
+
+    private static ArtisanEarnings rollup(LocalDate day, long completedCount, long completedAmount,
+                                          long refundedCount, long refundedAmount) {
+        return ArtisanEarnings.builder()
+                .artistId("artist-1")
+                .currency("usd")
+                .day(day)
+                .completedCount(completedCount)
+                .completedAmount(completedAmount)
+                .refundedCount(refundedCount)
+                .refundedAmount(refundedAmount)
+                .build();
+    }
+}
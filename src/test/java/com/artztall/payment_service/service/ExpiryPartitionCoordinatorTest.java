@@ -0,0 +1,145 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.model.ExpiryLease;
+import com.artztall.payment_service.model.SweeperInstance;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ExpiryPartitionCoordinatorTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock(answer = Answers.RETURNS_SELF)
+    private BulkOperations bulkOperations;
+
+    private ExpiryPartitionCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        coordinator = new ExpiryPartitionCoordinator(mongoTemplate, new SimpleMeterRegistry(),
+                "payment-service", Duration.ofSeconds(30), 50);
+    }
+
+    @Test
+    void partitionOf_IsStableAndInRange() {
+        int partition = ExpiryPartitionCoordinator.partitionOf("order-123");
+
+        assertEquals(partition, ExpiryPartitionCoordinator.partitionOf("order-123"));
+        assertTrue(partition >= 0 && partition < ExpiryPartitionCoordinator.PARTITION_COUNT);
+    }
+
+    @Test
+    void heartbeat_AcquiresFairShareOfFreeLeases() {
+        List<ExpiryLease> freeLeases = IntStream.range(0, ExpiryPartitionCoordinator.PARTITION_COUNT)
+                .mapToObj(partition -> ExpiryLease.builder().partition(partition).expiresAt(LocalDateTime.MIN).build())
+                .toList();
+
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ExpiryLease.class)).thenReturn(bulkOperations);
+        when(mongoTemplate.count(any(Query.class), eq(SweeperInstance.class))).thenReturn(2L);
+        when(mongoTemplate.find(any(Query.class), eq(ExpiryLease.class)))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(freeLeases);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(ExpiryLease.class)))
+                .thenAnswer(invocation -> {
+                    Query query = invocation.getArgument(0);
+                    Integer partition = (Integer) query.getQueryObject().get("_id");
+                    return ExpiryLease.builder().partition(partition).owner(coordinator.getInstanceId()).build();
+                });
+
+        coordinator.heartbeat();
+
+        assertEquals(ExpiryPartitionCoordinator.PARTITION_COUNT / 2, coordinator.ownedPartitions().size());
+        verify(mongoTemplate).upsert(any(Query.class), any(Update.class), eq(SweeperInstance.class));
+    }
+
+    @Test
+    void heartbeat_TellsListenersWhichPartitionsWereAcquired() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ExpiryLease.class)).thenReturn(bulkOperations);
+        when(mongoTemplate.count(any(Query.class), eq(SweeperInstance.class))).thenReturn(1L);
+        when(mongoTemplate.find(any(Query.class), eq(ExpiryLease.class)))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(List.of(ExpiryLease.builder().partition(7).expiresAt(LocalDateTime.MIN).build()));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(ExpiryLease.class)))
+                .thenReturn(ExpiryLease.builder().partition(7).owner(coordinator.getInstanceId()).build());
+        List<Set<Integer>> acquired = new ArrayList<>();
+        coordinator.addListener((gained, released) -> acquired.add(gained));
+
+        coordinator.heartbeat();
+
+        assertEquals(List.of(Set.of(7)), acquired);
+    }
+
+    @Test
+    void heartbeat_KeepsRenewingWhileASlowSweepHoldsTheSharedScheduler() throws Exception {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ExpiryLease.class)).thenReturn(bulkOperations);
+        when(mongoTemplate.count(any(Query.class), eq(SweeperInstance.class))).thenReturn(1L);
+        when(mongoTemplate.find(any(Query.class), eq(ExpiryLease.class))).thenReturn(Collections.emptyList());
+
+        // Spring's default scheduler: a single thread shared by every @Scheduled job
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.initialize();
+        CountDownLatch sweepRunning = new CountDownLatch(1);
+        CountDownLatch sweepDone = new CountDownLatch(1);
+        scheduler.execute(() -> {
+            sweepRunning.countDown();
+            try {
+                sweepDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try {
+            assertTrue(sweepRunning.await(5, TimeUnit.SECONDS));
+            coordinator.start();
+
+            verify(mongoTemplate, timeout(5000).atLeast(3))
+                    .upsert(any(Query.class), any(Update.class), eq(SweeperInstance.class));
+            assertEquals(1, sweepDone.getCount(), "the sweep is still running");
+        } finally {
+            sweepDone.countDown();
+            scheduler.shutdown();
+            coordinator.releaseAll();
+        }
+    }
+
+    @Test
+    void heartbeat_OwnsNothingWhenMongoIsUnavailable() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ExpiryLease.class))
+                .thenThrow(new IllegalStateException("Mongo unavailable"));
+
+        coordinator.heartbeat();
+
+        assertTrue(coordinator.ownedPartitions().isEmpty());
+    }
+}
@@ -0,0 +1,52 @@
+package com.artztall.payment_service.service;
+
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCreateParams;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FakePaymentGatewayTest {
+
+    private final FakePaymentGateway gateway = new FakePaymentGateway(Duration.ofMillis(20));
+
+    @Test
+    void createPaymentIntent_CompletesAfterLatencyAndCanBeRetrieved() throws StripeException {
+        long start = System.nanoTime();
+        PaymentIntent created = PaymentGateway.await(gateway.createPaymentIntent(params(), options("order-1")));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 20);
+        assertEquals("succeeded", created.getStatus());
+        assertEquals(1000L, created.getAmount());
+        assertSame(created, PaymentGateway.await(gateway.retrievePaymentIntent(created.getId())));
+    }
+
+    @Test
+    void createPaymentIntent_HonoursIdempotencyKeys() throws StripeException {
+        PaymentIntent first = PaymentGateway.await(gateway.createPaymentIntent(params(), options("order-1")));
+        PaymentIntent retried = PaymentGateway.await(gateway.createPaymentIntent(params(), options("order-1")));
+        PaymentIntent other = PaymentGateway.await(gateway.createPaymentIntent(params(), options("order-2")));
+
+        assertEquals(first.getId(), retried.getId());
+        assertNotEquals(first.getId(), other.getId());
+    }
+
+    @Test
+    void retrievePaymentIntent_FailsForUnknownIntent() {
+        assertThrows(InvalidRequestException.class,
+                () -> PaymentGateway.await(gateway.retrievePaymentIntent("pi_unknown")));
+    }
+
+    private static PaymentIntentCreateParams params() {
+        return PaymentIntentCreateParams.builder().setAmount(1000L).setCurrency("usd").build();
+    }
+
+    private static RequestOptions options(String idempotencyKey) {
+        return RequestOptions.builder().setIdempotencyKey(idempotencyKey).build();
+    }
+}
@@ -0,0 +1,140 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.NotificationSendDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class NotificationDispatcherTest {
+
+    @Mock
+    private NotificationClientService notificationClientService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private NotificationDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    private NotificationDispatcher createDispatcher(int capacity, NotificationDispatcher.OverflowPolicy policy) {
+        return createDispatcher(capacity, policy, Duration.ofSeconds(1));
+    }
+
+    private NotificationDispatcher createDispatcher(int capacity, NotificationDispatcher.OverflowPolicy policy,
+                                                    Duration sendTimeout) {
+        return new NotificationDispatcher(notificationClientService, meterRegistry,
+                capacity, 1, 10, sendTimeout, policy);
+    }
+
+    private NotificationSendDTO notification(String userId) {
+        NotificationSendDTO notification = new NotificationSendDTO();
+        notification.setUserId(userId);
+        notification.setType("INFO");
+        notification.setMessage("message");
+        return notification;
+    }
+
+    @Test
+    void dispatch_SendsQueuedNotificationsInBackground() throws InterruptedException {
+        when(notificationClientService.send(any(NotificationSendDTO.class))).thenReturn(Mono.empty());
+        dispatcher = createDispatcher(10, NotificationDispatcher.OverflowPolicy.DROP_NEWEST);
+        dispatcher.start();
+
+        dispatcher.dispatch(notification("user-1"));
+        dispatcher.dispatch(notification("user-2"));
+
+        verify(notificationClientService, timeout(2000).times(2)).send(any(NotificationSendDTO.class));
+        dispatcher.stop();
+        assertEquals(2.0, meterRegistry.counter("notification.dispatcher.sent").count());
+    }
+
+    @Test
+    void dispatch_FailedSendIsCountedAndDoesNotStopWorker() throws InterruptedException {
+        when(notificationClientService.send(any(NotificationSendDTO.class)))
+                .thenReturn(Mono.error(new IllegalStateException("notification service down")))
+                .thenReturn(Mono.empty());
+        dispatcher = createDispatcher(10, NotificationDispatcher.OverflowPolicy.DROP_NEWEST);
+        dispatcher.start();
+
+        dispatcher.dispatch(notification("user-1"));
+        verify(notificationClientService, timeout(2000).times(1)).send(any(NotificationSendDTO.class));
+        dispatcher.dispatch(notification("user-2"));
+
+        verify(notificationClientService, timeout(2000).times(2)).send(any(NotificationSendDTO.class));
+        dispatcher.stop();
+        assertEquals(1.0, meterRegistry.counter("notification.dispatcher.failed").count());
+    }
+
+    @Test
+    void dispatch_DropNewestWhenQueueIsFull() {
+        NotificationDispatcher notStarted = createDispatcher(1, NotificationDispatcher.OverflowPolicy.DROP_NEWEST);
+
+        notStarted.dispatch(notification("user-1"));
+        notStarted.dispatch(notification("user-2"));
+
+        assertEquals(1, notStarted.getQueueDepth());
+        assertEquals(1.0, meterRegistry.find("notification.dispatcher.dropped").counter().count());
+        verifyNoInteractions(notificationClientService);
+    }
+
+    @Test
+    void dispatch_DropOldestWhenQueueIsFull() {
+        when(notificationClientService.send(any(NotificationSendDTO.class))).thenReturn(Mono.empty());
+        dispatcher = createDispatcher(2, NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+
+        dispatcher.dispatch(notification("user-1"));
+        dispatcher.dispatch(notification("user-2"));
+        dispatcher.dispatch(notification("user-3"));
+        assertEquals(2, dispatcher.getQueueDepth());
+        assertEquals(1.0, meterRegistry.find("notification.dispatcher.dropped").counter().count());
+
+        dispatcher.start();
+        ArgumentCaptor<NotificationSendDTO> sent = ArgumentCaptor.forClass(NotificationSendDTO.class);
+        verify(notificationClientService, timeout(2000).times(2)).send(sent.capture());
+        assertEquals(List.of("user-2", "user-3"),
+                sent.getAllValues().stream().map(NotificationSendDTO::getUserId).toList());
+    }
+
+    @Test
+    void dispatch_SendCancelledByTheTimeoutIsCountedAsFailed() {
+        when(notificationClientService.send(any(NotificationSendDTO.class))).thenReturn(Mono.never());
+        NotificationDispatcher notStarted = createDispatcher(1, NotificationDispatcher.OverflowPolicy.CALLER_RUNS,
+                Duration.ofMillis(100));
+
+        notStarted.dispatch(notification("user-1"));
+        notStarted.dispatch(notification("user-2"));
+
+        assertEquals(1.0, meterRegistry.counter("notification.dispatcher.failed").count());
+        assertEquals(0.0, meterRegistry.counter("notification.dispatcher.sent").count());
+    }
+
+    @Test
+    void dispatch_CallerRunsWhenQueueIsFull() {
+        when(notificationClientService.send(any(NotificationSendDTO.class))).thenReturn(Mono.empty());
+        NotificationDispatcher notStarted = createDispatcher(1, NotificationDispatcher.OverflowPolicy.CALLER_RUNS);
+
+        notStarted.dispatch(notification("user-1"));
+        notStarted.dispatch(notification("user-2"));
+
+        assertEquals(1, notStarted.getQueueDepth());
+        verify(notificationClientService).send(any(NotificationSendDTO.class));
+    }
+}
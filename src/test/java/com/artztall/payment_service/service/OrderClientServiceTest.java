@@ -0,0 +1,111 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.OrderResponseDTO;
+import com.artztall.payment_service.model.OrderStatus;
+import com.artztall.payment_service.util.DownstreamGuard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderClientServiceTest {
+
+    private final AtomicInteger orderReads = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Completes order reads; replaced by a test to hold a read in flight
+    private Mono<Void> readGate = Mono.empty();
+
+    private OrderClientService orderClientService;
+
+    @BeforeEach
+    void setUp() {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    if (request.method() == HttpMethod.GET) {
+                        orderReads.incrementAndGet();
+                    }
+                    String orderId = request.url().getPath().replaceAll(".*/api/orders/([^/]+).*", "$1");
+                    ClientResponse response = ClientResponse.create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body("{\"id\":\"" + orderId + "\",\"item\":{\"artistId\":\"artist-1\"}}")
+                            .build();
+                    return request.method() == HttpMethod.GET ? readGate.thenReturn(response) : Mono.just(response);
+                })
+                .build();
+        orderClientService = new OrderClientService(webClient, DownstreamGuard.ofDefaults("order"), meterRegistry, 100, Duration.ofMinutes(1), nanos::get);
+    }
+
+    @Test
+    void getOrder_ServesRepeatedLookupsFromCache() {
+        OrderResponseDTO first = orderClientService.getOrder("order-1");
+        OrderResponseDTO second = orderClientService.getOrder("order-1");
+
+        assertEquals("order-1", second.getId());
+        assertEquals(first, second);
+        assertEquals(1, orderReads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "orders").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void updateOrderStatus_InvalidatesCachedOrder() {
+        orderClientService.getOrder("order-1");
+        orderClientService.updateOrderStatus("order-1", OrderStatus.CONFIRMED);
+        orderClientService.getOrder("order-1");
+
+        assertEquals(2, orderReads.get());
+    }
+
+    @Test
+    void getOrder_ReturnsCopiesCallersCannotCorruptTheCacheWith() {
+        OrderResponseDTO first = orderClientService.getOrder("order-1");
+        first.setStatus(OrderStatus.CANCELLED);
+        first.getItem().setArtistId("someone-else");
+
+        OrderResponseDTO second = orderClientService.getOrder("order-1");
+
+        assertNull(second.getStatus());
+        assertEquals("artist-1", second.getItem().getArtistId());
+        assertEquals(1, orderReads.get());
+    }
+
+    @Test
+    void updateOrderStatus_ReadInFlightDuringTheUpdateIsNotCached() {
+        Sinks.Empty<Void> gate = Sinks.empty();
+        readGate = gate.asMono();
+        AtomicReference<OrderResponseDTO> inFlight = new AtomicReference<>();
+        orderClientService.fetchOrder("order-1").subscribe(inFlight::set);
+
+        readGate = Mono.empty();
+        orderClientService.updateOrderStatus("order-1", OrderStatus.CONFIRMED);
+        gate.tryEmitEmpty();
+        assertNotNull(inFlight.get());
+
+        orderClientService.getOrder("order-1");
+        assertEquals(2, orderReads.get());
+    }
+
+    @Test
+    void getOrder_RefetchesAfterTtl() {
+        orderClientService.getOrder("order-1");
+        nanos.addAndGet(Duration.ofSeconds(61).toNanos());
+        orderClientService.getOrder("order-1");
+
+        assertEquals(2, orderReads.get());
+    }
+}
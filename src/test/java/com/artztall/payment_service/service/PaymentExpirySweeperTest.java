@@ -0,0 +1,168 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.NotificationSendDTO;
+import com.artztall.payment_service.model.OrderStatus;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentExpirySweeperTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private OrderClientService orderClientService;
+
+    @Mock
+    private ProductReleaseService productReleaseService;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    private static final Set<Integer> ALL_PARTITIONS = IntStream.range(0, ExpiryPartitionCoordinator.PARTITION_COUNT)
+            .boxed()
+            .collect(Collectors.toSet());
+
+    private PaymentExpirySweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        sweeper = new PaymentExpirySweeper(mongoTemplate, orderClientService, productReleaseService,
+                notificationDispatcher, event -> { }, new PaymentStageTimer(new SimpleMeterRegistry(), Duration.ofSeconds(2)),
+                new SimpleMeterRegistry(), 2, 2, false, Duration.ofSeconds(60));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sweeper.shutdown();
+    }
+
+    private Payment expiredPayment(String id, LocalDateTime expiresAt) {
+        return Payment.builder()
+                .id(id)
+                .orderId("order-" + id)
+                .userId("user-456")
+                .paymentStatus(PaymentStatus.PENDING)
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    @Test
+    void sweep_ExpiresEveryPageAndFansOutDownstreamCalls() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Payment> firstPage = List.of(
+                expiredPayment("p1", now.minusMinutes(30)),
+                expiredPayment("p2", now.minusMinutes(20)));
+        List<Payment> secondPage = List.of(expiredPayment("p3", now.minusMinutes(10)));
+
+        when(mongoTemplate.find(any(Query.class), eq(Payment.class)))
+                .thenReturn(firstPage)
+                .thenReturn(secondPage)
+                .thenReturn(Collections.emptyList());
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Payment.class)))
+                .thenReturn(UpdateResult.acknowledged(2, 2L, null), UpdateResult.acknowledged(1, 1L, null));
+
+        PaymentExpirySweeper.SweepResult result = sweeper.sweep(now, ALL_PARTITIONS);
+
+        assertEquals(3, result.expired());
+        verify(mongoTemplate, times(2)).updateMulti(any(Query.class), any(Update.class), eq(Payment.class));
+        for (String id : List.of("p1", "p2", "p3")) {
+            verify(productReleaseService).releaseProductsForOrder("order-" + id);
+            verify(orderClientService).updateOrderStatus("order-" + id, OrderStatus.EXPIRED);
+        }
+        verify(notificationDispatcher, times(3)).dispatch(any(NotificationSendDTO.class));
+    }
+
+    @Test
+    void sweep_SkipsPaymentsConfirmedDuringTheSweep() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Payment> page = List.of(
+                expiredPayment("p1", now.minusMinutes(30)),
+                expiredPayment("p2", now.minusMinutes(20)));
+
+        when(mongoTemplate.find(any(Query.class), eq(Payment.class)))
+                .thenReturn(page)
+                .thenReturn(List.of(Payment.builder().id("p2").build()))
+                .thenReturn(Collections.emptyList());
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Payment.class)))
+                .thenReturn(UpdateResult.acknowledged(2, 1L, null));
+
+        PaymentExpirySweeper.SweepResult result = sweeper.sweep(now, ALL_PARTITIONS);
+
+        assertEquals(1, result.expired());
+        verify(orderClientService).updateOrderStatus("order-p2", OrderStatus.EXPIRED);
+        verify(orderClientService, never()).updateOrderStatus("order-p1", OrderStatus.EXPIRED);
+    }
+
+    @Test
+    void sweep_NothingToExpire() {
+        when(mongoTemplate.find(any(Query.class), eq(Payment.class))).thenReturn(Collections.emptyList());
+
+        PaymentExpirySweeper.SweepResult result = sweeper.sweep(LocalDateTime.now(), ALL_PARTITIONS);
+
+        assertEquals(0, result.expired());
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(Payment.class));
+        verifyNoInteractions(orderClientService, productReleaseService, notificationDispatcher);
+    }
+
+    @Test
+    void sweep_IncludesPaymentsDueExactlyAtTheCutoff() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.find(query.capture(), eq(Payment.class))).thenReturn(Collections.emptyList());
+
+        sweeper.sweep(now, ALL_PARTITIONS);
+
+        List<?> filters = query.getValue().getQueryObject().get("$and", List.class);
+        Document expiresAt = ((Document) filters.get(0)).get("expiresAt", Document.class);
+        assertEquals(now, expiresAt.get("$lte"));
+    }
+
+    @Test
+    void expireAll_ExpiresOnlyPaymentsThatAreStillPending() {
+        LocalDateTime now = LocalDateTime.now();
+        Payment expired = expiredPayment("p1", now.minusSeconds(1));
+        expired.setPaymentStatus(PaymentStatus.EXPIRED);
+
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Payment.class)))
+                .thenAnswer(invocation -> invocation.<Query>getArgument(0).getQueryObject().get("_id").equals("p1")
+                        ? expired : null);
+
+        Long count = sweeper.expireAll(List.of("p1", "p2"), now).block();
+
+        assertEquals(1L, count);
+        verify(productReleaseService).releaseProductsForOrder("order-p1");
+        verify(orderClientService).updateOrderStatus("order-p1", OrderStatus.EXPIRED);
+        verify(orderClientService, never()).updateOrderStatus("order-p2", OrderStatus.EXPIRED);
+    }
+}
@@ -0,0 +1,116 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.model.Payment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentExpiryWheelTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private PaymentExpirySweeper paymentExpirySweeper;
+
+    @Mock
+    private ExpiryPartitionCoordinator expiryPartitionCoordinator;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private PaymentExpiryWheel paymentExpiryWheel;
+
+    @BeforeEach
+    void setUp() {
+        paymentExpiryWheel = new PaymentExpiryWheel(mongoTemplate, paymentExpirySweeper, expiryPartitionCoordinator,
+                meterRegistry, true, 1000, 64, 2);
+    }
+
+    @Test
+    void load_OnlyReadsPendingPaymentsOfAcquiredPartitions() {
+        when(mongoTemplate.stream(any(Query.class), eq(Payment.class)))
+                .thenReturn(Stream.of(payment("payment-1", 3), payment("payment-2", 5)));
+
+        paymentExpiryWheel.load(Set.of(3, 5));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Payment.class));
+        Document partition = query.getValue().getQueryObject().getList("$and", Document.class).get(0);
+        Collection<?> partitions = (Collection<?>) partition.get("sweepPartition", Document.class).get("$in");
+        assertEquals(Set.of(3, 5), Set.copyOf(partitions));
+        assertEquals(2, pending());
+    }
+
+    @Test
+    void load_ExpiresOverduePaymentsInPageSizedBatches() {
+        when(mongoTemplate.stream(any(Query.class), eq(Payment.class))).thenReturn(Stream.of(
+                overdue("payment-1"), overdue("payment-2"), payment("payment-3", 3), overdue("payment-4"),
+                overdue("payment-5"), overdue("payment-6")));
+        when(paymentExpirySweeper.expireAll(anyCollection(), any(LocalDateTime.class)))
+                .thenAnswer(invocation -> Mono.just((long) invocation.<Collection<?>>getArgument(0).size()));
+
+        paymentExpiryWheel.load(Set.of(3));
+
+        InOrder inOrder = inOrder(paymentExpirySweeper);
+        inOrder.verify(paymentExpirySweeper).expireAll(eq(List.of("payment-1", "payment-2")), any(LocalDateTime.class));
+        inOrder.verify(paymentExpirySweeper).expireAll(eq(List.of("payment-4", "payment-5")), any(LocalDateTime.class));
+        inOrder.verify(paymentExpirySweeper).expireAll(eq(List.of("payment-6")), any(LocalDateTime.class));
+        inOrder.verifyNoMoreInteractions();
+        assertEquals(1, pending());
+        assertEquals(5.0, meterRegistry.get("payment.expiry.wheel.fired").counter().count());
+    }
+
+    @Test
+    void drop_CancelsTimersOfReleasedPartitionsOnly() {
+        paymentExpiryWheel.register(payment("payment-1", 3));
+        paymentExpiryWheel.register(payment("payment-2", 5));
+        paymentExpiryWheel.register(payment("legacy", null));
+
+        paymentExpiryWheel.drop(Set.of(0, 3));
+
+        assertEquals(1, pending());
+        verifyNoInteractions(paymentExpirySweeper);
+    }
+
+    private double pending() {
+        return meterRegistry.get("payment.expiry.wheel.pending").gauge().value();
+    }
+
+    private static Payment overdue(String id) {
+        return Payment.builder()
+                .id(id)
+                .sweepPartition(3)
+                .expiresAt(LocalDateTime.now().minusMinutes(10))
+                .build();
+    }
+
+    private static Payment payment(String id, Integer partition) {
+        return Payment.builder()
+                .id(id)
+                .sweepPartition(partition)
+                .expiresAt(LocalDateTime.now().plusMinutes(10))
+                .build();
+    }
+}
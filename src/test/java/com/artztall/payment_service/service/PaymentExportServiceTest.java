@@ -0,0 +1,87 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentExportServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private PaymentExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new PaymentExportService(mongoTemplate, objectMapper, 100, 2);
+    }
+
+    @Test
+    void exportUserPayments_WritesOneJsonLinePerPaymentAndClosesCursor() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<Payment> payments = IntStream.range(0, 3)
+                .mapToObj(i -> Payment.builder()
+                        .id("payment-" + i)
+                        .userId("user-1")
+                        .amount(100L + i)
+                        .paymentStatus(PaymentStatus.COMPLETED)
+                        .createdAt(LocalDateTime.now())
+                        .build())
+                .onClose(() -> closed.set(true));
+        when(mongoTemplate.stream(any(Query.class), eq(Payment.class))).thenReturn(payments);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = exportService.exportUserPayments("user-1", null, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, written);
+        assertEquals(3, lines.length);
+        JsonNode last = objectMapper.readTree(lines[2]);
+        assertEquals("payment-2", last.get("id").asText());
+        assertEquals(102, last.get("amount").asLong());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportArtisanPayments_FiltersCompletedPaymentsInDateRange() {
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 1, 0, 0);
+        when(mongoTemplate.stream(any(Query.class), eq(Payment.class))).thenReturn(Stream.empty());
+
+        exportService.exportArtisanPayments("artist-1", from, to, new ByteArrayOutputStream());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).stream(query.capture(), eq(Payment.class));
+        Document filter = query.getValue().getQueryObject();
+        assertEquals("artist-1", filter.get("artistId"));
+        assertEquals(PaymentStatus.COMPLETED, filter.get("paymentStatus"));
+        assertEquals(new Document("$gte", from).append("$lt", to), filter.get("createdAt"));
+        assertEquals(new Document("createdAt", -1), query.getValue().getSortObject());
+    }
+}
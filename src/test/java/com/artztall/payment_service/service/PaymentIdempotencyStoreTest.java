@@ -0,0 +1,273 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.artztall.payment_service.exception.IdempotencyKeyReusedException;
+import com.artztall.payment_service.exception.IdempotentRequestInProgressException;
+import com.artztall.payment_service.model.IdempotencyRecord;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentIdempotencyStoreTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ReactiveMongoTemplate reactiveMongoTemplate;
+
+    private static final String FINGERPRINT = "fingerprint-1";
+
+    private PaymentIdempotencyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new PaymentIdempotencyStore(mongoTemplate, reactiveMongoTemplate, new SimpleMeterRegistry(),
+                100, Duration.ofMinutes(10), Duration.ofMinutes(1));
+    }
+
+    @Test
+    void execute_ReplaysFirstResponseFromCache() {
+        AtomicInteger calls = new AtomicInteger();
+
+        PaymentResponseDTO first = store.execute("order-1", FINGERPRINT, () -> created(calls.incrementAndGet()));
+        PaymentResponseDTO retried = store.execute("order-1", FINGERPRINT, () -> created(calls.incrementAndGet()));
+
+        assertSame(first, retried);
+        assertEquals(1, calls.get());
+        verify(mongoTemplate, times(1)).insert(any(IdempotencyRecord.class));
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+    }
+
+    @Test
+    void execute_ReplaysResponseCompletedByAnotherInstance() {
+        PaymentResponseDTO stored = created(1);
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("order-1"));
+        when(mongoTemplate.findById("order-1", IdempotencyRecord.class)).thenReturn(IdempotencyRecord.builder()
+                .key("order-1")
+                .fingerprint(FINGERPRINT)
+                .status(IdempotencyRecord.Status.COMPLETED)
+                .response(stored)
+                .build());
+
+        PaymentResponseDTO response = store.execute("order-1", FINGERPRINT,
+                () -> fail("should replay the stored response"));
+
+        assertEquals(stored.getPaymentId(), response.getPaymentId());
+    }
+
+    @Test
+    void execute_RejectsWhileAnotherInstanceHoldsTheKey() {
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("order-1"));
+        when(mongoTemplate.findById("order-1", IdempotencyRecord.class)).thenReturn(IdempotencyRecord.builder()
+                .key("order-1")
+                .fingerprint(FINGERPRINT)
+                .status(IdempotencyRecord.Status.IN_PROGRESS)
+                .build());
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(IdempotencyRecord.class))).thenReturn(null);
+
+        assertThrows(IdempotentRequestInProgressException.class,
+                () -> store.execute("order-1", FINGERPRINT, () -> fail("should not run")));
+    }
+
+    @Test
+    void execute_ReleasesKeyWhenPaymentIsNotCreated() {
+        PaymentResponseDTO failed = PaymentResponseDTO.builder().paymentStatus(PaymentStatus.FAILED).build();
+
+        assertSame(failed, store.execute("order-1", FINGERPRINT, () -> failed));
+        assertThrows(IllegalStateException.class, () -> store.execute("order-2", FINGERPRINT, () -> {
+            throw new IllegalStateException("order service down");
+        }));
+
+        verify(mongoTemplate, times(2)).remove(any(Query.class), eq(IdempotencyRecord.class));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+        AtomicInteger calls = new AtomicInteger();
+        store.execute("order-1", FINGERPRINT, () -> created(calls.incrementAndGet()));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void execute_RejectsKeyReusedForAnotherRequest() {
+        store.execute("order-1", FINGERPRINT, () -> created(1));
+
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> store.execute("order-1", "fingerprint-2", () -> fail("should not run")));
+    }
+
+    @Test
+    void execute_RejectsStoredKeyOfAnotherRequest() {
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("order-1"));
+        when(mongoTemplate.findById("order-1", IdempotencyRecord.class)).thenReturn(IdempotencyRecord.builder()
+                .key("order-1")
+                .fingerprint("fingerprint-2")
+                .status(IdempotencyRecord.Status.COMPLETED)
+                .response(created(1))
+                .build());
+
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> store.execute("order-1", FINGERPRINT, () -> fail("should not run")));
+    }
+
+    @Test
+    void execute_StoresResponseWithoutClientSecret() {
+        PaymentResponseDTO created = created(1);
+        created.setClientSecret("secret_1");
+
+        assertSame(created, store.execute("order-1", FINGERPRINT, () -> created));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(IdempotencyRecord.class));
+        PaymentResponseDTO stored = (PaymentResponseDTO) update.getValue().getUpdateObject()
+                .get("$set", Document.class).get("response");
+        assertNull(stored.getClientSecret());
+        assertEquals("secret_1", created.getClientSecret());
+    }
+
+    @Test
+    void execute_ConcurrentDuplicatesShareOneCall() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<PaymentResponseDTO> first = executor.submit(() -> store.execute("order-1", FINGERPRINT, () -> {
+                started.countDown();
+                await(release);
+                return created(calls.incrementAndGet());
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<PaymentResponseDTO> duplicate = executor.submit(
+                    () -> store.execute("order-1", FINGERPRINT, () -> created(calls.incrementAndGet())));
+
+            // Give the duplicate time to join the flight before the first call returns
+            Thread.sleep(100);
+            release.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), duplicate.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void executeMono_ReplaysFirstResponseWithoutBlocking() {
+        when(reactiveMongoTemplate.insert(any(IdempotencyRecord.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(reactiveMongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        AtomicInteger calls = new AtomicInteger();
+
+        PaymentResponseDTO first = store.executeMono("order-1", FINGERPRINT,
+                () -> Mono.fromCallable(() -> created(calls.incrementAndGet()))).block();
+        PaymentResponseDTO retried = store.executeMono("order-1", FINGERPRINT,
+                () -> Mono.fromCallable(() -> created(calls.incrementAndGet()))).block();
+
+        assertSame(first, retried);
+        assertEquals(1, calls.get());
+        // The blocking store sees the same response
+        assertSame(first, store.execute("order-1", FINGERPRINT, () -> fail("should replay the cached response")));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void executeMono_ReplaysResponseCompletedByAnotherInstance() {
+        PaymentResponseDTO stored = created(1);
+        when(reactiveMongoTemplate.insert(any(IdempotencyRecord.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("order-1")));
+        when(reactiveMongoTemplate.findById("order-1", IdempotencyRecord.class)).thenReturn(Mono.just(
+                IdempotencyRecord.builder()
+                        .key("order-1")
+                        .fingerprint(FINGERPRINT)
+                        .status(IdempotencyRecord.Status.COMPLETED)
+                        .response(stored)
+                        .build()));
+
+        StepVerifier.create(store.executeMono("order-1", FINGERPRINT,
+                        () -> Mono.error(new AssertionError("should replay"))))
+                .assertNext(response -> assertEquals(stored.getPaymentId(), response.getPaymentId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void executeMono_RejectsWhileAnotherInstanceHoldsTheKey() {
+        when(reactiveMongoTemplate.insert(any(IdempotencyRecord.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("order-1")));
+        when(reactiveMongoTemplate.findById("order-1", IdempotencyRecord.class)).thenReturn(Mono.just(
+                IdempotencyRecord.builder()
+                        .key("order-1")
+                        .fingerprint(FINGERPRINT)
+                        .status(IdempotencyRecord.Status.IN_PROGRESS)
+                        .build()));
+        when(reactiveMongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(IdempotencyRecord.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(store.executeMono("order-1", FINGERPRINT,
+                        () -> Mono.error(new AssertionError("should not run"))))
+                .expectError(IdempotentRequestInProgressException.class)
+                .verify();
+    }
+
+    @Test
+    void executeMono_ReleasesKeyWhenCallFails() {
+        when(reactiveMongoTemplate.insert(any(IdempotencyRecord.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(reactiveMongoTemplate.remove(any(Query.class), eq(IdempotencyRecord.class)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+
+        StepVerifier.create(store.executeMono("order-1", FINGERPRINT,
+                        () -> Mono.error(new IllegalStateException("order service down"))))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        verify(reactiveMongoTemplate).remove(any(Query.class), eq(IdempotencyRecord.class));
+        verify(reactiveMongoTemplate, never()).updateFirst(any(Query.class), any(Update.class),
+                eq(IdempotencyRecord.class));
+    }
+
+    private static PaymentResponseDTO created(int sequence) {
+        return PaymentResponseDTO.builder()
+                .paymentId("payment-" + sequence)
+                .paymentStatus(PaymentStatus.PENDING)
+                .build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.repository.PaymentRepository;
+import com.artztall.payment_service.repository.ReactivePaymentRepository;
+import com.stripe.model.PaymentIntent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentIntentLookupsTest {
+
+    @Mock
+    private PaymentGateway paymentGateway;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private ReactivePaymentRepository reactivePaymentRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private PaymentIntentLookups lookups;
+
+    @BeforeEach
+    void setUp() {
+        lookups = new PaymentIntentLookups(paymentGateway, paymentRepository, reactivePaymentRepository,
+                meterRegistry);
+    }
+
+    @Test
+    void retrieveIntent_ConcurrentCallersShareOneStripeCall() throws Exception {
+        CompletableFuture<PaymentIntent> stripe = new CompletableFuture<>();
+        when(paymentGateway.retrievePaymentIntent("pi_123")).thenReturn(stripe);
+
+        CompletableFuture<PaymentIntent> first = lookups.retrieveIntent("pi_123");
+        CompletableFuture<PaymentIntent> second = lookups.retrieveIntent("pi_123");
+        PaymentIntent intent = new PaymentIntent();
+        stripe.complete(intent);
+
+        assertSame(intent, first.get(2, TimeUnit.SECONDS));
+        assertSame(intent, second.get(2, TimeUnit.SECONDS));
+        verify(paymentGateway, times(1)).retrievePaymentIntent("pi_123");
+        assertEquals(1.0, meterRegistry.get("singleflight.coalesced").tag("name", "stripe-intents")
+                .counter().count());
+    }
+
+    @Test
+    void retrieveIntent_FollowersReceiveTheStripeFailure() {
+        CompletableFuture<PaymentIntent> stripe = new CompletableFuture<>();
+        when(paymentGateway.retrievePaymentIntent("pi_123")).thenReturn(stripe);
+
+        CompletableFuture<PaymentIntent> first = lookups.retrieveIntent("pi_123");
+        CompletableFuture<PaymentIntent> second = lookups.retrieveIntent("pi_123");
+        stripe.completeExceptionally(new IllegalStateException("stripe down"));
+
+        assertInstanceOf(IllegalStateException.class,
+                assertThrows(Exception.class, () -> first.get(2, TimeUnit.SECONDS)).getCause());
+        assertInstanceOf(IllegalStateException.class,
+                assertThrows(Exception.class, () -> second.get(2, TimeUnit.SECONDS)).getCause());
+        verify(paymentGateway, times(1)).retrievePaymentIntent("pi_123");
+    }
+
+    @Test
+    void findPayment_ConcurrentCallersShareOneLookup() throws Exception {
+        Payment payment = Payment.builder().id("payment-123").stripPaymentIntendId("pi_123").build();
+        CountDownLatch release = new CountDownLatch(1);
+        when(paymentRepository.findByStripPaymentIntendId("pi_123")).thenAnswer(invocation -> {
+            release.await(2, TimeUnit.SECONDS);
+            return payment;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Payment> first = executor.submit(() -> lookups.findPayment("pi_123"));
+            Future<Payment> second = executor.submit(() -> lookups.findPayment("pi_123"));
+            while (coalesced("payment-intents") < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertSame(payment, first.get(2, TimeUnit.SECONDS));
+            assertSame(payment, second.get(2, TimeUnit.SECONDS));
+            verify(paymentRepository, times(1)).findByStripPaymentIntendId("pi_123");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void findPaymentMono_ConcurrentSubscribersShareOneLookup() {
+        Payment payment = Payment.builder().id("payment-123").stripPaymentIntendId("pi_123").build();
+        Sinks.One<Payment> lookup = Sinks.one();
+        when(reactivePaymentRepository.findByStripPaymentIntendId("pi_123")).thenReturn(lookup.asMono());
+
+        Mono<Payment> first = lookups.findPaymentMono("pi_123");
+        Mono<Payment> second = lookups.findPaymentMono("pi_123");
+
+        StepVerifier.create(Mono.zip(first, second))
+                .then(() -> lookup.tryEmitValue(payment))
+                .assertNext(both -> {
+                    assertSame(payment, both.getT1());
+                    assertSame(payment, both.getT2());
+                })
+                .verifyComplete();
+        verify(reactivePaymentRepository, times(1)).findByStripPaymentIntendId("pi_123");
+    }
+
+    private double coalesced(String name) {
+        return meterRegistry.get("singleflight.coalesced").tag("name", name).counter().count();
+    }
+}
@@ -1,35 +1,47 @@
 package com.artztall.payment_service.service;
 
 import com.artztall.payment_service.dto.*;
+import com.artztall.payment_service.exception.InvalidCursorException;
 import com.artztall.payment_service.exception.PaymentProcessingException;
 import com.artztall.payment_service.model.Payment;
 import com.artztall.payment_service.model.PaymentStatus;
 import com.artztall.payment_service.model.OrderStatus;
 import com.artztall.payment_service.repository.PaymentRepository;
+import com.artztall.payment_service.util.PaymentCursor;
 import com.stripe.model.PaymentIntent;
 import com.stripe.model.Refund;
 import com.stripe.param.PaymentIntentCreateParams;
 import com.stripe.param.RefundCreateParams;
 import com.stripe.net.RequestOptions;
+import org.bson.types.ObjectId;
 
-import org.junit.jupiter.api.AfterEach;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.mockito.MockedStatic;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -42,10 +54,42 @@ public class PaymentServiceImplTest {
     private OrderClientService orderClientService;
 
     @Mock
-    private ProductClientService productClientService;
+    private ProductReleaseService productReleaseService;
 
     @Mock
-    private NotificationClientService notificationClientService;
+    private NotificationDispatcher notificationDispatcher;
+
+    @Mock
+    private PaymentExpirySweeper paymentExpirySweeper;
+
+    @Mock
+    private ExpiryPartitionCoordinator expiryPartitionCoordinator;
+
+    @Mock
+    private PaymentExpiryWheel paymentExpiryWheel;
+
+    @Mock
+    private PaymentGateway paymentGateway;
+
+    @Mock
+    private PaymentIntentLookups paymentIntentLookups;
+
+    @Mock
+    private PaymentIdempotencyStore paymentIdempotencyStore;
+
+    @Mock
+    private ArtisanEarningsService artisanEarningsService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private PaymentStatusCache paymentStatusCache = new PaymentStatusCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private PaymentStageTimer paymentStageTimer = new PaymentStageTimer(meterRegistry, Duration.ofSeconds(2));
 
     @InjectMocks
     private PaymentServiceImpl paymentService;
@@ -53,9 +97,6 @@ public class PaymentServiceImplTest {
     private PaymentRequestDTO validPaymentRequest;
     private OrderResponseDTO validOrderResponse;
 
-    private MockedStatic<PaymentIntent> paymentIntentMock;
-    private MockedStatic<Refund> refundMock;
-
     @BeforeEach
     void setUp() {
         validPaymentRequest = PaymentRequestDTO.builder()
@@ -65,6 +106,13 @@ public class PaymentServiceImplTest {
                 .paymentMethodId("pm_card_visa")
                 .build();
 
+        lenient().when(paymentIdempotencyStore.execute(anyString(), anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<PaymentResponseDTO>>getArgument(2).get());
+        lenient().when(paymentIntentLookups.retrieveIntent(anyString()))
+                .thenAnswer(invocation -> paymentGateway.retrievePaymentIntent(invocation.getArgument(0)));
+        lenient().when(paymentIntentLookups.findPayment(anyString()))
+                .thenAnswer(invocation -> paymentRepository.findByStripPaymentIntendId(invocation.getArgument(0)));
+
         validOrderResponse = OrderResponseDTO.builder()
                 .id("order-123")
                 .totalAmount(BigDecimal.valueOf(100.00))
@@ -72,16 +120,6 @@ public class PaymentServiceImplTest {
                         .productId("product-789")
                         .build())
                 .build();
-
-        paymentIntentMock = mockStatic(PaymentIntent.class);
-        refundMock = mockStatic(Refund.class);
-    }
-
-    @AfterEach
-    void tearDown() {
-        // Close the static mocks after each test to avoid conflicts
-        paymentIntentMock.close();
-        refundMock.close();
     }
 
     @Test
@@ -93,9 +131,9 @@ public class PaymentServiceImplTest {
         when(mockPaymentIntent.getId()).thenReturn("pi_123456");
         when(mockPaymentIntent.getClientSecret()).thenReturn("client_secret_123");
 
-        // Mock PaymentIntent.create to return the mock payment intent
-        paymentIntentMock.when(() -> PaymentIntent.create(any(PaymentIntentCreateParams.class), any(RequestOptions.class)))
-                .thenReturn(mockPaymentIntent);
+        // Mock the gateway to return the mock payment intent
+        when(paymentGateway.createPaymentIntent(any(PaymentIntentCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(CompletableFuture.completedFuture(mockPaymentIntent));
 
         // Mock the saving of the Payment object
         Payment mockPayment = Payment.builder()
@@ -109,12 +147,13 @@ public class PaymentServiceImplTest {
         when(paymentRepository.save(any(Payment.class))).thenReturn(mockPayment); // Mocking the repository save
 
         // Call the method to test
-        PaymentResponseDTO response = paymentService.createPayment(validPaymentRequest);
+        PaymentResponseDTO response = paymentService.createPayment(validPaymentRequest, null);
 
         // Verify interactions
         verify(orderClientService).getOrder(validPaymentRequest.getOrderId());
         verify(paymentRepository).save(any(Payment.class));
-        verify(notificationClientService).sendNotification(any(NotificationSendDTO.class));
+        verify(paymentExpiryWheel).register(mockPayment);
+        verify(notificationDispatcher).dispatch(any(NotificationSendDTO.class));
 
         // Assertions
         assertNotNull(response);
@@ -123,26 +162,125 @@ public class PaymentServiceImplTest {
     }
 
 
+    @Test
+    void createPayment_UsesClientKeyForIdempotency() {
+        when(orderClientService.getOrder(anyString())).thenReturn(validOrderResponse);
+        PaymentIntent mockPaymentIntent = mock(PaymentIntent.class);
+        when(mockPaymentIntent.getId()).thenReturn("pi_123456");
+        when(paymentGateway.createPaymentIntent(any(PaymentIntentCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(CompletableFuture.completedFuture(mockPaymentIntent));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> {
+            Payment saved = invocation.getArgument(0);
+            saved.setId("payment-123");
+            return saved;
+        });
+
+        paymentService.createPayment(validPaymentRequest, "attempt-2");
+
+        verify(paymentIdempotencyStore).execute(eq("order-123:user-456:attempt-2"),
+                eq(PaymentServiceImpl.requestFingerprint(validPaymentRequest)), any());
+        ArgumentCaptor<RequestOptions> options = ArgumentCaptor.forClass(RequestOptions.class);
+        verify(paymentGateway).createPaymentIntent(any(PaymentIntentCreateParams.class), options.capture());
+        assertEquals("order-123:user-456:attempt-2", options.getValue().getIdempotencyKey());
+    }
+
     @Test
     void createPayment_StripeException() throws Exception {
         // Mocking order client to throw Stripe exception
         when(orderClientService.getOrder(anyString())).thenReturn(validOrderResponse);
 
-        // Mock PaymentIntent.create to throw a StripeException
-//        mockStatic(PaymentIntent.class);
-        when(PaymentIntent.create(any(PaymentIntentCreateParams.class), any(RequestOptions.class)))
-                .thenThrow(new com.stripe.exception.CardException("Stripe Error", null, null, null, null, null, null,null));
+        // Mock the gateway to fail with a StripeException
+        when(paymentGateway.createPaymentIntent(any(PaymentIntentCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new com.stripe.exception.CardException("Stripe Error", null, null, null, null, null, null,null)));
 
-        PaymentResponseDTO response = paymentService.createPayment(validPaymentRequest);
+        PaymentResponseDTO response = paymentService.createPayment(validPaymentRequest, null);
 
         // Verify interactions
-        verify(productClientService).releaseProduct(validOrderResponse.getItem().getProductId());
+        verify(productReleaseService).releaseProductsForOrder(validPaymentRequest.getOrderId());
 
         // Assertions
         assertEquals(PaymentStatus.FAILED, response.getPaymentStatus());
         assertNotNull(response.getMessage());
     }
 
+    @Test
+    void createPayment_TimesEachStage() {
+        when(orderClientService.getOrder(anyString())).thenReturn(validOrderResponse);
+        PaymentIntent mockPaymentIntent = mock(PaymentIntent.class);
+        when(paymentGateway.createPaymentIntent(any(PaymentIntentCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(CompletableFuture.completedFuture(mockPaymentIntent));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> {
+            Payment saved = invocation.getArgument(0);
+            saved.setId("payment-123");
+            return saved;
+        });
+
+        paymentService.createPayment(validPaymentRequest, null);
+
+        for (String stage : List.of("order_lookup", "stripe_create_intent", "save", "notification")) {
+            assertEquals(1, meterRegistry.get("payment.stage.duration")
+                    .tags("operation", "create", "stage", stage, "outcome", "success")
+                    .timer().count(), stage);
+        }
+        assertEquals(1, meterRegistry.get("payment.operation.duration")
+                .tags("operation", "create", "outcome", "pending")
+                .timer().count());
+    }
+
+    @Test
+    void confirmPayment_CompletesPaymentOnlyWhenStripeReportsSuccess() {
+        PaymentIntent mockPaymentIntent = mock(PaymentIntent.class);
+        when(mockPaymentIntent.getStatus()).thenReturn("processing", "succeeded");
+        when(paymentGateway.retrievePaymentIntent("pi_123456"))
+                .thenReturn(CompletableFuture.completedFuture(mockPaymentIntent));
+        stubTransition(PaymentStatus.COMPLETED);
+
+        assertEquals(PaymentStatus.PENDING, paymentService.confirmPayment("pi_123456").getPaymentStatus());
+        verify(paymentRepository, never()).transitionByIntent(anyString(), any(), any(), any());
+
+        assertEquals(PaymentStatus.COMPLETED, paymentService.confirmPayment("pi_123456").getPaymentStatus());
+        verify(orderClientService).updateOrderStatus("order-123", OrderStatus.CONFIRMED);
+        verify(paymentExpiryWheel).cancel("payment-123");
+        verify(artisanEarningsService).record(argThat(payment -> payment.getCompletedAt() != null));
+    }
+
+    @Test
+    void completePayment_IsNoOpForAlreadyCompletedPayment() {
+        when(paymentRepository.findByStripPaymentIntendId("pi_123456")).thenReturn(intentPayment(PaymentStatus.COMPLETED));
+
+        PaymentResponseDTO response = paymentService.completePayment("pi_123456");
+
+        assertEquals(PaymentStatus.COMPLETED, response.getPaymentStatus());
+        verify(paymentRepository, never()).save(any(Payment.class));
+        verifyNoInteractions(orderClientService, notificationDispatcher);
+    }
+
+    @Test
+    void completePayment_LeavesRefundedPaymentAloneWithoutSideEffects() {
+        // The conditional update matched nothing, the payment was refunded in between
+        when(paymentRepository.findByStripPaymentIntendId("pi_123456")).thenReturn(intentPayment(PaymentStatus.REFUNDED));
+
+        PaymentResponseDTO response = paymentService.completePayment("pi_123456");
+
+        assertEquals(PaymentStatus.REFUNDED, response.getPaymentStatus());
+        verify(paymentRepository).transitionByIntent(eq("pi_123456"), eq(PaymentStatus.PENDING),
+                eq(PaymentStatus.COMPLETED), any(LocalDateTime.class));
+        verifyNoInteractions(orderClientService, notificationDispatcher, eventPublisher, artisanEarningsService,
+                paymentExpiryWheel);
+    }
+
+    @Test
+    void failPayment_MarksPendingPaymentFailedAndReleasesProduct() {
+        stubTransition(PaymentStatus.FAILED);
+
+        PaymentResponseDTO response = paymentService.failPayment("pi_123456");
+
+        assertEquals(PaymentStatus.FAILED, response.getPaymentStatus());
+        verify(productReleaseService).releaseProductsForOrder("order-123");
+        verify(notificationDispatcher).dispatch(any(NotificationSendDTO.class));
+    }
+
     @Test
     void refundPayment_Success() throws Exception {
         // Ensure mock payment setup
@@ -157,31 +295,35 @@ public class PaymentServiceImplTest {
         // Mock the payment repository to return the mock payment
         when(paymentRepository.findById(anyString())).thenReturn(Optional.of(mockPayment));
 
-        // Mock the Refund.create to return a mock Refund
+        // Mock the gateway to return a mock Refund
         Refund mockRefund = mock(Refund.class);
-        refundMock.when(() -> Refund.create(any(RefundCreateParams.class), any(RequestOptions.class)))
-                .thenReturn(mockRefund);
+        when(paymentGateway.createRefund(any(RefundCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(CompletableFuture.completedFuture(mockRefund));
 
-        // Mock the save method to return the updated payment
-        when(paymentRepository.save(any(Payment.class))).thenReturn(mockPayment);
-
-        // Mock the release products method
-        doNothing().when(productClientService).releaseProduct(anyString());
-
-        // Ensure that the mock order response is returned
-        when(orderClientService.getOrder("order-123")).thenReturn(validOrderResponse);
+        // Mock the conditional update to return the refunded payment
+        Payment refunded = Payment.builder()
+                .id("payment-123")
+                .orderId("order-123")
+                .userId("user-456")
+                .stripPaymentIntendId("pi_123456")
+                .paymentStatus(PaymentStatus.REFUNDED)
+                .refundedAt(LocalDateTime.now())
+                .build();
+        when(paymentRepository.transition(eq("payment-123"), eq(PaymentStatus.COMPLETED),
+                eq(PaymentStatus.REFUNDED), any(LocalDateTime.class))).thenReturn(refunded);
 
         // Mock the notification service
-        doNothing().when(notificationClientService).sendNotification(any(NotificationSendDTO.class));
+        doNothing().when(notificationDispatcher).dispatch(any(NotificationSendDTO.class));
 
         // Call the refundPayment method
         PaymentResponseDTO response = paymentService.refundPayment("payment-123");
 
         // Verify interactions
         verify(paymentRepository).findById("payment-123");
-        verify(productClientService).releaseProduct(validOrderResponse.getItem().getProductId()); // Correct verification
-        verify(paymentRepository).save(mockPayment);
-        verify(notificationClientService).sendNotification(any(NotificationSendDTO.class));
+        verify(productReleaseService).releaseProductsForOrder("order-123");
+        verify(paymentRepository, never()).save(any(Payment.class));
+        verify(notificationDispatcher).dispatch(any(NotificationSendDTO.class));
+        verify(artisanEarningsService).record(refunded);
 
         // Assertions
         assertEquals(PaymentStatus.REFUNDED, response.getPaymentStatus());
@@ -192,6 +334,32 @@ public class PaymentServiceImplTest {
 
 
 
+    @Test
+    void refundPayment_LosesRaceWithoutSideEffects() {
+        Payment completed = Payment.builder()
+                .id("payment-123")
+                .orderId("order-123")
+                .paymentStatus(PaymentStatus.COMPLETED)
+                .build();
+        Payment refunded = Payment.builder()
+                .id("payment-123")
+                .orderId("order-123")
+                .paymentStatus(PaymentStatus.REFUNDED)
+                .build();
+        // A concurrent refund moved the payment between the lookup and the conditional update
+        when(paymentRepository.findById("payment-123"))
+                .thenReturn(Optional.of(completed))
+                .thenReturn(Optional.of(refunded));
+        when(paymentGateway.createRefund(any(RefundCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(Refund.class)));
+
+        PaymentResponseDTO response = paymentService.refundPayment("payment-123");
+
+        assertEquals(PaymentStatus.REFUNDED, response.getPaymentStatus());
+        verify(paymentRepository, never()).save(any(Payment.class));
+        verifyNoInteractions(productReleaseService, notificationDispatcher, artisanEarningsService, eventPublisher);
+    }
+
     @Test
     void refundPayment_NotCompletedPayment() {
         // Prepare mock payment that is not completed
@@ -227,31 +395,143 @@ public class PaymentServiceImplTest {
     }
 
     @Test
-    void handleExpiredPayments_Success() {
-        // Prepare expired payments
-        Payment expiredPayment = Payment.builder()
+    void getPaymentStatus_ServesRepeatedPollsFromCache() {
+        when(paymentRepository.findById("payment-123")).thenReturn(Optional.of(intentPayment(PaymentStatus.PENDING)));
+
+        paymentService.getPaymentStatus("payment-123");
+        PaymentResponseDTO response = paymentService.getPaymentStatus("payment-123");
+
+        assertEquals(PaymentStatus.PENDING, response.getPaymentStatus());
+        verify(paymentRepository, times(1)).findById("payment-123");
+    }
+
+    @Test
+    void getPaymentStatus_ReflectsLocalTransitionWithoutReading() {
+        when(paymentRepository.findById("payment-123")).thenReturn(Optional.of(intentPayment(PaymentStatus.PENDING)));
+        stubTransition(PaymentStatus.COMPLETED);
+        doAnswer(invocation -> {
+            paymentStatusCache.onStatusChanged(invocation.getArgument(0));
+            return null;
+        }).when(eventPublisher).publishEvent(any(Object.class));
+
+        paymentService.getPaymentStatus("payment-123");
+        paymentService.completePayment("pi_123456");
+
+        assertEquals(PaymentStatus.COMPLETED, paymentService.getPaymentStatus("payment-123").getPaymentStatus());
+        verify(paymentRepository, times(1)).findById("payment-123");
+    }
+
+    @Test
+    void handleExpiredPayments_SweepsOwnedPartitions() {
+        when(expiryPartitionCoordinator.ownedPartitions()).thenReturn(Set.of(1, 5));
+
+        paymentService.handleExpiredPayments();
+
+        verify(paymentExpirySweeper).sweep(any(LocalDateTime.class), eq(Set.of(1, 5)));
+    }
+
+    @Test
+    void handleExpiredPayments_SkipsWhenNoPartitionsAreLeased() {
+        when(expiryPartitionCoordinator.ownedPartitions()).thenReturn(Collections.emptySet());
+
+        paymentService.handleExpiredPayments();
+
+        verifyNoInteractions(paymentExpirySweeper);
+    }
+
+
+    @Test
+    void getCompletedPaymentsForArtisan_UsesSingleRepositoryQuery() {
+        Payment completedPayment = Payment.builder()
                 .id("payment-123")
                 .orderId("order-123")
                 .userId("user-456")
-                .paymentStatus(PaymentStatus.PENDING)
-                .expiresAt(LocalDateTime.now().minusMinutes(30))
+                .artistId("artist-1")
+                .amount(100L)
+                .currency("USD")
+                .paymentStatus(PaymentStatus.COMPLETED)
+                .createdAt(LocalDateTime.now().minusDays(1))
                 .build();
 
-        when(paymentRepository.findByPaymentStatusAndExpiresAtBefore(
-                eq(PaymentStatus.PENDING), any(LocalDateTime.class)))
-                .thenReturn(Collections.singletonList(expiredPayment));
+        when(paymentRepository.findByArtistIdAndPaymentStatusOrderByCreatedAtDesc("artist-1", PaymentStatus.COMPLETED))
+                .thenReturn(List.of(completedPayment));
 
-        when(orderClientService.getOrder(anyString())).thenReturn(validOrderResponse);
+        List<UserPaymentResponseDTO> payments = paymentService.getCompletedPaymentsForArtisan("artist-1");
 
+        assertEquals(1, payments.size());
+        assertEquals("payment-123", payments.get(0).getId());
+        assertEquals(completedPayment.getCreatedAt(), payments.get(0).getCreatedAt());
+        verifyNoInteractions(orderClientService);
+    }
 
-        // Call the method
-        paymentService.handleExpiredPayments();
+    @Test
+    void findByUserIdPage_ReturnsCursorWhenMorePaymentsExist() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Payment> payments = List.of(
+                userPayment(new ObjectId(), now),
+                userPayment(new ObjectId(), now.minusMinutes(1)),
+                userPayment(new ObjectId(), now.minusMinutes(2)));
+        when(paymentRepository.findUserPaymentPage("user-456", Limit.of(3))).thenReturn(payments);
+
+        CursorPageDTO<UserPaymentResponseDTO> page = paymentService.findByUserId("user-456", null, 2);
+
+        assertEquals(2, page.getItems().size());
+        PaymentCursor cursor = PaymentCursor.decode(page.getNextCursor());
+        assertEquals(payments.get(1).getCreatedAt(), cursor.createdAt());
+        assertEquals(payments.get(1).getId(), cursor.id().toHexString());
+    }
 
-        // Verify interactions
-        verify(productClientService).releaseProduct(anyString());
-        verify(paymentRepository).save(expiredPayment);
-        verify(orderClientService).updateOrderStatus(expiredPayment.getOrderId(), OrderStatus.EXPIRED);
-        verify(notificationClientService).sendNotification(any(NotificationSendDTO.class));
+    @Test
+    void findByUserIdPage_ContinuesFromCursor() {
+        PaymentCursor cursor = new PaymentCursor(LocalDateTime.now().minusMinutes(5), new ObjectId());
+        Payment last = userPayment(new ObjectId(), cursor.createdAt().minusMinutes(1));
+        when(paymentRepository.findUserPaymentPageAfter("user-456", cursor.createdAt(), cursor.id(), Limit.of(21)))
+                .thenReturn(List.of(last));
+
+        CursorPageDTO<UserPaymentResponseDTO> page = paymentService.findByUserId("user-456", cursor.encode(), 20);
+
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void findByUserIdPage_RejectsMalformedCursor() {
+        assertThrows(InvalidCursorException.class,
+                () -> paymentService.findByUserId("user-456", "not-a-cursor", 20));
+        verifyNoInteractions(paymentRepository);
+    }
+
+    private void stubTransition(PaymentStatus to) {
+        when(paymentRepository.transitionByIntent(eq("pi_123456"), eq(PaymentStatus.PENDING), eq(to),
+                any(LocalDateTime.class))).thenAnswer(invocation -> {
+                    Payment payment = intentPayment(to);
+                    if (to == PaymentStatus.COMPLETED) {
+                        payment.setCompletedAt(invocation.getArgument(3));
+                    }
+                    return payment;
+                });
+    }
+
+    private Payment intentPayment(PaymentStatus status) {
+        return Payment.builder()
+                .id("payment-123")
+                .orderId("order-123")
+                .userId("user-456")
+                .stripPaymentIntendId("pi_123456")
+                .paymentStatus(status)
+                .build();
+    }
+
+    private Payment userPayment(ObjectId id, LocalDateTime createdAt) {
+        return Payment.builder()
+                .id(id.toHexString())
+                .orderId("order-123")
+                .userId("user-456")
+                .amount(100L)
+                .currency("USD")
+                .paymentStatus(PaymentStatus.COMPLETED)
+                .createdAt(createdAt)
+                .build();
     }
 
 
@@ -285,7 +565,7 @@ public class PaymentServiceImplTest {
         PaymentRequestDTO invalidRequest = createModifiedPaymentRequest("currency");
 
         assertThrows(IllegalArgumentException.class,
-                () -> paymentService.createPayment(invalidRequest));
+                () -> paymentService.createPayment(invalidRequest, null));
     }
 
     @Test
@@ -293,6 +573,6 @@ public class PaymentServiceImplTest {
         PaymentRequestDTO invalidRequest = createModifiedPaymentRequest("paymentMethodId");
 
         assertThrows(IllegalArgumentException.class,
-                () -> paymentService.createPayment(invalidRequest));
+                () -> paymentService.createPayment(invalidRequest, null));
     }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.artztall.payment_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaymentStageTimerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PaymentStageTimer stageTimer = new PaymentStageTimer(meterRegistry, Duration.ZERO);
+
+    @Test
+    void stage_RecordsOutcomeAndRethrows() {
+        PaymentStageTimer.Trace trace = stageTimer.start("refund", "payment-1");
+
+        assertEquals("ok", trace.stage("payment_lookup", () -> "ok"));
+        IOException failure = new IOException("Stripe unreachable");
+        assertSame(failure, assertThrows(IOException.class, () -> trace.run("stripe_refund", () -> {
+            throw failure;
+        })));
+
+        assertEquals(1, meterRegistry.get("payment.stage.duration")
+                .tags("operation", "refund", "stage", "payment_lookup", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("payment.stage.duration")
+                .tags("operation", "refund", "stage", "stripe_refund", "outcome", "error").timer().count());
+    }
+
+    @Test
+    void finish_RecordsOperationWithOutcome() {
+        PaymentStageTimer.Trace trace = stageTimer.start("expiry_sweep", null);
+        trace.run("product_release", () -> { });
+        trace.run("product_release", () -> { });
+
+        trace.finish("expired");
+
+        assertEquals(2, meterRegistry.get("payment.stage.duration")
+                .tags("stage", "product_release").timer().count());
+        assertEquals(1, meterRegistry.get("payment.operation.duration")
+                .tags("operation", "expiry_sweep", "outcome", "expired").timer().count());
+    }
+}
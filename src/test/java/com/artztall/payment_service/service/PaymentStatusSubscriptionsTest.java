@@ -0,0 +1,132 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.artztall.payment_service.exception.PaymentNotFoundException;
+import com.artztall.payment_service.exception.SubscriptionLimitException;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PaymentStatusSubscriptionsTest {
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private PaymentStatusSubscriptions subscriptions;
+
+    @BeforeEach
+    void setUp() {
+        subscriptions = new PaymentStatusSubscriptions(paymentService, mongoTemplate, eventPublisher,
+                new SimpleMeterRegistry(), 2, Duration.ofMinutes(5), Duration.ofSeconds(30), Runnable::run);
+    }
+
+    @Test
+    void awaitChange_CompletesWhenStatusChanges() {
+        when(paymentService.getPaymentStatus("payment-123")).thenReturn(status(PaymentStatus.PENDING));
+
+        DeferredResult<PaymentResponseDTO> result = subscriptions.awaitChange("payment-123", PaymentStatus.PENDING);
+        assertFalse(result.hasResult());
+        assertEquals(1, subscriptions.getSubscriberCount());
+
+        subscriptions.onStatusChanged(new PaymentStatusChangedEvent("payment-123", PaymentStatus.COMPLETED, null));
+
+        assertEquals(PaymentStatus.COMPLETED, ((PaymentResponseDTO) result.getResult()).getPaymentStatus());
+        assertEquals(0, subscriptions.getSubscriberCount());
+    }
+
+    @Test
+    void onStatusChanged_HandsDeliveryOffInOrder() {
+        List<Runnable> deliveries = new ArrayList<>();
+        subscriptions = new PaymentStatusSubscriptions(paymentService, mongoTemplate, eventPublisher,
+                new SimpleMeterRegistry(), 2, Duration.ofMinutes(5), Duration.ofSeconds(30), deliveries::add);
+        when(paymentService.getPaymentStatus("payment-123")).thenReturn(status(PaymentStatus.PENDING));
+        DeferredResult<PaymentResponseDTO> result = subscriptions.awaitChange("payment-123", PaymentStatus.PENDING);
+
+        subscriptions.onStatusChanged(new PaymentStatusChangedEvent("payment-123", PaymentStatus.COMPLETED, null));
+        subscriptions.onStatusChanged(new PaymentStatusChangedEvent("payment-123", PaymentStatus.REFUNDED, null));
+
+        // Nothing is delivered on the publishing thread, and both changes share one delivery
+        assertFalse(result.hasResult());
+        assertEquals(1, deliveries.size());
+        deliveries.get(0).run();
+        assertEquals(PaymentStatus.COMPLETED, ((PaymentResponseDTO) result.getResult()).getPaymentStatus());
+        assertEquals(0, subscriptions.getSubscriberCount());
+    }
+
+    @Test
+    void awaitChange_ReturnsImmediatelyWhenStatusAlreadyDiffers() {
+        when(paymentService.getPaymentStatus("payment-123")).thenReturn(status(PaymentStatus.FAILED));
+
+        DeferredResult<PaymentResponseDTO> result = subscriptions.awaitChange("payment-123", PaymentStatus.PENDING);
+
+        assertEquals(PaymentStatus.FAILED, ((PaymentResponseDTO) result.getResult()).getPaymentStatus());
+        assertEquals(0, subscriptions.getSubscriberCount());
+    }
+
+    @Test
+    void stream_UnsubscribesAfterFinalStatus() {
+        when(paymentService.getPaymentStatus("payment-123")).thenReturn(status(PaymentStatus.PENDING));
+
+        subscriptions.stream("payment-123");
+        subscriptions.onStatusChanged(new PaymentStatusChangedEvent("payment-123", PaymentStatus.COMPLETED, null));
+        assertEquals(1, subscriptions.getSubscriberCount());
+
+        subscriptions.onStatusChanged(new PaymentStatusChangedEvent("payment-123", PaymentStatus.REFUNDED, null));
+        assertEquals(0, subscriptions.getSubscriberCount());
+    }
+
+    @Test
+    void subscribe_RejectsUnknownPaymentsAndClientsBeyondTheLimit() {
+        when(paymentService.getPaymentStatus("missing")).thenThrow(new PaymentNotFoundException("Payment not found"));
+        when(paymentService.getPaymentStatus("payment-123")).thenReturn(status(PaymentStatus.PENDING));
+
+        assertThrows(PaymentNotFoundException.class, () -> subscriptions.stream("missing"));
+        assertEquals(0, subscriptions.getSubscriberCount());
+
+        subscriptions.stream("payment-123");
+        subscriptions.awaitChange("payment-123", PaymentStatus.PENDING);
+        assertThrows(SubscriptionLimitException.class, () -> subscriptions.stream("payment-123"));
+        assertEquals(2, subscriptions.getSubscriberCount());
+    }
+
+    @Test
+    void recheckWatchedPayments_PublishesChangesMadeElsewhere() {
+        when(paymentService.getPaymentStatus("payment-123")).thenReturn(status(PaymentStatus.PENDING));
+        subscriptions.stream("payment-123");
+        Payment completed = Payment.builder().id("payment-123").paymentStatus(PaymentStatus.COMPLETED).build();
+        when(mongoTemplate.find(any(Query.class), eq(Payment.class))).thenReturn(List.of(completed));
+
+        subscriptions.recheckWatchedPayments();
+
+        verify(eventPublisher).publishEvent(PaymentStatusChangedEvent.of(completed));
+    }
+
+    private static PaymentResponseDTO status(PaymentStatus status) {
+        return PaymentResponseDTO.builder().paymentId("payment-123").paymentStatus(status).build();
+    }
+}
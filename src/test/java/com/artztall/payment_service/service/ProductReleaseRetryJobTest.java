@@ -0,0 +1,114 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.OrderItemResponseDTO;
+import com.artztall.payment_service.dto.OrderResponseDTO;
+import com.artztall.payment_service.model.PendingProductRelease;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductReleaseRetryJobTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private OrderClientService orderClientService;
+
+    @Mock
+    private ProductClientService productClientService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ProductReleaseRetryJob job;
+
+    @BeforeEach
+    void setUp() {
+        job = new ProductReleaseRetryJob(mongoTemplate, orderClientService, productClientService, meterRegistry,
+                10, 3, Duration.ofSeconds(30), Duration.ofMinutes(10));
+    }
+
+    @Test
+    void retryPendingReleases_ReleasesDueEntriesAndRemovesThem() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(PendingProductRelease.class)))
+                .thenReturn(release("order-1", "product-1", 0), (PendingProductRelease) null);
+
+        job.retryPendingReleases();
+
+        verify(productClientService).releaseProduct("product-1");
+        verify(mongoTemplate).remove(any(Query.class), eq(PendingProductRelease.class));
+        assertEquals(1.0, meterRegistry.get("product.release.retry").tag("outcome", "released").counter().count());
+    }
+
+    @Test
+    void retry_ResolvesProductFromOrderWhenMissing() {
+        when(orderClientService.getOrder("order-1")).thenReturn(OrderResponseDTO.builder()
+                .item(OrderItemResponseDTO.builder().productId("product-9").build())
+                .build());
+
+        job.retry(release("order-1", null, 0));
+
+        verify(productClientService).releaseProduct("product-9");
+    }
+
+    @Test
+    void retry_BacksOffExponentiallyOnFailure() {
+        doThrow(new RuntimeException("down")).when(productClientService).releaseProduct("product-1");
+
+        LocalDateTime before = LocalDateTime.now();
+        job.retry(release("order-1", "product-1", 1));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(PendingProductRelease.class));
+        Document set = (Document) update.getValue().getUpdateObject().get("$set");
+        assertEquals(2, set.get("attempts"));
+        LocalDateTime next = (LocalDateTime) set.get("nextAttemptAt");
+        assertFalse(next.isBefore(before.plusSeconds(60)));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(PendingProductRelease.class));
+    }
+
+    @Test
+    void retry_GivesUpAfterMaxAttempts() {
+        doThrow(new RuntimeException("down")).when(productClientService).releaseProduct("product-1");
+
+        job.retry(release("order-1", "product-1", 2));
+
+        verify(mongoTemplate).remove(any(Query.class), eq(PendingProductRelease.class));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(PendingProductRelease.class));
+        assertEquals(1.0, meterRegistry.get("product.release.retry").tag("outcome", "abandoned").counter().count());
+    }
+
+    @Test
+    void backoff_IsCappedAtMaxBackoff() {
+        assertEquals(Duration.ofSeconds(30), job.backoff(1));
+        assertEquals(Duration.ofSeconds(120), job.backoff(3));
+        assertEquals(Duration.ofMinutes(10), job.backoff(30));
+    }
+
+    private static PendingProductRelease release(String orderId, String productId, int attempts) {
+        return PendingProductRelease.builder()
+                .orderId(orderId)
+                .productId(productId)
+                .attempts(attempts)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+    }
+}
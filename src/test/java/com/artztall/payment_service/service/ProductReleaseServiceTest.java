@@ -0,0 +1,164 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.OrderItemResponseDTO;
+import com.artztall.payment_service.dto.OrderResponseDTO;
+import com.artztall.payment_service.model.PendingProductRelease;
+import com.artztall.payment_service.util.DownstreamGuard;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProductReleaseServiceTest {
+
+    @Mock
+    private OrderClientService orderClientService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private HttpServer server;
+    private volatile long productDelayMillis;
+    private final CountDownLatch productRequestStarted = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/api/products", this::respond);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        lenient().when(orderClientService.getOrder(anyString())).thenAnswer(invocation -> order());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void releaseProductsForOrder_OpensBreakerOnSlowProductServiceAndQueuesReleases() {
+        productDelayMillis = 2_000;
+        CircuitBreaker breaker = CircuitBreaker.of("product", CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .build());
+        ProductReleaseService service = service(breaker, Bulkhead.ofDefaults("product"),
+                Duration.ofMillis(100), ProductReleaseService.Fallback.QUEUE);
+
+        for (int i = 0; i < 4; i++) {
+            service.releaseProductsForOrder("order-" + i);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        long start = System.nanoTime();
+        service.releaseProductsForOrder("order-open");
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 100, "open breaker did not fail fast");
+
+        verify(mongoTemplate, times(5)).upsert(any(Query.class), any(Update.class), eq(PendingProductRelease.class));
+        assertEquals(4, breaker.getMetrics().getNumberOfFailedCalls());
+    }
+
+    @Test
+    void releaseProducts_RejectsImmediatelyWhenBulkheadIsFull() throws InterruptedException {
+        productDelayMillis = 1_000;
+        Bulkhead bulkhead = Bulkhead.of("product", BulkheadConfig.custom()
+                .maxConcurrentCalls(1)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+        ProductReleaseService service = service(CircuitBreaker.ofDefaults("product"), bulkhead,
+                Duration.ofSeconds(5), ProductReleaseService.Fallback.QUEUE);
+        when(orderClientService.fetchOrder(anyString())).thenAnswer(invocation -> Mono.just(order()));
+
+        Disposable inFlight = service.releaseProducts("order-slow").subscribe();
+        assertTrue(productRequestStarted.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        service.releaseProducts("order-rejected").block(Duration.ofSeconds(5));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 500, "full bulkhead did not reject fast");
+
+        verify(mongoTemplate).upsert(argThat(query -> query.getQueryObject().get("_id").equals("order-rejected")),
+                any(Update.class), eq(PendingProductRelease.class));
+        inFlight.dispose();
+    }
+
+    @Test
+    void releaseProductsForOrder_OnlyLogsWithLogFallback() {
+        productDelayMillis = 2_000;
+        ProductReleaseService service = service(CircuitBreaker.ofDefaults("product"), Bulkhead.ofDefaults("product"),
+                Duration.ofMillis(100), ProductReleaseService.Fallback.LOG);
+
+        service.releaseProductsForOrder("order-1");
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private ProductReleaseService service(CircuitBreaker breaker, Bulkhead bulkhead,
+                                          Duration responseTimeout, ProductReleaseService.Fallback fallback) {
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://localhost:" + server.getAddress().getPort())
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create().responseTimeout(responseTimeout)))
+                .build();
+        ProductClientService productClientService =
+                new ProductClientService(webClient, new DownstreamGuard(breaker, bulkhead));
+        return new ProductReleaseService(orderClientService, productClientService, mongoTemplate, fallback);
+    }
+
+    private static OrderResponseDTO order() {
+        return OrderResponseDTO.builder()
+                .id("order")
+                .item(OrderItemResponseDTO.builder().productId("product-1").build())
+                .build();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        productRequestStarted.countDown();
+        try {
+            Thread.sleep(productDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] bytes = "{}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        try {
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(bytes);
+            }
+        } catch (IOException e) {
+            // client gave up
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.NotificationSendDTO;
+import com.artztall.payment_service.dto.OrderResponseDTO;
+import com.artztall.payment_service.dto.PaymentRequestDTO;
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.artztall.payment_service.exception.PaymentNotFoundException;
+import com.artztall.payment_service.exception.PaymentProcessingException;
+import com.artztall.payment_service.model.OrderStatus;
+import com.artztall.payment_service.model.Payment;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.repository.ReactivePaymentRepository;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.Refund;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCreateParams;
+import com.stripe.param.RefundCreateParams;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ReactivePaymentServiceImplTest {
+
+    @Mock
+    private ReactivePaymentRepository paymentRepository;
+
+    @Mock
+    private OrderClientService orderClientService;
+
+    @Mock
+    private ProductReleaseService productReleaseService;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    @Mock
+    private PaymentExpiryWheel paymentExpiryWheel;
+
+    @Mock
+    private PaymentGateway paymentGateway;
+
+    @Mock
+    private PaymentIntentLookups paymentIntentLookups;
+
+    @Mock
+    private ArtisanEarningsService artisanEarningsService;
+
+    @Mock
+    private PaymentIdempotencyStore paymentIdempotencyStore;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private ReactivePaymentServiceImpl paymentService;
+
+    private Payment payment;
+
+    @BeforeEach
+    void setUp() {
+        payment = Payment.builder()
+                .id("payment-123")
+                .orderId("order-123")
+                .userId("user-456")
+                .amount(100L)
+                .currency("USD")
+                .stripPaymentIntendId("pi_123")
+                .paymentStatus(PaymentStatus.PENDING)
+                .expiresAt(LocalDateTime.now().plusMinutes(15))
+                .build();
+
+        lenient().when(paymentIntentLookups.retrieveIntent(anyString()))
+                .thenAnswer(invocation -> paymentGateway.retrievePaymentIntent(invocation.getArgument(0)));
+        lenient().when(paymentIntentLookups.findPaymentMono(anyString()))
+                .thenAnswer(invocation -> paymentRepository.findByStripPaymentIntendId(invocation.getArgument(0)));
+    }
+
+    @Test
+    void confirmPayment_Success() {
+        stubIntentStatus("succeeded");
+        stubTransition(PaymentStatus.COMPLETED);
+        when(orderClientService.changeOrderStatus("order-123", OrderStatus.CONFIRMED)).thenReturn(Mono.empty());
+
+        StepVerifier.create(paymentService.confirmPayment("pi_123"))
+                .assertNext(response -> {
+                    assertEquals(PaymentStatus.COMPLETED, response.getPaymentStatus());
+                    assertEquals("payment-123", response.getPaymentId());
+                })
+                .verifyComplete();
+
+        verify(paymentExpiryWheel).cancel("payment-123");
+        verify(artisanEarningsService).record(payment);
+        ArgumentCaptor<PaymentStatusChangedEvent> event = ArgumentCaptor.forClass(PaymentStatusChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(PaymentStatus.COMPLETED, event.getValue().status());
+        ArgumentCaptor<NotificationSendDTO> notification = ArgumentCaptor.forClass(NotificationSendDTO.class);
+        verify(notificationDispatcher).dispatch(notification.capture());
+        assertEquals("SUCCESS", notification.getValue().getType());
+    }
+
+    @Test
+    void confirmPayment_LeavesPaymentPendingWhileStripeIsProcessing() {
+        stubIntentStatus("processing");
+
+        StepVerifier.create(paymentService.confirmPayment("pi_123"))
+                .assertNext(response -> assertEquals(PaymentStatus.PENDING, response.getPaymentStatus()))
+                .verifyComplete();
+
+        verify(paymentRepository, never()).transitionByIntent(anyString(), any(), any(), any());
+        verifyNoInteractions(orderClientService, notificationDispatcher);
+    }
+
+    @Test
+    void confirmPayment_FailsPaymentWhenStripeCanceled() {
+        stubIntentStatus("canceled");
+        stubTransition(PaymentStatus.FAILED);
+        when(productReleaseService.releaseProducts("order-123")).thenReturn(Mono.empty());
+
+        StepVerifier.create(paymentService.confirmPayment("pi_123"))
+                .assertNext(response -> assertEquals(PaymentStatus.FAILED, response.getPaymentStatus()))
+                .verifyComplete();
+
+        ArgumentCaptor<NotificationSendDTO> notification = ArgumentCaptor.forClass(NotificationSendDTO.class);
+        verify(notificationDispatcher).dispatch(notification.capture());
+        assertEquals("ERROR", notification.getValue().getType());
+    }
+
+    @Test
+    void confirmPayment_DoesNotReviveRefundedPayment() {
+        stubIntentStatus("succeeded");
+        when(paymentRepository.transitionByIntent(eq("pi_123"), eq(PaymentStatus.PENDING), eq(PaymentStatus.COMPLETED),
+                any(LocalDateTime.class))).thenReturn(Mono.empty());
+        payment.setPaymentStatus(PaymentStatus.REFUNDED);
+        when(paymentRepository.findByStripPaymentIntendId("pi_123")).thenReturn(Mono.just(payment));
+
+        StepVerifier.create(paymentService.confirmPayment("pi_123"))
+                .assertNext(response -> assertEquals(PaymentStatus.REFUNDED, response.getPaymentStatus()))
+                .verifyComplete();
+
+        verifyNoInteractions(orderClientService, notificationDispatcher, artisanEarningsService, paymentExpiryWheel,
+                eventPublisher);
+    }
+
+    @Test
+    void confirmPayment_OrderUpdateFails_ReportsFailureWithoutReleasingProducts() {
+        stubIntentStatus("succeeded");
+        stubTransition(PaymentStatus.COMPLETED);
+        when(orderClientService.changeOrderStatus("order-123", OrderStatus.CONFIRMED))
+                .thenReturn(Mono.error(new RuntimeException("order service down")));
+
+        StepVerifier.create(paymentService.confirmPayment("pi_123"))
+                .assertNext(response -> assertEquals(PaymentStatus.FAILED, response.getPaymentStatus()))
+                .verifyComplete();
+
+        // Stripe charged the payment, so its products stay reserved
+        verifyNoInteractions(productReleaseService, notificationDispatcher);
+    }
+
+    @Test
+    void confirmPayment_PaymentNotFound() {
+        stubIntentStatus("succeeded");
+        when(paymentRepository.transitionByIntent(eq("pi_123"), eq(PaymentStatus.PENDING), eq(PaymentStatus.COMPLETED),
+                any(LocalDateTime.class))).thenReturn(Mono.empty());
+        when(paymentRepository.findByStripPaymentIntendId("pi_123")).thenReturn(Mono.empty());
+
+        StepVerifier.create(paymentService.confirmPayment("pi_123"))
+                .expectError(PaymentNotFoundException.class)
+                .verify();
+
+        verifyNoInteractions(productReleaseService, notificationDispatcher);
+    }
+
+    @Test
+    void refundPayment_NotCompleted() {
+        when(paymentRepository.findById("payment-123")).thenReturn(Mono.just(payment));
+
+        StepVerifier.create(paymentService.refundPayment("payment-123"))
+                .expectError(PaymentProcessingException.class)
+                .verify();
+    }
+
+    @Test
+    void refundPayment_PublishesRefundedStatus() {
+        payment.setPaymentStatus(PaymentStatus.COMPLETED);
+        when(paymentRepository.findById("payment-123")).thenReturn(Mono.just(payment));
+        when(paymentGateway.createRefund(any(RefundCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(Refund.class)));
+        when(paymentRepository.transition(eq("payment-123"), eq(PaymentStatus.COMPLETED),
+                eq(PaymentStatus.REFUNDED), any(LocalDateTime.class)))
+                .thenReturn(Mono.just(refunded()));
+        when(productReleaseService.releaseProducts("order-123")).thenReturn(Mono.empty());
+
+        StepVerifier.create(paymentService.refundPayment("payment-123"))
+                .assertNext(response -> assertEquals(PaymentStatus.REFUNDED, response.getPaymentStatus()))
+                .verifyComplete();
+
+        verify(eventPublisher).publishEvent(new PaymentStatusChangedEvent("payment-123", PaymentStatus.REFUNDED,
+                payment.getExpiresAt()));
+        verify(notificationDispatcher).dispatch(any(NotificationSendDTO.class));
+        verify(paymentRepository, never()).save(any(Payment.class));
+    }
+
+    @Test
+    void refundPayment_LosesRaceWithoutSideEffects() {
+        payment.setPaymentStatus(PaymentStatus.COMPLETED);
+        // A concurrent refund moved the payment between the lookup and the conditional update
+        when(paymentRepository.findById("payment-123"))
+                .thenReturn(Mono.just(payment))
+                .thenReturn(Mono.just(refunded()));
+        when(paymentGateway.createRefund(any(RefundCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(Refund.class)));
+        when(paymentRepository.transition(eq("payment-123"), eq(PaymentStatus.COMPLETED),
+                eq(PaymentStatus.REFUNDED), any(LocalDateTime.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(paymentService.refundPayment("payment-123"))
+                .assertNext(response -> assertEquals(PaymentStatus.REFUNDED, response.getPaymentStatus()))
+                .verifyComplete();
+
+        verifyNoInteractions(productReleaseService, notificationDispatcher, artisanEarningsService, eventPublisher);
+    }
+
+    @Test
+    void refundPayment_GatewayFailure_ReportsFailure() {
+        payment.setPaymentStatus(PaymentStatus.COMPLETED);
+        when(paymentRepository.findById("payment-123")).thenReturn(Mono.just(payment));
+        when(paymentGateway.createRefund(any(RefundCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(CompletableFuture.failedFuture(new ApiConnectionException("connection reset")));
+
+        StepVerifier.create(paymentService.refundPayment("payment-123"))
+                .assertNext(response -> assertEquals(PaymentStatus.FAILED, response.getPaymentStatus()))
+                .verifyComplete();
+        verify(paymentRepository, never()).save(any(Payment.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void getPaymentStatus_NotFound() {
+        when(paymentRepository.findById("payment-123")).thenReturn(Mono.empty());
+
+        StepVerifier.create(paymentService.getPaymentStatus("payment-123"))
+                .expectError(PaymentNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void createPayment_MissingCurrency() {
+        PaymentRequestDTO request = PaymentRequestDTO.builder()
+                .orderId("order-123")
+                .userId("user-456")
+                .paymentMethodId("pm_card_visa")
+                .build();
+
+        StepVerifier.create(paymentService.createPayment(request, null))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        verifyNoInteractions(paymentIdempotencyStore, orderClientService);
+    }
+
+    @Test
+    void createPayment_RunsOnceUnderTheIdempotencyKey() {
+        PaymentIntent paymentIntent = mock(PaymentIntent.class);
+        when(paymentIntent.getId()).thenReturn("pi_123");
+        when(paymentIntent.getClientSecret()).thenReturn("secret_123");
+        when(paymentIdempotencyStore.executeMono(eq("order-123:user-456:attempt-2"), anyString(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<Mono<PaymentResponseDTO>>>getArgument(2).get());
+        when(orderClientService.fetchOrder("order-123")).thenReturn(Mono.just(OrderResponseDTO.builder()
+                .id("order-123")
+                .totalAmount(BigDecimal.valueOf(100))
+                .build()));
+        when(paymentGateway.createPaymentIntent(any(PaymentIntentCreateParams.class), any(RequestOptions.class)))
+                .thenReturn(CompletableFuture.completedFuture(paymentIntent));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        StepVerifier.create(paymentService.createPayment(createRequest(), "attempt-2"))
+                .assertNext(response -> {
+                    assertEquals(PaymentStatus.PENDING, response.getPaymentStatus());
+                    assertEquals("secret_123", response.getClientSecret());
+                })
+                .verifyComplete();
+
+        // Stripe gets the same key, so it also returns the original intent
+        ArgumentCaptor<RequestOptions> options = ArgumentCaptor.forClass(RequestOptions.class);
+        verify(paymentGateway).createPaymentIntent(any(PaymentIntentCreateParams.class), options.capture());
+        assertEquals("order-123:user-456:attempt-2", options.getValue().getIdempotencyKey());
+    }
+
+    @Test
+    void createPayment_ReplaysStoredResponse() {
+        PaymentResponseDTO stored = PaymentResponseDTO.builder()
+                .paymentId("payment-123")
+                .paymentStatus(PaymentStatus.PENDING)
+                .build();
+        when(paymentIdempotencyStore.executeMono(eq("order-123:user-456"),
+                eq(PaymentServiceImpl.requestFingerprint(createRequest())), any())).thenReturn(Mono.just(stored));
+        when(paymentRepository.findById("payment-123")).thenReturn(Mono.just(payment));
+        PaymentIntent paymentIntent = mock(PaymentIntent.class);
+        when(paymentIntent.getClientSecret()).thenReturn("secret_123");
+        when(paymentGateway.retrievePaymentIntent("pi_123"))
+                .thenReturn(CompletableFuture.completedFuture(paymentIntent));
+
+        // The store keeps no client secret, it is read back from the intent
+        StepVerifier.create(paymentService.createPayment(createRequest(), null))
+                .assertNext(response -> {
+                    assertEquals("payment-123", response.getPaymentId());
+                    assertEquals("secret_123", response.getClientSecret());
+                })
+                .verifyComplete();
+        assertNull(stored.getClientSecret());
+        verifyNoInteractions(orderClientService);
+        verify(paymentGateway, never()).createPaymentIntent(any(PaymentIntentCreateParams.class),
+                any(RequestOptions.class));
+    }
+
+    private static PaymentRequestDTO createRequest() {
+        return PaymentRequestDTO.builder()
+                .orderId("order-123")
+                .userId("user-456")
+                .currency("usd")
+                .paymentMethodId("pm_card_visa")
+                .build();
+    }
+
+    private void stubIntentStatus(String status) {
+        PaymentIntent paymentIntent = mock(PaymentIntent.class);
+        when(paymentIntent.getStatus()).thenReturn(status);
+        when(paymentGateway.retrievePaymentIntent("pi_123")).thenReturn(CompletableFuture.completedFuture(paymentIntent));
+    }
+
+    private void stubTransition(PaymentStatus to) {
+        when(paymentRepository.transitionByIntent(eq("pi_123"), eq(PaymentStatus.PENDING), eq(to),
+                any(LocalDateTime.class))).thenAnswer(invocation -> {
+                    payment.setPaymentStatus(to);
+                    return Mono.just(payment);
+                });
+    }
+
+    private Payment refunded() {
+        return Payment.builder()
+                .id(payment.getId())
+                .orderId(payment.getOrderId())
+                .userId(payment.getUserId())
+                .stripPaymentIntendId(payment.getStripPaymentIntendId())
+                .paymentStatus(PaymentStatus.REFUNDED)
+                .expiresAt(payment.getExpiresAt())
+                .refundedAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,153 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.dto.PaymentResponseDTO;
+import com.artztall.payment_service.dto.RefundJobRequestDTO;
+import com.artztall.payment_service.exception.InvalidRefundJobException;
+import com.artztall.payment_service.exception.PaymentProcessingException;
+import com.artztall.payment_service.model.PaymentStatus;
+import com.artztall.payment_service.model.RefundJob;
+import com.artztall.payment_service.model.RefundJobItem;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RefundJobServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private PaymentService paymentService;
+
+    private RefundJobService refundJobService;
+
+    @BeforeEach
+    void setUp() {
+        refundJobService = new RefundJobService(mongoTemplate, paymentService, new SimpleMeterRegistry(),
+                2, 3, Duration.ofMinutes(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        refundJobService.shutdown();
+    }
+
+    @Test
+    void submit_RejectsMissingAmbiguousAndOversizedSelections() {
+        assertThrows(InvalidRefundJobException.class,
+                () -> refundJobService.submit(RefundJobRequestDTO.builder().build()));
+        assertThrows(InvalidRefundJobException.class, () -> refundJobService.submit(RefundJobRequestDTO.builder()
+                .paymentIds(List.of("payment-1"))
+                .artistId("artist-1")
+                .build()));
+        assertThrows(InvalidRefundJobException.class, () -> refundJobService.submit(RefundJobRequestDTO.builder()
+                .paymentIds(List.of("payment-1", "payment-2", "payment-3", "payment-4"))
+                .build()));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void execute_RecordsOutcomeOfEachPayment() {
+        givenPendingItems("payment-1", "payment-2", "payment-3");
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(RefundJobItem.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        when(paymentService.refundPayment("payment-1")).thenReturn(response(PaymentStatus.REFUNDED));
+        when(paymentService.refundPayment("payment-2"))
+                .thenThrow(new PaymentProcessingException("Only completed payments can be refunded"));
+        when(paymentService.refundPayment("payment-3")).thenReturn(response(PaymentStatus.FAILED));
+
+        refundJobService.execute(job()).block();
+
+        ArgumentCaptor<Update> progress = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(4)).updateFirst(any(Query.class), progress.capture(), eq(RefundJob.class));
+        List<String> counters = progress.getAllValues().stream()
+                .filter(update -> update.getUpdateObject().containsKey("$inc"))
+                .map(update -> update.getUpdateObject().get("$inc", Document.class).keySet().iterator().next())
+                .sorted()
+                .toList();
+        assertEquals(List.of("failed", "refunded", "skipped"), counters);
+        assertTrue(progress.getAllValues().get(3).modifies("finishedAt"));
+    }
+
+    @Test
+    void execute_DoesNotCountItemsAlreadyRecorded() {
+        givenPendingItems("payment-1");
+        when(paymentService.refundPayment("payment-1")).thenReturn(response(PaymentStatus.REFUNDED));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(RefundJobItem.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        refundJobService.execute(job()).block();
+
+        ArgumentCaptor<Update> progress = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), progress.capture(), eq(RefundJob.class));
+        assertTrue(progress.getValue().modifies("status"));
+    }
+
+    @Test
+    void execute_RefundsWithBoundedParallelism() {
+        String[] paymentIds = IntStream.range(0, 8).mapToObj(i -> "payment-" + i).toArray(String[]::new);
+        givenPendingItems(paymentIds);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(RefundJobItem.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(paymentService.refundPayment(anyString())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return response(PaymentStatus.REFUNDED);
+        });
+
+        refundJobService.execute(job()).block(Duration.ofSeconds(5));
+
+        verify(paymentService, times(8)).refundPayment(anyString());
+        assertTrue(maxRunning.get() <= 2, "at most 2 refunds should run at once, saw " + maxRunning.get());
+    }
+
+    private void givenPendingItems(String... paymentIds) {
+        List<RefundJobItem> items = new ArrayList<>();
+        for (String paymentId : paymentIds) {
+            items.add(RefundJobItem.builder()
+                    .id(RefundJobItem.id("job-1", paymentId))
+                    .jobId("job-1")
+                    .paymentId(paymentId)
+                    .status(RefundJobItem.Status.PENDING)
+                    .build());
+        }
+        when(mongoTemplate.find(any(Query.class), eq(RefundJobItem.class)))
+                .thenReturn(items)
+                .thenReturn(Collections.emptyList());
+    }
+
+    private static RefundJob job() {
+        return RefundJob.builder().id("job-1").status(RefundJob.Status.RUNNING).build();
+    }
+
+    private static PaymentResponseDTO response(PaymentStatus status) {
+        return PaymentResponseDTO.builder().paymentStatus(status).message("Refund " + status).build();
+    }
+}
@@ -0,0 +1,124 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.exception.PaymentGatewayUnavailableException;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.CardException;
+import com.stripe.exception.StripeException;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripePaymentGatewayTest {
+
+    private static final Retry RETRY = Retry.of("stripe", RetryConfig.custom()
+            .maxAttempts(3)
+            .waitDuration(Duration.ofMillis(1))
+            .retryExceptions(ApiConnectionException.class)
+            .build());
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private StripePaymentGateway gateway;
+
+    @AfterEach
+    void tearDown() {
+        gateway.stop();
+    }
+
+    @Test
+    void submit_RetriesConnectionFailures() throws StripeException {
+        gateway = new StripePaymentGateway(RateLimiter.ofDefaults("stripe"), RETRY, 2, 10, TIMEOUT, false);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = PaymentGateway.await(gateway.submit(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ApiConnectionException("connection reset");
+            }
+            return "ok";
+        }));
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    void submit_DoesNotRetryDeclines() {
+        gateway = new StripePaymentGateway(RateLimiter.ofDefaults("stripe"), RETRY, 2, 10, TIMEOUT, false);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(CardException.class, () -> PaymentGateway.await(gateway.submit(() -> {
+            attempts.incrementAndGet();
+            throw new CardException("declined", null, "card_declined", null, null, null, 402, null);
+        })));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void submit_RejectsImmediatelyWhenExecutorIsSaturated() throws Exception {
+        gateway = new StripePaymentGateway(RateLimiter.ofDefaults("stripe"), RETRY, 1, 1, TIMEOUT, false);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = gateway.submit(() -> {
+            release.await();
+            return "first";
+        });
+        CompletableFuture<String> queued = gateway.submit(() -> "second");
+        CompletableFuture<String> rejected = gateway.submit(() -> "third");
+
+        assertTrue(rejected.isCompletedExceptionally());
+        assertThrows(PaymentGatewayUnavailableException.class, () -> PaymentGateway.await(rejected));
+        release.countDown();
+        assertEquals("first", running.get(5, TimeUnit.SECONDS));
+        assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submit_FailsWhenRateLimitIsExhausted() throws StripeException {
+        RateLimiter rateLimiter = RateLimiter.of("stripe", RateLimiterConfig.custom()
+                .limitForPeriod(1)
+                .limitRefreshPeriod(Duration.ofMinutes(1))
+                .timeoutDuration(Duration.ZERO)
+                .build());
+        gateway = new StripePaymentGateway(rateLimiter, RETRY, 2, 10, TIMEOUT, false);
+
+        assertEquals("ok", PaymentGateway.await(gateway.submit(() -> "ok")));
+        assertThrows(PaymentGatewayUnavailableException.class,
+                () -> PaymentGateway.await(gateway.submit(() -> "limited")));
+    }
+
+    @Test
+    void submit_FailsAsUnavailableWhenStripeDoesNotAnswerInTime() throws Exception {
+        gateway = new StripePaymentGateway(RateLimiter.ofDefaults("stripe"), RETRY, 2, 10, Duration.ofMillis(50),
+                false);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> call = gateway.submit(() -> {
+            release.await();
+            return "late";
+        });
+
+        assertThrows(PaymentGatewayUnavailableException.class, () -> PaymentGateway.await(call));
+        release.countDown();
+    }
+
+    @Test
+    void submit_RunsOnVirtualThreadsInVirtualMode() throws StripeException {
+        gateway = new StripePaymentGateway(RateLimiter.ofDefaults("stripe"), RETRY, 2, 10, TIMEOUT, true);
+
+        Thread worker = PaymentGateway.await(gateway.submit(Thread::currentThread));
+
+        assertTrue(worker.isVirtual());
+        assertTrue(worker.getName().startsWith("stripe-gateway-"));
+    }
+}
@@ -0,0 +1,128 @@
+package com.artztall.payment_service.service;
+
+import com.artztall.payment_service.exception.InvalidWebhookSignatureException;
+import com.artztall.payment_service.model.StripeEventRecord;
+import com.stripe.net.Webhook;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StripeWebhookServiceTest {
+
+    private static final String SECRET = "whsec_test";
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private PaymentService paymentService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StripeWebhookService webhookService;
+
+    @BeforeEach
+    void setUp() {
+        // Workers are not started; events are applied by calling process directly
+        webhookService = new StripeWebhookService(mongoTemplate, paymentService, meterRegistry,
+                SECRET, Duration.ofMinutes(5), 10, 1, 3, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void receive_RecordsAndQueuesSignedEvent() throws Exception {
+        String payload = event("evt_1", StripeWebhookService.PAYMENT_SUCCEEDED, "pi_1");
+
+        StripeWebhookService.Outcome outcome = webhookService.receive(payload, sign(payload));
+
+        assertEquals(StripeWebhookService.Outcome.QUEUED, outcome);
+        ArgumentCaptor<StripeEventRecord> record = ArgumentCaptor.forClass(StripeEventRecord.class);
+        verify(mongoTemplate).insert(record.capture());
+        assertEquals("evt_1", record.getValue().getId());
+        assertEquals("pi_1", record.getValue().getPaymentIntentId());
+        assertEquals(1, webhookService.getQueueDepth());
+        verifyNoInteractions(paymentService);
+    }
+
+    @Test
+    void receive_RejectsInvalidSignature() throws Exception {
+        String payload = event("evt_1", StripeWebhookService.PAYMENT_SUCCEEDED, "pi_1");
+        String tampered = payload.replace("pi_1", "pi_2");
+
+        assertThrows(InvalidWebhookSignatureException.class, () -> webhookService.receive(tampered, sign(payload)));
+        assertThrows(InvalidWebhookSignatureException.class, () -> webhookService.receive(payload, null));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void receive_IgnoresRedeliveredEvent() throws Exception {
+        String payload = event("evt_1", StripeWebhookService.PAYMENT_SUCCEEDED, "pi_1");
+        when(mongoTemplate.insert(any(StripeEventRecord.class))).thenThrow(new DuplicateKeyException("evt_1"));
+
+        assertEquals(StripeWebhookService.Outcome.DUPLICATE, webhookService.receive(payload, sign(payload)));
+        assertEquals(0, webhookService.getQueueDepth());
+    }
+
+    @Test
+    void receive_IgnoresUnhandledEventTypes() throws Exception {
+        String payload = event("evt_1", "payment_intent.created", "pi_1");
+
+        assertEquals(StripeWebhookService.Outcome.IGNORED, webhookService.receive(payload, sign(payload)));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void process_AppliesEventAndMarksItProcessed() {
+        webhookService.process(record(StripeWebhookService.PAYMENT_SUCCEEDED));
+        webhookService.process(record(StripeWebhookService.PAYMENT_FAILED));
+
+        verify(paymentService).completePayment("pi_1");
+        verify(paymentService).failPayment("pi_1");
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), update.capture(), eq(StripeEventRecord.class));
+        assertTrue(update.getValue().modifies("processedAt"));
+    }
+
+    @Test
+    void process_CountsFailedAttemptForRetry() {
+        when(paymentService.completePayment("pi_1")).thenThrow(new RuntimeException("order service down"));
+
+        webhookService.process(record(StripeWebhookService.PAYMENT_SUCCEEDED));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(StripeEventRecord.class));
+        assertTrue(update.getValue().modifies("attempts"));
+        assertFalse(update.getValue().modifies("processedAt"));
+    }
+
+    private static StripeEventRecord record(String type) {
+        return StripeEventRecord.builder().id("evt_1").type(type).paymentIntentId("pi_1").build();
+    }
+
+    private static String event(String id, String type, String paymentIntentId) {
+        return """
+                {"id": "%s", "object": "event", "type": "%s",
+                 "data": {"object": {"id": "%s", "object": "payment_intent", "status": "succeeded"}}}
+                """.formatted(id, type, paymentIntentId);
+    }
+
+    private static String sign(String payload) throws Exception {
+        long timestamp = Webhook.Util.getTimeNow();
+        String signature = Webhook.Util.computeHmacSha256(SECRET, timestamp + "." + payload);
+        return "t=" + timestamp + ",v1=" + signature;
+    }
+}
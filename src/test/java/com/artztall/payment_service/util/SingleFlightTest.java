@@ -0,0 +1,141 @@
+package com.artztall.payment_service.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SingleFlight<String, String> flight = new SingleFlight<>("test", meterRegistry);
+
+    @Test
+    void execute_ConcurrentCallersShareOneCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> flight.execute("order-1", () -> {
+                    calls.incrementAndGet();
+                    awaitQuietly(release);
+                    return "result";
+                })));
+            }
+            while (coalesced() < 7) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("result", result.get(2, TimeUnit.SECONDS));
+            }
+            assertEquals(1, calls.get());
+            assertEquals(1.0, meterRegistry.get("singleflight.calls").counter().count());
+            assertEquals(0, flight.inFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_FollowersReceiveTheLeadersException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> flight.execute("order-1", () -> {
+                awaitQuietly(release);
+                throw new IllegalStateException("order service down");
+            }));
+            while (flight.inFlight() == 0) {
+                Thread.sleep(5);
+            }
+            Future<String> follower = executor.submit(() -> flight.execute("order-1", () -> "unused"));
+            while (coalesced() < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            Exception leaderError = assertThrows(Exception.class, () -> leader.get(2, TimeUnit.SECONDS));
+            Exception followerError = assertThrows(Exception.class, () -> follower.get(2, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, leaderError.getCause());
+            assertInstanceOf(IllegalStateException.class, followerError.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_StartsANewCallOnceThePreviousOneCompleted() {
+        AtomicInteger calls = new AtomicInteger();
+
+        flight.execute("order-1", () -> "first-" + calls.incrementAndGet());
+        String second = flight.execute("order-1", () -> "second-" + calls.incrementAndGet());
+
+        assertEquals("second-2", second);
+        assertEquals(0.0, coalesced());
+    }
+
+    @Test
+    void executeMono_SubscribersShareOneSubscriptionToTheCall() {
+        Sinks.One<String> response = Sinks.one();
+        AtomicInteger subscriptions = new AtomicInteger();
+        Mono<String> call = response.asMono().doOnSubscribe(subscription -> subscriptions.incrementAndGet());
+
+        Mono<String> first = flight.executeMono("intent-1", () -> call);
+        Mono<String> second = flight.executeMono("intent-1", () -> call);
+
+        StepVerifier.create(Mono.zip(first, second))
+                .then(() -> response.tryEmitValue("payment"))
+                .assertNext(results -> {
+                    assertEquals("payment", results.getT1());
+                    assertEquals("payment", results.getT2());
+                })
+                .verifyComplete();
+        assertEquals(1, subscriptions.get());
+        assertEquals(1.0, coalesced());
+    }
+
+    @Test
+    void executeMono_EmptyResultIsSharedAsEmpty() {
+        Sinks.One<String> response = Sinks.one();
+
+        Mono<String> first = flight.executeMono("intent-1", response::asMono);
+        Mono<String> second = flight.executeMono("intent-1", () -> Mono.just("unused"));
+
+        StepVerifier.create(Mono.zip(first.defaultIfEmpty("none"), second.defaultIfEmpty("none")))
+                .then(response::tryEmitEmpty)
+                .assertNext(results -> {
+                    assertEquals("none", results.getT1());
+                    assertEquals("none", results.getT2());
+                })
+                .verifyComplete();
+        assertEquals(0, flight.inFlight());
+    }
+
+    private double coalesced() {
+        return meterRegistry.get("singleflight.coalesced").counter().count();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
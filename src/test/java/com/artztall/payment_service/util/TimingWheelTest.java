@@ -0,0 +1,91 @@
+package com.artztall.payment_service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void advanceTo_FiresTimersWithinOneTickOfTheirDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 8, 3, START);
+        wheel.schedule("a", START + 2_500);
+        wheel.schedule("b", START + 5_000);
+
+        assertEquals(List.of(), wheel.advanceTo(START + 2_000));
+        assertEquals(List.of("a"), wheel.advanceTo(START + 3_000));
+        assertEquals(List.of("b"), wheel.advanceTo(START + 5_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advanceTo_CascadesTimersFromHigherLevels() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 8, 3, START);
+        // 8 ticks per level-0 rotation, 64 per level-1 rotation, so these land on levels 1 and 2
+        wheel.schedule("level1", START + 20_000);
+        wheel.schedule("level2", START + 100_000);
+
+        assertEquals(List.of(), wheel.advanceTo(START + 19_000));
+        assertEquals(List.of("level1"), wheel.advanceTo(START + 20_000));
+        assertEquals(List.of(), wheel.advanceTo(START + 99_000));
+        assertEquals(List.of("level2"), wheel.advanceTo(START + 100_000));
+    }
+
+    @Test
+    void advanceTo_HandlesDeadlinesBeyondTheHorizon() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 4, 2, START);
+        // Horizon is 16 ticks
+        wheel.schedule("far", START + 50_000);
+
+        assertEquals(List.of(), wheel.advanceTo(START + 49_000));
+        assertEquals(List.of("far"), wheel.advanceTo(START + 50_000));
+    }
+
+    @Test
+    void cancel_PreventsTimerFromFiring() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 8, 3, START);
+        wheel.schedule("a", START + 30_000);
+
+        assertTrue(wheel.cancel("a"));
+        assertFalse(wheel.cancel("a"));
+        assertEquals(List.of(), wheel.advanceTo(START + 60_000));
+    }
+
+    @Test
+    void schedule_ReplacesExistingTimerAndRejectsPastDeadlines() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 8, 3, START);
+        wheel.schedule("a", START + 3_000);
+        wheel.schedule("a", START + 6_000);
+
+        assertFalse(wheel.schedule("late", START - 1_000));
+        assertEquals(List.of(), wheel.advanceTo(START + 5_000));
+        assertEquals(List.of("a"), wheel.advanceTo(START + 6_000));
+    }
+
+    @Test
+    void advanceTo_FiresRandomTimersOnTime() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(1000, 16, 3, START);
+        Random random = new Random(42);
+        long[] deadlines = new long[500];
+        for (int i = 0; i < deadlines.length; i++) {
+            deadlines[i] = START + 1_000 + random.nextInt(5_000_000);
+            wheel.schedule(i, deadlines[i]);
+        }
+
+        List<Integer> fired = new ArrayList<>();
+        for (long now = START; now <= START + 5_002_000; now += 1_000) {
+            for (Integer key : wheel.advanceTo(now)) {
+                long deadline = deadlines[key];
+                assertTrue(now >= deadline && now - deadline < 1_000, "timer " + key + " fired late or early");
+                fired.add(key);
+            }
+        }
+        assertEquals(deadlines.length, fired.size());
+    }
+}